@@ -0,0 +1,79 @@
+package htsjdk.samtools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of uncompressed BAM records, i.e. excluding BGZF compression.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BAMRecordCodecBenchmark {
+    private static final int PAIRS = 10_000;
+
+    private SAMFileHeader header;
+    private List<SAMRecord> records;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        final SAMRecordSetBuilder builder = BenchmarkRecords.randomPairs(PAIRS);
+        header = builder.getHeader();
+        records = new ArrayList<>(builder.getRecords());
+        encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(encoded == null ? 1 << 20 : encoded.length);
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setOutputStream(out);
+        for (final SAMRecord record : records) {
+            codec.encode(record);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the fixed-length fields only, leaving variable-length fields to be decoded lazily.
+     */
+    @Benchmark
+    public void decode(final Blackhole blackhole) {
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setInputStream(new ByteArrayInputStream(encoded));
+        SAMRecord record;
+        while ((record = codec.decode()) != null) {
+            blackhole.consume(record);
+        }
+    }
+
+    @Benchmark
+    public void decodeEagerly(final Blackhole blackhole) {
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setInputStream(new ByteArrayInputStream(encoded));
+        SAMRecord record;
+        while ((record = codec.decode()) != null) {
+            record.eagerDecode();
+            blackhole.consume(record);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package htsjdk.samtools;
+
+import java.util.Random;
+
+/**
+ * Synthetic alignment records shared by the benchmarks, with tags typical of aligner output.
+ */
+public final class BenchmarkRecords {
+    public static final int READ_LENGTH = 150;
+
+    private BenchmarkRecords() {
+    }
+
+    /**
+     * Creates read pairs at random positions of the first 22 contigs of the builder's default dictionary.
+     * The records are returned in creation order, i.e. unsorted.
+     */
+    public static SAMRecordSetBuilder randomPairs(final int pairs) {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.unsorted);
+        builder.setReadLength(READ_LENGTH);
+        final Random random = new Random(42);
+        for (int i = 0; i < pairs; i++) {
+            final int start = 1 + random.nextInt(100_000_000);
+            builder.addPair("read" + i, random.nextInt(22), start, start + random.nextInt(500));
+        }
+        for (final SAMRecord record : builder.getRecords()) {
+            record.setAttribute("NM", random.nextInt(5));
+            record.setAttribute("AS", 100 + random.nextInt(50));
+            record.setAttribute("XS", random.nextInt(100));
+            record.setAttribute("MD", "75A74");
+            record.setAttribute("MC", READ_LENGTH + "M");
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,58 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BinaryCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of a typical set of BAM tags of mixed types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinaryTagCodecBenchmark {
+    private static final short[] TAGS = {
+            SAMTagUtil.getSingleton().makeBinaryTag("RG"), SAMTagUtil.getSingleton().makeBinaryTag("NM"), SAMTagUtil.getSingleton().makeBinaryTag("AS"),
+            SAMTagUtil.getSingleton().makeBinaryTag("MD"), SAMTagUtil.getSingleton().makeBinaryTag("XT"), SAMTagUtil.getSingleton().makeBinaryTag("XF"),
+            SAMTagUtil.getSingleton().makeBinaryTag("ZB"), SAMTagUtil.getSingleton().makeBinaryTag("ZI")};
+    private static final Object[] VALUES = {
+            "H0164.2", 3, 148, "75A74", 'U', 0.25f, new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, new int[]{100, 200, 300, 400}};
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private BinaryTagCodec tagCodec;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        tagCodec = new BinaryTagCodec(new BinaryCodec(out));
+        encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        out.reset();
+        for (int i = 0; i < TAGS.length; i++) {
+            tagCodec.writeTag(TAGS[i], VALUES[i], false);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public SAMBinaryTagAndValue decode() {
+        return BinaryTagCodec.readTags(encoded, 0, encoded.length, ValidationStringency.SILENT);
+    }
+}
@@ -0,0 +1,50 @@
+package htsjdk.samtools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Parsing of SAM text lines into records.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SAMLineParserBenchmark {
+    private static final int PAIRS = 10_000;
+
+    private SAMLineParser parser;
+    private List<String> lines;
+
+    @Setup
+    public void setup() {
+        final SAMRecordSetBuilder builder = BenchmarkRecords.randomPairs(PAIRS);
+        parser = new SAMLineParser(builder.getHeader());
+        // SAMLineParser expects lines without the terminating newline
+        lines = builder.getRecords().stream()
+                .map(r -> r.getSAMString().trim())
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void parseLines(final Blackhole blackhole) {
+        for (final String line : lines) {
+            blackhole.consume(parser.parseLine(line));
+        }
+    }
+}
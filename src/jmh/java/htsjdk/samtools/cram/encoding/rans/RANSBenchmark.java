@@ -0,0 +1,76 @@
+package htsjdk.samtools.cram.encoding.rans;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link ByteBuffer} based rANS implementation with the byte array one used by
+ * {@link htsjdk.samtools.cram.io.ExternalCompression}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RANSBenchmark {
+
+    @Param({"ZERO", "ONE"})
+    public RANS.ORDER order;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    /**
+     * Probability parameter of the geometric distribution the data is drawn from; lower values give more
+     * distinct symbols and less compressible data.
+     */
+    @Param({"0.1", "0.01"})
+    public double p;
+
+    private byte[] data;
+    private byte[] compressed;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        data = new byte[size];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (Math.ceil(Math.log(1 - random.nextDouble()) / Math.log(1 - p)) - 1);
+        }
+        compressed = RANS.compress(data, order);
+    }
+
+    @Benchmark
+    public ByteBuffer compressByteBuffer() {
+        return RANS.compress(ByteBuffer.wrap(data), order, null);
+    }
+
+    @Benchmark
+    public byte[] compressByteArray() {
+        return RANS.compress(data, order);
+    }
+
+    @Benchmark
+    public ByteBuffer uncompressByteBuffer() {
+        return RANS.uncompress(ByteBuffer.wrap(compressed), null);
+    }
+
+    @Benchmark
+    public byte[] uncompressByteArray() {
+        return RANS.uncompress(compressed);
+    }
+}
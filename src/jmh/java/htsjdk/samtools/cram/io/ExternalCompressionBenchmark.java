@@ -0,0 +1,90 @@
+package htsjdk.samtools.cram.io;
+
+import htsjdk.samtools.cram.encoding.rans.RANS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression and decompression of a CRAM block of quality scores with each of the external compressors.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExternalCompressionBenchmark {
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    public enum Method {
+        GZIP, BZIP2, XZ, RANS0, RANS1
+    }
+
+    @Param({"GZIP", "BZIP2", "XZ", "RANS0", "RANS1"})
+    public Method method;
+
+    private byte[] data;
+    private byte[] compressed;
+
+    @Setup
+    public void setup() throws IOException {
+        // quality scores cluster around a typical value and drift slowly along a read
+        final Random random = new Random(42);
+        data = new byte[BLOCK_SIZE];
+        int quality = 30;
+        for (int i = 0; i < data.length; i++) {
+            if (i % 150 == 0) quality = 30;
+            quality = Math.max(2, Math.min(41, quality + random.nextInt(5) - 2));
+            data[i] = (byte) (33 + quality);
+        }
+        compressed = compress();
+    }
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        switch (method) {
+            case GZIP:
+                return ExternalCompression.gzip(data);
+            case BZIP2:
+                return ExternalCompression.bzip2(data);
+            case XZ:
+                return ExternalCompression.xz(data);
+            case RANS0:
+                return ExternalCompression.rans(data, RANS.ORDER.ZERO);
+            case RANS1:
+                return ExternalCompression.rans(data, RANS.ORDER.ONE);
+            default:
+                throw new IllegalStateException("Unknown method " + method);
+        }
+    }
+
+    @Benchmark
+    public byte[] uncompress() throws IOException {
+        switch (method) {
+            case GZIP:
+                return ExternalCompression.gunzip(compressed);
+            case BZIP2:
+                return ExternalCompression.unbzip2(compressed);
+            case XZ:
+                return ExternalCompression.unxz(compressed);
+            case RANS0:
+            case RANS1:
+                return ExternalCompression.unrans(compressed);
+            default:
+                throw new IllegalStateException("Unknown method " + method);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package htsjdk.samtools.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of BGZF compression and decompression of in-memory data that compresses about as well as BAM records.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockCompressedStreamBenchmark {
+    private static final int DATA_SIZE = 8 * 1024 * 1024;
+
+    @Param({"1", "5"})
+    public int compressionLevel;
+
+    private byte[] data;
+    private byte[] compressed;
+    private final byte[] readBuffer = new byte[64 * 1024];
+
+    @Setup
+    public void setup() throws IOException {
+        final Random random = new Random(42);
+        final byte[] bases = {'A', 'C', 'G', 'T'};
+        data = new byte[DATA_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            // alternate stretches of bases and of quality-like values
+            data[i] = (i / 150) % 2 == 0 ? bases[random.nextInt(4)] : (byte) (30 + random.nextInt(10));
+        }
+        compressed = compress();
+    }
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(DATA_SIZE / 2);
+        try (final BlockCompressedOutputStream bcos = new BlockCompressedOutputStream(out, (Path) null, compressionLevel)) {
+            bcos.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public long decompress() throws IOException {
+        long total = 0;
+        try (final BlockCompressedInputStream bcis = new BlockCompressedInputStream(new ByteArrayInputStream(compressed))) {
+            int n;
+            while ((n = bcis.read(readBuffer)) > 0) {
+                total += n;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,80 @@
+package htsjdk.samtools.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building an {@link IntervalTree} and of querying it for overlapping intervals.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntervalTreeBenchmark {
+    private static final int GENOME_LENGTH = 100_000_000;
+    private static final int QUERIES = 1000;
+
+    @Param({"1000", "100000"})
+    public int intervals;
+
+    private int[] starts;
+    private int[] ends;
+    private int[] queryStarts;
+    private IntervalTree<Integer> tree;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        starts = new int[intervals];
+        ends = new int[intervals];
+        for (int i = 0; i < intervals; i++) {
+            starts[i] = 1 + random.nextInt(GENOME_LENGTH);
+            ends[i] = starts[i] + 100 + random.nextInt(10_000);
+        }
+        queryStarts = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queryStarts[i] = 1 + random.nextInt(GENOME_LENGTH);
+        }
+        tree = build();
+    }
+
+    @Benchmark
+    public IntervalTree<Integer> build() {
+        final IntervalTree<Integer> tree = new IntervalTree<>();
+        for (int i = 0; i < starts.length; i++) {
+            tree.put(starts[i], ends[i], i);
+        }
+        return tree;
+    }
+
+    /**
+     * Counts the intervals overlapping each of {@value #QUERIES} 10kb windows.
+     */
+    @Benchmark
+    public long queryOverlappers() {
+        long overlaps = 0;
+        for (final int start : queryStarts) {
+            final Iterator<IntervalTree.Node<Integer>> it = tree.overlappers(start, start + 10_000);
+            while (it.hasNext()) {
+                it.next();
+                overlaps++;
+            }
+        }
+        return overlaps;
+    }
+}
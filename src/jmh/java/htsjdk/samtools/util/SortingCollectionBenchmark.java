@@ -0,0 +1,89 @@
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.BenchmarkRecords;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinate sorting of BAM records with a {@link SortingCollection}, as done when writing a sorted BAM.
+ * With the smaller maxRecordsInRam the records are spilled to several temporary files and merged on iteration,
+ * optionally spilling on a background thread and merging on several.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SortingCollectionBenchmark {
+    private static final int PAIRS = 25_000;
+
+    @Param({"5000", "50000"})
+    public int maxRecordsInRam;
+
+    @Param({"false", "true"})
+    public boolean asyncSpilling;
+
+    @Param({"0", "4"})
+    public int mergeThreads;
+
+    private SAMFileHeader header;
+    private List<SAMRecord> records;
+    private Path tmpDir;
+
+    @Setup
+    public void setup() throws IOException {
+        final SAMRecordSetBuilder builder = BenchmarkRecords.randomPairs(PAIRS);
+        header = builder.getHeader();
+        records = new ArrayList<>(builder.getRecords());
+        tmpDir = Files.createTempDirectory("SortingCollectionBenchmark");
+    }
+
+    @TearDown
+    public void tearDown() {
+        IOUtil.deleteDirectoryTree(tmpDir.toFile());
+    }
+
+    @Benchmark
+    public void addAndIterate(final Blackhole blackhole) {
+        final SortingCollection<SAMRecord> collection = SortingCollection.newInstanceFromPaths(SAMRecord.class,
+                new BAMRecordCodec(header), new SAMRecordCoordinateComparator(), maxRecordsInRam,
+                Collections.singleton(tmpDir));
+        collection.setAsyncSpilling(asyncSpilling);
+        collection.setMergeThreads(mergeThreads);
+        for (final SAMRecord record : records) {
+            collection.add(record);
+        }
+        collection.doneAdding();
+        try (final CloseableIterator<SAMRecord> it = collection.iterator()) {
+            while (it.hasNext()) {
+                blackhole.consume(it.next());
+            }
+        }
+        collection.cleanup();
+    }
+}
@@ -0,0 +1,85 @@
+package htsjdk.variant.bcf2;
+
+import htsjdk.tribble.readers.PositionalBufferedStream;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.BenchmarkVariants;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of an uncompressed BCF stream with {@link BCF2Codec}, with and without decoding the genotypes,
+ * which are otherwise parsed lazily.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BCF2CodecBenchmark {
+    private static final int VARIANTS = 5000;
+
+    @Param({"1", "100"})
+    public int samples;
+
+    private byte[] bcf;
+
+    @Setup
+    public void setup() {
+        final BenchmarkVariants variants = new BenchmarkVariants(VARIANTS, samples);
+        final VCFCodec vcfCodec = variants.newCodec();
+        final VCFHeader header = vcfCodec.getHeader();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final VariantContextWriter writer = new VariantContextWriterBuilder()
+                .setOutputBCFStream(out)
+                .setReferenceDictionary(header.getSequenceDictionary())
+                .unsetOption(Options.INDEX_ON_THE_FLY)
+                .build()) {
+            writer.writeHeader(header);
+            for (final String line : variants.lines) {
+                writer.add(vcfCodec.decode(line));
+            }
+        }
+        bcf = out.toByteArray();
+    }
+
+    @Benchmark
+    public void decode(final Blackhole blackhole) throws IOException {
+        decode(blackhole, false);
+    }
+
+    @Benchmark
+    public void decodeWithGenotypes(final Blackhole blackhole) throws IOException {
+        decode(blackhole, true);
+    }
+
+    private void decode(final Blackhole blackhole, final boolean decodeGenotypes) throws IOException {
+        final BCF2Codec codec = new BCF2Codec();
+        final PositionalBufferedStream stream = new PositionalBufferedStream(new ByteArrayInputStream(bcf));
+        codec.readHeader(stream);
+        while (!stream.isDone()) {
+            final VariantContext vc = codec.decode(stream);
+            blackhole.consume(decodeGenotypes ? vc.getGenotypes().get(0) : vc);
+        }
+    }
+}
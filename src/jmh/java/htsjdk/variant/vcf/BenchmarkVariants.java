@@ -0,0 +1,78 @@
+package htsjdk.variant.vcf;
+
+import htsjdk.tribble.readers.LineIteratorImpl;
+import htsjdk.tribble.readers.SynchronousLineReader;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic VCF text shared by the benchmarks, with the INFO and FORMAT fields typical of germline calls.
+ */
+public final class BenchmarkVariants {
+    private static final String[] GENOTYPES = {"0/0", "0/1", "1/1", "./."};
+    private static final String[] BASES = {"A", "C", "G", "T"};
+
+    public final String headerText;
+    public final List<String> lines;
+
+    public BenchmarkVariants(final int variants, final int samples) {
+        final StringBuilder header = new StringBuilder()
+                .append("##fileformat=VCFv4.2\n")
+                .append("##contig=<ID=1,length=249250621>\n")
+                .append("##FILTER=<ID=LowQual,Description=\"Low quality\">\n")
+                .append("##INFO=<ID=AC,Number=A,Type=Integer,Description=\"Allele count\">\n")
+                .append("##INFO=<ID=AF,Number=A,Type=Float,Description=\"Allele frequency\">\n")
+                .append("##INFO=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">\n")
+                .append("##INFO=<ID=DB,Number=0,Type=Flag,Description=\"dbSNP membership\">\n")
+                .append("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">\n")
+                .append("##FORMAT=<ID=AD,Number=R,Type=Integer,Description=\"Allelic depths\">\n")
+                .append("##FORMAT=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">\n")
+                .append("##FORMAT=<ID=GQ,Number=1,Type=Integer,Description=\"Genotype quality\">\n")
+                .append("##FORMAT=<ID=PL,Number=G,Type=Integer,Description=\"Phred-scaled likelihoods\">\n")
+                .append("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT");
+        for (int s = 0; s < samples; s++) {
+            header.append("\tSAMPLE").append(s);
+        }
+        headerText = header.append('\n').toString();
+
+        final Random random = new Random(42);
+        lines = new ArrayList<>(variants);
+        int position = 0;
+        for (int v = 0; v < variants; v++) {
+            position += 1 + random.nextInt(1000);
+            final int ref = random.nextInt(4);
+            final StringBuilder line = new StringBuilder()
+                    .append("1\t").append(position).append("\trs").append(v).append('\t')
+                    .append(BASES[ref]).append('\t').append(BASES[(ref + 1 + random.nextInt(3)) % 4]).append('\t')
+                    .append(random.nextInt(5000)).append(".").append(random.nextInt(100)).append('\t')
+                    .append(random.nextInt(10) == 0 ? "LowQual" : "PASS").append('\t')
+                    .append("AC=").append(random.nextInt(2 * samples + 1))
+                    .append(";AF=").append(random.nextInt(1000) / 1000.0)
+                    .append(";DP=").append(random.nextInt(30 * samples + 1))
+                    .append(random.nextBoolean() ? ";DB" : "")
+                    .append("\tGT:AD:DP:GQ:PL");
+            for (int s = 0; s < samples; s++) {
+                final int refDepth = random.nextInt(30);
+                final int altDepth = random.nextInt(30);
+                line.append('\t').append(GENOTYPES[random.nextInt(GENOTYPES.length)])
+                        .append(':').append(refDepth).append(',').append(altDepth)
+                        .append(':').append(refDepth + altDepth)
+                        .append(':').append(random.nextInt(100))
+                        .append(':').append(random.nextInt(100)).append(',').append(random.nextInt(100)).append(',').append(random.nextInt(1000));
+            }
+            lines.add(line.toString());
+        }
+    }
+
+    /**
+     * @return a VCF codec that has read the header of these variants
+     */
+    public VCFCodec newCodec() {
+        final VCFCodec codec = new VCFCodec();
+        codec.readActualHeader(new LineIteratorImpl(new SynchronousLineReader(new StringReader(headerText))));
+        return codec;
+    }
+}
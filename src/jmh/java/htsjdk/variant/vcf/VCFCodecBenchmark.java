@@ -0,0 +1,60 @@
+package htsjdk.variant.vcf;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of VCF lines with {@link AbstractVCFCodec#decode(String)}, with and without decoding the genotypes,
+ * which are otherwise parsed lazily.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VCFCodecBenchmark {
+    private static final int VARIANTS = 5000;
+
+    @Param({"1", "100"})
+    public int samples;
+
+    private VCFCodec codec;
+    private List<String> lines;
+
+    @Setup
+    public void setup() {
+        final BenchmarkVariants variants = new BenchmarkVariants(VARIANTS, samples);
+        codec = variants.newCodec();
+        lines = variants.lines;
+    }
+
+    @Benchmark
+    public void decode(final Blackhole blackhole) {
+        for (final String line : lines) {
+            blackhole.consume(codec.decode(line));
+        }
+    }
+
+    @Benchmark
+    public void decodeWithGenotypes(final Blackhole blackhole) {
+        for (final String line : lines) {
+            final VariantContext vc = codec.decode(line);
+            blackhole.consume(vc.getGenotypes().get(0));
+        }
+    }
+}
@@ -34,8 +34,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Class for reading and querying BAM files.
@@ -84,6 +86,21 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
      */
     private SamReader mReader = null;
 
+    /**
+     * Number of records handed to a decoding thread at a time when decoding in parallel.
+     */
+    private static final int DECODING_BATCH_SIZE = 1000;
+
+    /**
+     * If positive, records are read ahead on a background thread and validated/decoded on this many worker threads.
+     */
+    private int mDecodingThreads = 0;
+    // Created on first use and shut down when this reader is closed.
+    private ExecutorService mDecodingThreadPool = null;
+
+    private BAMQueryPlanner mQueryPlanner = BAMQueryPlanner.DEFAULT;
+    private BAMQueryPlan mLastQueryPlan = null;
+
     /**
      * Prepare to read BAM from a stream (not seekable)
      * @param stream source of bytes.
@@ -376,6 +393,46 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
 
     @Override void setSAMRecordFactory(final SAMRecordFactory samRecordFactory) { this.samRecordFactory = samRecordFactory; }
 
+    /**
+     * Set the number of threads used to validate and decode records while iterating.  Records are read ahead from the
+     * file on a background thread and are still returned in file order.  Takes effect for iterators created after this call.
+     * Note that when reading from a stream that is not seekable, records that have been read ahead are lost when an
+     * iterator is closed before reaching the end of the file.
+     * @param decodingThreads number of worker threads, or 0 to read and decode records on the calling thread
+     */
+    void setDecodingThreads(final int decodingThreads) {
+        if (decodingThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of decoding threads: " + decodingThreads);
+        }
+        if (mDecodingThreadPool != null && decodingThreads != mDecodingThreads) {
+            mDecodingThreadPool.shutdown();
+            mDecodingThreadPool = null;
+        }
+        this.mDecodingThreads = decodingThreads;
+    }
+
+    /**
+     * Set the planner of the reads of the file for multi-interval queries.  Takes effect for queries made after this call.
+     */
+    void setQueryPlanner(final BAMQueryPlanner queryPlanner) {
+        this.mQueryPlanner = queryPlanner;
+    }
+
+    /**
+     * @return the plan of the most recent query of multiple intervals, whose statistics are updated as the query is
+     * iterated, or null if no such query has been made
+     */
+    public BAMQueryPlan getLastQueryPlan() {
+        return mLastQueryPlan;
+    }
+
+    private ExecutorService getDecodingThreadPool() {
+        if (mDecodingThreadPool == null) {
+            mDecodingThreadPool = ParallelDecodingIterator.newWorkerPool(mDecodingThreads);
+        }
+        return mDecodingThreadPool;
+    }
+
     @Override
     public SamReader.Type type() {
         return SamReader.Type.BAM_TYPE;
@@ -398,7 +455,10 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         if(!hasIndex())
             throw new SAMException("No index is available for this BAM file.");
         if(mIndex == null) {
-            if (mIndexFile != null)
+            final BAMIndex csiIndex = openCSIIndexOrNull();
+            if (csiIndex != null)
+                mIndex = csiIndex;
+            else if (mIndexFile != null)
                 mIndex = mEnableIndexCaching ? new CachingBAMFileIndex(mIndexFile, getFileHeader().getSequenceDictionary(), mEnableIndexMemoryMapping)
                                              : new DiskBasedBAMFileIndex(mIndexFile, getFileHeader().getSequenceDictionary(), mEnableIndexMemoryMapping);
             else
@@ -408,10 +468,33 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         return mIndex;
     }
 
+    /**
+     * CSI indexes are recognized by their suffix when given as a file, and by their contents when given as a stream.
+     * @return the CSI index, or null if the index is a BAI
+     */
+    private BAMIndex openCSIIndexOrNull() {
+        try {
+            if (mIndexFile != null) {
+                return mIndexFile.getName().toLowerCase().endsWith(CSIIndex.CSI_INDEX_SUFFIX) ? new CSIIndex(mIndexFile) : null;
+            }
+            return CSIIndex.isCSIIndex(mIndexStream) ? new CSIIndex(mIndexStream) : null;
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading CSI index", e);
+        }
+    }
+
     public void setEagerDecode(final boolean desired) { this.eagerDecode = desired; }
 
     @Override
     public void close() {
+        if (mCurrentIterator instanceof AbstractBamIterator) {
+            // make sure no background thread is still reading from the stream
+            ((AbstractBamIterator) mCurrentIterator).stopDecoding();
+        }
+        if (mDecodingThreadPool != null) {
+            mDecodingThreadPool.shutdown();
+            mDecodingThreadPool = null;
+        }
         if (mCompressedInputStream != null) {
             try {
                 mCompressedInputStream.close();
@@ -466,6 +549,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         }
         if (mIsSeekable) {
             try {
+                mCompressedInputStream.setUseBlockCache(false);
                 mCompressedInputStream.seek(mFirstRecordPointer);
             } catch (final IOException exc) {
                 throw new RuntimeIOException(exc.getMessage(), exc);
@@ -475,6 +559,33 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         return mCurrentIterator;
     }
 
+    /**
+     * Prepare to iterate through the records of the file as reusable {@link BAMRecordView}s, which avoids the
+     * allocations of decoding each record for passes that only need a few fields of each one.  The same view is
+     * returned by every call to next(), showing the next record, so it must not be kept by the caller; use
+     * {@link BAMRecordView#toSAMRecord()} to keep a record.  As for the other iterators, only one can be open at a
+     * time, and it must be closed before another is created.
+     */
+    public CloseableIterator<BAMRecordView> getRecordViewIterator() {
+        if (mStream == null) {
+            throw new IllegalStateException("File reader is closed");
+        }
+        if (mCurrentIterator != null) {
+            throw new IllegalStateException("Iteration in progress");
+        }
+        if (mIsSeekable) {
+            try {
+                mCompressedInputStream.setUseBlockCache(false);
+                mCompressedInputStream.seek(mFirstRecordPointer);
+            } catch (final IOException exc) {
+                throw new RuntimeIOException(exc.getMessage(), exc);
+            }
+        }
+        final BAMRecordViewIterator iterator = new BAMRecordViewIterator();
+        mCurrentIterator = iterator.iteration;
+        return iterator;
+    }
+
     @Override
     public CloseableIterator<SAMRecord> getIterator(final SAMFileSpan chunks) {
         if (mStream == null) {
@@ -631,6 +742,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             throw new UnsupportedOperationException("Cannot query stream-based BAM file");
         }
         try {
+            mCompressedInputStream.setUseBlockCache(false);
             final long startOfLastLinearBin = getIndex().getStartOfLastLinearBin();
             if (startOfLastLinearBin != -1) {
                 mCompressedInputStream.seek(startOfLastLinearBin);
@@ -728,6 +840,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                 if (mCurrentIterator != null && this != mCurrentIterator) {
                     throw new IllegalStateException("Attempt to close non-current iterator");
                 }
+                stopDecoding();
                 mCurrentIterator = null;
                 isClosed = true;
             }
@@ -737,6 +850,12 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             if (isClosed) throw new AssertionError("Iterator has been closed");
         }
 
+        /**
+         * Stops any background reading from the underlying stream, so that it can be repositioned or closed.
+         */
+        void stopDecoding() {
+        }
+
         @Override
         public void remove() {
             throw new UnsupportedOperationException("Not supported: remove");
@@ -758,6 +877,51 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
 
     /**
 
+    /**
+     * Iterator over reusable views of the records from the current file position.
+     */
+    private class BAMRecordViewIterator implements CloseableIterator<BAMRecordView> {
+        // holds the single iteration allowed on this reader while this iterator is open
+        private final AbstractBamIterator iteration = new EmptyBamIterator();
+        private final BAMRecordCodec bamRecordCodec = new BAMRecordCodec(getFileHeader(), samRecordFactory);
+        private final BAMRecordView view = new BAMRecordView(getFileHeader(), samRecordFactory);
+        // true when the view shows a record that has not been returned yet; the next record can't be read ahead
+        // since it would overwrite the one last returned
+        private boolean pending = false;
+        private boolean exhausted = false;
+
+        BAMRecordViewIterator() {
+            bamRecordCodec.setInputStream(mStream.getInputStream(), mStream.getInputFileName());
+        }
+
+        @Override
+        public boolean hasNext() {
+            iteration.assertOpen();
+            if (!pending && !exhausted) {
+                pending = bamRecordCodec.decode(view);
+                exhausted = !pending;
+            }
+            return pending;
+        }
+
+        /**
+         * @return the view, showing the next record until the following call of hasNext() or next()
+         */
+        @Override
+        public BAMRecordView next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("next called on exhausted iterator");
+            }
+            pending = false;
+            return view;
+        }
+
+        @Override
+        public void close() {
+            iteration.close();
+        }
+    }
+
     /**
      * Iterator for non-indexed sequential iteration through all SAMRecords in file.
      * Starting point of iteration is wherever current file position is when the iterator is constructed.
@@ -766,6 +930,8 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         private SAMRecord mNextRecord = null;
         private final BAMRecordCodec bamRecordCodec;
         private long samRecordIndex = 0; // Records at what position (counted in records) we are at in the file
+        // Only used when decoding in parallel, created on the first call to advance().
+        private ParallelDecodingIterator<SAMRecord, DecodedRecord> decodingIterator = null;
 
         BAMFileIterator() {
             this(true);
@@ -799,6 +965,10 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         }
 
         void advance() {
+            if (mDecodingThreads > 0) {
+                advanceInParallel();
+                return;
+            }
             try {
                 mNextRecord = getNextRecord();
 
@@ -821,6 +991,51 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             }
         }
 
+        private void advanceInParallel() {
+            if (decodingIterator == null) {
+                decodingIterator = new ParallelDecodingIterator<>(new RecordIterator(), this::decode,
+                        getDecodingThreadPool(), DECODING_BATCH_SIZE, 2 * mDecodingThreads);
+            }
+            if (!decodingIterator.hasNext()) {
+                mNextRecord = null;
+                return;
+            }
+            final DecodedRecord decoded = decodingIterator.next();
+            ++this.samRecordIndex;
+            if (decoded.validationErrors != null) {
+                SAMUtils.processValidationErrors(decoded.validationErrors,
+                        this.samRecordIndex, BAMFileReader.this.getValidationStringency());
+            }
+            mNextRecord = decoded.record;
+        }
+
+        /**
+         * Does the work of {@link #advance()} that doesn't depend on the position in the file, on a worker thread.
+         */
+        private DecodedRecord decode(final SAMRecord record) {
+            record.setValidationStringency(mValidationStringency);
+            List<SAMValidationError> validationErrors = null;
+            if (mValidationStringency != ValidationStringency.SILENT) {
+                validationErrors = record.isValid(mValidationStringency == ValidationStringency.STRICT);
+                if (validationErrors != null && mValidationStringency == ValidationStringency.STRICT) {
+                    // the record will be rejected by processValidationErrors, so don't bother decoding it
+                    return new DecodedRecord(record, validationErrors);
+                }
+            }
+            if (eagerDecode) {
+                record.eagerDecode();
+            }
+            return new DecodedRecord(record, validationErrors);
+        }
+
+        @Override
+        void stopDecoding() {
+            if (decodingIterator != null) {
+                decodingIterator.close();
+                decodingIterator = null;
+            }
+        }
+
         /**
          * Read the next record from the input stream.
          */
@@ -841,6 +1056,47 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         protected SAMRecord peek() {
             return mNextRecord;
         }
+
+        /**
+         * Reads the records framed by {@link #getNextRecord()}, on the background thread of the decoding iterator.
+         */
+        private class RecordIterator implements Iterator<SAMRecord> {
+            private SAMRecord next = null;
+            private boolean exhausted = false;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !exhausted) {
+                    try {
+                        next = getNextRecord();
+                    } catch (final IOException exc) {
+                        throw new RuntimeIOException(exc.getMessage(), exc);
+                    }
+                    exhausted = next == null;
+                }
+                return next != null;
+            }
+
+            @Override
+            public SAMRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("next called on exhausted iterator");
+                }
+                final SAMRecord result = next;
+                next = null;
+                return result;
+            }
+        }
+    }
+
+    private static class DecodedRecord {
+        private final SAMRecord record;
+        private final List<SAMValidationError> validationErrors;
+
+        private DecodedRecord(final SAMRecord record, final List<SAMValidationError> validationErrors) {
+            this.record = record;
+            this.validationErrors = validationErrors;
+        }
     }
 
     /**
@@ -912,14 +1168,17 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
 
         assertIntervalsOptimized(intervals);
 
-        BAMFileSpan span = getFileSpan(intervals, getIndex());
+        final BAMQueryPlan plan = mQueryPlanner.plan(intervals, getIndex());
+        mLastQueryPlan = plan;
 
-        // Create an iterator over the above chunk boundaries.
-        final BAMFileIndexIterator iterator = new BAMFileIndexIterator(span == null ? null : span.toCoordinateArray());
+        // Create an iterator over the planned chunk boundaries.
+        final BAMFileIndexIterator iterator = new BAMFileIndexIterator(plan.toCoordinateArray(), plan);
 
         // Add some preprocessing filters for edge-case reads that don't fit into this
         // query type.
-        return new BAMQueryFilteringIterator(iterator, new BAMQueryMultipleIntervalsIteratorFilter(intervals, contained));
+        final BAMQueryMultipleIntervalsIteratorFilter filter = new BAMQueryMultipleIntervalsIteratorFilter(intervals, contained);
+        filter.plan = plan;
+        return new BAMQueryFilteringIterator(iterator, filter);
     }
 
     /**
@@ -952,14 +1211,31 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         private long[] mFilePointers = null;
         private int mFilePointerIndex = 0;
         private long mFilePointerLimit = -1;
+        // if not null, the plan of the query, whose statistics are updated as records are read
+        private final BAMQueryPlan mPlan;
+        private final long mInitialBytesRead;
+        private final long mInitialSeeks;
 
         /**
          * Prepare to iterate through SAMRecords stored in the specified compressed blocks at the given offset.
          * @param filePointers the block / offset combination, stored in chunk format.
          */
         BAMFileIndexIterator(final long[] filePointers) {
+            this(filePointers, null);
+        }
+
+        /**
+         * @param filePointers the block / offset combination, stored in chunk format.
+         * @param plan the plan the file pointers come from, or null
+         */
+        BAMFileIndexIterator(final long[] filePointers, final BAMQueryPlan plan) {
             super(false);  // delay advance() until after construction
             mFilePointers = filePointers;
+            mPlan = plan;
+            mInitialBytesRead = mCompressedInputStream.getCompressedBytesRead();
+            mInitialSeeks = mCompressedInputStream.getNumberOfSeeks();
+            // overlapping queries revisit the same blocks, which can then be shared through the InflatedBlockCache
+            mCompressedInputStream.setUseBlockCache(true);
             advance();
         }
 
@@ -974,11 +1250,23 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                 }
                 final long startOffset = mFilePointers[mFilePointerIndex++];
                 final long endOffset = mFilePointers[mFilePointerIndex++];
-                mCompressedInputStream.seek(startOffset);
+                if (mPlan == null) {
+                    mCompressedInputStream.seek(startOffset);
+                } else {
+                    mCompressedInputStream.seek(startOffset, mPlan.getPrefetchEndAddress(startOffset, endOffset));
+                }
                 mFilePointerLimit = endOffset;
             }
             // Pull next record from stream
-            return super.getNextRecord();
+            final SAMRecord next = super.getNextRecord();
+            if (mPlan != null) {
+                if (next != null) {
+                    mPlan.recordRead();
+                }
+                mPlan.setIOStatistics(mCompressedInputStream.getCompressedBytesRead() - mInitialBytesRead,
+                        mCompressedInputStream.getNumberOfSeeks() - mInitialSeeks);
+            }
+            return next;
         }
     }
 
@@ -1025,6 +1313,13 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             return currentRead;
         }
 
+        @Override
+        void stopDecoding() {
+            if (wrappedIterator instanceof AbstractBamIterator) {
+                ((AbstractBamIterator) wrappedIterator).stopDecoding();
+            }
+        }
+
         SAMRecord advance() {
             while (true) {
                 // Pull next record from stream
@@ -26,6 +26,7 @@ package htsjdk.samtools;
 import htsjdk.samtools.util.BinaryCodec;
 import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.ParallelBlockCompressedOutputStream;
 import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.samtools.util.zip.DeflaterFactory;
 
@@ -36,6 +37,7 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 
 /**
  * Concrete implementation of SAMFileWriter for writing gzipped BAM files.
@@ -46,6 +48,9 @@ public class BAMFileWriter extends SAMFileWriterImpl {
     private BAMRecordCodec bamRecordCodec = null;
     private final BlockCompressedOutputStream blockCompressedOutputStream;
     private BAMIndexer bamIndexer = null;
+    private CSIIndexer csiIndexer = null;
+    // Records whose index information waits for the blocks containing them to be compressed, see writeAlignment()
+    private final ArrayDeque<PendingAlignment> pendingIndexAlignments = new ArrayDeque<>();
 
     protected BAMFileWriter(final File path) {
         blockCompressedOutputStream = new BlockCompressedOutputStream(path);
@@ -83,6 +88,33 @@ public class BAMFileWriter extends SAMFileWriterImpl {
       outputBinaryCodec.setOutputFileName(absoluteFilename);
     }
 
+    /**
+     * @param compressionThreads if greater than zero, BGZF blocks are compressed on this many threads
+     *                           using a {@link ParallelBlockCompressedOutputStream}
+     */
+    protected BAMFileWriter(final OutputStream os, final String absoluteFilename, final int compressionLevel, final DeflaterFactory deflaterFactory,
+                            final int compressionThreads) {
+        blockCompressedOutputStream = makeBlockCompressedOutputStream(os, compressionLevel, deflaterFactory, compressionThreads);
+        outputBinaryCodec = new BinaryCodec(blockCompressedOutputStream);
+        outputBinaryCodec.setOutputFileName(absoluteFilename);
+    }
+
+    /**
+     * @param compressionThreads if greater than zero, BGZF blocks are compressed on this many threads
+     *                           using a {@link ParallelBlockCompressedOutputStream}
+     */
+    protected BAMFileWriter(final OutputStream os, final File file, final int compressionLevel, final DeflaterFactory deflaterFactory,
+                            final int compressionThreads) {
+        this(os, getPathString(file), compressionLevel, deflaterFactory, compressionThreads);
+    }
+
+    private static BlockCompressedOutputStream makeBlockCompressedOutputStream(final OutputStream os, final int compressionLevel,
+                                                                               final DeflaterFactory deflaterFactory, final int compressionThreads) {
+        return compressionThreads > 0 ?
+                new ParallelBlockCompressedOutputStream(os, (Path)null, compressionLevel, deflaterFactory, compressionThreads) :
+                new BlockCompressedOutputStream(os, (Path)null, compressionLevel, deflaterFactory);
+    }
+
   private void prepareToWriteAlignments() {
         if (bamRecordCodec == null) {
             bamRecordCodec = new BAMRecordCodec(getFileHeader());
@@ -91,7 +123,7 @@ public class BAMFileWriter extends SAMFileWriterImpl {
     }
 
     /** @return absolute path, or null if arg is null.  */
-    private String getPathString(final File path){
+    private static String getPathString(final File path){
         return (path != null) ? path.getAbsolutePath() : null;
     }
 
@@ -107,6 +139,26 @@ public class BAMFileWriter extends SAMFileWriterImpl {
         bamIndexer = createBamIndex(getFilename());
     }
 
+    // Allow enabling the construction of a CSI index, foo.bam.csi, rather than a BAM index
+    // only enabled by factory method before anything is written
+    void enableCsiIndexConstruction() {
+        if (!getSortOrder().equals(SAMFileHeader.SortOrder.coordinate)) {
+            throw new SAMException("Not creating CSI index since not sorted by coordinates: " + getSortOrder());
+        }
+        if (getFilename() == null) {
+            throw new SAMException("Not creating CSI index since we don't have an output file name");
+        }
+        try {
+            final Path indexPath = IOUtil.getPath(getFilename() + CSIIndex.CSI_INDEX_SUFFIX);
+            if (Files.exists(indexPath) && !Files.isWritable(indexPath)) {
+                throw new SAMException("Not creating CSI index since unable to write index file " + indexPath.toUri());
+            }
+            csiIndexer = new CSIIndexer(indexPath, getFileHeader());
+        } catch (Exception e) {
+            throw new SAMException("Not creating CSI index", e);
+        }
+    }
+
     private BAMIndexer createBamIndex(final String pathURI) {
         try {
             final String indexFileBase = pathURI.endsWith(BamFileIoUtils.BAM_FILE_EXTENSION) ?
@@ -127,16 +179,18 @@ public class BAMFileWriter extends SAMFileWriterImpl {
     protected void writeAlignment(final SAMRecord alignment) {
         prepareToWriteAlignments();
 
-        if (bamIndexer != null) {
+        if (bamIndexer != null || csiIndexer != null) {
             try {
-                final long startOffset = blockCompressedOutputStream.getFilePointer();
+                // The virtual offsets of the record may not be known until the blocks containing it have been
+                // compressed, which may happen on other threads, so the record is indexed once they are.
+                final long startOffset = blockCompressedOutputStream.getPendingFilePointer();
                 bamRecordCodec.encode(alignment);
-                final long stopOffset = blockCompressedOutputStream.getFilePointer();
-                // set the alignment's SourceInfo and then prepare its index information
-                alignment.setFileSource(new SAMFileSource(null, new BAMFileSpan(new Chunk(startOffset, stopOffset))));
-                bamIndexer.processAlignment(alignment);
+                final long stopOffset = blockCompressedOutputStream.getPendingFilePointer();
+                pendingIndexAlignments.add(new PendingAlignment(alignment, startOffset, stopOffset));
+                processPendingIndexAlignments(false);
             } catch (Exception e) {
                 bamIndexer = null;
+                csiIndexer = null;
                 throw new SAMException("Exception when processing alignment for BAM index " + alignment, e);
             }
         } else {
@@ -144,6 +198,26 @@ public class BAMFileWriter extends SAMFileWriterImpl {
         }
     }
 
+    /**
+     * Hands the pending records over to the indexer, in the order in which they were written.
+     * @param waitForCompression if false, stop at the first record whose offsets can't be resolved without waiting
+     */
+    private void processPendingIndexAlignments(final boolean waitForCompression) {
+        while (!pendingIndexAlignments.isEmpty() &&
+                (waitForCompression || blockCompressedOutputStream.isFilePointerResolvable(pendingIndexAlignments.peek().stopOffset))) {
+            final PendingAlignment pending = pendingIndexAlignments.poll();
+            final long startOffset = blockCompressedOutputStream.resolveFilePointer(pending.startOffset);
+            final long stopOffset = blockCompressedOutputStream.resolveFilePointer(pending.stopOffset);
+            if (bamIndexer != null) {
+                bamIndexer.processAlignment(pending.reference, pending.alignmentStart, pending.alignmentEnd,
+                        pending.bin, pending.unmapped, startOffset, stopOffset);
+            } else {
+                csiIndexer.processAlignment(pending.reference, pending.alignmentStart, pending.alignmentEnd,
+                        pending.unmapped, startOffset, stopOffset);
+            }
+        }
+    }
+
     @Override
     protected void writeHeader(final String textHeader) {
         writeHeader(outputBinaryCodec, getFileHeader(), textHeader);
@@ -154,7 +228,11 @@ public class BAMFileWriter extends SAMFileWriterImpl {
         outputBinaryCodec.close();
             try {
                 if (bamIndexer != null) {
+                    processPendingIndexAlignments(true);
                     bamIndexer.finish();
+                } else if (csiIndexer != null) {
+                    processPendingIndexAlignments(true);
+                    csiIndexer.finish();
                 }
             } catch (Exception e) {
                 throw new SAMException("Exception writing BAM index file", e);
@@ -215,4 +293,33 @@ public class BAMFileWriter extends SAMFileWriterImpl {
             throw new RuntimeIOException(ioe);
         }
     }
+
+    /**
+     * The fields of a written record needed to index it, along with the pending file pointers delimiting it.
+     * The fields are copied when the record is written since the caller may reuse or modify the record afterwards.
+     */
+    private static class PendingAlignment {
+        private final int reference;
+        private final int alignmentStart;
+        private final int alignmentEnd;
+        private final int bin;
+        private final boolean unmapped;
+        private final long startOffset;
+        private final long stopOffset;
+
+        private PendingAlignment(final SAMRecord alignment, final long startOffset, final long stopOffset) {
+            this.reference = alignment.getReferenceIndex();
+            this.alignmentStart = alignment.getAlignmentStart();
+            this.alignmentEnd = alignment.getAlignmentEnd();
+            if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+                this.bin = 0;
+            } else {
+                final Integer indexingBin = alignment.getIndexingBin();
+                this.bin = indexingBin == null ? alignment.computeIndexingBin() : indexingBin;
+            }
+            this.unmapped = alignment.getReadUnmappedFlag();
+            this.startOffset = startOffset;
+            this.stopOffset = stopOffset;
+        }
+    }
 }
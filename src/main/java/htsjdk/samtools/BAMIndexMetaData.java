@@ -130,10 +130,14 @@ public class BAMIndexMetaData {
             throw new SAMException("BAM cannot be indexed without setting a fileSource for record " + rec);
         }
         final Chunk newChunk = ((BAMFileSpan) rec.getFileSource().getFilePointer()).getSingleChunk();
-        final long start = newChunk.getChunkStart();
-        final long end = newChunk.getChunkEnd();
+        recordMetaData(newChunk.getChunkStart(), newChunk.getChunkEnd(), rec.getReadUnmappedFlag());
+    }
 
-        if (rec.getReadUnmappedFlag()) {
+    /**
+     * Records the meta data of a record with a coordinate, given the virtual file offsets of its start and end
+     */
+    void recordMetaData(final long start, final long end, final boolean unmapped) {
+        if (unmapped) {
             unAlignedRecords++;
         } else {
             alignedRecords++;
@@ -251,9 +255,10 @@ public class BAMIndexMetaData {
      */
     static public BAMIndexMetaData[] getIndexStats(final BAMFileReader bam) {
 
-        AbstractBAMFileIndex index = (AbstractBAMFileIndex) bam.getIndex();
+        final BAMIndex index = bam.getIndex();
         // read through all the bins of every reference.
-        int nRefs = index.getNumberOfReferences();
+        int nRefs = index instanceof CSIIndex ? ((CSIIndex) index).getNumberOfReferences()
+                                              : ((AbstractBAMFileIndex) index).getNumberOfReferences();
         BAMIndexMetaData[] result = new BAMIndexMetaData[nRefs == 0 ? 1 : nRefs];
         for (int i = 0; i < nRefs; i++) {
             result[i] = index.getMetaData(i);
@@ -262,7 +267,8 @@ public class BAMIndexMetaData {
         if (result[0] == null) {
             result[0] = new BAMIndexMetaData();
         }
-        final Long noCoordCount = index.getNoCoordinateCount();
+        final Long noCoordCount = index instanceof CSIIndex ? ((CSIIndex) index).getNoCoordinateCount()
+                                                            : ((AbstractBAMFileIndex) index).getNoCoordinateCount();
         if (noCoordCount != null)  // null in old index files without metadata
             result[0].setNoCoordinateRecordCount(noCoordCount);
 
@@ -23,11 +23,23 @@
  */
 package htsjdk.samtools;
 
+import htsjdk.samtools.seekablestream.SeekablePathStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.InflatedBlockIterator;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.ParallelDecodingIterator;
+import htsjdk.samtools.util.RuntimeIOException;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 
 /**
@@ -120,6 +132,31 @@ public class BAMIndexer {
         }
     }
 
+    /**
+     * Record index information for an alignment record given its fields, so that the record need not be decoded.
+     *
+     * @param reference      reference index of the record
+     * @param alignmentStart 1-based alignment start, or {@link SAMRecord#NO_ALIGNMENT_START}
+     * @param alignmentEnd   1-based inclusive alignment end, or {@link SAMRecord#NO_ALIGNMENT_START} if unmapped
+     * @param bin            indexing bin of the record
+     * @param unmapped       whether the read unmapped flag is set
+     * @param chunkStart     virtual file offset of the start of the record
+     * @param chunkEnd       virtual file offset of the end of the record
+     */
+    void processAlignment(final int reference, final int alignmentStart, final int alignmentEnd, final int bin,
+                          final boolean unmapped, final long chunkStart, final long chunkEnd) {
+        try {
+            if (reference != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && reference != currentReference) {
+                // process any completed references
+                advanceToReference(reference);
+            }
+            indexBuilder.processAlignment(reference, alignmentStart, alignmentEnd, bin, unmapped, chunkStart, chunkEnd);
+        } catch (final Exception e) {
+            throw new SAMException("Exception creating BAM index for record at " +
+                    BlockCompressedFilePointerUtil.asString(chunkStart), e);
+        }
+    }
+
     /**
      * After all the alignment records have been processed, finish is called.
      * Writes any final information and closes the output file.
@@ -193,6 +230,9 @@ public class BAMIndexer {
         // information in meta data
         private final BAMIndexMetaData indexStats = new BAMIndexMetaData();
 
+        // reused for records that are indexed from their fields
+        private final RecordFeature feature = new RecordFeature();
+
         BAMIndexBuilder(final SAMSequenceDictionary sequenceDictionary) {
             this.sequenceDictionary = sequenceDictionary;
             if (!sequenceDictionary.isEmpty()) startNewReference();
@@ -249,6 +289,29 @@ public class BAMIndexer {
 
         }
 
+        /**
+         * Record any index information for an alignment record given its fields
+         */
+        void processAlignment(final int reference, final int alignmentStart, final int alignmentEnd, final int bin,
+                              final boolean unmapped, final long chunkStart, final long chunkEnd) {
+            if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+                indexStats.incrementNoCoordinateRecordCount();
+                return; // do nothing for records without coordinates, but count them
+            }
+            indexStats.recordMetaData(chunkStart, chunkEnd, unmapped);
+
+            if (reference != currentReference) {
+                throw new SAMException("Unexpected reference " + reference +
+                        " when constructing index for " + currentReference);
+            }
+            feature.start = alignmentStart;
+            feature.end = alignmentEnd;
+            feature.bin = bin;
+            feature.chunkStart = chunkStart;
+            feature.chunkEnd = chunkEnd;
+            binningIndexBuilder.processFeature(feature);
+        }
+
         /**
          * Creates the BAMIndexContent for this reference.
          * Requires all alignments of the reference have already been processed.
@@ -288,6 +351,232 @@ public class BAMIndexer {
         }
     }
 
+    /**
+     * The fields of a record needed to index it
+     */
+    private static final class RecordFeature implements BinningIndexBuilder.FeatureToBeIndexed {
+        private int start;
+        private int end;
+        private int bin;
+        private long chunkStart;
+        private long chunkEnd;
+
+        @Override
+        public int getStart() {
+            return start;
+        }
+
+        @Override
+        public int getEnd() {
+            return end;
+        }
+
+        @Override
+        public Integer getIndexingBin() {
+            return bin;
+        }
+
+        @Override
+        public Chunk getChunk() {
+            return new Chunk(chunkStart, chunkEnd);
+        }
+    }
+
+    /**
+     * Generates a BAM index file from a BAM file without decoding its records into SAMRecords.  Only the fixed-size
+     * prefix and the cigar of each record are read, directly from the inflated BGZF blocks, and the blocks can be
+     * inflated on several threads.  The index is the same as the one written by {@link #createIndex(SamReader, Path)}.
+     *
+     * @param input           BAM file
+     * @param output          Path for output index file
+     * @param inflaterThreads number of threads on which to inflate BGZF blocks, or 0 to inflate them on the calling thread
+     */
+    public static void createIndex(final Path input, final Path output, final int inflaterThreads) {
+        if (inflaterThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of inflater threads: " + inflaterThreads);
+        }
+        final ExecutorService inflaters = inflaterThreads > 0 ? ParallelDecodingIterator.newWorkerPool(inflaterThreads) : null;
+        try {
+            final SeekableStream stream = new SeekablePathStream(input);
+            final SAMFileHeader header;
+            final long firstRecordPointer;
+            try {
+                final BlockCompressedInputStream headerStream = new BlockCompressedInputStream(stream);
+                header = BAMFileReader.readHeader(new BinaryCodec(headerStream), ValidationStringency.SILENT, input.toUri().toString());
+                firstRecordPointer = headerStream.getFilePointer();
+            } catch (final IOException | RuntimeException e) {
+                stream.close();
+                throw e;
+            }
+            final BAMIndexer indexer = new BAMIndexer(output, header);
+            try (final InflatedBlockIterator blocks = new InflatedBlockIterator(stream,
+                    BlockCompressedFilePointerUtil.getBlockAddress(firstRecordPointer), inflaters, inflaterThreads)) {
+                new RecordPrefixScanner(blocks, header).indexRecords(indexer, firstRecordPointer);
+            }
+            indexer.finish();
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Exception indexing " + input.toUri(), e);
+        } finally {
+            if (inflaters != null) {
+                inflaters.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Reads the fields needed for indexing from BAM records in inflated BGZF blocks, without decoding the records.
+     */
+    private static final class RecordPrefixScanner {
+        // block_size, refID, pos, bin_mq_nl, flag_nc, l_seq, next_refID, next_pos and tlen
+        private static final int FIXED_PREFIX_LENGTH = 36;
+        // M, D, N, = and X consume reference bases
+        private static final int REFERENCE_CONSUMING_OPERATORS = (1 << 0) | (1 << 2) | (1 << 3) | (1 << 7) | (1 << 8);
+        private static final int SOFT_CLIP = 4;
+        private static final int SKIPPED_REGION = 3;
+
+        private final InflatedBlockIterator blocks;
+        private final SAMFileHeader header;
+        private InflatedBlockIterator.Block block = null;
+        private int offset = 0;
+        // holds records that span blocks
+        private byte[] scratch = new byte[1024];
+
+        private RecordPrefixScanner(final InflatedBlockIterator blocks, final SAMFileHeader header) {
+            this.blocks = blocks;
+            this.header = header;
+        }
+
+        void indexRecords(final BAMIndexer indexer, final long firstRecordPointer) {
+            if (!blocks.hasNext()) {
+                return;
+            }
+            block = blocks.next();
+            offset = BlockCompressedFilePointerUtil.getBlockOffset(firstRecordPointer);
+            while (true) {
+                final long chunkStart = block.getFilePointer(offset);
+                if (!advanceToData()) {
+                    break;
+                }
+                final boolean lengthInBlock = offset + 4 <= block.data.length;
+                if (!lengthInBlock) {
+                    read(scratch, 0, 4);
+                }
+                final int recordLength = 4 + (lengthInBlock ? readInt(block.data, offset) : readInt(scratch, 0));
+                if (recordLength < FIXED_PREFIX_LENGTH) {
+                    throw new SAMFormatException("Invalid record length " + (recordLength - 4) + " at " +
+                            BlockCompressedFilePointerUtil.asString(chunkStart));
+                }
+                final byte[] record;
+                final int pos;
+                if (lengthInBlock && offset + recordLength <= block.data.length) {
+                    record = block.data;
+                    pos = offset;
+                    offset += recordLength;
+                } else {
+                    // the record spans blocks, so gather it
+                    if (scratch.length < recordLength) {
+                        scratch = Arrays.copyOf(scratch, Math.max(recordLength, 2 * scratch.length));
+                    }
+                    if (lengthInBlock) {
+                        read(scratch, 0, recordLength);
+                    } else {
+                        read(scratch, 4, recordLength - 4);
+                    }
+                    record = scratch;
+                    pos = 0;
+                }
+                final long chunkEnd = block.getFilePointer(offset);
+
+                final int reference = readInt(record, pos + 4);
+                final int alignmentStart = readInt(record, pos + 8) + 1;
+                final int readNameLength = record[pos + 12] & 0xFF;
+                final int bin = readUShort(record, pos + 14);
+                final int cigarLength = readUShort(record, pos + 16);
+                final boolean unmapped = (readUShort(record, pos + 18) & SAMFlag.READ_UNMAPPED.intValue()) != 0;
+                final int readLength = readInt(record, pos + 20);
+                final int alignmentEnd;
+                if (unmapped) {
+                    alignmentEnd = SAMRecord.NO_ALIGNMENT_START;
+                } else if (isSentinelCigar(record, pos + FIXED_PREFIX_LENGTH + readNameLength, cigarLength, readLength)) {
+                    // the real cigar is in the CG tag, so decode the whole record
+                    alignmentEnd = decode(record, pos, recordLength).getAlignmentEnd();
+                } else {
+                    alignmentEnd = alignmentStart + getReferenceLength(record, pos + FIXED_PREFIX_LENGTH + readNameLength, cigarLength) - 1;
+                }
+                indexer.processAlignment(reference, alignmentStart, alignmentEnd, bin, unmapped, chunkStart, chunkEnd);
+            }
+        }
+
+        /**
+         * Moves to the next block that has data if the current one has been read.
+         * @return false at the end of the file
+         */
+        private boolean advanceToData() {
+            while (offset == block.data.length) {
+                if (!blocks.hasNext()) {
+                    return false;
+                }
+                block = blocks.next();
+                offset = 0;
+            }
+            return true;
+        }
+
+        /**
+         * Reads bytes that may span blocks
+         */
+        private void read(final byte[] buffer, int bufferOffset, int length) {
+            while (length > 0) {
+                if (!advanceToData()) {
+                    throw new FileTruncatedException("Premature end of file in BAM record");
+                }
+                final int count = Math.min(length, block.data.length - offset);
+                System.arraycopy(block.data, offset, buffer, bufferOffset, count);
+                offset += count;
+                bufferOffset += count;
+                length -= count;
+            }
+        }
+
+        private static boolean isSentinelCigar(final byte[] record, final int cigarStart, final int cigarLength, final int readLength) {
+            if (cigarLength != 2) {
+                return false;
+            }
+            final int first = readInt(record, cigarStart);
+            final int second = readInt(record, cigarStart + 4);
+            return (first & 0xF) == SOFT_CLIP && (second & 0xF) == SKIPPED_REGION &&
+                    ((first >>> 4) == readLength || readLength == 0);
+        }
+
+        private static int getReferenceLength(final byte[] record, final int cigarStart, final int cigarLength) {
+            int length = 0;
+            for (int i = 0; i < cigarLength; i++) {
+                final int cigarElement = readInt(record, cigarStart + 4 * i);
+                if ((REFERENCE_CONSUMING_OPERATORS & (1 << (cigarElement & 0xF))) != 0) {
+                    length += cigarElement >>> 4;
+                }
+            }
+            return length;
+        }
+
+        private SAMRecord decode(final byte[] record, final int pos, final int recordLength) {
+            final BAMRecordCodec codec = new BAMRecordCodec(header);
+            codec.setInputStream(new ByteArrayInputStream(record, pos, recordLength));
+            return codec.decode();
+        }
+
+        private static int readInt(final byte[] buffer, final int offset) {
+            return (buffer[offset] & 0xFF) |
+                    ((buffer[offset + 1] & 0xFF) << 8) |
+                    ((buffer[offset + 2] & 0xFF) << 16) |
+                    ((buffer[offset + 3] & 0xFF) << 24);
+        }
+
+        private static int readUShort(final byte[] buffer, final int offset) {
+            return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+        }
+    }
+
     /**
      * Generates a BAM index file from an input BAM file
      *
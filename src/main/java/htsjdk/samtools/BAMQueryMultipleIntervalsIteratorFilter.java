@@ -9,6 +9,8 @@ public class BAMQueryMultipleIntervalsIteratorFilter implements BAMIteratorFilte
     final QueryInterval[] intervals;
     final boolean contained;
     int intervalIndex = 0;
+    // if not null, the plan of the query whose returned records are counted
+    BAMQueryPlan plan = null;
 
 
     public BAMQueryMultipleIntervalsIteratorFilter(final QueryInterval[] intervals,
@@ -17,24 +19,76 @@ public class BAMQueryMultipleIntervalsIteratorFilter implements BAMIteratorFilte
         this.intervals = intervals;
     }
 
+    /**
+     * Records must be passed in coordinate order, so the intervals before the current record are never revisited.
+     * The intervals are skipped with a galloping search rather than one at a time, since many intervals can lie
+     * between two records when the intervals are small and the reads are sparse.
+     */
     @Override
     public FilteringIteratorState compareToFilter(final SAMRecord record) {
-        while (intervalIndex < intervals.length) {
-            final IntervalComparison comparison = compareIntervalToRecord(intervals[intervalIndex], record);
-            switch (comparison) {
-                // Interval is before SAMRecord.  Try next interval;
-                case BEFORE: ++intervalIndex; break;
+        intervalIndex = skipIntervalsBefore(record);
+        if (intervalIndex >= intervals.length) {
+            // Went past the last interval
+            return FilteringIteratorState.STOP_ITERATION;
+        }
+        final QueryInterval interval = intervals[intervalIndex];
+        final FilteringIteratorState state;
+        if (!contained && interval.referenceIndex == record.getReferenceIndex() && record.getAlignmentStart() > interval.start) {
+            // The interval does not end before the record starts, so they overlap; no need to compute the alignment end.
+            // A record starting at the start of the interval may not overlap it, if it has no length on the reference.
+            state = FilteringIteratorState.MATCHES_FILTER;
+        } else {
+            switch (compareIntervalToRecord(interval, record)) {
                 // Interval is after SAMRecord.  Keep scanning forward in SAMRecords
-                case AFTER: return FilteringIteratorState.CONTINUE_ITERATION;
+                case AFTER: state = FilteringIteratorState.CONTINUE_ITERATION; break;
                 // Found a good record
-                case CONTAINED: return FilteringIteratorState.MATCHES_FILTER;
+                case CONTAINED: state = FilteringIteratorState.MATCHES_FILTER; break;
                 // Either found a good record, or else keep scanning SAMRecords
-                case OVERLAPPING: return
-                        (contained ? FilteringIteratorState.CONTINUE_ITERATION : FilteringIteratorState.MATCHES_FILTER);
+                case OVERLAPPING:
+                    state = contained ? FilteringIteratorState.CONTINUE_ITERATION : FilteringIteratorState.MATCHES_FILTER;
+                    break;
+                default: throw new SAMException("Unexpected interval comparison for " + interval);
             }
         }
-        // Went past the last interval
-        return FilteringIteratorState.STOP_ITERATION;
+        if (plan != null && state == FilteringIteratorState.MATCHES_FILTER) {
+            plan.recordReturned();
+        }
+        return state;
+    }
+
+    /**
+     * @return the index of the first interval from the current one that does not end before the record, or the
+     * number of intervals if there is none
+     */
+    private int skipIntervalsBefore(final SAMRecord record) {
+        final int first = intervalIndex;
+        if (first >= intervals.length || !isBefore(intervals[first], record)) {
+            return first;
+        }
+        // gallop until an interval that is not before the record is found, then binary search the last step
+        int bound = 1;
+        while (first + bound < intervals.length && isBefore(intervals[first + bound], record)) {
+            bound <<= 1;
+        }
+        int before = first + (bound >> 1);
+        int notBefore = Math.min(first + bound, intervals.length);
+        while (notBefore - before > 1) {
+            final int mid = (before + notBefore) >>> 1;
+            if (isBefore(intervals[mid], record)) {
+                before = mid;
+            } else {
+                notBefore = mid;
+            }
+        }
+        return notBefore;
+    }
+
+    private static boolean isBefore(final QueryInterval interval, final SAMRecord record) {
+        if (interval.referenceIndex != record.getReferenceIndex()) {
+            return interval.referenceIndex < record.getReferenceIndex();
+        }
+        // interval.end <= 0 implies the end of the reference sequence.
+        return interval.end > 0 && interval.end < record.getAlignmentStart();
     }
 
     public static IntervalComparison compareIntervalToRecord(final QueryInterval interval, final SAMRecord record) {
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The chunks of a BAM file to read for a multi-interval query, as decided by a {@link BAMQueryPlanner}, and the
+ * statistics of the query, which are updated as it is iterated, possibly by the threads decoding the records, and
+ * can be read from any thread.
+ *
+ * @see BAMFileReader#getLastQueryPlan()
+ */
+public class BAMQueryPlan {
+    private final QueryInterval[] intervals;
+    private final int numberOfIndexChunks;
+    private final List<Chunk> chunks;
+    private final int maxPrefetchBytes;
+
+    private final AtomicLong recordsRead = new AtomicLong();
+    private final AtomicLong recordsReturned = new AtomicLong();
+    private volatile long compressedBytesRead = 0;
+    private volatile long seeks = 0;
+
+    BAMQueryPlan(final QueryInterval[] intervals, final int numberOfIndexChunks, final List<Chunk> chunks,
+                 final int maxPrefetchBytes) {
+        this.intervals = intervals;
+        this.numberOfIndexChunks = numberOfIndexChunks;
+        this.chunks = Collections.unmodifiableList(chunks);
+        this.maxPrefetchBytes = maxPrefetchBytes;
+    }
+
+    public QueryInterval[] getIntervals() {
+        return intervals;
+    }
+
+    /**
+     * @return the number of chunks returned by the index for the intervals
+     */
+    public int getNumberOfIndexChunks() {
+        return numberOfIndexChunks;
+    }
+
+    /**
+     * @return the chunks to read, in file order
+     */
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return the chunks to read in the format of {@link BAMFileSpan#toCoordinateArray()}, or null if there are none
+     */
+    long[] toCoordinateArray() {
+        return chunks.isEmpty() ? null : new BAMFileSpan(chunks).toCoordinateArray();
+    }
+
+    /**
+     * @return the address in the file at which to stop reading ahead the blocks of the chunk, which is not after the
+     * start of the chunk if it should not be read ahead
+     */
+    long getPrefetchEndAddress(final long chunkStart, final long chunkEnd) {
+        if (maxPrefetchBytes == 0) {
+            return 0;
+        }
+        final long startAddress = BlockCompressedFilePointerUtil.getBlockAddress(chunkStart);
+        long endAddress = BlockCompressedFilePointerUtil.getBlockAddress(chunkEnd);
+        if (BlockCompressedFilePointerUtil.getBlockOffset(chunkEnd) != 0) {
+            // the chunk ends within the last block, whose size is not known until its header is read
+            endAddress += BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE;
+        }
+        return Math.min(endAddress, startAddress + maxPrefetchBytes);
+    }
+
+    /**
+     * @return the number of records read from the file for the query, including those that were filtered out
+     */
+    public long getRecordsRead() {
+        return recordsRead.get();
+    }
+
+    /**
+     * @return the number of records that matched the intervals
+     */
+    public long getRecordsReturned() {
+        return recordsReturned.get();
+    }
+
+    /**
+     * @return the number of compressed bytes read from the file for the query, excluding blocks found in the
+     * {@link htsjdk.samtools.util.InflatedBlockCache}
+     */
+    public long getCompressedBytesRead() {
+        return compressedBytesRead;
+    }
+
+    /**
+     * @return the number of times the file was read from another position than where the previous read ended
+     */
+    public long getSeeks() {
+        return seeks;
+    }
+
+    void recordRead() {
+        recordsRead.incrementAndGet();
+    }
+
+    void recordReturned() {
+        recordsReturned.incrementAndGet();
+    }
+
+    void setIOStatistics(final long compressedBytesRead, final long seeks) {
+        this.compressedBytesRead = compressedBytesRead;
+        this.seeks = seeks;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d intervals, %d index chunks read as %d, %d records read, %d returned, " +
+                        "%d compressed bytes read with %d seeks", intervals.length, numberOfIndexChunks, chunks.size(),
+                getRecordsRead(), getRecordsReturned(), compressedBytesRead, seeks);
+    }
+}
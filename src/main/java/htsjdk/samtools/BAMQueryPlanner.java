@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decides how the chunks of a BAM file returned by the index for a multi-interval query are read.  The index returns
+ * one list of chunks for all the intervals, sorted and with the chunks in the same or adjacent blocks coalesced.
+ * This planner also coalesces chunks that are separated by at most a given number of compressed bytes, since reading
+ * and discarding the records in between is usually cheaper than seeking over them, and can have the blocks of each
+ * coalesced chunk read ahead with a single read of the underlying file.
+ *
+ * Planners are immutable and can be shared between readers; see {@link SamReaderFactory#setQueryPlanner(BAMQueryPlanner)}.
+ */
+public class BAMQueryPlanner {
+    /**
+     * Reads the chunks as the index returns them, without reading ahead.
+     */
+    public static final BAMQueryPlanner DEFAULT = new BAMQueryPlanner(0, 0);
+
+    private final long maxChunkGap;
+    private final int maxPrefetchBytes;
+
+    /**
+     * @param maxChunkGap      chunks whose blocks are at most this many compressed bytes apart are read as one
+     * @param maxPrefetchBytes if positive, the blocks of each chunk, up to this many compressed bytes, are read
+     *                         ahead from the file with a single read when the chunk is reached
+     */
+    public BAMQueryPlanner(final long maxChunkGap, final int maxPrefetchBytes) {
+        if (maxChunkGap < 0) {
+            throw new IllegalArgumentException("Invalid maximum chunk gap: " + maxChunkGap);
+        }
+        if (maxPrefetchBytes < 0) {
+            throw new IllegalArgumentException("Invalid maximum prefetch size: " + maxPrefetchBytes);
+        }
+        this.maxChunkGap = maxChunkGap;
+        this.maxPrefetchBytes = maxPrefetchBytes;
+    }
+
+    public long getMaxChunkGap() {
+        return maxChunkGap;
+    }
+
+    public int getMaxPrefetchBytes() {
+        return maxPrefetchBytes;
+    }
+
+    /**
+     * @param intervals the intervals of the query, sorted and optimized
+     * @param index     the index of the BAM file
+     * @return the plan of the reads needed for the query
+     * @see QueryInterval#optimizeIntervals(QueryInterval[])
+     */
+    public BAMQueryPlan plan(final QueryInterval[] intervals, final BAMIndex index) {
+        final BAMFileSpan span = BAMFileReader.getFileSpan(intervals, index);
+        return plan(intervals, span == null ? Collections.<Chunk>emptyList() : span.getChunks());
+    }
+
+    /**
+     * @param intervals the intervals of the query, sorted and optimized
+     * @param chunks    the chunks of the file that contain the records overlapping the intervals, in file order
+     * @return the plan of the reads needed for the query
+     */
+    public BAMQueryPlan plan(final QueryInterval[] intervals, final List<Chunk> chunks) {
+        final List<Chunk> planned = new ArrayList<>(chunks.size());
+        Chunk last = null;
+        for (final Chunk chunk : chunks) {
+            if (last != null && chunk.getChunkStart() >= last.getChunkEnd() &&
+                    BlockCompressedFilePointerUtil.getBlockAddress(chunk.getChunkStart()) -
+                            BlockCompressedFilePointerUtil.getBlockAddress(last.getChunkEnd()) <= maxChunkGap) {
+                last.setChunkEnd(chunk.getChunkEnd());
+            } else {
+                last = chunk.clone();
+                planned.add(last);
+            }
+        }
+        return new BAMQueryPlan(intervals, chunks.size(), planned, maxPrefetchBytes);
+    }
+
+    @Override
+    public String toString() {
+        return "BAMQueryPlanner{maxChunkGap=" + maxChunkGap + ", maxPrefetchBytes=" + maxPrefetchBytes + "}";
+    }
+}
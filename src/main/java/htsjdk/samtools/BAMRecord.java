@@ -351,6 +351,8 @@ public class BAMRecord extends SAMRecord {
 
         //used initializeCigar instead of setCigar so as to not clobber the indexingBin.
         initializeCigar(decodedCigar);
+        // the length of the binary cigar is that of the sentinel
+        mCigarLengthValid = false;
 
         // remove CG attribute.
         setAttribute(SAMTagUtil.getSingleton().CG, null);
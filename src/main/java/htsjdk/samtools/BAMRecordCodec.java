@@ -30,6 +30,8 @@ import htsjdk.samtools.util.SortingCollection;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import static htsjdk.samtools.SAMTag.CG;
@@ -45,6 +47,9 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
     private final BinaryTagCodec binaryTagCodec = new BinaryTagCodec(binaryCodec);
     private final SAMRecordFactory samRecordFactory;
 
+    // fixed-length fields of a record, including the block size, for records whose variable-length block is copied
+    private final ByteBuffer fixedFields = ByteBuffer.allocate(BAMFileConstants.FIXED_BLOCK_SIZE + 4).order(ByteOrder.LITTLE_ENDIAN);
+
     private boolean isReferenceSizeWarningShowed = false;
 
     public BAMRecordCodec(final SAMFileHeader header) {
@@ -104,11 +109,25 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
      */
     @Override
     public void encode(final SAMRecord alignment) {
+        // computed first, as computing the bin may decode a long cigar from the CG tag, which invalidates the
+        // variable-length block of a BAMRecord.  Shouldn't interact with the long-cigar below since the Sentinel Cigar
+        // has the same referenceLength as the actual cigar.
+        int indexBin = 0;
+        if (alignment.getAlignmentStart() != SAMRecord.NO_ALIGNMENT_START) {
+            warnIfReferenceIsTooLargeForBinField(alignment);
+            indexBin = alignment.computeIndexingBinIfAbsent(alignment);
+        }
+
+        if (encodeUnchanged(alignment, indexBin)) {
+            return;
+        }
+
         // Compute block size, as it is the first element of the file representation of SAMRecord
         final int readLength = alignment.getReadLength();
 
-        // if cigar is too long, put into CG tag and replace with sentinel value
-        if (alignment.getCigarLength() > BAMRecord.MAX_CIGAR_OPERATORS) {
+        // if cigar is too long, put into CG tag and replace with sentinel value.  The cigar is decoded first, as a
+        // BAMRecord may hold a long cigar in its CG tag that has not been read yet.
+        if (alignment.getCigar().numCigarElements() > BAMRecord.MAX_CIGAR_OPERATORS) {
 
             final int[] cigarEncoding = BinaryCigarCodec.encode(alignment.getCigar());
             alignment.setCigar(makeSentinelCigar(alignment.getCigar()));
@@ -123,7 +142,9 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
                 (readLength + 1) / 2 + // 2 bases per byte, round up
                 readLength;
 
-        final int attributesSize = alignment.getAttributesBinarySize();
+        // tags that are still in their binary form are written out as they are
+        final BinaryTagIndex tagIndex = alignment.getBinaryTagIndex();
+        final int attributesSize = tagIndex != null ? tagIndex.getLength() : alignment.getAttributesBinarySize();
         if (attributesSize != -1) {
             // binary attribute size already known, don't need to compute.
             blockSize += attributesSize;
@@ -135,14 +156,6 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
             }
         }
 
-        // shouldn't interact with the long-cigar above since the Sentinel Cigar has the same referenceLength as
-        // the actual cigar.
-        int indexBin = 0;
-        if (alignment.getAlignmentStart() != SAMRecord.NO_ALIGNMENT_START) {
-            warnIfReferenceIsTooLargeForBinField(alignment);
-            indexBin = alignment.computeIndexingBinIfAbsent(alignment);
-        }
-
         // Blurt out the elements
         this.binaryCodec.writeInt(blockSize);
         this.binaryCodec.writeInt(alignment.getReferenceIndex());
@@ -157,42 +170,39 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         this.binaryCodec.writeInt(alignment.getMateReferenceIndex());
         this.binaryCodec.writeInt(alignment.getMateAlignmentStart() - 1);
         this.binaryCodec.writeInt(alignment.getInferredInsertSize());
-        final byte[] variableLengthBinaryBlock = alignment.getVariableBinaryRepresentation();
-        if (variableLengthBinaryBlock != null) {
-            // Don't need to encode variable-length block, because it is unchanged from
-            // when the record was read from a BAM file.
-            this.binaryCodec.writeBytes(variableLengthBinaryBlock);
-        } else {
-            if (alignment.getReadLength() != alignment.getBaseQualities().length &&
-                    alignment.getBaseQualities().length != 0) {
-                throw new RuntimeException("Mismatch between read length and quals length writing read " +
-                        alignment.getReadName() + "; read length: " + alignment.getReadLength() +
-                        "; quals length: " + alignment.getBaseQualities().length);
-            }
-            this.binaryCodec.writeString(alignment.getReadName(), false, true);
-            final int[] binaryCigar = BinaryCigarCodec.encode(alignment.getCigar());
-            for (final int cigarElement : binaryCigar) {
-                // Assumption that this will fit into an integer, despite the fact
-                // that it is spec'ed as a uint.
-                this.binaryCodec.writeInt(cigarElement);
-            }
-            try {
-                this.binaryCodec.writeBytes(SAMUtils.bytesToCompressedBases(alignment.getReadBases()));
-            } catch (final IllegalArgumentException ex) {
-                final String msg = ex.getMessage() + " in read: " + alignment.getReadName();
-                throw new IllegalStateException(msg, ex);
-            }
-            byte[] qualities = alignment.getBaseQualities();
-            if (qualities.length == 0) {
-                qualities = new byte[alignment.getReadLength()];
-                Arrays.fill(qualities, (byte) 0xFF);
-            }
-            this.binaryCodec.writeBytes(qualities);
-            SAMBinaryTagAndValue attribute = alignment.getBinaryAttributes();
-            while (attribute != null) {
-                this.binaryTagCodec.writeTag(attribute.tag, attribute.value, attribute.isUnsignedArray());
-                attribute = attribute.getNext();
-            }
+        if (alignment.getReadLength() != alignment.getBaseQualities().length &&
+                alignment.getBaseQualities().length != 0) {
+            throw new RuntimeException("Mismatch between read length and quals length writing read " +
+                    alignment.getReadName() + "; read length: " + alignment.getReadLength() +
+                    "; quals length: " + alignment.getBaseQualities().length);
+        }
+        this.binaryCodec.writeString(alignment.getReadName(), false, true);
+        final int[] binaryCigar = BinaryCigarCodec.encode(alignment.getCigar());
+        for (final int cigarElement : binaryCigar) {
+            // Assumption that this will fit into an integer, despite the fact
+            // that it is spec'ed as a uint.
+            this.binaryCodec.writeInt(cigarElement);
+        }
+        try {
+            this.binaryCodec.writeBytes(SAMUtils.bytesToCompressedBases(alignment.getReadBases()));
+        } catch (final IllegalArgumentException ex) {
+            final String msg = ex.getMessage() + " in read: " + alignment.getReadName();
+            throw new IllegalStateException(msg, ex);
+        }
+        byte[] qualities = alignment.getBaseQualities();
+        if (qualities.length == 0) {
+            qualities = new byte[alignment.getReadLength()];
+            Arrays.fill(qualities, (byte) 0xFF);
+        }
+        this.binaryCodec.writeBytes(qualities);
+        if (tagIndex != null) {
+            this.binaryTagCodec.writeTags(tagIndex);
+            return;
+        }
+        SAMBinaryTagAndValue attribute = alignment.getBinaryAttributes();
+        while (attribute != null) {
+            this.binaryTagCodec.writeTag(attribute.tag, attribute.value, attribute.isUnsignedArray());
+            attribute = attribute.getNext();
         }
     }
 
@@ -223,17 +233,69 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
                 new CigarElement(cigar.getReferenceLength(), CigarOperator.N)));
     }
 
+    /**
+     * Writes a record read from a BAM file whose variable-length block has not been changed since, copying the block
+     * rather than encoding its fields.  The fixed-length fields are taken from the record, since they may have been
+     * changed without invalidating the block, and are written with a single call.
+     *
+     * @param indexBin the indexing bin of the record, which must be computed before calling this method
+     * @return false if the variable-length block must be encoded
+     */
+    private boolean encodeUnchanged(final SAMRecord alignment, final int indexBin) {
+        final byte[] variableLengthBinaryBlock = alignment.getVariableBinaryRepresentation();
+        if (variableLengthBinaryBlock == null) {
+            return false;
+        }
+        final ByteBuffer fixedFields = this.fixedFields;
+        fixedFields.clear();
+        fixedFields.putInt(BAMFileConstants.FIXED_BLOCK_SIZE + variableLengthBinaryBlock.length);
+        fixedFields.putInt(alignment.getReferenceIndex());
+        // 0-based!!
+        fixedFields.putInt(alignment.getAlignmentStart() - 1);
+        fixedFields.put((byte) (alignment.getReadNameLength() + 1));
+        fixedFields.put((byte) alignment.getMappingQuality());
+        fixedFields.putShort((short) indexBin);
+        fixedFields.putShort((short) alignment.getCigarLength());
+        fixedFields.putShort((short) alignment.getFlags());
+        fixedFields.putInt(alignment.getReadLength());
+        fixedFields.putInt(alignment.getMateReferenceIndex());
+        fixedFields.putInt(alignment.getMateAlignmentStart() - 1);
+        fixedFields.putInt(alignment.getInferredInsertSize());
+        this.binaryCodec.writeBytes(fixedFields.array());
+        this.binaryCodec.writeBytes(variableLengthBinaryBlock);
+        return true;
+    }
+
     private void warnIfReferenceIsTooLargeForBinField(final SAMRecord rec) {
+        // checked before looking up the reference, which would otherwise be done for every record
+        if (isReferenceSizeWarningShowed || rec.getValidationStringency() == ValidationStringency.SILENT) {
+            return;
+        }
         final SAMSequenceRecord sequence = rec.getHeader() != null ? rec.getHeader().getSequence(rec.getReferenceName()) : null;
-        if (!isReferenceSizeWarningShowed
-                && sequence != null
-                && SAMUtils.isReferenceSequenceCompatibleWithBAI(sequence)
-                && rec.getValidationStringency() != ValidationStringency.SILENT) {
+        if (sequence != null && SAMUtils.isReferenceSequenceCompatibleWithBAI(sequence)) {
             LOG.warn("Reference length is too large for BAM bin field. Values in the bin field could be incorrect.");
             isReferenceSizeWarningShowed = true;
         }
     }
 
+    /**
+     * Read the next record from the input stream into a reusable view, without creating a SAMRecord.
+     *
+     * @param view the view to fill with the record
+     * @return false if at EOF, in which case the view is unchanged
+     */
+    public boolean decode(final BAMRecordView view) {
+        final int recordLength;
+        try {
+            recordLength = this.binaryCodec.readInt();
+        } catch (RuntimeEOFException e) {
+            return false;
+        }
+        this.binaryCodec.readBytes(view.getBuffer(recordLength), 0, recordLength);
+        view.setRecord(recordLength);
+        return true;
+    }
+
     /**
      * Read the next record from the input stream and convert into a java object.
      *
@@ -0,0 +1,318 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.StringUtil;
+
+import java.util.Arrays;
+
+/**
+ * A reusable view of the binary representation of one BAM record, for passes over many records that only need a few
+ * fields, such as filtering on flags, mapping quality or position.  Unlike {@link BAMRecord}, which is allocated for
+ * each record along with the strings, cigars and tag lists its getters create, a view is filled in place by
+ * {@link BAMRecordCodec#decode(BAMRecordView)} for each record, and its accessors read the fields from its buffer
+ * without allocating.  A {@link SAMRecord} is only created when {@link #toSAMRecord()} is called.
+ * <p/>
+ * Positions are 1-based, as in {@link SAMRecord}.  Cigar operations are returned as in the BAM format, with the
+ * length of each operation in the upper 28 bits and the operator in the lower 4 bits, see
+ * {@link CigarOperator#binaryToEnum(int)}.  Tags are identified by their binary key, see
+ * {@link SAMTagUtil#makeBinaryTag(String)}.
+ */
+public class BAMRecordView {
+    private static final int REFERENCE_INDEX_OFFSET = 0;
+    private static final int POSITION_OFFSET = 4;
+    private static final int READ_NAME_LENGTH_OFFSET = 8;
+    private static final int MAPPING_QUALITY_OFFSET = 9;
+    private static final int BIN_OFFSET = 10;
+    private static final int CIGAR_LENGTH_OFFSET = 12;
+    private static final int FLAGS_OFFSET = 14;
+    private static final int READ_LENGTH_OFFSET = 16;
+    private static final int MATE_REFERENCE_INDEX_OFFSET = 20;
+    private static final int MATE_POSITION_OFFSET = 24;
+    private static final int INSERT_SIZE_OFFSET = 28;
+    // bit mask of the operators that consume reference bases: M, D, N, = and X
+    private static final int REFERENCE_CONSUMING_OPERATORS = (1 << 0) | (1 << 2) | (1 << 3) | (1 << 7) | (1 << 8);
+
+    private final SAMFileHeader header;
+    private final SAMRecordFactory samRecordFactory;
+    private byte[] data = new byte[1024];
+    private int length = 0;
+    // offset of the cigar operations in data, or of the CG tag values for records with more than 65535 operations
+    private int cigarOffset;
+    private int cigarLength;
+    private int tagsOffset;
+
+    public BAMRecordView(final SAMFileHeader header) {
+        this(header, DefaultSAMRecordFactory.getInstance());
+    }
+
+    /**
+     * @param header           header of the file the records come from, given to the records made by toSAMRecord()
+     * @param samRecordFactory factory of the records made by toSAMRecord()
+     */
+    public BAMRecordView(final SAMFileHeader header, final SAMRecordFactory samRecordFactory) {
+        this.header = header;
+        this.samRecordFactory = samRecordFactory;
+    }
+
+    /**
+     * @return the buffer to read a record of the given length into, which is the record buffer of this view
+     */
+    byte[] getBuffer(final int recordLength) {
+        if (recordLength < BAMFileConstants.FIXED_BLOCK_SIZE) {
+            throw new SAMFormatException("Invalid record length: " + recordLength);
+        }
+        if (data.length < recordLength) {
+            data = new byte[Math.max(recordLength, 2 * data.length)];
+        }
+        return data;
+    }
+
+    /**
+     * Makes the view show the record that has been read into the buffer returned by getBuffer(recordLength).
+     */
+    void setRecord(final int recordLength) {
+        length = recordLength;
+        cigarOffset = BAMFileConstants.FIXED_BLOCK_SIZE + getReadNameLength();
+        cigarLength = readUShort(CIGAR_LENGTH_OFFSET);
+        final int readLength = getReadLength();
+        tagsOffset = cigarOffset + 4 * cigarLength + (readLength + 1) / 2 + readLength;
+        if (tagsOffset > length) {
+            throw new SAMFormatException("Invalid record length " + length + " for the lengths of its fields");
+        }
+        if (cigarLength == 2 && isSentinelCigar(readLength)) {
+            // the cigar has more operations than fit in the cigar field, so it is stored in the CG tag
+            final int tag = findTag(SAMTagUtil.getSingleton().CG);
+            if (tag != -1 && data[tag + 2] == 'B' && (data[tag + 3] == 'I' || data[tag + 3] == 'i')) {
+                cigarLength = readInt(tag + 4);
+                cigarOffset = tag + 8;
+            }
+        }
+    }
+
+    private boolean isSentinelCigar(final int readLength) {
+        final int first = readInt(cigarOffset);
+        final int second = readInt(cigarOffset + 4);
+        return (first & 0xf) == 4 && (second & 0xf) == 3 && ((first >>> 4) == readLength || readLength == 0);
+    }
+
+    public int getReferenceIndex() {
+        return readInt(REFERENCE_INDEX_OFFSET);
+    }
+
+    public int getAlignmentStart() {
+        return readInt(POSITION_OFFSET) + 1;
+    }
+
+    /**
+     * @return the 1-based inclusive rightmost position of the alignment, or {@link SAMRecord#NO_ALIGNMENT_START} if
+     * the read is unmapped, computed from the cigar as {@link SAMRecord#getAlignmentEnd()} does
+     */
+    public int getAlignmentEnd() {
+        if ((getFlags() & SAMFlag.READ_UNMAPPED.intValue()) != 0) {
+            return SAMRecord.NO_ALIGNMENT_START;
+        }
+        int referenceLength = 0;
+        for (int i = 0; i < cigarLength; i++) {
+            final int operation = readInt(cigarOffset + 4 * i);
+            if ((REFERENCE_CONSUMING_OPERATORS & (1 << (operation & 0xf))) != 0) {
+                referenceLength += operation >>> 4;
+            }
+        }
+        return getAlignmentStart() + referenceLength - 1;
+    }
+
+    /**
+     * @return the length of the read name, including the terminating null
+     */
+    public int getReadNameLength() {
+        return data[READ_NAME_LENGTH_OFFSET] & 0xff;
+    }
+
+    /**
+     * @return the read name.  Note that this allocates a String.
+     */
+    public String getReadName() {
+        return StringUtil.bytesToString(data, BAMFileConstants.FIXED_BLOCK_SIZE, getReadNameLength() - 1);
+    }
+
+    /**
+     * @return whether the read name is the given one, without allocating
+     * @param readName read name without a terminating null
+     */
+    public boolean readNameEquals(final byte[] readName) {
+        if (readName.length != getReadNameLength() - 1) {
+            return false;
+        }
+        for (int i = 0; i < readName.length; i++) {
+            if (data[BAMFileConstants.FIXED_BLOCK_SIZE + i] != readName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getMappingQuality() {
+        return data[MAPPING_QUALITY_OFFSET] & 0xff;
+    }
+
+    public int getIndexingBin() {
+        return readUShort(BIN_OFFSET);
+    }
+
+    public int getFlags() {
+        return readUShort(FLAGS_OFFSET);
+    }
+
+    public int getReadLength() {
+        return readInt(READ_LENGTH_OFFSET);
+    }
+
+    public int getMateReferenceIndex() {
+        return readInt(MATE_REFERENCE_INDEX_OFFSET);
+    }
+
+    public int getMateAlignmentStart() {
+        return readInt(MATE_POSITION_OFFSET) + 1;
+    }
+
+    public int getInferredInsertSize() {
+        return readInt(INSERT_SIZE_OFFSET);
+    }
+
+    /**
+     * @return the number of cigar operations, including those of cigars stored in the CG tag
+     */
+    public int getCigarLength() {
+        return cigarLength;
+    }
+
+    /**
+     * @return the cigar operation at the given index, in BAM format
+     */
+    public int getCigarOperation(final int index) {
+        if (index < 0 || index >= cigarLength) {
+            throw new IndexOutOfBoundsException("Cigar operation " + index + " of " + cigarLength);
+        }
+        return readInt(cigarOffset + 4 * index);
+    }
+
+    /**
+     * @param buffer array to fill, which is used if it is large enough
+     * @return the cigar operations in BAM format, in buffer if it is large enough or else in a new array; only the
+     * first {@link #getCigarLength()} elements are set
+     */
+    public int[] getCigarOperations(final int[] buffer) {
+        final int[] operations = buffer != null && buffer.length >= cigarLength ? buffer : new int[cigarLength];
+        for (int i = 0; i < cigarLength; i++) {
+            operations[i] = readInt(cigarOffset + 4 * i);
+        }
+        return operations;
+    }
+
+    /**
+     * @return whether the record has the given tag
+     */
+    public boolean hasAttribute(final short tag) {
+        return findTag(tag) != -1;
+    }
+
+    /**
+     * @return the value of an integer tag, or defaultValue if the record does not have the tag
+     * @throws SAMException if the value of the tag is not an integer or does not fit in an int
+     */
+    public int getIntegerAttribute(final short tag, final int defaultValue) {
+        final int offset = findTag(tag);
+        if (offset == -1) {
+            return defaultValue;
+        }
+        final int valueOffset = offset + 3;
+        switch (data[offset + 2]) {
+            case 'c': return data[valueOffset];
+            case 'C': return data[valueOffset] & 0xff;
+            case 's': return (short) readUShort(valueOffset);
+            case 'S': return readUShort(valueOffset);
+            case 'i': return readInt(valueOffset);
+            case 'I':
+                final int value = readInt(valueOffset);
+                if (value < 0) {
+                    throw new SAMException("Value of tag " + SAMTagUtil.getSingleton().makeStringTag(tag) + " does not fit in an int");
+                }
+                return value;
+            default:
+                throw new SAMException("Tag " + SAMTagUtil.getSingleton().makeStringTag(tag) + " is not an integer tag");
+        }
+    }
+
+    /**
+     * @return the value of the tag in the form returned by {@link SAMRecord#getAttribute(short)}, or null if the
+     * record does not have the tag.  Note that this allocates the value.
+     */
+    public Object getAttribute(final short tag) {
+        final int offset = findTag(tag);
+        if (offset == -1) {
+            return null;
+        }
+        return BinaryTagCodec.readTags(data, offset, BinaryTagCodec.getBinaryTagSize(data, offset, length), ValidationStringency.SILENT).value;
+    }
+
+    /**
+     * @return the offset in data of the tag with the given key, or -1 if there is none
+     */
+    private int findTag(final short tag) {
+        int offset = tagsOffset;
+        while (offset + 3 <= length) {
+            if ((short) readUShort(offset) == tag) {
+                return offset;
+            }
+            offset += BinaryTagCodec.getBinaryTagSize(data, offset, length);
+        }
+        return -1;
+    }
+
+    /**
+     * @return a new record with the contents of this view, which is independent of the view
+     */
+    public SAMRecord toSAMRecord() {
+        final byte[] restOfRecord = Arrays.copyOfRange(data, BAMFileConstants.FIXED_BLOCK_SIZE, length);
+        final BAMRecord record = samRecordFactory.createBAMRecord(header, getReferenceIndex(), getAlignmentStart(),
+                (short) getReadNameLength(), (short) getMappingQuality(), getIndexingBin(), readUShort(CIGAR_LENGTH_OFFSET),
+                getFlags(), getReadLength(), getMateReferenceIndex(), getMateAlignmentStart(), getInferredInsertSize(),
+                restOfRecord);
+        if (header != null) {
+            // don't reset a null header as this will clobber the reference and mate reference indices
+            record.setHeader(header);
+        }
+        return record;
+    }
+
+    private int readInt(final int offset) {
+        return (data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8) |
+                ((data[offset + 2] & 0xff) << 16) | ((data[offset + 3] & 0xff) << 24);
+    }
+
+    private int readUShort(final int offset) {
+        return (data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8);
+    }
+}
@@ -180,6 +180,66 @@ public class BinaryTagCodec {
         throw new IllegalArgumentException("Integer attribute value too negative to be encoded in BAM");
     }
 
+    /**
+     * @param data   binary representation of tags
+     * @param offset where in data the tag starts
+     * @param end    end of the tag storage in data, which bounds the scan for the end of a string value
+     * @return the size of the tag at the given offset, including its key and type
+     */
+    static int getBinaryTagSize(final byte[] data, final int offset, final int end) {
+        final byte type = data[offset + 2];
+        switch (type) {
+            case 'A':
+            case 'c':
+            case 'C':
+                return 4;
+            case 's':
+            case 'S':
+                return 5;
+            case 'i':
+            case 'I':
+            case 'f':
+                return 7;
+            case 'Z':
+            case 'H':
+                int stringEnd = offset + FIXED_TAG_SIZE;
+                while (stringEnd < end && data[stringEnd] != 0) {
+                    stringEnd++;
+                }
+                return stringEnd + 1 - offset;
+            case 'B':
+                final int length = (data[offset + 4] & 0xff) | ((data[offset + 5] & 0xff) << 8) |
+                        ((data[offset + 6] & 0xff) << 16) | ((data[offset + 7] & 0xff) << 24);
+                return FIXED_TAG_SIZE + FIXED_BINARY_ARRAY_TAG_SIZE + length * getArrayElementSize(data[offset + 3]);
+            default:
+                throw new SAMFormatException("Unrecognized tag type: " + (char) type);
+        }
+    }
+
+    private static int getArrayElementSize(final byte type) {
+        switch (type) {
+            case 'c':
+            case 'C':
+                return 1;
+            case 's':
+            case 'S':
+                return 2;
+            case 'i':
+            case 'I':
+            case 'f':
+                return 4;
+            default:
+                throw new SAMFormatException("Unrecognized tag array type: " + (char) type);
+        }
+    }
+
+    /**
+     * Write tags that are still in their binary representation to disk, without decoding them.
+     */
+    public void writeTags(final BinaryTagIndex tags) {
+        binaryCodec.writeBytes(tags.getData(), tags.getOffset(), tags.getLength());
+    }
+
     /**
      * Write the given tag name and value to disk.
      */
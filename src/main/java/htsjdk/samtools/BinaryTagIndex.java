@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import java.util.Arrays;
+
+/**
+ * An index of the tags of a BAM record that are still in their binary representation, so that single tags can be
+ * found by a binary search over their keys and read without decoding the others, and all of them written back
+ * out unchanged.  The keys are kept in a sorted short[] next to the offsets of the tags in the binary data.
+ */
+public class BinaryTagIndex {
+    private static final int FIXED_TAG_SIZE = 3;
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+    private final short[] tags;
+    private final int[] tagOffsets;
+    private final boolean hasDuplicateTags;
+
+    /**
+     * @param data   binary representation of the tags, which must not be changed while this index is in use
+     * @param offset where in data the tags start
+     * @param length how many bytes in data are tag storage
+     * @throws SAMFormatException if the tags are truncated or of an unrecognized type
+     */
+    public BinaryTagIndex(final byte[] data, final int offset, final int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+
+        final int end = offset + length;
+        short[] tags = new short[8];
+        int[] tagOffsets = new int[8];
+        int size = 0;
+        boolean hasDuplicateTags = false;
+        int tagOffset = offset;
+        while (tagOffset < end) {
+            if (tagOffset + FIXED_TAG_SIZE > end) {
+                throw new SAMFormatException("Truncated tag at offset " + (tagOffset - offset) + " of the tags");
+            }
+            final short tag = (short) readUShort(tagOffset);
+            if (size == tags.length) {
+                tags = Arrays.copyOf(tags, size * 2);
+                tagOffsets = Arrays.copyOf(tagOffsets, size * 2);
+            }
+            // insertion sort, as tags are usually written in order, or nearly so
+            int i = size;
+            while (i > 0 && tags[i - 1] > tag) {
+                tags[i] = tags[i - 1];
+                tagOffsets[i] = tagOffsets[i - 1];
+                i--;
+            }
+            if (i > 0 && tags[i - 1] == tag) {
+                hasDuplicateTags = true;
+            }
+            tags[i] = tag;
+            tagOffsets[i] = tagOffset;
+            size++;
+
+            tagOffset += BinaryTagCodec.getBinaryTagSize(data, tagOffset, end);
+            if (tagOffset > end) {
+                throw new SAMFormatException("Truncated value of tag " + SAMTagUtil.getSingleton().makeStringTag(tag));
+            }
+        }
+        this.tags = Arrays.copyOf(tags, size);
+        this.tagOffsets = Arrays.copyOf(tagOffsets, size);
+        this.hasDuplicateTags = hasDuplicateTags;
+    }
+
+    /**
+     * @return the number of tags
+     */
+    public int size() {
+        return tags.length;
+    }
+
+    /**
+     * @param index index of a tag, in order of the tag keys
+     * @return the binary key of the tag, as created by SAMTagUtil
+     */
+    public short getTag(final int index) {
+        return tags[index];
+    }
+
+    /**
+     * @param tag binary representation of a 2-char String tag as created by SAMTagUtil
+     * @return the index of the tag, or -1 if it is not present.  If a tag occurs more than once, the index of its
+     * last occurrence, which is the one that wins when the tags are decoded.
+     */
+    public int find(final short tag) {
+        int low = 0;
+        int high = tags.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (tags[mid] < tag) {
+                low = mid + 1;
+            } else if (tags[mid] > tag) {
+                high = mid - 1;
+            } else {
+                int index = mid;
+                while (index + 1 < tags.length && tags[index + 1] == tag) {
+                    index++;
+                }
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if some tag occurs more than once, in which case writing the binary representation back out
+     * does not give the same record as writing the decoded tags
+     */
+    public boolean hasDuplicateTags() {
+        return hasDuplicateTags;
+    }
+
+    /**
+     * @return the BAM type of the value of the tag at the given index, e.g. 'i', 'Z' or 'B'
+     */
+    public char getType(final int index) {
+        return (char) data[tagOffsets[index] + 2];
+    }
+
+    /**
+     * @return the value of the tag at the given index, decoded as {@link BinaryTagCodec#readTags} does
+     */
+    public Object getValue(final int index, final ValidationStringency validationStringency) {
+        final int tagOffset = tagOffsets[index];
+        final int tagSize = BinaryTagCodec.getBinaryTagSize(data, tagOffset, offset + length);
+        return BinaryTagCodec.readTags(data, tagOffset, tagSize, validationStringency).value;
+    }
+
+    /**
+     * @return true if the value of the tag at the given index is an array of unsigned integers
+     */
+    public boolean isUnsignedArray(final int index) {
+        final int tagOffset = tagOffsets[index];
+        return data[tagOffset + 2] == 'B' && Character.isUpperCase(data[tagOffset + FIXED_TAG_SIZE]);
+    }
+
+    /**
+     * @return true if the value of the tag at the given index is an integer that fits in a signed int
+     */
+    public boolean hasIntValue(final int index) {
+        switch (getType(index)) {
+            case 'c':
+            case 'C':
+            case 's':
+            case 'S':
+            case 'i':
+                return true;
+            case 'I':
+                return readInt(tagOffsets[index] + FIXED_TAG_SIZE) >= 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the value of the tag at the given index, which must be an integer that fits in a signed int
+     * @throws IllegalStateException if the value is not such an integer
+     */
+    public int getIntValue(final int index) {
+        final int valueOffset = tagOffsets[index] + FIXED_TAG_SIZE;
+        switch (getType(index)) {
+            case 'c':
+                return data[valueOffset];
+            case 'C':
+                return data[valueOffset] & 0xff;
+            case 's':
+                return (short) readUShort(valueOffset);
+            case 'S':
+                return readUShort(valueOffset);
+            case 'i':
+                return readInt(valueOffset);
+            case 'I':
+                final int value = readInt(valueOffset);
+                if (value >= 0) {
+                    return value;
+                }
+                // fall through
+            default:
+                throw new IllegalStateException("Value of tag " + SAMTagUtil.getSingleton().makeStringTag(tags[index]) +
+                        " is not an integer that fits in a signed int");
+        }
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    private int readInt(final int offset) {
+        return (data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8) |
+                ((data[offset + 2] & 0xff) << 16) | ((data[offset + 3] & 0xff) << 24);
+    }
+
+    private int readUShort(final int offset) {
+        return (data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8);
+    }
+}
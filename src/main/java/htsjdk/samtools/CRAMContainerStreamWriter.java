@@ -21,12 +21,19 @@ import htsjdk.samtools.util.SequenceUtil;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class for writing SAMRecords into a series of CRAM containers on an output stream.
@@ -61,6 +68,14 @@ public class CRAMContainerStreamWriter {
     private CRAMBAIIndexer indexer;
     private long offset;
 
+    private static final AtomicInteger threadsCreated = new AtomicInteger(0); // Just used for thread naming.
+    private int encodingThreads = 0;
+    private ExecutorService encodingThreadPool = null;
+    /**
+     * Containers (in stream order) that have been handed to the encoding threads but not yet written.
+     */
+    private final ArrayDeque<Future<Container>> pendingContainers = new ArrayDeque<>();
+
     /**
      * Create a CRAMContainerStreamWriter for writing SAM records into a series of CRAM
      * containers on output stream, with an optional index.
@@ -127,6 +142,7 @@ public class CRAMContainerStreamWriter {
             if (!samRecords.isEmpty()) {
                 flushContainer();
             }
+            writePendingContainers();
             if (writeEOFContainer) {
                 CramIO.issueEOF(cramVersion, outputStream);
             }
@@ -139,9 +155,40 @@ public class CRAMContainerStreamWriter {
             throw new RuntimeIOException(e);
         } catch (final IllegalAccessException e) {
             throw new RuntimeException(e);
+        } finally {
+            shutdownEncodingThreads();
         }
     }
 
+    /**
+     * Set the number of threads used to convert records and compress the blocks of containers. Containers are still
+     * written to the output stream, and indexed, in order by the thread writing the records.
+     * If 0 (the default), containers are built on the thread writing the records.
+     *
+     * @param encodingThreads number of encoding threads
+     */
+    public void setEncodingThreads(final int encodingThreads) {
+        if (encodingThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of encoding threads: " + encodingThreads);
+        }
+        if (encodingThreads != this.encodingThreads) {
+            try {
+                writePendingContainers();
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            } catch (final IllegalAccessException e) {
+                throw new RuntimeException(e);
+            } finally {
+                shutdownEncodingThreads();
+            }
+            this.encodingThreads = encodingThreads;
+        }
+    }
+
+    public int getEncodingThreads() {
+        return encodingThreads;
+    }
+
     public boolean isPreserveReadNames() {
         return preserveReadNames;
     }
@@ -261,210 +308,315 @@ public class CRAMContainerStreamWriter {
     }
 
     /**
-     * Complete the current container and flush it to the output stream.
+     * Complete the current container and flush it to the output stream, or hand it to the encoding threads
+     * if {@link #setEncodingThreads(int)} has been called.
      *
      * @throws IllegalArgumentException
      * @throws IllegalAccessException
      * @throws IOException
      */
     protected void flushContainer() throws IllegalArgumentException, IllegalAccessException, IOException {
+        containerFactory.setPreserveReadNames(preserveReadNames);
+        final ContainerBuilder builder = new ContainerBuilder(new ArrayList<>(samRecords), refSeqIndex,
+                containerFactory.reserveGlobalRecordCounter(samRecords.size()));
+        samRecords.clear();
+        refSeqIndex = REF_SEQ_INDEX_NOT_INITIALIZED;
 
-        final byte[] refs;
-        String refSeqName = null;
-        switch (refSeqIndex) {
-            case Slice.MULTI_REFERENCE:
-                if (preservation != null && preservation.areReferenceTracksRequired()) {
-                    throw new SAMException("Cannot apply reference-based lossy compression on non-coordinate sorted reads.");
-                }
-            refs = new byte[0];
-                break;
-            case SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX:
-                refs = new byte[0];
-                break;
-            default:
-            final SAMSequenceRecord sequence = samFileHeader.getSequence(refSeqIndex);
-            refs = source.getReferenceBases(sequence, true);
-            refSeqName = sequence.getSequenceName();
-                break;
+        if (encodingThreads == 0) {
+            writeContainer(builder.build());
+            return;
+        }
+        if (encodingThreadPool == null) {
+            encodingThreadPool = Executors.newFixedThreadPool(encodingThreads, r -> {
+                final Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setName("CramContainerEncoder" + threadsCreated.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        // allow the caller to fill the next container while every thread is busy
+        while (pendingContainers.size() >= 2 * encodingThreads) {
+            writeNextPendingContainer();
         }
+        pendingContainers.add(encodingThreadPool.submit(builder::build));
+        // write out whatever has already finished without waiting on anything
+        while (!pendingContainers.isEmpty() && pendingContainers.peek().isDone()) {
+            writeNextPendingContainer();
+        }
+    }
 
-        int start = SAMRecord.NO_ALIGNMENT_START;
-        int stop = SAMRecord.NO_ALIGNMENT_START;
-        for (final SAMRecord r : samRecords) {
-            if (r.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START) continue;
+    /**
+     * Waits for all containers handed to the encoding threads and writes them out in order.
+     */
+    private void writePendingContainers() throws IllegalAccessException, IOException {
+        while (!pendingContainers.isEmpty()) {
+            writeNextPendingContainer();
+        }
+    }
 
-            if (start == SAMRecord.NO_ALIGNMENT_START) start = r.getAlignmentStart();
+    private void writeNextPendingContainer() throws IllegalAccessException, IOException {
+        final Future<Container> future = pendingContainers.poll();
+        final Container container;
+        try {
+            container = future.get();
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for CRAM encoding thread", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) throw (Error) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof IllegalAccessException) throw (IllegalAccessException) cause;
+            throw new RuntimeException(cause);
+        }
+        writeContainer(container);
+    }
 
-            start = Math.min(r.getAlignmentStart(), start);
-            stop = Math.max(r.getAlignmentEnd(), stop);
+    private void writeContainer(final Container container) throws IOException {
+        container.offset = offset;
+        offset += ContainerIO.writeContainer(cramVersion, container, outputStream);
+        if (indexer != null) {
+            /**
+             * Using silent validation here because the reads have been through validation already or
+             * they have been generated somehow through the htsjdk.
+             */
+            indexer.processContainer(container, ValidationStringency.SILENT);
         }
+    }
 
-        ReferenceTracks tracks = null;
-        if (preservation != null && preservation.areReferenceTracksRequired()) {
-            tracks = new ReferenceTracks(refSeqIndex, refSeqName, refs);
+    private void shutdownEncodingThreads() {
+        if (encodingThreadPool != null) {
+            encodingThreadPool.shutdownNow();
+            encodingThreadPool = null;
+        }
+        pendingContainers.clear();
+    }
 
-            tracks.ensureRange(start, stop - start + 1);
-            updateTracks(samRecords, tracks);
+    /**
+     * Converts the records of one container into CRAM records and builds the compressed container. Everything that
+     * depends on mutable state of the writer (including the reference source, which may not be thread-safe) is
+     * captured when the builder is created, so {@link #build()} can run on an encoding thread.
+     */
+    private class ContainerBuilder {
+        private final List<SAMRecord> samRecords;
+        private final int refSeqIndex;
+        private final long globalRecordCounter;
+        private final byte[] refs;
+        private final String refSeqName;
+        // bases of the other references used by records of a multi-reference container
+        private final Map<Integer, byte[]> otherReferenceBases = new HashMap<>();
+        private final QualityScorePreservation preservation;
+        private final boolean preserveReadNames;
+        private final boolean captureAllTags;
+        private final Set<String> captureTags;
+        private final Set<String> ignoreTags;
+
+        private ContainerBuilder(final List<SAMRecord> samRecords, final int refSeqIndex, final long globalRecordCounter) {
+            this.samRecords = samRecords;
+            this.refSeqIndex = refSeqIndex;
+            this.globalRecordCounter = globalRecordCounter;
+            this.preservation = CRAMContainerStreamWriter.this.preservation;
+            this.preserveReadNames = CRAMContainerStreamWriter.this.preserveReadNames;
+            this.captureAllTags = CRAMContainerStreamWriter.this.captureAllTags;
+            this.captureTags = new TreeSet<>(CRAMContainerStreamWriter.this.captureTags);
+            this.ignoreTags = new TreeSet<>(CRAMContainerStreamWriter.this.ignoreTags);
+
+            String refSeqName = null;
+            switch (refSeqIndex) {
+                case Slice.MULTI_REFERENCE:
+                    if (preservation != null && preservation.areReferenceTracksRequired()) {
+                        throw new SAMException("Cannot apply reference-based lossy compression on non-coordinate sorted reads.");
+                    }
+                    refs = new byte[0];
+                    break;
+                case SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX:
+                    refs = new byte[0];
+                    break;
+                default:
+                    final SAMSequenceRecord sequence = samFileHeader.getSequence(refSeqIndex);
+                    refs = source.getReferenceBases(sequence, true);
+                    refSeqName = sequence.getSequenceName();
+                    break;
+            }
+            this.refSeqName = refSeqName;
+
+            for (final SAMRecord samRecord : samRecords) {
+                final int referenceIndex = samRecord.getReferenceIndex();
+                if (referenceIndex != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && refSeqIndex != referenceIndex
+                        && !otherReferenceBases.containsKey(referenceIndex)) {
+                    // this may load all ref sequences into memory:
+                    otherReferenceBases.put(referenceIndex, source.getReferenceBases(samFileHeader.getSequence(referenceIndex), true));
+                }
+            }
         }
 
-        final List<CramCompressionRecord> cramRecords = new ArrayList<CramCompressionRecord>(samRecords.size());
+        private Container build() throws IllegalArgumentException, IllegalAccessException, IOException {
+            int start = SAMRecord.NO_ALIGNMENT_START;
+            int stop = SAMRecord.NO_ALIGNMENT_START;
+            for (final SAMRecord r : samRecords) {
+                if (r.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START) continue;
 
-        final Sam2CramRecordFactory sam2CramRecordFactory = new Sam2CramRecordFactory(refs, samFileHeader, cramVersion);
-        sam2CramRecordFactory.preserveReadNames = preserveReadNames;
-        sam2CramRecordFactory.captureAllTags = captureAllTags;
-        sam2CramRecordFactory.captureTags.addAll(captureTags);
-        sam2CramRecordFactory.ignoreTags.addAll(ignoreTags);
-        containerFactory.setPreserveReadNames(preserveReadNames);
+                if (start == SAMRecord.NO_ALIGNMENT_START) start = r.getAlignmentStart();
 
-        int index = 0;
-        int prevAlStart = start;
-        for (final SAMRecord samRecord : samRecords) {
-            if (samRecord.getReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && refSeqIndex != samRecord.getReferenceIndex()) {
-                // this may load all ref sequences into memory:
-                sam2CramRecordFactory.setRefBases(source.getReferenceBases(samFileHeader.getSequence(samRecord.getReferenceIndex()), true));
+                start = Math.min(r.getAlignmentStart(), start);
+                stop = Math.max(r.getAlignmentEnd(), stop);
             }
-            final CramCompressionRecord cramRecord = sam2CramRecordFactory.createCramRecord(samRecord);
-            cramRecord.index = ++index;
-            cramRecord.alignmentDelta = samRecord.getAlignmentStart() - prevAlStart;
-            cramRecord.alignmentStart = samRecord.getAlignmentStart();
-            prevAlStart = samRecord.getAlignmentStart();
 
-            cramRecords.add(cramRecord);
+            ReferenceTracks tracks = null;
+            if (preservation != null && preservation.areReferenceTracksRequired()) {
+                tracks = new ReferenceTracks(refSeqIndex, refSeqName, refs);
 
-            if (preservation != null) preservation.addQualityScores(samRecord, cramRecord, tracks);
-            else if (cramRecord.qualityScores != SAMRecord.NULL_QUALS) cramRecord.setForcePreserveQualityScores(true);
+                tracks.ensureRange(start, stop - start + 1);
+                updateTracks(samRecords, tracks);
             }
 
+            final List<CramCompressionRecord> cramRecords = new ArrayList<CramCompressionRecord>(samRecords.size());
+
+            final Sam2CramRecordFactory sam2CramRecordFactory = new Sam2CramRecordFactory(refs, samFileHeader, cramVersion);
+            sam2CramRecordFactory.preserveReadNames = preserveReadNames;
+            sam2CramRecordFactory.captureAllTags = captureAllTags;
+            sam2CramRecordFactory.captureTags.addAll(captureTags);
+            sam2CramRecordFactory.ignoreTags.addAll(ignoreTags);
+
+            int index = 0;
+            int prevAlStart = start;
+            for (final SAMRecord samRecord : samRecords) {
+                if (samRecord.getReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && refSeqIndex != samRecord.getReferenceIndex()) {
+                    sam2CramRecordFactory.setRefBases(otherReferenceBases.get(samRecord.getReferenceIndex()));
+                }
+                final CramCompressionRecord cramRecord = sam2CramRecordFactory.createCramRecord(samRecord);
+                cramRecord.index = ++index;
+                cramRecord.alignmentDelta = samRecord.getAlignmentStart() - prevAlStart;
+                cramRecord.alignmentStart = samRecord.getAlignmentStart();
+                prevAlStart = samRecord.getAlignmentStart();
+
+                cramRecords.add(cramRecord);
+
+                if (preservation != null) preservation.addQualityScores(samRecord, cramRecord, tracks);
+                else if (cramRecord.qualityScores != SAMRecord.NULL_QUALS) cramRecord.setForcePreserveQualityScores(true);
+                }
+
+
+            if (sam2CramRecordFactory.getBaseCount() < 3 * sam2CramRecordFactory.getFeatureCount())
+                log.warn("Abnormally high number of mismatches, possibly wrong reference.");
+
+            {
+                if (samFileHeader.getSortOrder() == SAMFileHeader.SortOrder.coordinate) {
+                    // mating:
+                    final Map<String, CramCompressionRecord> primaryMateMap = new TreeMap<String, CramCompressionRecord>();
+                    final Map<String, CramCompressionRecord> secondaryMateMap = new TreeMap<String, CramCompressionRecord>();
+                    for (final CramCompressionRecord r : cramRecords) {
+                        if (!r.isMultiFragment()) {
+                            r.setDetached(true);
 
-        if (sam2CramRecordFactory.getBaseCount() < 3 * sam2CramRecordFactory.getFeatureCount())
-            log.warn("Abnormally high number of mismatches, possibly wrong reference.");
-
-        {
-            if (samFileHeader.getSortOrder() == SAMFileHeader.SortOrder.coordinate) {
-                // mating:
-                final Map<String, CramCompressionRecord> primaryMateMap = new TreeMap<String, CramCompressionRecord>();
-                final Map<String, CramCompressionRecord> secondaryMateMap = new TreeMap<String, CramCompressionRecord>();
-                for (final CramCompressionRecord r : cramRecords) {
-                    if (!r.isMultiFragment()) {
-                        r.setDetached(true);
-
-                        r.setHasMateDownStream(false);
-                        r.recordsToNextFragment = -1;
-                        r.next = null;
-                        r.previous = null;
-                    } else {
-                        final String name = r.readName;
-                        final Map<String, CramCompressionRecord> mateMap = r.isSecondaryAlignment() ? secondaryMateMap : primaryMateMap;
-                        final CramCompressionRecord mate = mateMap.get(name);
-                        if (mate == null) {
-                            mateMap.put(name, r);
-                        } else {
-                            CramCompressionRecord prev = mate;
-                            while (prev.next != null) prev = prev.next;
-                            prev.recordsToNextFragment = r.index - prev.index - 1;
-                            prev.next = r;
-                            r.previous = prev;
-                            r.previous.setHasMateDownStream(true);
                             r.setHasMateDownStream(false);
-                            r.setDetached(false);
-                            r.previous.setDetached(false);
+                            r.recordsToNextFragment = -1;
+                            r.next = null;
+                            r.previous = null;
+                        } else {
+                            final String name = r.readName;
+                            final Map<String, CramCompressionRecord> mateMap = r.isSecondaryAlignment() ? secondaryMateMap : primaryMateMap;
+                            final CramCompressionRecord mate = mateMap.get(name);
+                            if (mate == null) {
+                                mateMap.put(name, r);
+                            } else {
+                                CramCompressionRecord prev = mate;
+                                while (prev.next != null) prev = prev.next;
+                                prev.recordsToNextFragment = r.index - prev.index - 1;
+                                prev.next = r;
+                                r.previous = prev;
+                                r.previous.setHasMateDownStream(true);
+                                r.setHasMateDownStream(false);
+                                r.setDetached(false);
+                                r.previous.setDetached(false);
+                            }
                         }
                     }
-                }
 
-                // mark unpredictable reads as detached:
-                for (final CramCompressionRecord cramRecord : cramRecords) {
-                    if (cramRecord.next == null || cramRecord.previous != null) continue;
-                    CramCompressionRecord last = cramRecord;
-                    while (last.next != null) last = last.next;
+                    // mark unpredictable reads as detached:
+                    for (final CramCompressionRecord cramRecord : cramRecords) {
+                        if (cramRecord.next == null || cramRecord.previous != null) continue;
+                        CramCompressionRecord last = cramRecord;
+                        while (last.next != null) last = last.next;
 
-                    if (cramRecord.isFirstSegment() && last.isLastSegment()) {
+                        if (cramRecord.isFirstSegment() && last.isLastSegment()) {
 
-                        final int templateLength = CramNormalizer.computeInsertSize(cramRecord, last);
+                            final int templateLength = CramNormalizer.computeInsertSize(cramRecord, last);
 
-                        if (cramRecord.templateSize == templateLength) {
-                            last = cramRecord.next;
-                            while (last.next != null) {
-                                if (last.templateSize != -templateLength)
-                                    break;
+                            if (cramRecord.templateSize == templateLength) {
+                                last = cramRecord.next;
+                                while (last.next != null) {
+                                    if (last.templateSize != -templateLength)
+                                        break;
 
-                                last = last.next;
-                            }
-                            if (last.templateSize != -templateLength) detach(cramRecord);
-                        }else detach(cramRecord);
-                    } else detach(cramRecord);
-                }
+                                    last = last.next;
+                                }
+                                if (last.templateSize != -templateLength) detach(cramRecord);
+                            }else detach(cramRecord);
+                        } else detach(cramRecord);
+                    }
 
-                for (final CramCompressionRecord cramRecord : primaryMateMap.values()) {
-                    if (cramRecord.next != null) continue;
-                    cramRecord.setDetached(true);
+                    for (final CramCompressionRecord cramRecord : primaryMateMap.values()) {
+                        if (cramRecord.next != null) continue;
+                        cramRecord.setDetached(true);
 
-                    cramRecord.setHasMateDownStream(false);
-                    cramRecord.recordsToNextFragment = -1;
-                    cramRecord.next = null;
-                    cramRecord.previous = null;
-                }
+                        cramRecord.setHasMateDownStream(false);
+                        cramRecord.recordsToNextFragment = -1;
+                        cramRecord.next = null;
+                        cramRecord.previous = null;
+                    }
 
-                for (final CramCompressionRecord cramRecord : secondaryMateMap.values()) {
-                    if (cramRecord.next != null) continue;
-                    cramRecord.setDetached(true);
+                    for (final CramCompressionRecord cramRecord : secondaryMateMap.values()) {
+                        if (cramRecord.next != null) continue;
+                        cramRecord.setDetached(true);
 
-                    cramRecord.setHasMateDownStream(false);
-                    cramRecord.recordsToNextFragment = -1;
-                    cramRecord.next = null;
-                    cramRecord.previous = null;
+                        cramRecord.setHasMateDownStream(false);
+                        cramRecord.recordsToNextFragment = -1;
+                        cramRecord.next = null;
+                        cramRecord.previous = null;
+                    }
                 }
-            }
-            else {
-                for (final CramCompressionRecord cramRecord : cramRecords) {
-                    cramRecord.setDetached(true);
+                else {
+                    for (final CramCompressionRecord cramRecord : cramRecords) {
+                        cramRecord.setDetached(true);
+                    }
                 }
             }
-        }
 
 
-        {
-            /**
-             * The following passage is for paranoid mode only. When java is run with asserts on it will throw an {@link AssertionError} if
-             * read bases or quality scores of a restored SAM record mismatch the original. This is effectively a runtime round trip test.
-             */
-            @SuppressWarnings("UnusedAssignment") boolean assertsEnabled = false;
-            //noinspection AssertWithSideEffects,ConstantConditions
-            assert assertsEnabled = true;
-            //noinspection ConstantConditions
-            if (assertsEnabled) {
-                final Cram2SamRecordFactory f = new Cram2SamRecordFactory(samFileHeader);
-                for (int i = 0; i < samRecords.size(); i++) {
-                    final SAMRecord restoredSamRecord = f.create(cramRecords.get(i));
-                    assert (restoredSamRecord.getAlignmentStart() == samRecords.get(i).getAlignmentStart());
-                    assert (restoredSamRecord.getReferenceName().equals(samRecords.get(i).getReferenceName()));
-
-                    if (!restoredSamRecord.getReadString().equals(samRecords.get(i).getReadString())) {
-                        // try to fix the original read bases by normalizing them to BAM set:
-                        final byte[] originalReadBases = samRecords.get(i).getReadString().getBytes();
-                        final String originalReadBasesUpperCaseIupacNoDot = new String(SequenceUtil.toBamReadBasesInPlace(originalReadBases));
-                        assert (restoredSamRecord.getReadString().equals(originalReadBasesUpperCaseIupacNoDot));
+            {
+                /**
+                 * The following passage is for paranoid mode only. When java is run with asserts on it will throw an {@link AssertionError} if
+                 * read bases or quality scores of a restored SAM record mismatch the original. This is effectively a runtime round trip test.
+                 */
+                @SuppressWarnings("UnusedAssignment") boolean assertsEnabled = false;
+                //noinspection AssertWithSideEffects,ConstantConditions
+                assert assertsEnabled = true;
+                //noinspection ConstantConditions
+                if (assertsEnabled) {
+                    final Cram2SamRecordFactory f = new Cram2SamRecordFactory(samFileHeader);
+                    for (int i = 0; i < samRecords.size(); i++) {
+                        final SAMRecord restoredSamRecord = f.create(cramRecords.get(i));
+                        assert (restoredSamRecord.getAlignmentStart() == samRecords.get(i).getAlignmentStart());
+                        assert (restoredSamRecord.getReferenceName().equals(samRecords.get(i).getReferenceName()));
+
+                        if (!restoredSamRecord.getReadString().equals(samRecords.get(i).getReadString())) {
+                            // try to fix the original read bases by normalizing them to BAM set:
+                            final byte[] originalReadBases = samRecords.get(i).getReadString().getBytes();
+                            final String originalReadBasesUpperCaseIupacNoDot = new String(SequenceUtil.toBamReadBasesInPlace(originalReadBases));
+                            assert (restoredSamRecord.getReadString().equals(originalReadBasesUpperCaseIupacNoDot));
+                        }
+                        assert (restoredSamRecord.getBaseQualityString().equals(samRecords.get(i).getBaseQualityString()));
                     }
-                    assert (restoredSamRecord.getBaseQualityString().equals(samRecords.get(i).getBaseQualityString()));
                 }
             }
-        }
 
-        final Container container = containerFactory.buildContainer(cramRecords);
-        for (final Slice slice : container.slices) {
-            slice.setRefMD5(refs);
-        }
-        container.offset = offset;
-        offset += ContainerIO.writeContainer(cramVersion, container, outputStream);
-        if (indexer != null) {
-            /**
-             * Using silent validation here because the reads have been through validation already or
-             * they have been generated somehow through the htsjdk.
-             */
-            indexer.processContainer(container, ValidationStringency.SILENT);
+            final Container container = containerFactory.buildContainer(cramRecords, globalRecordCounter);
+            for (final Slice slice : container.slices) {
+                slice.setRefMD5(refs);
+            }
+            return container;
         }
-        samRecords.clear();
-        refSeqIndex = REF_SEQ_INDEX_NOT_INITIALIZED;
     }
 
     /**
@@ -27,6 +27,7 @@ import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.ParallelDecodingIterator;
 import htsjdk.samtools.util.RuntimeEOFException;
 
 import java.io.File;
@@ -37,6 +38,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
 
 /**
  * {@link htsjdk.samtools.BAMFileReader BAMFileReader} analogue for CRAM files.
@@ -57,6 +59,11 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
 
     private ValidationStringency validationStringency;
 
+    // If positive, containers are decoded on this many threads, see setDecodingThreads.
+    private int decodingThreads = 0;
+    // Created on first use and shut down when this reader is closed.
+    private ExecutorService decodingThreadPool = null;
+
     private final static Log log = Log.getInstance(CRAMFileReader.class);
 
     /**
@@ -318,7 +325,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         try {
             // create an input stream that reads the source cram stream only within the coordinate pairs:
             final SeekableStream seekableStream = getSeekableStreamOrFailWithRTE();
-            return new CRAMIterator(seekableStream, referenceSource, coordinateArray, validationStringency);
+            return withDecodingThreads(new CRAMIterator(seekableStream, referenceSource, coordinateArray, validationStringency));
         } catch (final IOException e) {
             throw new RuntimeException(e);
         }
@@ -341,7 +348,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
             } else
                 newIterator = new CRAMIterator(inputStream, referenceSource, validationStringency);
 
-            iterator = newIterator;
+            iterator = withDecodingThreads(newIterator);
             return iterator;
         } catch (final Exception e) {
             throw new RuntimeException(e);
@@ -401,7 +408,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         final CRAMIterator newIterator;
         try {
             seekableStream.seek(0);
-            newIterator = new CRAMIterator(seekableStream, referenceSource, validationStringency);
+            newIterator = withDecodingThreads(new CRAMIterator(seekableStream, referenceSource, validationStringency));
             seekableStream.seek(startOfLastLinearBin >>> 16);
             final Container container = ContainerIO.readContainerHeader(newIterator.getCramHeader().getVersion().major, seekableStream);
             seekableStream.seek(seekableStream.position() + container.containerByteSize);
@@ -436,6 +443,42 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         CloserUtil.close(iterator);
         CloserUtil.close(inputStream);
         CloserUtil.close(mIndex);
+        if (decodingThreadPool != null) {
+            decodingThreadPool.shutdown();
+            decodingThreadPool = null;
+        }
+    }
+
+    /**
+     * Set the number of threads used to decode containers while iterating. Containers are read ahead on a
+     * background thread and their records are still returned in file order. Takes effect for iterators created
+     * after this call, and for the iterator of a stream-based reader if iteration has not started yet.
+     *
+     * @param decodingThreads number of threads, or 0 to decode containers on the calling thread
+     * @see CRAMIterator#setDecodingThreadPool(ExecutorService, int)
+     */
+    void setDecodingThreads(final int decodingThreads) {
+        if (decodingThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of decoding threads: " + decodingThreads);
+        }
+        if (decodingThreadPool != null && decodingThreads != this.decodingThreads) {
+            decodingThreadPool.shutdown();
+            decodingThreadPool = null;
+        }
+        this.decodingThreads = decodingThreads;
+        if (iterator != null && iterator.container == null) {
+            withDecodingThreads(iterator);
+        }
+    }
+
+    private CRAMIterator withDecodingThreads(final CRAMIterator cramIterator) {
+        if (decodingThreads > 0) {
+            if (decodingThreadPool == null) {
+                decodingThreadPool = ParallelDecodingIterator.newWorkerPool(decodingThreads);
+            }
+            cramIterator.setDecodingThreadPool(decodingThreadPool, decodingThreads);
+        }
+        return cramIterator;
     }
 
     @Override
@@ -509,12 +552,12 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
 
             if (coordinates != null && coordinates.length != 0) {
                 try {
-                    unfilteredIterator = new CRAMIterator(
+                    unfilteredIterator = withDecodingThreads(new CRAMIterator(
                             getSeekableStreamOrFailWithRTE(),
                             referenceSource,
                             coordinates,
                             validationStringency
-                    );
+                    ));
                 } catch (final IOException e) {
                     throw new RuntimeEOFException(e);
                 }
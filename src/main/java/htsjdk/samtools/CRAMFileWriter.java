@@ -162,6 +162,17 @@ public class CRAMFileWriter extends SAMFileWriterImpl {
         cramContainerStream.setCaptureTags(captureTags);
     }
 
+    /**
+     * @see CRAMContainerStreamWriter#setEncodingThreads(int)
+     */
+    public void setEncodingThreads(final int encodingThreads) {
+        cramContainerStream.setEncodingThreads(encodingThreads);
+    }
+
+    public int getEncodingThreads() {
+        return cramContainerStream.getEncodingThreads();
+    }
+
     public Set<String> getIgnoreTags() {
         return cramContainerStream.getIgnoreTags();
     }
@@ -30,11 +30,13 @@ import htsjdk.samtools.cram.structure.CramHeader;
 import htsjdk.samtools.cram.structure.Slice;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.ParallelDecodingIterator;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 import htsjdk.samtools.cram.CRAMException;
 
@@ -71,6 +73,11 @@ public class CRAMIterator implements SAMRecordIterator {
     private long samRecordIndex;
     private ArrayList<CramCompressionRecord> cramRecords;
 
+    // Only used when decoding containers in parallel, see setDecodingThreadPool.
+    private ExecutorService decodingThreadPool = null;
+    private int decodingThreads = 0;
+    private ParallelDecodingIterator<PendingContainer, DecodedContainer> decodingIterator = null;
+
     public CRAMIterator(final InputStream inputStream, final CRAMReferenceSource referenceSource, final ValidationStringency validationStringency)
             throws IOException {
         if (null == referenceSource) {
@@ -119,9 +126,34 @@ public class CRAMIterator implements SAMRecordIterator {
         return cramHeader;
     }
 
+    /**
+     * Decode containers on the given thread pool rather than on the thread calling {@link #hasNext()}. Containers are
+     * read ahead on a background thread, up to twice the given number of threads, and their records are still returned
+     * in file order. The reference source is only accessed by one thread at a time.
+     * Must be called before iteration starts.
+     *
+     * @param decodingThreadPool thread pool on which containers are decoded, not shut down by this iterator
+     * @param decodingThreads number of threads in the pool
+     */
+    public void setDecodingThreadPool(final ExecutorService decodingThreadPool, final int decodingThreads) {
+        if (container != null) {
+            throw new IllegalStateException("Cannot start decoding in parallel once iteration has started");
+        }
+        if (decodingThreads < 1) {
+            throw new IllegalArgumentException("Invalid number of decoding threads: " + decodingThreads);
+        }
+        this.decodingThreadPool = decodingThreadPool;
+        this.decodingThreads = decodingThreads;
+    }
+
     void nextContainer() throws IOException, IllegalArgumentException,
             IllegalAccessException, CRAMException {
 
+        if (decodingThreadPool != null) {
+            nextDecodedContainer();
+            return;
+        }
+
         if (containerIterator != null) {
             if (!containerIterator.hasNext()) {
                 records.clear();
@@ -170,20 +202,7 @@ public class CRAMIterator implements SAMRecordIterator {
             prevSeqId = container.sequenceId;
         }
 
-        for (int i = 0; i < container.slices.length; i++) {
-            final Slice slice = container.slices[i];
-            if (slice.sequenceId < 0)
-                continue;
-            if (!slice.validateRefMD5(refs)) {
-                final String msg = String.format(
-                        "Reference sequence MD5 mismatch for slice: sequence id %d, start %d, span %d, expected MD5 %s",
-                            slice.sequenceId,
-                            slice.alignmentStart,
-                            slice.alignmentSpan,
-                            String.format("%032x", new BigInteger(1, slice.refMD5)));
-                throw new CRAMException(msg);
-            }
-        }
+        validateRefMD5(container, refs);
 
         normalizer.normalize(cramRecords, refs, 0,
                 container.header.substitutionMatrix);
@@ -210,7 +229,7 @@ public class CRAMIterator implements SAMRecordIterator {
             if (mReader != null) {
                 final long chunkStart = (container.offset << 16) | cramRecord.sliceIndex;
                 final long chunkEnd = ((container.offset << 16) | cramRecord.sliceIndex) + 1;
-                nextRecord.setFileSource(new SAMFileSource(mReader,
+                samRecord.setFileSource(new SAMFileSource(mReader,
                         new BAMFileSpan(new Chunk(chunkStart, chunkEnd))));
             }
 
@@ -221,6 +240,108 @@ public class CRAMIterator implements SAMRecordIterator {
         iterator = records.iterator();
     }
 
+    private static void validateRefMD5(final Container container, final byte[] refs) {
+        for (int i = 0; i < container.slices.length; i++) {
+            final Slice slice = container.slices[i];
+            if (slice.sequenceId < 0)
+                continue;
+            if (!slice.validateRefMD5(refs)) {
+                final String msg = String.format(
+                        "Reference sequence MD5 mismatch for slice: sequence id %d, start %d, span %d, expected MD5 %s",
+                            slice.sequenceId,
+                            slice.alignmentStart,
+                            slice.alignmentSpan,
+                            String.format("%032x", new BigInteger(1, slice.refMD5)));
+                throw new CRAMException(msg);
+            }
+        }
+    }
+
+    /**
+     * Parallel counterpart of {@link #nextContainer()}: takes the next container decoded by the thread pool and
+     * reports validation errors in record order.
+     */
+    private void nextDecodedContainer() {
+        if (decodingIterator == null) {
+            final PendingContainerIterator pendingContainers = new PendingContainerIterator();
+            decodingIterator = new ParallelDecodingIterator<>(pendingContainers, this::decode, decodingThreadPool,
+                    1, 2 * decodingThreads);
+        }
+        if (!decodingIterator.hasNext()) {
+            records.clear();
+            nextRecord = null;
+            return;
+        }
+        final DecodedContainer decoded = decodingIterator.next();
+        container = decoded.container;
+        records = decoded.records;
+        if (decoded.validationErrors != null) {
+            for (final List<SAMValidationError> validationErrors : decoded.validationErrors) {
+                SAMUtils.processValidationErrors(validationErrors, samRecordIndex++, validationStringency);
+            }
+        } else {
+            samRecordIndex += records.size();
+        }
+        iterator = records.iterator();
+    }
+
+    /**
+     * Decodes the records of a container on a thread of the decoding thread pool.
+     */
+    private DecodedContainer decode(final PendingContainer pending) {
+        final Container container = pending.container;
+        final SAMFileHeader samFileHeader = cramHeader.getSamFileHeader();
+        // the reference source is not required to be thread-safe
+        final CRAMReferenceSource synchronizedReferenceSource = (sequenceRecord, tryNameVariants) -> {
+            synchronized (referenceSource) {
+                return referenceSource.getReferenceBases(sequenceRecord, tryNameVariants);
+            }
+        };
+        final ArrayList<CramCompressionRecord> cramRecords = new ArrayList<>(container.nofRecords);
+        try {
+            new ContainerParser(samFileHeader).getRecords(container, cramRecords, validationStringency);
+        } catch (final IllegalAccessException e) {
+            throw new SAMException(e);
+        }
+
+        final byte[] refs;
+        if (container.sequenceId == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+            refs = new byte[]{};
+        } else if (container.sequenceId == Slice.MULTI_REFERENCE) {
+            refs = null;
+        } else {
+            final SAMSequenceRecord sequence = samFileHeader.getSequence(container.sequenceId);
+            refs = synchronizedReferenceSource.getReferenceBases(sequence, true);
+            if (refs == null) {
+                throw new CRAMException(String.format("Contig %s not found in the reference file.", sequence.getSequenceName()));
+            }
+        }
+        validateRefMD5(container, refs);
+
+        new CramNormalizer(samFileHeader, synchronizedReferenceSource, pending.readCounter)
+                .normalize(cramRecords, refs, 0, container.header.substitutionMatrix);
+
+        final Cram2SamRecordFactory cramToSamRecordFactory = new Cram2SamRecordFactory(samFileHeader);
+        final ArrayList<SAMRecord> samRecords = new ArrayList<>(cramRecords.size());
+        final List<List<SAMValidationError>> validationErrors =
+                validationStringency == ValidationStringency.SILENT ? null : new ArrayList<>(cramRecords.size());
+        for (final CramCompressionRecord cramRecord : cramRecords) {
+            final SAMRecord samRecord = cramToSamRecordFactory.create(cramRecord);
+            samRecord.setValidationStringency(validationStringency);
+            if (validationErrors != null) {
+                validationErrors.add(samRecord.isValid());
+            }
+            if (mReader != null) {
+                final long chunkStart = (container.offset << 16) | cramRecord.sliceIndex;
+                final long chunkEnd = ((container.offset << 16) | cramRecord.sliceIndex) + 1;
+                samRecord.setFileSource(new SAMFileSource(mReader,
+                        new BAMFileSpan(new Chunk(chunkStart, chunkEnd))));
+            }
+            samRecords.add(samRecord);
+        }
+        return new DecodedContainer(container, samRecords, validationErrors);
+    }
+
     /**
      * Skip cached records until given alignment start position.
      *
@@ -280,6 +401,11 @@ public class CRAMIterator implements SAMRecordIterator {
 
     @Override
     public void close() {
+        if (decodingIterator != null) {
+            // stop reading ahead before closing the stream
+            decodingIterator.close();
+            decodingIterator = null;
+        }
         records.clear();
         //noinspection EmptyCatchBlock
         try {
@@ -306,4 +432,72 @@ public class CRAMIterator implements SAMRecordIterator {
         return cramHeader.getSamFileHeader();
     }
 
+    /**
+     * Reads containers on the background thread of the decoding iterator, up to the EOF container.
+     */
+    private class PendingContainerIterator implements Iterator<PendingContainer> {
+        private PendingContainer next = null;
+        private boolean exhausted = false;
+        // number of records in the containers read so far
+        private int readCounter = 0;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !exhausted) {
+                final Container container;
+                try {
+                    if (containerIterator != null) {
+                        container = containerIterator.hasNext() ? containerIterator.next() : null;
+                    } else {
+                        container = ContainerIO.readContainer(cramHeader.getVersion(), countingInputStream);
+                    }
+                } catch (final IOException e) {
+                    throw new SAMException(e);
+                }
+                if (container == null || container.isEOF()) {
+                    exhausted = true;
+                } else {
+                    next = new PendingContainer(container, readCounter);
+                    for (final Slice slice : container.slices) {
+                        readCounter += slice.nofRecords;
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public PendingContainer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final PendingContainer result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    private static class PendingContainer {
+        private final Container container;
+        private final int readCounter;
+
+        private PendingContainer(final Container container, final int readCounter) {
+            this.container = container;
+            this.readCounter = readCounter;
+        }
+    }
+
+    private static class DecodedContainer {
+        private final Container container;
+        private final ArrayList<SAMRecord> records;
+        private final List<List<SAMValidationError>> validationErrors;
+
+        private DecodedContainer(final Container container, final ArrayList<SAMRecord> records,
+                                 final List<List<SAMValidationError>> validationErrors) {
+            this.container = container;
+            this.records = records;
+            this.validationErrors = validationErrors;
+        }
+    }
+
 }
@@ -0,0 +1,532 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.RuntimeEOFException;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A coordinate-sorted index (CSI), as described in the CSIv1 specification, read from a file or built with a
+ * {@link CSIIndexBuilder}.  Unlike the BAI and tabix indexes, which use a fixed binning scheme with 16kbp windows
+ * that cannot address positions beyond 2^29, the size of the smallest bin (2^min_shift) and the number of levels
+ * (depth) are stored in the index, so contigs of any length that fits in a SAM position can be indexed.  There is
+ * no separate linear index: each bin records the smallest virtual file offset of the records overlapping the
+ * first window it covers.
+ * <p>
+ * The format-specific auxiliary data, the tabix header for tabix-style indexes and nothing for BAM, is available
+ * through {@link #getAux()}.  The whole index is held in memory, as the file is BGZF compressed and cannot be
+ * randomly accessed.
+ */
+public class CSIIndex implements BAMIndex {
+    public static final String CSI_INDEX_SUFFIX = ".csi";
+
+    /** Size of the smallest bin used by samtools and tabix by default, 2^14 = 16kbp */
+    public static final int DEFAULT_MIN_SHIFT = 14;
+
+    /** Number of levels that give the same bins as a BAI index with {@link #DEFAULT_MIN_SHIFT} */
+    public static final int DEFAULT_DEPTH = 5;
+
+    static final byte[] CSI_INDEX_MAGIC = "CSI\1".getBytes();
+
+    /** Magic number of the decompressed index, read as a little-endian int */
+    public static final int MAGIC_NUMBER = ByteBuffer.wrap(CSI_INDEX_MAGIC).order(ByteOrder.LITTLE_ENDIAN).getInt();
+
+    private final int minShift;
+    private final int depth;
+    private final byte[] aux;
+    private final ReferenceContent[] references;
+    private final Long noCoordinateCount;
+
+    CSIIndex(final int minShift, final int depth, final byte[] aux, final ReferenceContent[] references, final Long noCoordinateCount) {
+        checkBinningScheme(minShift, depth);
+        this.minShift = minShift;
+        this.depth = depth;
+        this.aux = aux == null ? new byte[0] : aux.clone();
+        this.references = references;
+        this.noCoordinateCount = noCoordinateCount;
+    }
+
+    /**
+     * Reads an index from a BGZF compressed .csi file.
+     */
+    public CSIIndex(final Path path) throws IOException {
+        this(new BlockCompressedInputStream(Files.newInputStream(path)), true);
+    }
+
+    public CSIIndex(final File file) throws IOException {
+        this(file.toPath());
+    }
+
+    /**
+     * Reads an index from a BGZF compressed stream, which is closed once the index has been read.
+     */
+    public CSIIndex(final SeekableStream stream) throws IOException {
+        this(new BlockCompressedInputStream(stream), true);
+    }
+
+    /**
+     * @param inputStream the decompressed index, positioned at the magic number.  The caller should close the
+     *                    stream after the constructor returns.
+     */
+    public CSIIndex(final InputStream inputStream) {
+        this(inputStream, false);
+    }
+
+    private CSIIndex(final InputStream inputStream, final boolean closeInputStream) {
+        final BinaryCodec codec = new BinaryCodec(inputStream);
+        try {
+            final byte[] magic = new byte[CSI_INDEX_MAGIC.length];
+            codec.readBytes(magic);
+            if (!Arrays.equals(magic, CSI_INDEX_MAGIC)) {
+                throw new SAMFormatException("Invalid file header in CSI index: " + new String(magic));
+            }
+            minShift = codec.readInt();
+            depth = codec.readInt();
+            checkBinningScheme(minShift, depth);
+            aux = new byte[codec.readInt()];
+            codec.readBytes(aux);
+            references = new ReferenceContent[codec.readInt()];
+            for (int i = 0; i < references.length; i++) {
+                references[i] = readReference(codec, i);
+            }
+            noCoordinateCount = readNoCoordinateCount(codec);
+        } finally {
+            if (closeInputStream) {
+                codec.close();
+            }
+        }
+    }
+
+    private ReferenceContent readReference(final BinaryCodec codec, final int referenceIndex) {
+        final int nBins = codec.readInt();
+        if (nBins == 0) {
+            return null;
+        }
+        final int metaBin = getMetaDataBinNumber(depth);
+        final List<Bin> bins = new ArrayList<>(nBins);
+        final List<Long> offsets = new ArrayList<>(nBins);
+        List<Chunk> metaData = Collections.emptyList();
+        for (int i = 0; i < nBins; i++) {
+            final int binNumber = codec.readInt();
+            final long offset = codec.readLong();
+            final int nChunks = codec.readInt();
+            final List<Chunk> chunks = new ArrayList<>(nChunks);
+            for (int j = 0; j < nChunks; j++) {
+                chunks.add(new Chunk(codec.readLong(), codec.readLong()));
+            }
+            if (binNumber == metaBin) {
+                metaData = chunks;
+            } else {
+                final Bin bin = new Bin(referenceIndex, binNumber);
+                bin.setChunkList(chunks);
+                bin.setLastChunk(chunks.isEmpty() ? null : chunks.get(chunks.size() - 1));
+                bins.add(bin);
+                offsets.add(offset);
+            }
+        }
+        return new ReferenceContent(bins, offsets, metaData);
+    }
+
+    private static Long readNoCoordinateCount(final BinaryCodec codec) {
+        try {
+            return codec.readLong();
+        } catch (final RuntimeEOFException e) {
+            // the count is optional
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index with BGZF compression.
+     */
+    public void write(final Path path) throws IOException {
+        try (final OutputStream os = new BlockCompressedOutputStream(Files.newOutputStream(path), (Path) null)) {
+            write(os);
+        }
+    }
+
+    /**
+     * @param os It is assumed that the caller has wrapped the stream in a {@link BlockCompressedOutputStream}.
+     *           The caller should close the stream after invoking this method.
+     */
+    public void write(final OutputStream os) {
+        final BinaryCodec codec = new BinaryCodec(os);
+        codec.writeBytes(CSI_INDEX_MAGIC);
+        codec.writeInt(minShift);
+        codec.writeInt(depth);
+        codec.writeInt(aux.length);
+        codec.writeBytes(aux);
+        codec.writeInt(references.length);
+        final int metaBin = getMetaDataBinNumber(depth);
+        for (final ReferenceContent reference : references) {
+            if (reference == null) {
+                codec.writeInt(0);
+                continue;
+            }
+            codec.writeInt(reference.bins.length + (reference.metaData.isEmpty() ? 0 : 1));
+            for (int i = 0; i < reference.bins.length; i++) {
+                writeBin(codec, reference.bins[i].getBinNumber(), reference.offsets[i], reference.bins[i].getChunkList());
+            }
+            if (!reference.metaData.isEmpty()) {
+                writeBin(codec, metaBin, 0, reference.metaData);
+            }
+        }
+        if (noCoordinateCount != null) {
+            codec.writeLong(noCoordinateCount);
+        }
+        try {
+            os.flush();
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    private static void writeBin(final BinaryCodec codec, final int binNumber, final long offset, final List<Chunk> chunks) {
+        codec.writeInt(binNumber);
+        codec.writeLong(offset);
+        codec.writeInt(chunks.size());
+        for (final Chunk chunk : chunks) {
+            codec.writeLong(chunk.getChunkStart());
+            codec.writeLong(chunk.getChunkEnd());
+        }
+    }
+
+    /**
+     * @return true if the stream holds a CSI index.  The stream is returned to the start.
+     */
+    public static boolean isCSIIndex(final SeekableStream stream) throws IOException {
+        stream.seek(0);
+        try {
+            if (!BlockCompressedInputStream.isValidFile(new BufferedInputStream(stream))) {
+                return false;
+            }
+            stream.seek(0);
+            final byte[] magic = new byte[CSI_INDEX_MAGIC.length];
+            final int n = new BlockCompressedInputStream(stream).read(magic);
+            return n == magic.length && Arrays.equals(magic, CSI_INDEX_MAGIC);
+        } finally {
+            stream.seek(0);
+        }
+    }
+
+    public int getMinShift() {
+        return minShift;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return a copy of the format-specific data stored in the header of the index
+     */
+    public byte[] getAux() {
+        return aux.clone();
+    }
+
+    public int getNumberOfReferences() {
+        return references.length;
+    }
+
+    /**
+     * @return the first position, 0-based, that cannot be indexed with this binning scheme
+     */
+    public long getMaxPosition() {
+        return getMaxPosition(minShift, depth);
+    }
+
+    /**
+     * @return count of records unassociated with any reference, or null if it is not in the index
+     */
+    public Long getNoCoordinateCount() {
+        return noCoordinateCount;
+    }
+
+    @Override
+    public BAMFileSpan getSpanOverlapping(final int referenceIndex, final int startPos, final int endPos) {
+        final List<Chunk> chunks = getChunksOverlapping(referenceIndex, startPos, endPos);
+        return chunks == null ? null : new BAMFileSpan(chunks);
+    }
+
+    /**
+     * @param referenceIndex the contig
+     * @param startPos       1-based start of the region, inclusive.  0 or less for the start of the contig
+     * @param endPos         1-based end of the region, inclusive.  0 or less for the end of the contig
+     * @return the chunks that may contain records overlapping the region, or null if there are none
+     */
+    public List<Chunk> getChunksOverlapping(final int referenceIndex, final int startPos, final int endPos) {
+        if (referenceIndex < 0 || referenceIndex >= references.length || references[referenceIndex] == null) {
+            return null;
+        }
+        final long maxPos = getMaxPosition();
+        final long beg = startPos <= 0 ? 0 : startPos - 1;
+        final long end = endPos <= 0 ? maxPos : Math.min(endPos, maxPos);
+        if (beg >= end) {
+            return null;
+        }
+        final ReferenceContent reference = references[referenceIndex];
+
+        final List<Chunk> chunks = new ArrayList<>();
+        for (int level = 0; level <= depth; level++) {
+            final int shift = minShift + 3 * (depth - level);
+            final int firstBin = getFirstBinInLevel(level);
+            final int from = reference.indexOfBinAtOrAfter(firstBin + (int) (beg >> shift));
+            final int to = firstBin + (int) ((end - 1) >> shift);
+            for (int i = from; i < reference.bins.length && reference.bins[i].getBinNumber() <= to; i++) {
+                for (final Chunk chunk : reference.bins[i].getChunkList()) {
+                    chunks.add(chunk.clone());
+                }
+            }
+        }
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        final List<Chunk> result = Chunk.optimizeChunkList(chunks, getMinimumOffset(reference, beg));
+        return result.isEmpty() ? null : result;
+    }
+
+    /**
+     * Finds the offset of the bin nearest to the left of the query start, as htslib does: the smallest offset
+     * of any record that overlaps the region.
+     */
+    private long getMinimumOffset(final ReferenceContent reference, final long beg) {
+        int bin = getFirstBinInLevel(depth) + (int) (beg >> minShift);
+        while (true) {
+            final int i = Arrays.binarySearch(reference.binNumbers, bin);
+            if (i >= 0) {
+                return reference.offsets[i];
+            }
+            if (bin == 0) {
+                return 0;
+            }
+            final int firstSibling = (getParentBin(bin) << 3) + 1;
+            bin = bin > firstSibling ? bin - 1 : getParentBin(bin);
+        }
+    }
+
+    /**
+     * Use to get close to the unmapped reads at the end of a BAM file.
+     * @return the start of the last chunk of the last reference with records, or -1 if there are no mapped reads
+     */
+    @Override
+    public long getStartOfLastLinearBin() {
+        for (int i = references.length - 1; i >= 0; i--) {
+            if (references[i] != null && references[i].bins.length > 0) {
+                long last = -1;
+                for (final Bin bin : references[i].bins) {
+                    for (final Chunk chunk : bin.getChunkList()) {
+                        last = Math.max(last, chunk.getChunkStart());
+                    }
+                }
+                return last;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public BAMIndexMetaData getMetaData(final int reference) {
+        if (reference >= references.length) {
+            return null;
+        }
+        return new BAMIndexMetaData(references[reference] == null ? Collections.emptyList() : references[reference].metaData);
+    }
+
+    /**
+     * Nothing to release, the index is read when it is opened.
+     */
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final CSIIndex that = (CSIIndex) o;
+
+        if (minShift != that.minShift) return false;
+        if (depth != that.depth) return false;
+        if (!Arrays.equals(aux, that.aux)) return false;
+        if (!Arrays.equals(references, that.references)) return false;
+        return Objects.equals(noCoordinateCount, that.noCoordinateCount);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = minShift;
+        result = 31 * result + depth;
+        result = 31 * result + Arrays.hashCode(aux);
+        result = 31 * result + Arrays.hashCode(references);
+        result = 31 * result + Objects.hashCode(noCoordinateCount);
+        return result;
+    }
+
+    /**
+     * @param beg 0-based start of the region, inclusive
+     * @param end 0-based end of the region, exclusive
+     * @return the smallest bin that contains the region
+     */
+    public static int regionToBin(final long beg, long end, final int minShift, final int depth) {
+        int shift = minShift;
+        int firstBin = ((1 << (3 * depth)) - 1) / 7;
+        --end;
+        for (int level = depth; level > 0; --level, shift += 3, firstBin -= 1 << (3 * level)) {
+            if (beg >> shift == end >> shift) {
+                return firstBin + (int) (beg >> shift);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the first position, 0-based, that cannot be indexed with the given binning scheme
+     */
+    public static long getMaxPosition(final int minShift, final int depth) {
+        return 1L << (minShift + 3 * depth);
+    }
+
+    /**
+     * @return the smallest depth with which a contig of the given length can be indexed, leaving room for a read
+     * to extend off its end as samtools does
+     */
+    public static int getDepthForLength(final long maxLength, final int minShift) {
+        int depth = 0;
+        for (long size = 1L << minShift; maxLength + 256 > size; size <<= 3) {
+            depth++;
+        }
+        return depth;
+    }
+
+    static int getFirstBinInLevel(final int level) {
+        return ((1 << (3 * level)) - 1) / 7;
+    }
+
+    static int getParentBin(final int bin) {
+        return (bin - 1) >> 3;
+    }
+
+    static int getLevelForBin(final int bin) {
+        int level = 0;
+        for (int b = bin; b != 0; b = getParentBin(b)) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @return the bin number holding the reference's meta data, one past the last real bin
+     */
+    static int getMetaDataBinNumber(final int depth) {
+        return ((1 << (3 * depth + 3)) - 1) / 7 + 1;
+    }
+
+    static void checkBinningScheme(final int minShift, final int depth) {
+        // bin numbers must fit in an int, and positions in a long
+        if (minShift <= 0 || depth < 0 || depth > 9 || minShift + 3 * depth > 62) {
+            throw new IllegalArgumentException("Invalid CSI binning scheme: min_shift " + minShift + ", depth " + depth);
+        }
+    }
+
+    /**
+     * The bins of one reference, sorted by bin number, with the offset of each and the meta data pseudo-bin.
+     */
+    static final class ReferenceContent {
+        final Bin[] bins;
+        final int[] binNumbers;
+        final long[] offsets;
+        final List<Chunk> metaData;
+
+        ReferenceContent(final List<Bin> bins, final List<Long> offsets, final List<Chunk> metaData) {
+            final Integer[] order = new Integer[bins.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(bins.get(a).getBinNumber(), bins.get(b).getBinNumber()));
+            this.bins = new Bin[order.length];
+            this.binNumbers = new int[order.length];
+            this.offsets = new long[order.length];
+            for (int i = 0; i < order.length; i++) {
+                this.bins[i] = bins.get(order[i]);
+                this.binNumbers[i] = this.bins[i].getBinNumber();
+                this.offsets[i] = offsets.get(order[i]);
+            }
+            this.metaData = metaData;
+        }
+
+        private int indexOfBinAtOrAfter(final int binNumber) {
+            final int i = Arrays.binarySearch(binNumbers, binNumber);
+            return i >= 0 ? i : -i - 1;
+        }
+
+        /**
+         * Compares the chunks of the bins as well, which {@link Bin#equals} does not.
+         */
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            final ReferenceContent that = (ReferenceContent) o;
+
+            if (!Arrays.equals(binNumbers, that.binNumbers)) return false;
+            if (!Arrays.equals(offsets, that.offsets)) return false;
+            for (int i = 0; i < bins.length; i++) {
+                if (!bins[i].getChunkList().equals(that.bins[i].getChunkList())) return false;
+            }
+            return Objects.equals(metaData, that.metaData);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Arrays.hashCode(binNumbers);
+            result = 31 * result + Arrays.hashCode(offsets);
+            for (final Bin bin : bins) {
+                result = 31 * result + bin.getChunkList().hashCode();
+            }
+            result = 31 * result + Objects.hashCode(metaData);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link CSIIndex} from features added in coordinate order, the CSI counterpart of
+ * {@link BinningIndexBuilder}.  Bins are computed from the feature coordinates with the configured binning scheme,
+ * so {@link BinningIndexBuilder.FeatureToBeIndexed#getIndexingBin()} is ignored.  The meta data pseudo-bin of
+ * each reference, its first and last offsets and counts of mapped and unmapped features, is built as features are
+ * added.
+ */
+public class CSIIndexBuilder {
+    private static final long UNINITIALIZED_WINDOW = -1;
+
+    private final int minShift;
+    private final int depth;
+    private final long maxPosition;
+    private final int numReferences;
+    private final List<CSIIndex.ReferenceContent> references = new ArrayList<>();
+    private byte[] aux = new byte[0];
+    private Long noCoordinateCount = null;
+
+    private int currentReference = -1;
+    private final Map<Integer, Bin> bins = new HashMap<>();
+    // smallest offset of the features overlapping each 2^minShift window of the current reference
+    private long[] windows = new long[1024];
+    private int largestWindowSeen = -1;
+    private long firstOffset = -1;
+    private long lastOffset = 0;
+    private long mappedCount = 0;
+    private long unmappedCount = 0;
+
+    /**
+     * @param minShift      log2 of the size of the smallest bins
+     * @param depth         number of levels of bins below the root bin
+     * @param numReferences number of references in the file being indexed, if known; the index covers at least this
+     *                      many references, more if features are added for later ones
+     */
+    public CSIIndexBuilder(final int minShift, final int depth, final int numReferences) {
+        CSIIndex.checkBinningScheme(minShift, depth);
+        this.minShift = minShift;
+        this.depth = depth;
+        this.maxPosition = CSIIndex.getMaxPosition(minShift, depth);
+        this.numReferences = numReferences;
+    }
+
+    /**
+     * @param aux format-specific data to store in the header of the index, such as the tabix header
+     */
+    public void setAux(final byte[] aux) {
+        this.aux = aux.clone();
+    }
+
+    public void setNoCoordinateRecordCount(final long count) {
+        this.noCoordinateCount = count;
+    }
+
+    public void processFeature(final int referenceIndex, final BinningIndexBuilder.FeatureToBeIndexed feature) {
+        processFeature(referenceIndex, feature, true);
+    }
+
+    /**
+     * Adds a feature to the index.  Features must be added in order of reference, then start.
+     *
+     * @param mapped false for features that are placed on the reference but not aligned, such as unmapped mates
+     */
+    public void processFeature(final int referenceIndex, final BinningIndexBuilder.FeatureToBeIndexed feature, final boolean mapped) {
+        if (referenceIndex != currentReference) {
+            if (referenceIndex < currentReference) {
+                throw new SAMException("Unexpected reference " + referenceIndex + " when constructing index for " + currentReference);
+            }
+            finishReference();
+            currentReference = referenceIndex;
+        }
+        // 0-based, half-open; a feature without an end covers one base
+        final long beg = Math.max(0, feature.getStart() - 1);
+        final long end = Math.max(beg + 1, feature.getEnd());
+        if (end > maxPosition) {
+            throw new SAMException("Position " + end + " is beyond the maximum position " + maxPosition +
+                    " that can be indexed with min_shift " + minShift + " and depth " + depth);
+        }
+
+        final Chunk newChunk = feature.getChunk();
+        final long chunkStart = newChunk.getChunkStart();
+        final long chunkEnd = newChunk.getChunkEnd();
+
+        final int binNumber = CSIIndex.regionToBin(beg, end, minShift, depth);
+        final Bin bin = bins.computeIfAbsent(binNumber, n -> new Bin(currentReference, n));
+        if (!bin.containsChunks()) {
+            bin.addInitialChunk(newChunk);
+        } else if (BlockCompressedFilePointerUtil.areInSameOrAdjacentBlocks(bin.getLastChunk().getChunkEnd(), chunkStart)) {
+            // Coalesce chunks that are in the same or adjacent file blocks, as BinningIndexBuilder does
+            bin.getLastChunk().setChunkEnd(chunkEnd);
+        } else {
+            bin.getChunkList().add(newChunk);
+            bin.setLastChunk(newChunk);
+        }
+
+        final int endWindow = (int) ((end - 1) >> minShift);
+        ensureWindows(endWindow);
+        for (int window = (int) (beg >> minShift); window <= endWindow; window++) {
+            if (windows[window] == UNINITIALIZED_WINDOW || chunkStart < windows[window]) {
+                windows[window] = chunkStart;
+            }
+        }
+
+        if (firstOffset == -1 || chunkStart < firstOffset) {
+            firstOffset = chunkStart;
+        }
+        if (chunkEnd > lastOffset) {
+            lastOffset = chunkEnd;
+        }
+        if (mapped) {
+            mappedCount++;
+        } else {
+            unmappedCount++;
+        }
+    }
+
+    private void ensureWindows(final int window) {
+        if (window >= windows.length) {
+            final int oldLength = windows.length;
+            windows = Arrays.copyOf(windows, Math.max(window + 1, oldLength * 2));
+            Arrays.fill(windows, oldLength, windows.length, UNINITIALIZED_WINDOW);
+        }
+        if (largestWindowSeen == -1) {
+            Arrays.fill(windows, UNINITIALIZED_WINDOW);
+        }
+        largestWindowSeen = Math.max(largestWindowSeen, window);
+    }
+
+    /**
+     * Sets the offset of each bin of the current reference to that of the first window it covers, filling empty
+     * windows from the left as htslib does.
+     */
+    private void finishReference() {
+        if (currentReference == -1 || bins.isEmpty()) {
+            return;
+        }
+        long previous = firstOffset;
+        for (int i = 0; i <= largestWindowSeen; i++) {
+            if (windows[i] == UNINITIALIZED_WINDOW) {
+                windows[i] = previous;
+            } else {
+                previous = windows[i];
+            }
+        }
+        final List<Bin> binList = new ArrayList<>(bins.values());
+        final List<Long> offsets = new ArrayList<>(binList.size());
+        for (final Bin bin : binList) {
+            final int level = CSIIndex.getLevelForBin(bin.getBinNumber());
+            final long firstWindow = (long) (bin.getBinNumber() - CSIIndex.getFirstBinInLevel(level)) << (3 * (depth - level));
+            offsets.add(firstWindow <= largestWindowSeen ? windows[(int) firstWindow] : 0);
+        }
+        final List<Chunk> metaData = Arrays.asList(new Chunk(firstOffset, lastOffset), new Chunk(mappedCount, unmappedCount));
+        while (references.size() < currentReference) {
+            references.add(null);
+        }
+        references.add(new CSIIndex.ReferenceContent(binList, offsets, metaData));
+
+        bins.clear();
+        largestWindowSeen = -1;
+        firstOffset = -1;
+        lastOffset = 0;
+        mappedCount = 0;
+        unmappedCount = 0;
+    }
+
+    /**
+     * Creates the index.  Requires that all features have been processed.
+     */
+    public CSIIndex generateIndex() {
+        finishReference();
+        currentReference = Integer.MAX_VALUE;
+        final CSIIndex.ReferenceContent[] contents = new CSIIndex.ReferenceContent[Math.max(numReferences, references.size())];
+        return new CSIIndex(minShift, depth, aux, references.toArray(contents), noCoordinateCount);
+    }
+}
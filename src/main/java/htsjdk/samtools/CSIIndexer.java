@@ -0,0 +1,245 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Constructs a CSI index for a BAM file and writes it out, in the same two usage patterns as {@link BAMIndexer}:
+ * building an index for an existing BAM file, or building it while the BAM file is written.  In both cases
+ * processAlignment is called for each alignment record and finish() is called at the end.
+ */
+public class CSIIndexer {
+
+    private final OutputStream output;
+
+    private final CSIIndexBuilder indexBuilder;
+
+    private long noCoordinateRecords = 0;
+
+    private static final Log log = Log.getInstance(CSIIndexer.class);
+
+    /**
+     * Prepare to index a BAM with the default min_shift and a depth large enough for the longest reference.
+     *
+     * @param output     CSI index (.csi) file
+     * @param fileHeader header for the corresponding bam file
+     */
+    public CSIIndexer(final Path output, final SAMFileHeader fileHeader) {
+        this(output, fileHeader, CSIIndex.DEFAULT_MIN_SHIFT, getDepth(fileHeader, CSIIndex.DEFAULT_MIN_SHIFT));
+    }
+
+    /**
+     * @param output     CSI index (.csi) file
+     * @param fileHeader header for the corresponding bam file
+     * @param minShift   log2 of the size of the smallest bins
+     * @param depth      number of levels of bins below the root bin
+     */
+    public CSIIndexer(final Path output, final SAMFileHeader fileHeader, final int minShift, final int depth) {
+        this(openOutput(output), fileHeader, minShift, depth);
+    }
+
+    /**
+     * Prepare to index a BAM.
+     *
+     * @param output     Index will be written here, BGZF compressed.  output will be closed when finish() method is called.
+     * @param fileHeader header for the corresponding bam file.
+     * @param minShift   log2 of the size of the smallest bins
+     * @param depth      number of levels of bins below the root bin
+     */
+    public CSIIndexer(final OutputStream output, final SAMFileHeader fileHeader, final int minShift, final int depth) {
+        if (fileHeader.getSortOrder() != SAMFileHeader.SortOrder.coordinate) {
+            if (fileHeader.getSortOrder() == SAMFileHeader.SortOrder.unsorted) {
+                log.warn("For indexing, the BAM file is required to be coordinate sorted. Attempting to index \"unsorted\" BAM file.");
+            }
+            else {
+                throw new SAMException("Indexing requires a coordinate-sorted input BAM.");
+            }
+        }
+        final long maxPosition = CSIIndex.getMaxPosition(minShift, depth);
+        for (final SAMSequenceRecord sequence : fileHeader.getSequenceDictionary().getSequences()) {
+            if (sequence.getSequenceLength() > maxPosition) {
+                throw new SAMException("Reference " + sequence.getSequenceName() + " is too long to be indexed with min_shift " +
+                        minShift + " and depth " + depth);
+            }
+        }
+        this.output = new BlockCompressedOutputStream(output, (Path) null);
+        indexBuilder = new CSIIndexBuilder(minShift, depth, fileHeader.getSequenceDictionary().size());
+    }
+
+    /**
+     * @return the smallest depth that can index every reference in the header with the given min_shift
+     */
+    public static int getDepth(final SAMFileHeader fileHeader, final int minShift) {
+        long maxLength = 0;
+        for (final SAMSequenceRecord sequence : fileHeader.getSequenceDictionary().getSequences()) {
+            maxLength = Math.max(maxLength, sequence.getSequenceLength());
+        }
+        return CSIIndex.getDepthForLength(maxLength, minShift);
+    }
+
+    private static OutputStream openOutput(final Path output) {
+        try {
+            return Files.newOutputStream(output);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error opening " + output.toUri(), e);
+        }
+    }
+
+    /**
+     * Record any index information for a given BAM record.
+     * Requires a non-null value for rec.getFileSource().
+     *
+     * @param rec The BAM record
+     */
+    public void processAlignment(final SAMRecord rec) {
+        try {
+            if (rec.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START) {
+                noCoordinateRecords++;
+                return;
+            }
+            indexBuilder.processFeature(rec.getReferenceIndex(), new BinningIndexBuilder.FeatureToBeIndexed() {
+                @Override
+                public int getStart() {
+                    return rec.getAlignmentStart();
+                }
+
+                @Override
+                public int getEnd() {
+                    return rec.getAlignmentEnd();
+                }
+
+                @Override
+                public Integer getIndexingBin() {
+                    return null;
+                }
+
+                @Override
+                public Chunk getChunk() {
+                    final SAMFileSource source = rec.getFileSource();
+                    if (source == null) {
+                        throw new SAMException("No source (virtual file offsets); needed for indexing on BAM Record " + rec);
+                    }
+                    return ((BAMFileSpan) source.getFilePointer()).getSingleChunk();
+                }
+            }, !rec.getReadUnmappedFlag());
+        } catch (final Exception e) {
+            throw new SAMException("Exception creating CSI index for record " + rec, e);
+        }
+    }
+
+    /**
+     * Record index information for an alignment record given its fields, so that the record need not be kept.
+     *
+     * @param reference      reference index of the record
+     * @param alignmentStart 1-based alignment start, or {@link SAMRecord#NO_ALIGNMENT_START}
+     * @param alignmentEnd   1-based inclusive alignment end
+     * @param unmapped       whether the read unmapped flag is set
+     * @param chunkStart     virtual file offset of the start of the record
+     * @param chunkEnd       virtual file offset of the end of the record
+     */
+    void processAlignment(final int reference, final int alignmentStart, final int alignmentEnd,
+                          final boolean unmapped, final long chunkStart, final long chunkEnd) {
+        try {
+            if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+                noCoordinateRecords++;
+                return;
+            }
+            final Chunk chunk = new Chunk(chunkStart, chunkEnd);
+            indexBuilder.processFeature(reference, new BinningIndexBuilder.FeatureToBeIndexed() {
+                @Override
+                public int getStart() {
+                    return alignmentStart;
+                }
+
+                @Override
+                public int getEnd() {
+                    return alignmentEnd;
+                }
+
+                @Override
+                public Integer getIndexingBin() {
+                    return null;
+                }
+
+                @Override
+                public Chunk getChunk() {
+                    return chunk;
+                }
+            }, !unmapped);
+        } catch (final Exception e) {
+            throw new SAMException("Exception creating CSI index for record at " +
+                    BlockCompressedFilePointerUtil.asString(chunkStart), e);
+        }
+    }
+
+    /**
+     * After all the alignment records have been processed, finish is called.
+     * Writes the index and closes the output.
+     */
+    public void finish() {
+        indexBuilder.setNoCoordinateRecordCount(noCoordinateRecords);
+        try {
+            indexBuilder.generateIndex().write(output);
+            output.close();
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Exception writing CSI index", e);
+        }
+    }
+
+    /**
+     * Generates a CSI index file from an input BAM file, with the default min_shift and a depth large enough for
+     * the longest reference.
+     *
+     * @param reader SamReader for input BAM file
+     * @param output Path for output index file
+     */
+    public static void createIndex(final SamReader reader, final Path output) {
+        createIndex(reader, output, CSIIndex.DEFAULT_MIN_SHIFT, getDepth(reader.getFileHeader(), CSIIndex.DEFAULT_MIN_SHIFT));
+    }
+
+    /**
+     * Generates a CSI index file from an input BAM file
+     *
+     * @param reader   SamReader for input BAM file
+     * @param output   Path for output index file
+     * @param minShift log2 of the size of the smallest bins
+     * @param depth    number of levels of bins below the root bin
+     */
+    public static void createIndex(final SamReader reader, final Path output, final int minShift, final int depth) {
+        final CSIIndexer indexer = new CSIIndexer(output, reader.getFileHeader(), minShift, depth);
+        for (final SAMRecord rec : reader) {
+            indexer.processAlignment(rec);
+        }
+        indexer.finish();
+    }
+}
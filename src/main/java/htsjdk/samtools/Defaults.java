@@ -97,6 +97,20 @@ public class Defaults {
      */
     public static final boolean DISABLE_SNAPPY_COMPRESSOR;
 
+    /**
+     * Should regular local files be read through memory mapped streams rather than file channels, avoiding a read
+     * call and a buffer copy for each block?  Mappings are released when the stream is garbage collected, which on
+     * Windows prevents the file from being deleted until then, and a mapped file keeps the length it had when it was
+     * opened, so files that are still being written should not be read this way.  Default = false.
+     */
+    public static final boolean USE_MEMORY_MAPPED_FILES;
+
+    /**
+     * Memory in bytes available to the process-wide cache of inflated BGZF blocks used by indexed BAM and tabix
+     * queries, see {@link htsjdk.samtools.util.InflatedBlockCache}.  Default = 0, which disables the cache.
+     */
+    public static final long BGZF_BLOCK_CACHE_SIZE;
+
     static {
         CREATE_INDEX = getBooleanProperty("create_index", false);
         CREATE_MD5 = getBooleanProperty("create_md5", false);
@@ -117,6 +131,8 @@ public class Defaults {
         SAM_FLAG_FIELD_FORMAT = SamFlagField.valueOf(getStringProperty("sam_flag_field_format", SamFlagField.DECIMAL.name()));
         SRA_LIBRARIES_DOWNLOAD = getBooleanProperty("sra_libraries_download", false);
         DISABLE_SNAPPY_COMPRESSOR = getBooleanProperty(DISABLE_SNAPPY_PROPERTY_NAME, false);
+        USE_MEMORY_MAPPED_FILES = getBooleanProperty("use_memory_mapped_files", false);
+        BGZF_BLOCK_CACHE_SIZE = getLongProperty("bgzf_block_cache_size", 0);
     }
 
     /**
@@ -140,6 +156,8 @@ public class Defaults {
         result.put("CUSTOM_READER_FACTORY", CUSTOM_READER_FACTORY);
         result.put("SAM_FLAG_FIELD_FORMAT", SAM_FLAG_FIELD_FORMAT);
         result.put("DISABLE_SNAPPY_COMPRESSOR", DISABLE_SNAPPY_COMPRESSOR);
+        result.put("USE_MEMORY_MAPPED_FILES", USE_MEMORY_MAPPED_FILES);
+        result.put("BGZF_BLOCK_CACHE_SIZE", BGZF_BLOCK_CACHE_SIZE);
         return Collections.unmodifiableSortedMap(result);
     }
 
@@ -179,6 +197,12 @@ public class Defaults {
         return Integer.parseInt(value);
     }
 
+    /** Gets a long system property, prefixed with "samjdk." using the default if the property does not exist. */
+    private static long getLongProperty(final String name, final long def) {
+        final String value = getStringProperty(name, Long.toString(def));
+        return Long.parseLong(value);
+    }
+
     /** Gets a File system property, prefixed with "samjdk." using the default if the property does not exist. */
     private static File getFileProperty(final String name, final String def) {
         final String value = getStringProperty(name, def);
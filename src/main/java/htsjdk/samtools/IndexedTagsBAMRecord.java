@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+/**
+ * A {@link BAMRecord} that reads its tags from their binary representation through a {@link BinaryTagIndex}, rather
+ * than decoding them all into a list of boxed values on first access.  Looking up a tag is a binary search over the
+ * tag keys followed by decoding just that value, {@link #getIntegerAttribute(short, int)} returns integer values
+ * without boxing them, and {@link BAMRecordCodec} writes unmodified tags back out as they were read, even if other
+ * fields of the record have changed.
+ *
+ * Once the tags are changed, or all of them are requested with {@link #getBinaryAttributes()}, the record behaves
+ * as a plain BAMRecord.  Records with a CG tag, which holds the CIGAR of reads with too many CIGAR operators for the
+ * BAM format, or with duplicated tags are always handled as plain BAMRecords.
+ *
+ * @see IndexedTagsSAMRecordFactory
+ */
+public class IndexedTagsBAMRecord extends BAMRecord {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] variableLengthBlock;
+    private final int tagsOffset;
+    private BinaryTagIndex tagIndex = null;
+    private boolean useTagIndex;
+
+    protected IndexedTagsBAMRecord(final SAMFileHeader header,
+                                   final int referenceID,
+                                   final int coordinate,
+                                   final short readNameLength,
+                                   final short mappingQuality,
+                                   final int indexingBin,
+                                   final int cigarLen,
+                                   final int flags,
+                                   final int readLen,
+                                   final int mateReferenceID,
+                                   final int mateCoordinate,
+                                   final int insertSize,
+                                   final byte[] restOfData) {
+        super(header, referenceID, coordinate, readNameLength, mappingQuality, indexingBin, cigarLen, flags, readLen,
+                mateReferenceID, mateCoordinate, insertSize, restOfData);
+        this.variableLengthBlock = restOfData;
+        this.tagsOffset = readNameLength + cigarLen * CIGAR_SIZE_MULTIPLIER + (readLen + 1) / 2 + readLen;
+        this.useTagIndex = restOfData != null && tagsOffset <= restOfData.length;
+    }
+
+    /**
+     * @return the index of the binary tags, or null if the tags have been decoded or cannot be read through an index
+     */
+    private BinaryTagIndex getTagIndex() {
+        if (!useTagIndex) {
+            return null;
+        }
+        if (tagIndex == null) {
+            final BinaryTagIndex index = new BinaryTagIndex(variableLengthBlock, tagsOffset, variableLengthBlock.length - tagsOffset);
+            if (index.hasDuplicateTags() || index.find(SAMTagUtil.getSingleton().CG) != -1) {
+                useTagIndex = false;
+                return null;
+            }
+            tagIndex = index;
+        }
+        return tagIndex;
+    }
+
+    @Override
+    BinaryTagIndex getBinaryTagIndex() {
+        return getTagIndex();
+    }
+
+    @Override
+    public Object getAttribute(final short tag) {
+        final BinaryTagIndex index = getTagIndex();
+        if (index == null) {
+            return super.getAttribute(tag);
+        }
+        final int i = index.find(tag);
+        return i == -1 ? null : index.getValue(i, getValidationStringency());
+    }
+
+    @Override
+    public int getIntegerAttribute(final short tag, final int defaultValue) {
+        final BinaryTagIndex index = getTagIndex();
+        if (index == null) {
+            return super.getIntegerAttribute(tag, defaultValue);
+        }
+        final int i = index.find(tag);
+        if (i == -1) {
+            return defaultValue;
+        }
+        if (index.hasIntValue(i)) {
+            return index.getIntValue(i);
+        }
+        // let the superclass coerce the value, or report why it cannot
+        return super.getIntegerAttribute(tag, defaultValue);
+    }
+
+    @Override
+    public boolean hasAttribute(final String tag) {
+        final BinaryTagIndex index = getTagIndex();
+        if (index == null) {
+            return super.hasAttribute(tag);
+        }
+        return index.find(SAMTagUtil.getSingleton().makeBinaryTag(tag)) != -1;
+    }
+
+    @Override
+    public boolean isUnsignedArrayAttribute(final String tag) {
+        final BinaryTagIndex index = getTagIndex();
+        if (index == null) {
+            return super.isUnsignedArrayAttribute(tag);
+        }
+        final int i = index.find(SAMTagUtil.getSingleton().makeBinaryTag(tag));
+        if (i == -1) {
+            throw new SAMException("Tag " + tag + " is not present in this SAMRecord");
+        }
+        return index.isUnsignedArray(i);
+    }
+
+    @Override
+    public int getAttributesBinarySize() {
+        final BinaryTagIndex index = getTagIndex();
+        return index == null ? super.getAttributesBinarySize() : index.getLength();
+    }
+
+    @Override
+    protected SAMBinaryTagAndValue getBinaryAttributes() {
+        useTagIndex = false;
+        return super.getBinaryAttributes();
+    }
+
+    @Override
+    protected void setAttribute(final short tag, final Object value, final boolean isUnsignedArray) {
+        useTagIndex = false;
+        super.setAttribute(tag, value, isUnsignedArray);
+    }
+
+    @Override
+    public void clearAttributes() {
+        useTagIndex = false;
+        super.clearAttributes();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+/**
+ * Factory for records whose tags are read from their binary representation through an index of the tag keys,
+ * rather than decoded into a list of boxed values, for reading BAM files with many tags of which only a few are
+ * accessed.  SAM records are created as by {@link DefaultSAMRecordFactory}.
+ *
+ * @see IndexedTagsBAMRecord
+ */
+public class IndexedTagsSAMRecordFactory extends DefaultSAMRecordFactory {
+
+    private static final IndexedTagsSAMRecordFactory INSTANCE = new IndexedTagsSAMRecordFactory();
+
+    public static IndexedTagsSAMRecordFactory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create a new BAM Record that reads its tags through an index.  If the reference sequence index or mate
+     * reference sequence index are any value other than NO_ALIGNMENT_REFERENCE_INDEX, the values must be resolvable
+     * against the sequence dictionary in the header argument.
+     */
+    @Override
+    public BAMRecord createBAMRecord(final SAMFileHeader header,
+                                     final int referenceSequenceIndex,
+                                     final int alignmentStart,
+                                     final short readNameLength,
+                                     final short mappingQuality,
+                                     final int indexingBin,
+                                     final int cigarLen,
+                                     final int flags,
+                                     final int readLen,
+                                     final int mateReferenceSequenceIndex,
+                                     final int mateAlignmentStart,
+                                     final int insertSize,
+                                     final byte[] variableLengthBlock) {
+
+        return new IndexedTagsBAMRecord(header,
+                                        referenceSequenceIndex,
+                                        alignmentStart,
+                                        readNameLength,
+                                        mappingQuality,
+                                        indexingBin,
+                                        cigarLen,
+                                        flags,
+                                        readLen,
+                                        mateReferenceSequenceIndex,
+                                        mateAlignmentStart,
+                                        insertSize,
+                                        variableLengthBlock);
+    }
+}
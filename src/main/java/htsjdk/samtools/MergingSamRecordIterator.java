@@ -72,11 +72,20 @@ public class MergingSamRecordIterator implements CloseableIterator<SAMRecord> {
 
         this.pq = new PriorityQueue<ComparableSamRecordIterator>(readers.size());
 
+        checkReaders(headerMerger, readers, assumeSorted);
+    }
+
+    /**
+     * Checks that the readers are accounted for in the header merger and, unless assumeSorted is true, that they
+     * have the sort order of the merged header.
+     */
+    static void checkReaders(final SamFileHeaderMerger headerMerger, final Collection<SamReader> readers, final boolean assumeSorted) {
+        final SAMFileHeader.SortOrder sortOrder = headerMerger.getMergedHeader().getSortOrder();
         for (final SamReader reader : readers) {
-            if (!samHeaderMerger.getHeaders().contains(reader.getFileHeader()))
+            if (!headerMerger.getHeaders().contains(reader.getFileHeader()))
                 throw new SAMException("All iterators to be merged must be accounted for in the SAM header merger");
-            if (!assumeSorted && this.sortOrder != SAMFileHeader.SortOrder.unsorted &&
-                    reader.getFileHeader().getSortOrder() != this.sortOrder) {
+            if (!assumeSorted && sortOrder != SAMFileHeader.SortOrder.unsorted &&
+                    reader.getFileHeader().getSortOrder() != sortOrder) {
                 throw new SAMException("Files are not compatible with sort order");
             }
         }
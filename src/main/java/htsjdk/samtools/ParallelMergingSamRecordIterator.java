@@ -0,0 +1,294 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.ParallelDecodingIterator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Merges the records of many sorted inputs, like {@link MergingSamRecordIterator}, but reads each input ahead of
+ * the merge on its own background thread, so that the inputs are inflated and decoded in parallel.  The records of
+ * each input are prepared for the merged output on a shared pool of worker threads: their header is set to the
+ * merged header, which resolves their reference indices against the merged sequence dictionary, and read group
+ * and program group IDs are translated as computed by the {@link SamFileHeaderMerger}.  Each input buffers a
+ * bounded number of records, and the next record is chosen from the heads of the inputs with a loser tree, which
+ * needs a single comparison per level of the tree.
+ *
+ * Records from the same input that compare equal are returned in input order, and ties between inputs are broken
+ * in favour of the input that comes first.
+ *
+ * Note that this implementation is not synchronized. If multiple threads
+ * access an instance concurrently, it must be synchronized externally.
+ */
+public class ParallelMergingSamRecordIterator implements CloseableIterator<SAMRecord> {
+    /**
+     * Number of records of an input prepared by each task of the workers
+     */
+    static final int BATCH_SIZE = 100;
+    /**
+     * Number of batches of each input that are read ahead of the merge
+     */
+    static final int BATCHES_IN_FLIGHT = 4;
+
+    private final SamFileHeaderMerger samHeaderMerger;
+    private final Map<SamReader, CloseableIterator<SAMRecord>> underlyingIterators;
+    private final Comparator<SAMRecord> comparator;
+    private final int threads;
+
+    private ExecutorService workers = null;
+    private List<CloseableIterator<SAMRecord>> inputs = null;
+    /**
+     * The next record of each input, or null once the input is exhausted
+     */
+    private SAMRecord[] heads;
+    /**
+     * tree[0] is the input whose head is the next record, tree[1..k-1] are the losers of the comparisons at the
+     * internal nodes of the tree, whose leaves k..2k-1 are the inputs.
+     */
+    private int[] tree;
+    private boolean closed = false;
+
+    /**
+     * Merges all the records of the readers.
+     *
+     * @param headerMerger The merged header and contents of readers.
+     * @param readers      Readers whose records are merged.
+     * @param assumeSorted false ensures that the iterator checks the headers of the readers for appropriate sort order.
+     * @param threads      Number of worker threads that prepare records for the merged output, in addition to the
+     *                     background thread of each input.
+     */
+    public ParallelMergingSamRecordIterator(final SamFileHeaderMerger headerMerger, final Collection<SamReader> readers,
+                                            final boolean assumeSorted, final int threads) {
+        this(headerMerger, toIteratorMap(readers), assumeSorted, threads);
+    }
+
+    /**
+     * Merges the records of a set of iterators over the readers.  Use this to restrict the merged iteration to a
+     * given genomic interval, rather than iterating over every read in the backing files.
+     *
+     * @param headerMerger The merged header and contents of readers.
+     * @param iterators    Iterator traversing over reader contents, or null to iterate over all of the reader.
+     * @param assumeSorted false ensures that the iterator checks the headers of the readers for appropriate sort order.
+     * @param threads      Number of worker threads that prepare records for the merged output, in addition to the
+     *                     background thread of each input.
+     */
+    public ParallelMergingSamRecordIterator(final SamFileHeaderMerger headerMerger, final Map<SamReader, CloseableIterator<SAMRecord>> iterators,
+                                            final boolean assumeSorted, final int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("Must use at least one worker thread.");
+        MergingSamRecordIterator.checkReaders(headerMerger, iterators.keySet(), assumeSorted);
+        this.samHeaderMerger = headerMerger;
+        this.underlyingIterators = new LinkedHashMap<>(iterators);
+        this.threads = threads;
+        final SAMFileHeader.SortOrder sortOrder = headerMerger.getMergedHeader().getSortOrder();
+        // records have been moved to the merged header, and so to the merged sequence dictionary, when compared
+        this.comparator = sortOrder == SAMFileHeader.SortOrder.unsorted ? (lhs, rhs) -> 0 : sortOrder.getComparatorInstance();
+    }
+
+    private static Map<SamReader, CloseableIterator<SAMRecord>> toIteratorMap(final Collection<SamReader> readers) {
+        final Map<SamReader, CloseableIterator<SAMRecord>> iterators = new LinkedHashMap<>();
+        for (final SamReader reader : readers) {
+            iterators.put(reader, null);
+        }
+        return iterators;
+    }
+
+    private void startIterationIfRequired() {
+        if (closed) {
+            throw new IllegalStateException("iterator has been closed");
+        }
+        if (inputs != null) {
+            return;
+        }
+        workers = ParallelDecodingIterator.newWorkerPool(threads);
+        inputs = new ArrayList<>(underlyingIterators.size());
+        for (final Map.Entry<SamReader, CloseableIterator<SAMRecord>> entry : underlyingIterators.entrySet()) {
+            final SAMFileHeader header = entry.getKey().getFileHeader();
+            final CloseableIterator<SAMRecord> iterator = entry.getValue() != null ? entry.getValue() : entry.getKey().iterator();
+            inputs.add(new ParallelDecodingIterator<>(iterator, record -> prepareRecord(header, record),
+                    workers, BATCH_SIZE, BATCHES_IN_FLIGHT));
+        }
+        final int k = inputs.size();
+        heads = new SAMRecord[k];
+        for (int i = 0; i < k; i++) {
+            advance(i);
+        }
+        tree = new int[Math.max(k, 1)];
+        if (k > 1) {
+            tree[0] = buildTree(1);
+        }
+    }
+
+    /**
+     * Moves the record to the merged header and translates its read group and program group, on a worker thread.
+     */
+    private SAMRecord prepareRecord(final SAMFileHeader header, final SAMRecord record) {
+        // this will resolve the reference indices against the new, merged header
+        record.setHeader(samHeaderMerger.getMergedHeader());
+
+        // Fix the read group if needs be
+        if (samHeaderMerger.hasReadGroupCollisions()) {
+            final String oldGroupId = (String) record.getAttribute(ReservedTagConstants.READ_GROUP_ID);
+            if (oldGroupId != null) {
+                record.setAttribute(ReservedTagConstants.READ_GROUP_ID, samHeaderMerger.getReadGroupId(header, oldGroupId));
+            }
+        }
+
+        // Fix the program group if needs be
+        if (samHeaderMerger.hasProgramGroupCollisions()) {
+            final String oldGroupId = (String) record.getAttribute(ReservedTagConstants.PROGRAM_GROUP_ID);
+            if (oldGroupId != null) {
+                record.setAttribute(ReservedTagConstants.PROGRAM_GROUP_ID, samHeaderMerger.getProgramGroupId(header, oldGroupId));
+            }
+        }
+
+        // decode the read name here rather than when comparing records on the merging thread
+        record.getReadName();
+        return record;
+    }
+
+    /**
+     * Computes the losers of the subtree rooted at the given internal node.
+     *
+     * @return the input that wins the subtree
+     */
+    private int buildTree(final int node) {
+        final int k = inputs.size();
+        final int left = 2 * node < k ? buildTree(2 * node) : 2 * node - k;
+        final int right = 2 * node + 1 < k ? buildTree(2 * node + 1) : 2 * node + 1 - k;
+        if (isBefore(right, left)) {
+            tree[node] = left;
+            return right;
+        } else {
+            tree[node] = right;
+            return left;
+        }
+    }
+
+    /**
+     * Replays the comparisons on the path from the leaf of the given input, whose head has changed, to the root.
+     */
+    private void replay(final int input) {
+        int winner = input;
+        for (int node = (input + inputs.size()) / 2; node > 0; node /= 2) {
+            if (isBefore(tree[node], winner)) {
+                final int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    /**
+     * @return true if the head of input a comes before the head of input b.  Exhausted inputs come last.
+     */
+    private boolean isBefore(final int a, final int b) {
+        if (heads[a] == null) {
+            return false;
+        }
+        if (heads[b] == null) {
+            return true;
+        }
+        final int cmp = comparator.compare(heads[a], heads[b]);
+        return cmp < 0 || (cmp == 0 && a < b);
+    }
+
+    private void advance(final int input) {
+        final CloseableIterator<SAMRecord> iterator = inputs.get(input);
+        if (iterator.hasNext()) {
+            heads[input] = iterator.next();
+        } else {
+            heads[input] = null;
+            iterator.close();
+        }
+    }
+
+    /** Returns true if any of the underlying iterators has more records, otherwise false. */
+    @Override
+    public boolean hasNext() {
+        startIterationIfRequired();
+        return heads.length > 0 && heads[tree[0]] != null;
+    }
+
+    /** Returns the next record from the top most iterator during merging. */
+    @Override
+    public SAMRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("next");
+        }
+        final int input = tree[0];
+        final SAMRecord record = heads[input];
+        advance(input);
+        replay(input);
+        return record;
+    }
+
+    /**
+     * Stops the background threads and closes the underlying iterators.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (inputs != null) {
+                for (final CloseableIterator<SAMRecord> input : inputs) {
+                    input.close();
+                }
+            } else {
+                for (final CloseableIterator<SAMRecord> iterator : underlyingIterators.values()) {
+                    if (iterator != null) {
+                        iterator.close();
+                    }
+                }
+            }
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+        }
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("ParallelMergingSamRecordIterator.remove()");
+    }
+
+    /** Returns the merged header that the merging iterator is working from. */
+    public SAMFileHeader getMergedHeader() {
+        return this.samHeaderMerger.getMergedHeader();
+    }
+}
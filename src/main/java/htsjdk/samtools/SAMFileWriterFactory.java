@@ -28,6 +28,7 @@ import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.Md5CalculatingOutputStream;
+import htsjdk.samtools.util.ParallelBlockCompressedOutputStream;
 import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.samtools.util.zip.DeflaterFactory;
 
@@ -45,6 +46,7 @@ public class SAMFileWriterFactory implements Cloneable {
     private final static Log log = Log.getInstance(SAMFileWriterFactory.class);
     private static boolean defaultCreateIndexWhileWriting = Defaults.CREATE_INDEX;
     private boolean createIndex = defaultCreateIndexWhileWriting;
+    private boolean createCsiIndex = false;
     private static boolean defaultCreateMd5File = Defaults.CREATE_MD5;
     private boolean createMd5File = defaultCreateMd5File;
     private boolean useAsyncIo = Defaults.USE_ASYNC_IO_WRITE_FOR_SAMTOOLS;
@@ -55,7 +57,9 @@ public class SAMFileWriterFactory implements Cloneable {
     private int compressionLevel = BlockCompressedOutputStream.getDefaultCompressionLevel();
     private SamFlagField samFlagFieldOutput = SamFlagField.NONE;
     private Integer maxRecordsInRam = null;
+    private Long maxBytesInRam = null;
     private DeflaterFactory deflaterFactory = BlockCompressedOutputStream.getDefaultDeflaterFactory();
+    private int compressionThreads = 0;
 
     /** simple constructor */
     public SAMFileWriterFactory() {
@@ -65,6 +69,7 @@ public class SAMFileWriterFactory implements Cloneable {
     public SAMFileWriterFactory( final SAMFileWriterFactory other) {
         if( other == null ) throw new IllegalArgumentException("SAMFileWriterFactory(null)");
         this.createIndex = other.createIndex;
+        this.createCsiIndex = other.createCsiIndex;
         this.createMd5File = other.createMd5File;
         this.useAsyncIo = other.useAsyncIo;
         this.asyncOutputBufferSize = other.asyncOutputBufferSize;
@@ -72,6 +77,8 @@ public class SAMFileWriterFactory implements Cloneable {
         this.tmpDir = other.tmpDir;
         this.compressionLevel = other.compressionLevel;
         this.maxRecordsInRam = other.maxRecordsInRam;
+        this.maxBytesInRam = other.maxBytesInRam;
+        this.compressionThreads = other.compressionThreads;
     }
     
     @Override
@@ -123,6 +130,25 @@ public class SAMFileWriterFactory implements Cloneable {
     public int getCompressionLevel() {
         return compressionLevel;
     }
+
+    /**
+     * Sets the number of threads used by each BAM or block-compressed SAM writer created by this factory to compress
+     * BGZF blocks, and by each CRAM writer to build and compress containers.
+     * If 0 (the default), blocks are compressed on the thread writing the records.
+     * @see ParallelBlockCompressedOutputStream
+     * @see CRAMFileWriter#setEncodingThreads(int)
+     */
+    public SAMFileWriterFactory setCompressionThreads(final int compressionThreads) {
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
     
     /**
      * Sets the default for subsequent SAMFileWriterFactories
@@ -158,6 +184,19 @@ public class SAMFileWriterFactory implements Cloneable {
         return this;
     }
 
+    /**
+     * Sets whether the index created for a BAM file is a CSI index, foo.bam.csi, rather than a BAM index, foo.bai.
+     * CSI indices can index references longer than 2^29 bases.  Has no effect unless an index is created, see
+     * {@link #setCreateIndex(boolean)}, and no effect on CRAM files.
+     *
+     * @param setting whether to create a CSI index rather than a BAM index
+     * @return this factory object
+     */
+    public SAMFileWriterFactory setCreateCsiIndex(final boolean setting) {
+        this.createCsiIndex = setting;
+        return this;
+    }
+
     /**
      * Before creating a writer that is not presorted, this method may be called in order to override
      * the default number of SAMRecords stored in RAM before spilling to disk
@@ -182,6 +221,29 @@ public class SAMFileWriterFactory implements Cloneable {
         return maxRecordsInRam;
     }
 
+    /**
+     * When writing coordinate sorted SAM or BAM files that are not presorted, holds the records in RAM
+     * in serialized form and limits the RAM they use to the given number of bytes rather than limiting
+     * the number of records.  Sorting then compares packed reference index and position keys, and
+     * writes temporary files in the background while more records are added.  Other sort orders
+     * are not affected.
+     *
+     * @param maxBytesInRam Number of bytes of records to hold in RAM before spilling to temporary files.
+     */
+    public SAMFileWriterFactory setMaxBytesInRam(final long maxBytesInRam) {
+        this.maxBytesInRam = maxBytesInRam;
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of bytes of records held in RAM during coordinate sorting, or null if
+     * the number of records is limited instead.
+     * @see #setMaxBytesInRam(long)
+     */
+    public Long getMaxBytesInRam() {
+        return maxBytesInRam;
+    }
+
     /**
      * Turn on or off the use of asynchronous IO for writing output SAM and BAM files.  If true then
      * each SAMFileWriter creates a dedicated thread which is used for compression and IO activities.
@@ -289,7 +351,7 @@ public class SAMFileWriterFactory implements Cloneable {
             }
             OutputStream os = IOUtil.maybeBufferOutputStream(Files.newOutputStream(outputPath), bufferSize);
             if (createMd5File) os = new Md5CalculatingOutputStream(os, IOUtil.addExtension(outputPath,".md5"));
-            final BAMFileWriter ret = new BAMFileWriter(os, outputPath.toUri().toString(), compressionLevel, deflaterFactory);
+            final BAMFileWriter ret = new BAMFileWriter(os, outputPath.toUri().toString(), compressionLevel, deflaterFactory, compressionThreads);
             final boolean createIndex = this.createIndex && IOUtil.isRegularPath(outputPath);
             if (this.createIndex && !createIndex) {
                 log.warn("Cannot create index for BAM because output file is not a regular file: " + outputPath.toUri());
@@ -308,10 +370,17 @@ public class SAMFileWriterFactory implements Cloneable {
         if (maxRecordsInRam != null) {
             writer.setMaxRecordsInRam(maxRecordsInRam);
         }
+        if (maxBytesInRam != null) {
+            writer.setMaxBytesInRam(maxBytesInRam);
+        }
         if (this.tmpDir != null) writer.setTempDirectory(this.tmpDir);
         writer.setHeader(header);
         if (createIndex && writer.getSortOrder().equals(SAMFileHeader.SortOrder.coordinate)) {
-            writer.enableBamIndexConstruction();
+            if (createCsiIndex) {
+                writer.enableCsiIndexConstruction();
+            } else {
+                writer.enableBamIndexConstruction();
+            }
         }
     }
 
@@ -327,7 +396,8 @@ public class SAMFileWriterFactory implements Cloneable {
     }
 
     /**
-     * Create a SAMTextWriter that is ready to receive SAMRecords.
+     * Create a SAMTextWriter that is ready to receive SAMRecords.  If the output has a block-compressed extension,
+     * such as .sam.gz, the text is BGZF compressed with the compression level and threads of this factory.
      *
      * @param header     entire header. Sort order is determined by the sortOrder property of this arg.
      * @param presorted  if true, SAMRecords must be added to the SAMFileWriter in order that agrees with header.sortOrder.
@@ -342,13 +412,18 @@ public class SAMFileWriterFactory implements Cloneable {
             samFlagFieldOutput = Defaults.SAM_FLAG_FIELD_FORMAT;
         }
         try {
-            final SAMTextWriter ret = this.createMd5File
-                    ? new SAMTextWriter(new Md5CalculatingOutputStream(Files.newOutputStream(outputPath),
-                          IOUtil.addExtension(outputPath, ".md5")), samFlagFieldOutput)
-                    : new SAMTextWriter(null == outputPath
+            OutputStream os = this.createMd5File
+                    ? new Md5CalculatingOutputStream(Files.newOutputStream(outputPath),
+                          IOUtil.addExtension(outputPath, ".md5"))
+                    : null == outputPath
                                         ? null
-                                        : Files.newOutputStream(outputPath),
-                                        samFlagFieldOutput);
+                                        : Files.newOutputStream(outputPath);
+            if (os != null && IOUtil.hasBlockCompressedExtension(outputPath)) {
+                os = compressionThreads > 0
+                        ? new ParallelBlockCompressedOutputStream(os, (Path) null, compressionLevel, deflaterFactory, compressionThreads)
+                        : new BlockCompressedOutputStream(os, (Path) null, compressionLevel, deflaterFactory);
+            }
+            final SAMTextWriter ret = new SAMTextWriter(os, samFlagFieldOutput);
             return initWriter(header, presorted, ret);
         } catch (final IOException ioe) {
             throw new RuntimeIOException("Error opening file: " + outputPath.toUri(), ioe);
@@ -386,7 +461,7 @@ public class SAMFileWriterFactory implements Cloneable {
      */
 
     public SAMFileWriter makeBAMWriter(final SAMFileHeader header, final boolean presorted, final OutputStream stream) {
-        return initWriter(header, presorted, new BAMFileWriter(stream, (File)null, this.getCompressionLevel(), this.deflaterFactory));
+        return initWriter(header, presorted, new BAMFileWriter(stream, (File)null, this.getCompressionLevel(), this.deflaterFactory, this.compressionThreads));
     }
 
     /**
@@ -402,6 +477,9 @@ public class SAMFileWriterFactory implements Cloneable {
         if (maxRecordsInRam != null) {
             writer.setMaxRecordsInRam(maxRecordsInRam);
         }
+        if (maxBytesInRam != null) {
+            writer.setMaxBytesInRam(maxBytesInRam);
+        }
         if (this.tmpDir != null) writer.setTempDirectory(this.tmpDir);
         writer.setHeader(header);
 
@@ -426,7 +504,8 @@ public class SAMFileWriterFactory implements Cloneable {
      *
      * @param header     entire header. Sort order is determined by the sortOrder property of this arg.
      * @param presorted  presorted if true, SAMRecords must be added to the SAMFileWriter in order that agrees with header.sortOrder.
-     * @param outputPath where to write the output.  Must end with .sam or .bam.
+     * @param outputPath where to write the output.  Must end with .sam or .bam, or .sam followed by a block-compressed
+     *                   extension such as .gz for BGZF compressed SAM.
      * @return SAM or BAM writer based on file extension of outputPath.
      */
     public SAMFileWriter makeSAMOrBAMWriter(final SAMFileHeader header, final boolean presorted, final Path outputPath) {
@@ -434,12 +513,21 @@ public class SAMFileWriterFactory implements Cloneable {
         if (filename.endsWith(BamFileIoUtils.BAM_FILE_EXTENSION)) {
             return makeBAMWriter(header, presorted, outputPath);
         }
-        if (filename.endsWith(".sam")) {
+        if (filename.endsWith(".sam") || isBlockCompressedSam(filename)) {
             return makeSAMWriter(header, presorted, outputPath);
         }
         return makeBAMWriter(header, presorted, outputPath);
     }
 
+    private static boolean isBlockCompressedSam(final String filename) {
+        for (final String extension : IOUtil.BLOCK_COMPRESSED_EXTENSIONS) {
+            if (filename.endsWith(IOUtil.SAM_FILE_EXTENSION + extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      *
      * Create a SAM, BAM or CRAM writer based on examination of the outputFile extension.
@@ -670,14 +758,15 @@ public class SAMFileWriterFactory implements Cloneable {
     private void setCRAMWriterDefaults(final CRAMFileWriter writer) {
         writer.setPreserveReadNames(true);
         writer.setCaptureAllTags(true);
+        writer.setEncodingThreads(compressionThreads);
     }
 
     @Override
     public String toString() {
-        return "SAMFileWriterFactory [createIndex=" + createIndex + ", createMd5File=" + createMd5File + ", useAsyncIo="
+        return "SAMFileWriterFactory [createIndex=" + createIndex + ", createCsiIndex=" + createCsiIndex + ", createMd5File=" + createMd5File + ", useAsyncIo="
                 + useAsyncIo + ", asyncOutputBufferSize=" + asyncOutputBufferSize + ", bufferSize=" + bufferSize
                 + ", tmpDir=" + tmpDir + ", compressionLevel=" + compressionLevel + ", maxRecordsInRam="
-                + maxRecordsInRam + "]";
+                + maxRecordsInRam + ", maxBytesInRam=" + maxBytesInRam + ", compressionThreads=" + compressionThreads + "]";
     }
 
 }
@@ -24,6 +24,7 @@
 package htsjdk.samtools;
 
 import htsjdk.samtools.util.ProgressLoggerInterface;
+import htsjdk.samtools.util.SerializedSortingCollection;
 import htsjdk.samtools.util.SortingCollection;
 
 import java.io.File;
@@ -42,7 +43,9 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
     private int maxRecordsInRam = DEAFULT_MAX_RECORDS_IN_RAM;
     private SAMFileHeader.SortOrder sortOrder;
     private SAMFileHeader header;
+    private Long maxBytesInRam = null;
     private SortingCollection<SAMRecord> alignmentSorter;
+    private SerializedSortingCollection<SAMRecord> serializedAlignmentSorter;
     private File tmpDir = new File(System.getProperty("java.io.tmpdir"));
     private ProgressLoggerInterface progressLogger = null;
     private boolean isClosed = false;
@@ -117,6 +120,23 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
         return maxRecordsInRam;
     }
 
+    /**
+     * When writing coordinate sorted records that are not presorted, hold records in RAM in serialized
+     * form, up to the given number of bytes, instead of limiting the number of records.
+     * Must be called before setHeader().
+     * @param maxBytesInRam
+     */
+    protected void setMaxBytesInRam(final long maxBytesInRam) {
+        if (this.header != null) {
+            throw new IllegalStateException("setMaxBytesInRam must be called before setHeader()");
+        }
+        this.maxBytesInRam = maxBytesInRam;
+    }
+
+    protected Long getMaxBytesInRam() {
+        return maxBytesInRam;
+    }
+
     /**
      * When writing records that are not presorted, specify the path of the temporary directory 
      * for spilling to disk.  Must be called before setHeader().
@@ -154,6 +174,10 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
             } else {
                 sortOrderChecker = new SAMSortOrderChecker(sortOrder);
             }
+        } else if (sortOrder.equals(SAMFileHeader.SortOrder.coordinate) && maxBytesInRam != null) {
+            serializedAlignmentSorter = SerializedSortingCollection.newInstance(new BAMRecordCodec(header),
+                    new SAMRecordCoordinateComparator(), SAMRecordCoordinateComparator::coordinateKey,
+                    maxBytesInRam, tmpDir.toPath());
         } else if (!sortOrder.equals(SAMFileHeader.SortOrder.unsorted)) {
             alignmentSorter = SortingCollection.newInstance(SAMRecord.class,
                     new BAMRecordCodec(header), sortOrder.getComparatorInstance(), maxRecordsInRam, tmpDir);
@@ -183,6 +207,8 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
         } else if (presorted) {
             assertPresorted(alignment);
             writeAlignment(alignment);
+        } else if (serializedAlignmentSorter != null) {
+            serializedAlignmentSorter.add(alignment);
         } else {
             alignmentSorter.add(alignment);
         }
@@ -212,6 +238,13 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
                 }
                 alignmentSorter.cleanup();
             }
+            if (serializedAlignmentSorter != null) {
+                for (final SAMRecord alignment : serializedAlignmentSorter) {
+                    writeAlignment(alignment);
+                    if (progressLogger != null) progressLogger.record(alignment);
+                }
+                serializedAlignmentSorter.cleanup();
+            }
             finish();
         }
         isClosed = true;
@@ -416,6 +416,9 @@ public class SAMLineParser {
     }
 
     private void parseTag(final SAMRecord samRecord, final String tag) {
+        if (parseSimpleTag(samRecord, tag)) {
+            return;
+        }
         Map.Entry<String, Object> entry = null;
         try {
             entry = tagCodec.decode(tag);
@@ -438,6 +441,70 @@ public class SAMLineParser {
         }
     }
 
+    /**
+     * Sets the attribute of tags of the common types Z, A and i directly from the line, without splitting the tag
+     * into fields.  Tags of other types, and malformed tags, are left to the {@link TextTagCodec}.
+     *
+     * @return true if the tag has been set
+     */
+    private static boolean parseSimpleTag(final SAMRecord samRecord, final String tag) {
+        if (tag.length() < 5 || tag.charAt(2) != ':' || tag.charAt(4) != ':') {
+            return false;
+        }
+        final Object value;
+        switch (tag.charAt(3)) {
+            case 'Z':
+                value = tag.substring(5);
+                break;
+            case 'A':
+                if (tag.length() != 6) {
+                    return false;
+                }
+                value = tag.charAt(5);
+                break;
+            case 'i':
+                value = parseIntegerTagValue(tag);
+                if (value == null) {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+        }
+        samRecord.setAttribute((short) (tag.charAt(1) << 8 | tag.charAt(0)), value);
+        return true;
+    }
+
+    /**
+     * @return the value of an integer tag as an Integer or, if it only fits in an unsigned 32-bit integer, as a Long,
+     * or null if the value is not a number in either range
+     */
+    private static Object parseIntegerTagValue(final String tag) {
+        final boolean negative = tag.length() > 5 && tag.charAt(5) == '-';
+        final int firstDigit = negative ? 6 : 5;
+        // at most 10 digits, so that the value fits in a long
+        if (tag.length() == firstDigit || tag.length() - firstDigit > 10) {
+            return null;
+        }
+        long value = 0;
+        for (int i = firstDigit; i < tag.length(); i++) {
+            final char c = tag.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        } else if (SAMUtils.isValidUnsignedIntegerAttribute(value)) {
+            return value;
+        }
+        return null;
+    }
+
     //
     // Error methods
     //
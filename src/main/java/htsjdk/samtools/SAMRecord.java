@@ -1187,6 +1187,31 @@ public class SAMRecord implements Cloneable, Locatable, Serializable {
         return (int)longVal;
     }
 
+    /**
+     * Get the tag value and attempt to coerce it into a primitive int, without boxing it for records that
+     * keep their tags in binary form, see {@link IndexedTagsSAMRecordFactory}.
+     * @param tag Binary representation of a 2-char String tag as created by SAMTagUtil.
+     * @param defaultValue Value to return if the tag is not present.
+     * @return The value of a tag, converted into a signed int if possible.
+     * @throws RuntimeException If the value is not an integer type, or will not fit in a signed int.
+     */
+    public int getIntegerAttribute(final short tag, final int defaultValue) {
+        final Object val = getAttribute(tag);
+        if (val == null) return defaultValue;
+        if (val instanceof Integer) {
+            return (Integer)val;
+        }
+        final String tagName = SAMTagUtil.getSingleton().makeStringTag(tag);
+        if (!(val instanceof Number)) {
+            throw new RuntimeException("Value for tag " + tagName + " is not Number: " + val.getClass());
+        }
+        final long longVal = ((Number)val).longValue();
+        if (longVal < Integer.MIN_VALUE || longVal > Integer.MAX_VALUE) {
+            throw new RuntimeException("Value for tag " + tagName + " is not in Integer range: " + longVal);
+        }
+        return (int)longVal;
+    }
+
     /**
      * A convenience method that will return a valid unsigned integer as a Long,
      * or fail with an exception if the tag value is invalid.
@@ -1506,6 +1531,14 @@ public class SAMRecord implements Cloneable, Locatable, Serializable {
         return mAttributes;
     }
 
+    /**
+     * @return the tags of this record as an index of their binary representation, if they have not been decoded or
+     * changed since the record was read, else null
+     */
+    BinaryTagIndex getBinaryTagIndex() {
+        return null;
+    }
+
     /**
      * @return reference name, null if this is unmapped
      */
@@ -104,4 +104,20 @@ public class SAMRecordCoordinateComparator implements SAMRecordComparator, Seria
         }
         return samRecord1.getAlignmentStart() - samRecord2.getAlignmentStart();
     }
+
+    /**
+     * Packs the reference index and alignment start of a record into a long that orders records as
+     * {@link #fileOrderCompare} does, for use as the key prefix of a
+     * {@link htsjdk.samtools.util.SerializedSortingCollection}.
+     *
+     * @return reference index in the high 32 bits and alignment start in the low 32 bits, or
+     * {@link Long#MAX_VALUE} if the record has no reference
+     */
+    public static long coordinateKey(final SAMRecord samRecord) {
+        final int refIndex = samRecord.getReferenceIndex();
+        if (refIndex == -1) {
+            return Long.MAX_VALUE;
+        }
+        return ((long) refIndex << 32) | (samRecord.getAlignmentStart() & 0xFFFFFFFFL);
+    }
 }
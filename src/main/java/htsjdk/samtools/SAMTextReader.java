@@ -26,16 +26,23 @@ package htsjdk.samtools;
 
 import htsjdk.samtools.util.BufferedLineReader;
 import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.ParallelDecodingIterator;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
 
 
 /**
  * Internal class for reading SAM text files.
  */
 class SAMTextReader extends SamReader.ReaderImplementation {
-
+    /**
+     * Number of lines handed to a parsing thread at a time when parsing in parallel.
+     */
+    private static final int PARSING_BATCH_SIZE = 1000;
 
     private SAMRecordFactory samRecordFactory;
     private BufferedLineReader mReader;
@@ -46,6 +53,10 @@ class SAMTextReader extends SamReader.ReaderImplementation {
 
     private ValidationStringency validationStringency = ValidationStringency.DEFAULT_STRINGENCY;
 
+    // If positive, lines are parsed on this many threads, see setDecodingThreads.
+    private int mDecodingThreads = 0;
+    private ExecutorService mDecodingThreadPool = null;
+
     /**
      * Add information about the origin (reader and position) to SAM records.
      */
@@ -119,8 +130,42 @@ class SAMTextReader extends SamReader.ReaderImplementation {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Set the number of threads used to parse lines into records while iterating.  Lines are read ahead on a
+     * background thread and records are still returned in file order.  Takes effect for iterators created after
+     * this call.  Note that lines that have been read ahead are lost when an iterator is closed before reaching the
+     * end of the file, and that errors reported with {@link ValidationStringency#LENIENT} may be printed before
+     * the records they refer to are returned.
+     * @param decodingThreads number of worker threads, or 0 to read and parse lines on the calling thread
+     */
+    void setDecodingThreads(final int decodingThreads) {
+        if (decodingThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of decoding threads: " + decodingThreads);
+        }
+        if (mDecodingThreadPool != null && decodingThreads != mDecodingThreads) {
+            mDecodingThreadPool.shutdown();
+            mDecodingThreadPool = null;
+        }
+        this.mDecodingThreads = decodingThreads;
+    }
+
+    private ExecutorService getDecodingThreadPool() {
+        if (mDecodingThreadPool == null) {
+            mDecodingThreadPool = ParallelDecodingIterator.newWorkerPool(mDecodingThreads);
+        }
+        return mDecodingThreadPool;
+    }
+
     @Override
     public void close() {
+        if (mIterator != null) {
+            // make sure no background thread is still reading from the stream
+            mIterator.stopParsing();
+        }
+        if (mDecodingThreadPool != null) {
+            mDecodingThreadPool.shutdown();
+            mDecodingThreadPool = null;
+        }
         if (mReader != null) {
             try {
                 mReader.close();
@@ -160,7 +205,7 @@ class SAMTextReader extends SamReader.ReaderImplementation {
         if (mIterator != null) {
             throw new IllegalStateException("Iteration in progress");
         }
-        mIterator = new RecordIterator();
+        mIterator = mDecodingThreads > 0 ? new ParallelRecordIterator() : new RecordIterator();
         return mIterator;
     }
 
@@ -268,6 +313,94 @@ class SAMTextReader extends SamReader.ReaderImplementation {
             return parser.parseLine(mCurrentLine, mReader.getLineNumber());
         }
 
+        /**
+         * Stops any reading of lines on other threads.
+         */
+        void stopParsing() {
+        }
+    }
+
+    /**
+     * SAMRecord iterator for SAMTextReader that reads lines on a background thread and parses batches of them on
+     * the decoding thread pool, each worker thread with its own {@link SAMLineParser}.  An error parsing a line is
+     * raised when the record of that line would have been returned.
+     */
+    private class ParallelRecordIterator extends RecordIterator {
+        private final ThreadLocal<SAMLineParser> parsers = ThreadLocal.withInitial(() ->
+                new SAMLineParser(samRecordFactory, validationStringency, mFileHeader, mParentReader, mFile));
+        private final ParallelDecodingIterator<NumberedLine, ParsedLine> parsingIterator =
+                new ParallelDecodingIterator<>(new LineIterator(), this::parseLine, getDecodingThreadPool(),
+                        PARSING_BATCH_SIZE, 2 * mDecodingThreads);
+
+        @Override
+        public boolean hasNext() {
+            return parsingIterator.hasNext();
+        }
+
+        @Override
+        public SAMRecord next() {
+            if (!hasNext()) {
+                throw new IllegalStateException("Cannot call next() on exhausted iterator");
+            }
+            final ParsedLine parsed = parsingIterator.next();
+            if (parsed.error != null) {
+                throw parsed.error;
+            }
+            return parsed.record;
+        }
+
+        @Override
+        void stopParsing() {
+            parsingIterator.close();
+        }
+
+        private ParsedLine parseLine(final NumberedLine line) {
+            try {
+                return new ParsedLine(parsers.get().parseLine(line.line, line.lineNumber), null);
+            } catch (final RuntimeException e) {
+                return new ParsedLine(null, e);
+            }
+        }
+    }
+
+    /**
+     * Iterator over the remaining lines of the file, used on the background thread of a ParallelRecordIterator.
+     */
+    private class LineIterator implements Iterator<NumberedLine> {
+        @Override
+        public boolean hasNext() {
+            return mCurrentLine != null;
+        }
+
+        @Override
+        public NumberedLine next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("next called on exhausted iterator");
+            }
+            final NumberedLine line = new NumberedLine(mCurrentLine, mReader.getLineNumber());
+            advanceLine();
+            return line;
+        }
+    }
+
+    private static class NumberedLine {
+        final String line;
+        final int lineNumber;
+
+        NumberedLine(final String line, final int lineNumber) {
+            this.line = line;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    private static class ParsedLine {
+        final SAMRecord record;
+        final RuntimeException error;
+
+        ParsedLine(final SAMRecord record, final RuntimeException error) {
+            this.record = record;
+            this.error = error;
+        }
     }
 }
 
@@ -0,0 +1,336 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BinaryCodec;
+
+import java.util.Arrays;
+
+/**
+ * Formats SAMRecords as lines of SAM text directly into a reusable byte buffer, without building a String for each
+ * field.  The text is the same as {@link SAMRecord#getSAMString()}: read names, reference names and String tags are
+ * converted to bytes by casting, as {@link htsjdk.samtools.util.AsciiWriter} does, {@link #isAscii()} tells whether
+ * any characters were lost, and {@link #getChars(char[])} returns the text with them for other Writers.  Tags of
+ * types that are rarely used, such as floats, are formatted with {@link TextTagCodec}.
+ *
+ * The buffer is reused between records, so an instance must not be used by multiple threads.
+ */
+public class SAMTextRecordEncoder {
+    private static final byte FIELD_SEPARATOR = '\t';
+
+    private final SamFlagField samFlagFieldOutput;
+    private final TextTagCodec tagCodec = new TextTagCodec();
+    private final SAMTagUtil tagUtil = new SAMTagUtil();
+
+    private byte[] buffer = new byte[1024];
+    private int length = 0;
+    private boolean ascii = true;
+    // the non-ASCII characters of the text and their positions in the buffer, which only holds their low bytes
+    private int[] nonAsciiPositions = new int[0];
+    private char[] nonAsciiChars = new char[0];
+    private int nonAsciiCount = 0;
+
+    /**
+     * @param samFlagFieldOutput format of the flag field
+     */
+    public SAMTextRecordEncoder(final SamFlagField samFlagFieldOutput) {
+        if (samFlagFieldOutput == null) throw new IllegalArgumentException("Sam flag field was null");
+        this.samFlagFieldOutput = samFlagFieldOutput;
+    }
+
+    /**
+     * @return the buffer holding the lines encoded since the last call to {@link #clear()}, valid up to
+     * {@link #getLength()}.  The buffer may be replaced by subsequent calls to {@link #encode(SAMRecord)}.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return number of bytes of the buffer that are in use
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return true if the text of the lines encoded since the last call to {@link #clear()} is ASCII, so that each
+     * byte of the buffer is the character it was converted from
+     */
+    public boolean isAscii() {
+        return ascii;
+    }
+
+    /**
+     * Copies the text of the lines encoded since the last call to {@link #clear()}, including any non-ASCII
+     * characters, into an array of chars valid up to {@link #getLength()}.
+     *
+     * @param chars array to copy the text into, if it is long enough
+     * @return chars, or a new array if chars is too short
+     */
+    public char[] getChars(char[] chars) {
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (buffer[i] & 0xFF);
+        }
+        for (int i = 0; i < nonAsciiCount; i++) {
+            chars[nonAsciiPositions[i]] = nonAsciiChars[i];
+        }
+        return chars;
+    }
+
+    /**
+     * Discards the lines encoded so far.
+     */
+    public void clear() {
+        length = 0;
+        ascii = true;
+        nonAsciiCount = 0;
+    }
+
+    /**
+     * Appends the SAM text representation of a record, including the trailing newline, to the buffer.
+     */
+    public void encode(final SAMRecord alignment) {
+        final int start = length;
+        final int startNonAsciiCount = nonAsciiCount;
+        try {
+            appendString(alignment.getReadName());
+            append(FIELD_SEPARATOR);
+            if (samFlagFieldOutput == SamFlagField.DECIMAL) {
+                appendLong(alignment.getFlags());
+            } else {
+                appendString(samFlagFieldOutput.format(alignment.getFlags()));
+            }
+            append(FIELD_SEPARATOR);
+            appendString(alignment.getReferenceName());
+            append(FIELD_SEPARATOR);
+            appendLong(alignment.getAlignmentStart());
+            append(FIELD_SEPARATOR);
+            appendLong(alignment.getMappingQuality());
+            append(FIELD_SEPARATOR);
+            appendCigar(alignment.getCigar());
+            append(FIELD_SEPARATOR);
+
+            //  == is OK here because these strings are interned
+            if (alignment.getReferenceName() == alignment.getMateReferenceName() &&
+                    SAMRecord.NO_ALIGNMENT_REFERENCE_NAME != alignment.getReferenceName()) {
+                append((byte) '=');
+            } else {
+                appendString(alignment.getMateReferenceName());
+            }
+            append(FIELD_SEPARATOR);
+            appendLong(alignment.getMateAlignmentStart());
+            append(FIELD_SEPARATOR);
+            appendLong(alignment.getInferredInsertSize());
+            append(FIELD_SEPARATOR);
+            appendReadBases(alignment.getReadBases());
+            append(FIELD_SEPARATOR);
+            appendBaseQualities(alignment.getBaseQualities());
+            SAMBinaryTagAndValue attribute = alignment.getBinaryAttributes();
+            while (attribute != null) {
+                append(FIELD_SEPARATOR);
+                appendTag(attribute);
+                attribute = attribute.getNext();
+            }
+            append((byte) '\n');
+        } catch (final RuntimeException e) {
+            // don't leave a partial line in the buffer
+            length = start;
+            nonAsciiCount = startNonAsciiCount;
+            ascii = nonAsciiCount == 0;
+            throw e;
+        }
+    }
+
+    private void appendCigar(final Cigar cigar) {
+        if (cigar == null || cigar.isEmpty()) {
+            appendString(SAMRecord.NO_ALIGNMENT_CIGAR);
+            return;
+        }
+        for (final CigarElement element : cigar.getCigarElements()) {
+            appendLong(element.getLength());
+            append(CigarOperator.enumToCharacter(element.getOperator()));
+        }
+    }
+
+    private void appendReadBases(final byte[] bases) {
+        if (bases.length == 0) {
+            appendString(SAMRecord.NULL_SEQUENCE_STRING);
+            return;
+        }
+        ensureCapacity(bases.length);
+        System.arraycopy(bases, 0, buffer, length, bases.length);
+        length += bases.length;
+    }
+
+    private void appendBaseQualities(final byte[] qualities) {
+        if (qualities.length == 0) {
+            appendString(SAMRecord.NULL_QUALS_STRING);
+            return;
+        }
+        ensureCapacity(qualities.length);
+        for (final byte quality : qualities) {
+            if (quality < 0 || quality > SAMUtils.MAX_PHRED_SCORE) {
+                throw new IllegalArgumentException("Cannot encode phred score: " + (quality & 0xFF));
+            }
+            buffer[length++] = (byte) (quality + 33);
+        }
+    }
+
+    private void appendTag(final SAMBinaryTagAndValue attribute) {
+        final Object value = attribute.value;
+        final char type;
+        if (value instanceof String) {
+            type = 'Z';
+        } else if (value instanceof Character) {
+            type = 'A';
+        } else if ((value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof Long)
+                && ((Number) value).longValue() >= Integer.MIN_VALUE && ((Number) value).longValue() <= BinaryCodec.MAX_UINT) {
+            type = 'i';
+        } else if (value instanceof byte[] || value instanceof short[] || value instanceof int[]) {
+            type = 'B';
+        } else {
+            // floats, float arrays and invalid values, which are reported by the codec
+            appendString(attribute.isUnsignedArray() ?
+                    tagCodec.encodeUnsignedArray(tagUtil.makeStringTag(attribute.tag), value) :
+                    tagCodec.encode(tagUtil.makeStringTag(attribute.tag), value));
+            return;
+        }
+        ensureCapacity(5);
+        buffer[length++] = (byte) attribute.tag;
+        buffer[length++] = (byte) (attribute.tag >> 8);
+        buffer[length++] = ':';
+        buffer[length++] = (byte) type;
+        buffer[length++] = ':';
+        switch (type) {
+            case 'Z':
+                appendString((String) value);
+                break;
+            case 'A':
+                appendChar((Character) value);
+                break;
+            case 'i':
+                appendLong(((Number) value).longValue());
+                break;
+            default:
+                appendArray(value, attribute.isUnsignedArray());
+        }
+    }
+
+    private void appendArray(final Object array, final boolean isUnsigned) {
+        if (array instanceof byte[]) {
+            append((byte) (isUnsigned ? 'C' : 'c'));
+            for (final byte element : (byte[]) array) {
+                append((byte) ',');
+                appendLong(isUnsigned ? element & 0xffL : element);
+            }
+        } else if (array instanceof short[]) {
+            append((byte) (isUnsigned ? 'S' : 's'));
+            for (final short element : (short[]) array) {
+                append((byte) ',');
+                appendLong(isUnsigned ? element & 0xffffL : element);
+            }
+        } else {
+            append((byte) (isUnsigned ? 'I' : 'i'));
+            for (final int element : (int[]) array) {
+                append((byte) ',');
+                appendLong(isUnsigned ? element & 0xffffffffL : element);
+            }
+        }
+    }
+
+    private void append(final byte b) {
+        ensureCapacity(1);
+        buffer[length++] = b;
+    }
+
+    private void appendString(String s) {
+        if (s == null) {
+            // as a StringWriter would write it, so that getSAMString() works for incomplete records
+            s = "null";
+        }
+        final int n = s.length();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            final char c = s.charAt(i);
+            if (c > 0x7F) {
+                addNonAscii(c);
+            }
+            buffer[length++] = (byte) c;
+        }
+    }
+
+    private void appendChar(final char c) {
+        ensureCapacity(1);
+        if (c > 0x7F) {
+            addNonAscii(c);
+        }
+        buffer[length++] = (byte) c;
+    }
+
+    /**
+     * Records a non-ASCII character about to be appended at the current position.
+     */
+    private void addNonAscii(final char c) {
+        ascii = false;
+        if (nonAsciiCount == nonAsciiChars.length) {
+            final int capacity = Math.max(16, 2 * nonAsciiCount);
+            nonAsciiPositions = Arrays.copyOf(nonAsciiPositions, capacity);
+            nonAsciiChars = Arrays.copyOf(nonAsciiChars, capacity);
+        }
+        nonAsciiPositions[nonAsciiCount] = length;
+        nonAsciiChars[nonAsciiCount++] = c;
+    }
+
+    /**
+     * Appends the decimal representation of a value in the range of a 32-bit signed or unsigned integer.
+     */
+    private void appendLong(long value) {
+        // at most 10 digits and a sign
+        ensureCapacity(11);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int i = length + digits;
+        length = i;
+        do {
+            buffer[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private void ensureCapacity(final int n) {
+        if (length + n > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(length + n, 2 * buffer.length));
+        }
+    }
+}
@@ -37,15 +37,13 @@ import java.io.Writer;
  * Writer for text-format SAM files.
  */
 public class SAMTextWriter extends SAMFileWriterImpl {
-    private static final String FIELD_SEPARATOR = "\t";
-
     private final Writer out;
     // For error reporting only.
     private final File file;
-    private final TextTagCodec tagCodec = new TextTagCodec();
-    private final SAMTagUtil tagUtil = new SAMTagUtil();
 
-    private final SamFlagField samFlagFieldOutput;
+    private final SAMTextRecordEncoder encoder;
+    // Only used when writing to a Writer other than an AsciiWriter.
+    private char[] chars = new char[0];
     
     /**
      * Constructs a SAMTextWriter that outputs to a Writer.
@@ -84,10 +82,9 @@ public class SAMTextWriter extends SAMFileWriterImpl {
      * @param out Writer.
      */
     public SAMTextWriter(final Writer out, final SamFlagField samFlagFieldOutput) {
-        if (samFlagFieldOutput == null) throw new IllegalArgumentException("Sam flag field was null");
+        this.encoder = new SAMTextRecordEncoder(samFlagFieldOutput);
         this.out = out;
         this.file = null;
-        this.samFlagFieldOutput = samFlagFieldOutput;
     }
 
     /**
@@ -95,14 +92,13 @@ public class SAMTextWriter extends SAMFileWriterImpl {
      * @param file Where to write the output.
      */
     public SAMTextWriter(final File file, final SamFlagField samFlagFieldOutput) {
-        if (samFlagFieldOutput == null) throw new IllegalArgumentException("Sam flag field was null");
+        this.encoder = new SAMTextRecordEncoder(samFlagFieldOutput);
         try {
             this.file = file;
             this.out = new AsciiWriter(new FileOutputStream(file));
         } catch (final IOException e) {
             throw new RuntimeIOException(e);
         }
-        this.samFlagFieldOutput = samFlagFieldOutput;
     }
 
     /**
@@ -111,10 +107,9 @@ public class SAMTextWriter extends SAMFileWriterImpl {
      * @param stream Need not be buffered because this class provides buffering.
      */
     public SAMTextWriter(final OutputStream stream, final SamFlagField samFlagFieldOutput) {
-        if (samFlagFieldOutput == null) throw new IllegalArgumentException("Sam flag field was null");
+        this.encoder = new SAMTextRecordEncoder(samFlagFieldOutput);
         this.file = null;
         this.out = new AsciiWriter(stream);
-        this.samFlagFieldOutput = samFlagFieldOutput;
     }
 
     /**
@@ -124,49 +119,16 @@ public class SAMTextWriter extends SAMFileWriterImpl {
      */
     @Override
     public void writeAlignment(final SAMRecord alignment) {
+        encoder.clear();
+        encoder.encode(alignment);
         try {
-            out.write(alignment.getReadName());
-            out.write(FIELD_SEPARATOR);
-            out.write(this.samFlagFieldOutput.format(alignment.getFlags()));
-            out.write(FIELD_SEPARATOR);
-            out.write(alignment.getReferenceName());
-            out.write(FIELD_SEPARATOR);
-            out.write(Integer.toString(alignment.getAlignmentStart()));
-            out.write(FIELD_SEPARATOR);
-            out.write(Integer.toString(alignment.getMappingQuality()));
-            out.write(FIELD_SEPARATOR);
-            out.write(alignment.getCigarString());
-            out.write(FIELD_SEPARATOR);
-
-            //  == is OK here because these strings are interned
-            if (alignment.getReferenceName() == alignment.getMateReferenceName() &&
-                    SAMRecord.NO_ALIGNMENT_REFERENCE_NAME != alignment.getReferenceName()) {
-                out.write("=");
+            if (out instanceof AsciiWriter) {
+                ((AsciiWriter) out).write(encoder.getBuffer(), 0, encoder.getLength());
             } else {
-                out.write(alignment.getMateReferenceName());
-            }
-            out.write(FIELD_SEPARATOR);
-            out.write(Integer.toString(alignment.getMateAlignmentStart()));
-            out.write(FIELD_SEPARATOR);
-            out.write(Integer.toString(alignment.getInferredInsertSize()));
-            out.write(FIELD_SEPARATOR);
-            out.write(alignment.getReadString());
-            out.write(FIELD_SEPARATOR);
-            out.write(alignment.getBaseQualityString());
-            SAMBinaryTagAndValue attribute = alignment.getBinaryAttributes();
-            while (attribute != null) {
-                out.write(FIELD_SEPARATOR);
-                final String encodedTag;
-                if (attribute.isUnsignedArray()) {
-                    encodedTag = tagCodec.encodeUnsignedArray(tagUtil.makeStringTag(attribute.tag), attribute.value);
-                } else {
-                    encodedTag = tagCodec.encode(tagUtil.makeStringTag(attribute.tag), attribute.value);
-                }
-                out.write(encodedTag);
-                attribute = attribute.getNext();
+                // the Writer may represent characters that the bytes have lost
+                chars = encoder.getChars(chars);
+                out.write(chars, 0, encoder.getLength());
             }
-            out.write("\n");
-
         } catch (final IOException e) {
             throw new RuntimeIOException(e);
         }
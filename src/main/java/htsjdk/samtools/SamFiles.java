@@ -94,6 +94,14 @@ public class SamFiles {
             return indexPath;
         }
 
+        // Then for a foo.bam.csi CSI index
+        if (fileName.endsWith(BamFileIoUtils.BAM_FILE_EXTENSION)) {
+            indexPath = samPath.resolveSibling(fileName + CSIIndex.CSI_INDEX_SUFFIX);
+            if (Files.isRegularFile(indexPath)) {
+                return indexPath;
+            }
+        }
+
         return null;
     }
 }
@@ -12,13 +12,16 @@ import java.net.URL;
 
 /**
  * A helper class to read BAI and CRAI indexes. Main goal is to provide BAI stream as a sort of common API for all index types.
+ * CSI indexes cannot be converted to BAI, and are read directly as a {@link CSIIndex}.
  * <p/>
  * Created by vadim on 14/08/2015.
  */
 public enum SamIndexes {
     BAI(BAMIndex.BAMIndexSuffix, "BAI\1".getBytes()),
     // CRAI is gzipped text, so it's magic is same as {@link java.util.zip.GZIPInputStream.GZIP_MAGIC}
-    CRAI(CRAIIndex.CRAI_INDEX_SUFFIX, new byte[]{(byte) 0x1f, (byte) 0x8b});
+    CRAI(CRAIIndex.CRAI_INDEX_SUFFIX, new byte[]{(byte) 0x1f, (byte) 0x8b}),
+    // CSI is BGZF compressed, so this is its magic once decompressed
+    CSI(CSIIndex.CSI_INDEX_SUFFIX, CSIIndex.CSI_INDEX_MAGIC);
 
     public final String fileNameSuffix;
     public final byte[] magic;
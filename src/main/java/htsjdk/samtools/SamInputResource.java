@@ -25,6 +25,7 @@
 package htsjdk.samtools;
 
 import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableMappedFileStream;
 import htsjdk.samtools.seekablestream.SeekablePathStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.seekablestream.SeekableStreamFactory;
@@ -251,8 +252,11 @@ class FileInputResource extends InputResource {
         @Override
         public SeekableStream get() {
             try {
+                if (SeekableMappedFileStream.canMap(fileResource.toPath())) {
+                    return new SeekableMappedFileStream(fileResource);
+                }
                 return new SeekableFileStream(fileResource);
-            } catch (final FileNotFoundException e) {
+            } catch (final IOException e) {
                 throw new RuntimeIOException(e);
             }
         }
@@ -322,6 +326,9 @@ class PathInputResource extends InputResource {
         @Override
         public SeekableStream get() {
             try {
+                if (wrapper == null && SeekableMappedFileStream.canMap(pathResource)) {
+                    return new SeekableMappedFileStream(pathResource);
+                }
                 return new SeekablePathStream(pathResource, wrapper);
             } catch (final IOException e) {
                 throw new RuntimeIOException(e);
@@ -331,7 +338,7 @@ class PathInputResource extends InputResource {
 
 
     PathInputResource(final Path pathResource) {
-        this(pathResource, Function.identity());
+        this(pathResource, null);
     }
 
     //  wrapper applies to the SeekableByteChannel for custom prefetching/buffering.
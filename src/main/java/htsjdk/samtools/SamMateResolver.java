@@ -0,0 +1,266 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the mates of many reads with few queries of an indexed {@link SamReader}.  Unlike
+ * {@link SamReader#queryMate(SAMRecord)}, which queries the alignment start of each mate separately, the mates of a
+ * batch of reads are looked up together: their positions are sorted and those within a given distance of each other
+ * are merged into a single interval, so all the mates are found in one query of the intervals, plus one query of the
+ * unmapped reads if some mates are unplaced.
+ * <p/>
+ * The primary alignments read while looking up mates, and those whose mates are looked up, are kept in a bounded
+ * cache of the most recently seen ones, so the mates of reads near previous lookups, as is typical when walking a coordinate-sorted file, are usually
+ * found without reading the file again.  Note that the records returned from the cache are the same instances
+ * that were returned before.
+ * <p/>
+ * As for queryMate, the reader may not be iterated while mates are looked up.
+ */
+public class SamMateResolver {
+    /**
+     * Default distance between mate positions below which they are looked up as a single interval.
+     */
+    public static final int DEFAULT_MAX_GAP = 1000;
+
+    /**
+     * Default number of records kept in the cache.
+     */
+    public static final int DEFAULT_MAX_CACHED_RECORDS = 100000;
+
+    private final SamReader reader;
+    private final int maxGap;
+    private final Map<String, SAMRecord> cache;
+    private long cacheHits = 0;
+    private long queries = 0;
+
+    public SamMateResolver(final SamReader reader) {
+        this(reader, DEFAULT_MAX_GAP, DEFAULT_MAX_CACHED_RECORDS);
+    }
+
+    /**
+     * @param reader            indexed reader of the file containing the mates
+     * @param maxGap            mates whose alignment starts are at most this far apart are looked up with one interval
+     * @param maxCachedRecords  number of recently read records kept to resolve later lookups, or 0 to disable the cache
+     */
+    public SamMateResolver(final SamReader reader, final int maxGap, final int maxCachedRecords) {
+        if (maxGap < 0) {
+            throw new IllegalArgumentException("Invalid maximum gap: " + maxGap);
+        }
+        if (maxCachedRecords < 0) {
+            throw new IllegalArgumentException("Invalid maximum number of cached records: " + maxCachedRecords);
+        }
+        this.reader = reader;
+        this.maxGap = maxGap;
+        this.cache = new RecordCache(maxCachedRecords);
+    }
+
+    /**
+     * Fetch the mate for the given read.
+     *
+     * @param rec Record for which mate is sought.  Must be a paired read.
+     * @return rec's mate, or null if it cannot be found.
+     * @see SamReader#queryMate(SAMRecord)
+     */
+    public SAMRecord queryMate(final SAMRecord rec) {
+        return queryMates(Arrays.asList(rec)).get(0);
+    }
+
+    /**
+     * Fetch the mates of the given reads.
+     *
+     * @param records Records for which mates are sought, in any order.  Must be paired reads.
+     * @return the mate of each record, in the order of the records, with null for the mates that cannot be found.
+     * @see SamReader#queryMate(SAMRecord)
+     */
+    public List<SAMRecord> queryMates(final Collection<SAMRecord> records) {
+        final List<SAMRecord> lookups = new ArrayList<>(records);
+        final SAMRecord[] mates = new SAMRecord[lookups.size()];
+        final Map<String, List<Integer>> placed = new HashMap<>();
+        final Map<String, List<Integer>> unplaced = new HashMap<>();
+        final List<Integer> placedOrder = new ArrayList<>();
+        for (final SAMRecord rec : lookups) {
+            cacheRecord(rec);
+        }
+        for (int i = 0; i < lookups.size(); i++) {
+            final SAMRecord rec = lookups.get(i);
+            if (!rec.getReadPairedFlag()) {
+                throw new IllegalArgumentException("queryMate called for unpaired read.");
+            }
+            if (rec.getFirstOfPairFlag() == rec.getSecondOfPairFlag()) {
+                throw new IllegalArgumentException("SAMRecord must be either first and second of pair, but not both.");
+            }
+            final SAMRecord cached = cache.get(mateKey(rec));
+            if (cached != null && isAtMatePosition(rec, cached)) {
+                mates[i] = cached;
+                cacheHits++;
+            } else if (rec.getMateReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                unplaced.computeIfAbsent(rec.getReadName(), n -> new ArrayList<>(1)).add(i);
+            } else {
+                placed.computeIfAbsent(rec.getReadName(), n -> new ArrayList<>(1)).add(i);
+                placedOrder.add(i);
+            }
+        }
+        if (!placed.isEmpty()) {
+            placedOrder.sort(Comparator.<Integer>comparingInt(i -> lookups.get(i).getMateReferenceIndex())
+                    .thenComparingInt(i -> lookups.get(i).getMateAlignmentStart()));
+            try (final CloseableIterator<SAMRecord> it = reader.queryOverlapping(getIntervals(lookups, placedOrder))) {
+                resolve(it, lookups, placed, mates);
+            }
+        }
+        if (!unplaced.isEmpty()) {
+            try (final CloseableIterator<SAMRecord> it = reader.queryUnmapped()) {
+                resolve(it, lookups, unplaced, mates);
+            }
+        }
+        return Arrays.asList(mates);
+    }
+
+    /**
+     * @return the number of mates found in the cache
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return the number of queries of the reader made to look up mates
+     */
+    public long getQueries() {
+        return queries;
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * @return the intervals covering the mate positions of the given lookups, which are sorted by mate position
+     */
+    private QueryInterval[] getIntervals(final List<SAMRecord> lookups, final List<Integer> sortedLookups) {
+        final List<QueryInterval> intervals = new ArrayList<>();
+        int referenceIndex = -1;
+        int start = 0;
+        int end = 0;
+        for (final int i : sortedLookups) {
+            final SAMRecord rec = lookups.get(i);
+            if (rec.getMateReferenceIndex() == referenceIndex && rec.getMateAlignmentStart() - end <= maxGap) {
+                end = rec.getMateAlignmentStart();
+                continue;
+            }
+            if (referenceIndex != -1) {
+                intervals.add(new QueryInterval(referenceIndex, start, end));
+            }
+            referenceIndex = rec.getMateReferenceIndex();
+            start = rec.getMateAlignmentStart();
+            end = start;
+        }
+        intervals.add(new QueryInterval(referenceIndex, start, end));
+        return QueryInterval.optimizeIntervals(intervals.toArray(new QueryInterval[intervals.size()]));
+    }
+
+    /**
+     * Matches the records of a query against the lookups of the reads with the same name, as queryMate does, and
+     * caches them.
+     */
+    private void resolve(final CloseableIterator<SAMRecord> it, final List<SAMRecord> lookups,
+                         final Map<String, List<Integer>> pending, final SAMRecord[] mates) {
+        queries++;
+        while (it.hasNext()) {
+            final SAMRecord next = it.next();
+            cacheRecord(next);
+            final List<Integer> waiting = pending.get(next.getReadName());
+            if (waiting == null) {
+                continue;
+            }
+            for (final int i : waiting) {
+                final SAMRecord rec = lookups.get(i);
+                if (!isAtMatePosition(rec, next)) {
+                    continue;
+                }
+                if (!next.getReadPairedFlag()) {
+                    throw new SAMFormatException("Paired and unpaired reads with same name: " + rec.getReadName());
+                }
+                if (rec.getFirstOfPairFlag() ? next.getFirstOfPairFlag() : next.getSecondOfPairFlag()) {
+                    continue;
+                }
+                if (mates[i] != null) {
+                    throw new SAMFormatException("Multiple SAMRecord with read name " + rec.getReadName() +
+                            " for " + (rec.getFirstOfPairFlag() ? "second" : "first") + " end.");
+                }
+                mates[i] = next;
+            }
+        }
+    }
+
+    private void cacheRecord(final SAMRecord rec) {
+        if (rec.getReadPairedFlag() && !rec.isSecondaryOrSupplementary() &&
+                rec.getFirstOfPairFlag() != rec.getSecondOfPairFlag()) {
+            cache.put(rec.getReadName() + (rec.getFirstOfPairFlag() ? "/1" : "/2"), rec);
+        }
+    }
+
+    /**
+     * @return the cache key of the mate of rec
+     */
+    private static String mateKey(final SAMRecord rec) {
+        return rec.getReadName() + (rec.getFirstOfPairFlag() ? "/2" : "/1");
+    }
+
+    private static boolean isAtMatePosition(final SAMRecord rec, final SAMRecord candidate) {
+        if (rec.getMateReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+            return candidate.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+        }
+        return rec.getMateReferenceIndex().equals(candidate.getReferenceIndex()) &&
+                rec.getMateAlignmentStart() == candidate.getAlignmentStart();
+    }
+
+    /**
+     * Records by read name and end of pair, evicting the least recently used once full.
+     */
+    private static class RecordCache extends LinkedHashMap<String, SAMRecord> {
+        private static final long serialVersionUID = 1L;
+        private final int maxRecords;
+
+        private RecordCache(final int maxRecords) {
+            super(16, 0.75f, true);
+            this.maxRecords = maxRecords;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, SAMRecord> eldest) {
+            return size() > maxRecords;
+        }
+    }
+}
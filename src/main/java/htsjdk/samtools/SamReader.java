@@ -28,6 +28,8 @@ import htsjdk.samtools.util.CloseableIterator;
 
 import java.io.Closeable;
 import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Describes functionality for objects that produce {@link SAMRecord}s and associated information.
@@ -330,6 +332,19 @@ public interface SamReader extends Iterable<SAMRecord>, Closeable {
      */
     public SAMRecord queryMate(final SAMRecord rec);
 
+    /**
+     * Fetch the mates of the given reads, with a single query of the positions of all the mates rather than one
+     * query per read as {@link #queryMate(SAMRecord)} does.  Only valid to call this if hasIndex() == true, and,
+     * as for queryMate, not while iterating over the SamReader.
+     *
+     * @param records Records for which mates are sought, in any order.  Must be paired reads.
+     * @return the mate of each record, in the order of the records, with null for the mates that cannot be found.
+     * @see SamMateResolver
+     */
+    default List<SAMRecord> queryMates(final Collection<SAMRecord> records) {
+        return new SamMateResolver(this).queryMates(records);
+    }
+
     /**
      * The minimal subset of functionality needed for a {@link SAMRecord} data source.
      * {@link SamReader} itself is somewhat large and bulky, but the core functionality can be captured in
@@ -376,6 +391,8 @@ public interface SamReader extends Iterable<SAMRecord>, Closeable {
     class PrimitiveSamReaderToSamReaderAdapter implements SamReader, Indexing {
         final PrimitiveSamReader p;
         final SamInputResource resource;
+        // created on the first call to queryMates, so its cache of records is kept between calls
+        private SamMateResolver mateResolver = null;
 
         public PrimitiveSamReaderToSamReaderAdapter(final PrimitiveSamReader p, final SamInputResource resource) {
             this.p = p;
@@ -460,6 +477,18 @@ public interface SamReader extends Iterable<SAMRecord>, Closeable {
             }
         }
 
+        /**
+         * Fetch the mates of the given reads with a {@link SamMateResolver} that is kept for the life of this reader,
+         * so mates seen by previous calls are found without querying the file again.
+         */
+        @Override
+        public List<SAMRecord> queryMates(final Collection<SAMRecord> records) {
+            if (mateResolver == null) {
+                mateResolver = new SamMateResolver(this);
+            }
+            return mateResolver.queryMates(records);
+        }
+
         @Override
         public boolean hasBrowseableIndex() {
             return hasIndex() && getIndex() instanceof BrowseableBAMIndex;
@@ -157,6 +157,19 @@ public abstract class SamReaderFactory {
      * Returns the factory itself. */
     abstract public SamReaderFactory setUseAsyncIo(final boolean asynchronousIO);
 
+    /** Set the number of worker threads readers created by this factory will use to decode and validate records
+     * while iterating, in addition to a background thread that reads ahead.  Records are still returned in file order.
+     * A value of 0 (the default) decodes records synchronously on the calling thread.
+     * Note that this option currently only applies to BAM, CRAM and SAM readers.
+     * Returns the factory itself. */
+    abstract public SamReaderFactory setDecodingThreads(final int decodingThreads);
+
+    /** Set the {@link BAMQueryPlanner} that readers created by this factory will use to plan the reads of indexed
+     * queries, such as how far apart chunks of the file may be and still be read as one.
+     * Note that this option currently only applies to BAM readers.
+     * Returns the factory itself. */
+    abstract public SamReaderFactory setQueryPlanner(final BAMQueryPlanner queryPlanner);
+
     private static SamReaderFactoryImpl DEFAULT =
             new SamReaderFactoryImpl(Option.DEFAULTS, defaultValidationStringency,
                     DefaultSAMRecordFactory.getInstance(), BlockGunzipper.getDefaultInflaterFactory());
@@ -187,6 +200,8 @@ public abstract class SamReaderFactory {
         private final EnumSet<Option> enabledOptions;
         private ValidationStringency validationStringency;
         private boolean asynchronousIO = Defaults.USE_ASYNC_IO_READ_FOR_SAMTOOLS;
+        private int decodingThreads = 0;
+        private BAMQueryPlanner queryPlanner = BAMQueryPlanner.DEFAULT;
         private SAMRecordFactory samRecordFactory;
         private CustomReaderFactory customReaderFactory;
         private CRAMReferenceSource referenceSource;
@@ -307,6 +322,24 @@ public abstract class SamReaderFactory {
             return this;
         }
 
+        @Override
+        public SamReaderFactory setDecodingThreads(final int decodingThreads) {
+            if (decodingThreads < 0) {
+                throw new IllegalArgumentException("Invalid number of decoding threads: " + decodingThreads);
+            }
+            this.decodingThreads = decodingThreads;
+            return this;
+        }
+
+        @Override
+        public SamReaderFactory setQueryPlanner(final BAMQueryPlanner queryPlanner) {
+            if (queryPlanner == null) {
+                throw new IllegalArgumentException("Query planner must not be null");
+            }
+            this.queryPlanner = queryPlanner;
+            return this;
+        }
+
         @Override
         public SamReader open(final SamInputResource resource) {
             final SamReader.PrimitiveSamReader primitiveSamReader;
@@ -435,6 +468,19 @@ public abstract class SamReaderFactory {
                     }
                 }
 
+                if (decodingThreads > 0) {
+                    if (primitiveSamReader instanceof BAMFileReader) {
+                        ((BAMFileReader) primitiveSamReader).setDecodingThreads(decodingThreads);
+                    } else if (primitiveSamReader instanceof CRAMFileReader) {
+                        ((CRAMFileReader) primitiveSamReader).setDecodingThreads(decodingThreads);
+                    } else if (primitiveSamReader instanceof SAMTextReader) {
+                        ((SAMTextReader) primitiveSamReader).setDecodingThreads(decodingThreads);
+                    }
+                }
+                if (primitiveSamReader instanceof BAMFileReader) {
+                    ((BAMFileReader) primitiveSamReader).setQueryPlanner(queryPlanner);
+                }
+
                 // Apply the options defined by this factory to this reader
                 final SamReader.PrimitiveSamReaderToSamReaderAdapter reader =
                         new SamReader.PrimitiveSamReaderToSamReaderAdapter(primitiveSamReader, resource);
@@ -463,7 +509,10 @@ public abstract class SamReaderFactory {
         }
 
         public static SamReaderFactory copyOf(final SamReaderFactoryImpl target) {
-            return new SamReaderFactoryImpl(target.enabledOptions, target.validationStringency, target.samRecordFactory, target.inflaterFactory);
+            final SamReaderFactoryImpl copy = new SamReaderFactoryImpl(target.enabledOptions, target.validationStringency, target.samRecordFactory, target.inflaterFactory);
+            copy.decodingThreads = target.decodingThreads;
+            copy.queryPlanner = target.queryPlanner;
+            return copy;
         }
     }
 
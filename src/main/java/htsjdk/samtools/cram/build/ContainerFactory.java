@@ -60,6 +60,42 @@ public class ContainerFactory {
                              final SubstitutionMatrix substitutionMatrix)
             throws IllegalArgumentException, IllegalAccessException,
             IOException {
+        final Container container = buildContainer(records, substitutionMatrix, globalRecordCounter);
+        globalRecordCounter += records.size();
+        return container;
+    }
+
+    /**
+     * Reserves the global record counter for the next container, so that the container can be built later with
+     * {@link #buildContainer(List, long)}.
+     *
+     * @param numberOfRecords number of records in the next container
+     * @return the global record counter of the first record in the next container
+     */
+    public long reserveGlobalRecordCounter(final int numberOfRecords) {
+        final long counter = globalRecordCounter;
+        globalRecordCounter += numberOfRecords;
+        return counter;
+    }
+
+    /**
+     * Builds a container whose first record has the given global record counter, without updating the state of
+     * this factory. Containers for which the counter has been reserved can therefore be built concurrently.
+     *
+     * @param records records to put in the container
+     * @param globalRecordCounter counter returned by {@link #reserveGlobalRecordCounter(int)}
+     */
+    public Container buildContainer(final List<CramCompressionRecord> records, final long globalRecordCounter)
+            throws IllegalArgumentException, IllegalAccessException,
+            IOException {
+        return buildContainer(records, null, globalRecordCounter);
+    }
+
+    private Container buildContainer(final List<CramCompressionRecord> records,
+                                     final SubstitutionMatrix substitutionMatrix,
+                                     final long globalRecordCounter)
+            throws IllegalArgumentException, IllegalAccessException,
+            IOException {
         // get stats, create compression header and slices
         final long time1 = System.nanoTime();
         final CompressionHeader header = new CompressionHeaderFactory().build(records,
@@ -102,7 +138,6 @@ public class ContainerFactory {
         container.buildHeaderTime = time2 - time1;
         container.buildSlicesTime = time4 - time3;
 
-        globalRecordCounter += records.size();
         return container;
     }
 
@@ -57,6 +57,17 @@ public class CramNormalizer {
         this.referenceSource = referenceSource;
     }
 
+    /**
+     * Creates a normalizer for records that follow the given number of records already normalized in the same stream,
+     * so that a container can be normalized independently of the containers preceding it.
+     *
+     * @param readCounter number of records preceding the first record to be normalized
+     */
+    public CramNormalizer(final SAMFileHeader header, final CRAMReferenceSource referenceSource, final int readCounter) {
+        this(header, referenceSource);
+        this.readCounter = readCounter;
+    }
+
     public void normalize(final ArrayList<CramCompressionRecord> records,
                           final byte[] ref, final int refOffset_zeroBased,
                           final SubstitutionMatrix substitutionMatrix) {
@@ -0,0 +1,568 @@
+package htsjdk.samtools.cram.encoding.rans;
+
+import java.nio.ByteBuffer;
+
+/**
+ * rANS order-0 and order-1 codec operating directly on byte arrays. The output is byte-for-byte identical to that
+ * of the {@link ByteBuffer} based implementation used by {@link RANS#compress(ByteBuffer, RANS.ORDER, ByteBuffer)}.
+ *
+ * Instead of symbol objects, decoding uses a single flat lookup table per context, indexed by the low
+ * {@link Constants#TF_SHIFT} bits of the rANS state, whose entries pack the decoded symbol together with the
+ * frequency and offset needed to advance the state. The four interleaved rANS states are kept in locals so that
+ * their updates are independent of each other. Frequency and symbol tables, and the scratch buffer used for
+ * compression, are reused by each thread across calls.
+ */
+final class ByteArrayCodec {
+    private static final int ORDER_BYTE_LENGTH = 1;
+    private static final int COMPRESSED_BYTE_LENGTH = 4;
+    private static final int RAW_BYTE_LENGTH = 4;
+    private static final int PREFIX_BYTE_LENGTH = ORDER_BYTE_LENGTH + COMPRESSED_BYTE_LENGTH + RAW_BYTE_LENGTH;
+    private static final int STATES_BYTE_LENGTH = 4 * 4;
+
+    private static final int MASK = Constants.TOTFREQ - 1;
+    private static final int L = Constants.RANS_BYTE_L;
+
+    // worst case sizes of the frequency tables: symbol, run length and two bytes of frequency for every symbol
+    private static final int MAX_FREQUENCIES_O0_LENGTH = 256 * 4 + 1;
+    private static final int MAX_FREQUENCIES_O1_LENGTH = 256 * (2 + MAX_FREQUENCIES_O0_LENGTH) + 1;
+
+    /**
+     * Scratch buffers larger than this are not kept by the thread after compression.
+     */
+    private static final int MAX_RETAINED_BUFFER_LENGTH = 16 * 1024 * 1024;
+
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    private ByteArrayCodec() {
+    }
+
+    static byte[] compress(final byte[] in, final int offset, final int length, final RANS.ORDER order) {
+        if (length == 0)
+            return new byte[0];
+
+        final Workspace workspace = WORKSPACE.get();
+        if (length < 4 || order == RANS.ORDER.ZERO) {
+            return encode_order0_way4(in, offset, length, workspace);
+        }
+        switch (order) {
+            case ONE:
+                return encode_order1_way4(in, offset, length, workspace);
+
+            default:
+                throw new RuntimeException("Unknown rANS order: " + order);
+        }
+    }
+
+    static byte[] uncompress(final byte[] in, final int offset, final int length) {
+        if (length == 0)
+            return new byte[0];
+
+        final RANS.ORDER order = RANS.ORDER.fromInt(in[offset]);
+        final int in_sz = readInt(in, offset + ORDER_BYTE_LENGTH);
+        if (in_sz != length - PREFIX_BYTE_LENGTH)
+            throw new RuntimeException("Incorrect input length.");
+        final int out_sz = readInt(in, offset + ORDER_BYTE_LENGTH + COMPRESSED_BYTE_LENGTH);
+        final byte[] out = new byte[out_sz];
+
+        final Workspace workspace = WORKSPACE.get();
+        final int statsStart = offset + PREFIX_BYTE_LENGTH;
+        switch (order) {
+            case ZERO:
+                uncompress_order0_way4(in, readStats_o0(in, statsStart, workspace.decodingTable_o0), workspace.decodingTable_o0, out);
+                return out;
+
+            case ONE:
+                final int[] table = workspace.getDecodingTable_o1();
+                uncompress_order1_way4(in, readStats_o1(in, statsStart, table), table, out);
+                return out;
+
+            default:
+                throw new RuntimeException("Unknown rANS order: " + order);
+        }
+    }
+
+    private static byte[] encode_order0_way4(final byte[] in, final int offset, final int length, final Workspace workspace) {
+        final int[] F = workspace.frequencies_o0;
+        Frequencies.calcFrequencies_o0(in, offset, length, F);
+        final EncodingTable syms = workspace.encodingTable_o0;
+        int T = 0;
+        for (int j = 0; j < 256; j++) {
+            if (F[j] != 0)
+                syms.init(j, T, F[j]);
+            T += F[j];
+        }
+
+        final int blobEnd = maxCompressedLength(length, MAX_FREQUENCIES_O0_LENGTH);
+        final byte[] buf = workspace.getScratch(blobEnd);
+        final int frequencyTable_size = Frequencies.writeFrequencies_o0(
+                ByteBuffer.wrap(buf, PREFIX_BYTE_LENGTH, MAX_FREQUENCIES_O0_LENGTH), F);
+
+        // the compressed blob is written backwards, ending at blobEnd
+        int p = blobEnd;
+        int rans0 = L, rans1 = L, rans2 = L, rans3 = L;
+        final int end = offset + (length & ~3);
+        int x, s;
+        switch (length & 3) {
+            case 3:
+                s = 0xFF & in[end + 2];
+                x = rans2;
+                if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+                rans2 = syms.encode(x, s);
+            case 2:
+                s = 0xFF & in[end + 1];
+                x = rans1;
+                if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+                rans1 = syms.encode(x, s);
+            case 1:
+                s = 0xFF & in[end];
+                x = rans0;
+                if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+                rans0 = syms.encode(x, s);
+            case 0:
+                break;
+        }
+        for (int i = end; i > offset; i -= 4) {
+            s = 0xFF & in[i - 1];
+            x = rans3;
+            if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+            rans3 = syms.encode(x, s);
+
+            s = 0xFF & in[i - 2];
+            x = rans2;
+            if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+            rans2 = syms.encode(x, s);
+
+            s = 0xFF & in[i - 3];
+            x = rans1;
+            if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+            rans1 = syms.encode(x, s);
+
+            s = 0xFF & in[i - 4];
+            x = rans0;
+            if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+            rans0 = syms.encode(x, s);
+        }
+        p = writeStates(buf, p, rans0, rans1, rans2, rans3);
+
+        return finalizeCompressed(RANS.ORDER.ZERO, buf, length, frequencyTable_size, p, blobEnd);
+    }
+
+    private static byte[] encode_order1_way4(final byte[] in, final int offset, final int length, final Workspace workspace) {
+        final int[][] F = workspace.getFrequencies_o1();
+        Frequencies.calcFrequencies_o1(in, offset, length, F, workspace.totals_o1);
+        final EncodingTable syms = workspace.getEncodingTable_o1();
+        for (int i = 0; i < 256; i++) {
+            final int[] F_i_ = F[i];
+            int x = 0;
+            for (int j = 0; j < 256; j++) {
+                if (F_i_[j] != 0) {
+                    syms.init(i << 8 | j, x, F_i_[j]);
+                    x += F_i_[j];
+                }
+            }
+        }
+
+        final int blobEnd = maxCompressedLength(length, MAX_FREQUENCIES_O1_LENGTH);
+        final byte[] buf = workspace.getScratch(blobEnd);
+        final int frequencyTable_size = Frequencies.writeFrequencies_o1(
+                ByteBuffer.wrap(buf, PREFIX_BYTE_LENGTH, MAX_FREQUENCIES_O1_LENGTH), F);
+
+        // the compressed blob is written backwards, ending at blobEnd
+        int p = blobEnd;
+        int rans0 = L, rans1 = L, rans2 = L, rans3 = L;
+        final int isz4 = length >> 2;
+        int i0 = offset + isz4 - 2;
+        int i1 = offset + 2 * isz4 - 2;
+        int i2 = offset + 3 * isz4 - 2;
+        int i3;
+        int l0 = 0xFF & in[i0 + 1];
+        int l1 = 0xFF & in[i1 + 1];
+        int l2 = 0xFF & in[i2 + 1];
+        int l3 = 0xFF & in[offset + length - 1];
+        int x, s;
+
+        // Deal with the remainder
+        for (i3 = offset + length - 2; i3 > offset + 4 * isz4 - 2; i3--) {
+            final int c3 = 0xFF & in[i3];
+            s = c3 << 8 | l3;
+            x = rans3;
+            if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+            rans3 = syms.encode(x, s);
+            l3 = c3;
+        }
+
+        for (; i0 >= offset; i0--, i1--, i2--, i3--) {
+            final int c0 = 0xFF & in[i0];
+            final int c1 = 0xFF & in[i1];
+            final int c2 = 0xFF & in[i2];
+            final int c3 = 0xFF & in[i3];
+
+            s = c3 << 8 | l3;
+            x = rans3;
+            if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+            rans3 = syms.encode(x, s);
+
+            s = c2 << 8 | l2;
+            x = rans2;
+            if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+            rans2 = syms.encode(x, s);
+
+            s = c1 << 8 | l1;
+            x = rans1;
+            if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+            rans1 = syms.encode(x, s);
+
+            s = c0 << 8 | l0;
+            x = rans0;
+            if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+            rans0 = syms.encode(x, s);
+
+            l0 = c0;
+            l1 = c1;
+            l2 = c2;
+            l3 = c3;
+        }
+
+        // the first symbol of each quarter is encoded in context 0
+        s = l3;
+        x = rans3;
+        if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+        rans3 = syms.encode(x, s);
+
+        s = l2;
+        x = rans2;
+        if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+        rans2 = syms.encode(x, s);
+
+        s = l1;
+        x = rans1;
+        if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+        rans1 = syms.encode(x, s);
+
+        s = l0;
+        x = rans0;
+        if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; if (x >= syms.x_max[s]) { buf[--p] = (byte) x; x >>>= 8; } }
+        rans0 = syms.encode(x, s);
+
+        p = writeStates(buf, p, rans0, rans1, rans2, rans3);
+
+        return finalizeCompressed(RANS.ORDER.ONE, buf, length, frequencyTable_size, p, blobEnd);
+    }
+
+    private static int maxCompressedLength(final int length, final int maxFrequencyTableLength) {
+        return PREFIX_BYTE_LENGTH + maxFrequencyTableLength + (int) (1.05 * length) + STATES_BYTE_LENGTH + 4;
+    }
+
+    /**
+     * Writes the final rANS states in front of the compressed blob, so that the decoder reads them first.
+     * @return the new start of the compressed blob
+     */
+    private static int writeStates(final byte[] buf, int p, final int rans0, final int rans1, final int rans2, final int rans3) {
+        p -= STATES_BYTE_LENGTH;
+        writeInt(buf, p, rans0);
+        writeInt(buf, p + 4, rans1);
+        writeInt(buf, p + 8, rans2);
+        writeInt(buf, p + 12, rans3);
+        return p;
+    }
+
+    /**
+     * Assembles the header, the frequency table and the compressed blob, which occupies blobStart to blobEnd
+     * of the scratch buffer, into a new array.
+     */
+    private static byte[] finalizeCompressed(final RANS.ORDER order, final byte[] buf, final int in_size,
+                                             final int frequencyTable_size, final int blobStart, final int blobEnd) {
+        final int compressedBlob_size = blobEnd - blobStart;
+        final byte[] out = new byte[PREFIX_BYTE_LENGTH + frequencyTable_size + compressedBlob_size];
+        out[0] = (byte) order.ordinal();
+        writeInt(out, ORDER_BYTE_LENGTH, frequencyTable_size + compressedBlob_size);
+        writeInt(out, ORDER_BYTE_LENGTH + COMPRESSED_BYTE_LENGTH, in_size);
+        System.arraycopy(buf, PREFIX_BYTE_LENGTH, out, PREFIX_BYTE_LENGTH, frequencyTable_size);
+        System.arraycopy(buf, blobStart, out, PREFIX_BYTE_LENGTH + frequencyTable_size, compressedBlob_size);
+        return out;
+    }
+
+    /**
+     * Packs a decoding table entry: the symbol in the lowest 8 bits, the offset of the slot within the symbol's
+     * range in the next 12 bits and the symbol's frequency minus one in the highest 12 bits.
+     */
+    private static int decodingEntry(final int symbol, final int offset, final int freq) {
+        return symbol | offset << 8 | (freq - 1) << 20;
+    }
+
+    /**
+     * Advances a rANS state past the symbol described by a decoding table entry, without renormalization.
+     */
+    private static int advance(final int r, final int entry) {
+        return ((entry >>> 20) + 1) * (r >>> Constants.TF_SHIFT) + ((entry >>> 8) & MASK);
+    }
+
+    private static void fillDecodingTable(final int[] table, final int tableStart, final int symbol, final int start, final int freq) {
+        if (start + freq > Constants.TOTFREQ)
+            throw new RuntimeException("Invalid rANS frequency table.");
+        for (int offset = 0; offset < freq; offset++) {
+            table[tableStart + start + offset] = decodingEntry(symbol, offset, freq);
+        }
+    }
+
+    /**
+     * Reads an order-0 frequency table and builds the corresponding decoding table.
+     * @return the position following the frequency table
+     */
+    private static int readStats_o0(final byte[] cp, int p, final int[] table) {
+        int rle = 0;
+        int x = 0;
+        int j = cp[p++] & 0xFF;
+        do {
+            int F = cp[p++] & 0xFF;
+            if (F >= 128) {
+                F = ((F & 127) << 8) | (cp[p++] & 0xFF);
+            }
+            fillDecodingTable(table, 0, j, x, F);
+            x += F;
+
+            if (rle == 0 && j + 1 == (0xFF & cp[p])) {
+                j = cp[p++] & 0xFF;
+                rle = cp[p++] & 0xFF;
+            } else if (rle != 0) {
+                rle--;
+                j++;
+            } else {
+                j = cp[p++] & 0xFF;
+            }
+        } while (j != 0);
+        return p;
+    }
+
+    /**
+     * Reads an order-1 frequency table and builds the decoding table of every context present, each occupying
+     * {@link Constants#TOTFREQ} entries starting at context << {@link Constants#TF_SHIFT}.
+     * @return the position following the frequency table
+     */
+    private static int readStats_o1(final byte[] cp, int p, final int[] table) {
+        int rle_i = 0;
+        int i = 0xFF & cp[p++];
+        do {
+            int rle_j = 0;
+            int x = 0;
+            int j = 0xFF & cp[p++];
+            do {
+                int F = 0xFF & cp[p++];
+                if (F >= 128) {
+                    F = ((F & 127) << 8) | (0xFF & cp[p++]);
+                }
+                if (F == 0)
+                    F = Constants.TOTFREQ;
+                fillDecodingTable(table, i << Constants.TF_SHIFT, j, x, F);
+                x += F;
+
+                if (rle_j == 0 && j + 1 == (0xFF & cp[p])) {
+                    j = 0xFF & cp[p++];
+                    rle_j = 0xFF & cp[p++];
+                } else if (rle_j != 0) {
+                    rle_j--;
+                    j++;
+                } else {
+                    j = 0xFF & cp[p++];
+                }
+            } while (j != 0);
+
+            if (rle_i == 0 && i + 1 == (0xFF & cp[p])) {
+                i = 0xFF & cp[p++];
+                rle_i = 0xFF & cp[p++];
+            } else if (rle_i != 0) {
+                rle_i--;
+                i++;
+            } else {
+                i = 0xFF & cp[p++];
+            }
+        } while (i != 0);
+        return p;
+    }
+
+    private static void uncompress_order0_way4(final byte[] in, int p, final int[] table, final byte[] out) {
+        int rans0 = readInt(in, p);
+        int rans1 = readInt(in, p + 4);
+        int rans2 = readInt(in, p + 8);
+        int rans3 = readInt(in, p + 12);
+        p += STATES_BYTE_LENGTH;
+
+        final int out_end = out.length & ~3;
+        for (int i = 0; i < out_end; i += 4) {
+            final int e0 = table[rans0 & MASK];
+            final int e1 = table[rans1 & MASK];
+            final int e2 = table[rans2 & MASK];
+            final int e3 = table[rans3 & MASK];
+            out[i] = (byte) e0;
+            out[i + 1] = (byte) e1;
+            out[i + 2] = (byte) e2;
+            out[i + 3] = (byte) e3;
+            rans0 = advance(rans0, e0);
+            rans1 = advance(rans1, e1);
+            rans2 = advance(rans2, e2);
+            rans3 = advance(rans3, e3);
+            // a state needs at most two bytes to get back into the normalization interval
+            if (rans0 < L) { rans0 = (rans0 << 8) | (0xFF & in[p++]); if (rans0 < L) rans0 = (rans0 << 8) | (0xFF & in[p++]); }
+            if (rans1 < L) { rans1 = (rans1 << 8) | (0xFF & in[p++]); if (rans1 < L) rans1 = (rans1 << 8) | (0xFF & in[p++]); }
+            if (rans2 < L) { rans2 = (rans2 << 8) | (0xFF & in[p++]); if (rans2 < L) rans2 = (rans2 << 8) | (0xFF & in[p++]); }
+            if (rans3 < L) { rans3 = (rans3 << 8) | (0xFF & in[p++]); if (rans3 < L) rans3 = (rans3 << 8) | (0xFF & in[p++]); }
+        }
+
+        // the last symbol of a state needs no further advancing
+        switch (out.length & 3) {
+            case 3:
+                out[out_end + 2] = (byte) table[rans2 & MASK];
+            case 2:
+                out[out_end + 1] = (byte) table[rans1 & MASK];
+            case 1:
+                out[out_end] = (byte) table[rans0 & MASK];
+            case 0:
+                break;
+        }
+    }
+
+    private static void uncompress_order1_way4(final byte[] in, int p, final int[] table, final byte[] out) {
+        int rans0 = readInt(in, p);
+        int rans1 = readInt(in, p + 4);
+        int rans2 = readInt(in, p + 8);
+        int rans3 = readInt(in, p + 12);
+        p += STATES_BYTE_LENGTH;
+
+        final int out_sz = out.length;
+        final int isz4 = out_sz >> 2;
+        int i0 = 0;
+        int i1 = isz4;
+        int i2 = 2 * isz4;
+        int i3 = 3 * isz4;
+        int l0 = 0;
+        int l1 = 0;
+        int l2 = 0;
+        int l3 = 0;
+        for (; i0 < isz4; i0++, i1++, i2++, i3++) {
+            final int e0 = table[l0 << Constants.TF_SHIFT | rans0 & MASK];
+            final int e1 = table[l1 << Constants.TF_SHIFT | rans1 & MASK];
+            final int e2 = table[l2 << Constants.TF_SHIFT | rans2 & MASK];
+            final int e3 = table[l3 << Constants.TF_SHIFT | rans3 & MASK];
+            out[i0] = (byte) e0;
+            out[i1] = (byte) e1;
+            out[i2] = (byte) e2;
+            out[i3] = (byte) e3;
+            rans0 = advance(rans0, e0);
+            rans1 = advance(rans1, e1);
+            rans2 = advance(rans2, e2);
+            rans3 = advance(rans3, e3);
+            if (rans0 < L) { rans0 = (rans0 << 8) | (0xFF & in[p++]); if (rans0 < L) rans0 = (rans0 << 8) | (0xFF & in[p++]); }
+            if (rans1 < L) { rans1 = (rans1 << 8) | (0xFF & in[p++]); if (rans1 < L) rans1 = (rans1 << 8) | (0xFF & in[p++]); }
+            if (rans2 < L) { rans2 = (rans2 << 8) | (0xFF & in[p++]); if (rans2 < L) rans2 = (rans2 << 8) | (0xFF & in[p++]); }
+            if (rans3 < L) { rans3 = (rans3 << 8) | (0xFF & in[p++]); if (rans3 < L) rans3 = (rans3 << 8) | (0xFF & in[p++]); }
+            l0 = e0 & 0xFF;
+            l1 = e1 & 0xFF;
+            l2 = e2 & 0xFF;
+            l3 = e3 & 0xFF;
+        }
+
+        // Remainder
+        for (; i3 < out_sz; i3++) {
+            final int e3 = table[l3 << Constants.TF_SHIFT | rans3 & MASK];
+            out[i3] = (byte) e3;
+            if (i3 + 1 < out_sz) {
+                rans3 = advance(rans3, e3);
+                if (rans3 < L) { rans3 = (rans3 << 8) | (0xFF & in[p++]); if (rans3 < L) rans3 = (rans3 << 8) | (0xFF & in[p++]); }
+            }
+            l3 = e3 & 0xFF;
+        }
+    }
+
+    private static int readInt(final byte[] buf, final int p) {
+        return (0xFF & buf[p]) | (0xFF & buf[p + 1]) << 8 | (0xFF & buf[p + 2]) << 16 | (0xFF & buf[p + 3]) << 24;
+    }
+
+    private static void writeInt(final byte[] buf, final int p, final int value) {
+        buf[p] = (byte) value;
+        buf[p + 1] = (byte) (value >>> 8);
+        buf[p + 2] = (byte) (value >>> 16);
+        buf[p + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * Encoder symbol parameters (see {@link Encoding.RansEncSymbol}) stored as parallel arrays indexed by symbol,
+     * or by context << 8 | symbol for order-1.
+     */
+    private static final class EncodingTable {
+        final int[] x_max; // (Exclusive) upper bound of pre-normalization interval
+        final long[] rcp_freq; // Fixed-point reciprocal frequency, as an unsigned value
+        final int[] bias; // Bias
+        final int[] cmpl_freq; // Complement of frequency: (1 << scale_bits) - freq
+        final int[] rcp_shift; // Reciprocal shift
+        private final Encoding.RansEncSymbol symbol = new Encoding.RansEncSymbol();
+
+        EncodingTable(final int size) {
+            x_max = new int[size];
+            rcp_freq = new long[size];
+            bias = new int[size];
+            cmpl_freq = new int[size];
+            rcp_shift = new int[size];
+        }
+
+        void init(final int s, final int start, final int freq) {
+            Encoding.RansEncSymbolInit(symbol, start, freq, Constants.TF_SHIFT);
+            x_max[s] = symbol.x_max;
+            rcp_freq[s] = 0xFFFFFFFFL & symbol.rcp_freq;
+            bias[s] = symbol.bias;
+            cmpl_freq[s] = symbol.cmpl_freq;
+            rcp_shift[s] = symbol.rcp_shift;
+        }
+
+        /**
+         * Encodes symbol s into an already renormalized state x.
+         */
+        int encode(final int x, final int s) {
+            final long q = (x * rcp_freq[s]) >> rcp_shift[s];
+            return (int) (x + bias[s] + q * cmpl_freq[s]);
+        }
+    }
+
+    /**
+     * Tables and buffers reused by a thread across calls. Order-1 tables are only allocated when first needed.
+     */
+    private static final class Workspace {
+        final int[] frequencies_o0 = new int[256];
+        final EncodingTable encodingTable_o0 = new EncodingTable(256);
+        final int[] decodingTable_o0 = new int[Constants.TOTFREQ];
+        final int[] totals_o1 = new int[256];
+        private int[][] frequencies_o1;
+        private EncodingTable encodingTable_o1;
+        private int[] decodingTable_o1;
+        private byte[] scratch = new byte[0];
+
+        int[][] getFrequencies_o1() {
+            if (frequencies_o1 == null)
+                frequencies_o1 = new int[256][256];
+            return frequencies_o1;
+        }
+
+        EncodingTable getEncodingTable_o1() {
+            if (encodingTable_o1 == null)
+                encodingTable_o1 = new EncodingTable(256 * 256);
+            return encodingTable_o1;
+        }
+
+        int[] getDecodingTable_o1() {
+            if (decodingTable_o1 == null)
+                decodingTable_o1 = new int[256 * Constants.TOTFREQ];
+            return decodingTable_o1;
+        }
+
+        /**
+         * @return a buffer of at least the requested length
+         */
+        byte[] getScratch(final int length) {
+            if (scratch.length >= length)
+                return scratch;
+            final byte[] buf = new byte[length];
+            if (length <= MAX_RETAINED_BUFFER_LENGTH)
+                scratch = buf;
+            return buf;
+        }
+    }
+}
@@ -110,11 +110,27 @@ class Frequencies {
 
         // Compute statistics
         final int[] F = new int[256];
-        int T = 0;
         for (int i = 0; i < in_size; i++) {
             F[0xFF & in.get()]++;
-            T++;
         }
+        normaliseFrequencies_o0(F, in_size);
+        return F;
+    }
+
+    /**
+     * Same as {@link #calcFrequencies_o0(ByteBuffer)} but reads a region of a byte array and fills the
+     * caller's table, which is cleared first.
+     */
+    static void calcFrequencies_o0(final byte[] in, final int offset, final int length, final int[] F) {
+        Arrays.fill(F, 0);
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            F[0xFF & in[i]]++;
+        }
+        normaliseFrequencies_o0(F, length);
+    }
+
+    private static void normaliseFrequencies_o0(final int[] F, final int T) {
         final long tr = ((long) Constants.TOTFREQ << 31) / T + (1 << 30) / T;
 
         // Normalise so T[i] == TOTFREQ
@@ -142,9 +158,9 @@ class Frequencies {
             F[M] -= fsum - Constants.TOTFREQ;
 
         assert (F[M] > 0);
-        return F;
     }
 
+
     static int[][] calcFrequencies_o1(final ByteBuffer in) {
         final int in_size = in.remaining();
 
@@ -163,6 +179,37 @@ class Frequencies {
         F[0][0xFF & in.get(3 * (in_size >> 2))]++;
         T[0] += 3;
 
+        normaliseFrequencies_o1(F, T);
+        return F;
+    }
+
+    /**
+     * Same as {@link #calcFrequencies_o1(ByteBuffer)} but reads a region of a byte array and fills the
+     * caller's tables, which are cleared first.
+     */
+    static void calcFrequencies_o1(final byte[] in, final int offset, final int length, final int[][] F, final int[] T) {
+        for (final int[] F_i_ : F) {
+            Arrays.fill(F_i_, 0);
+        }
+        Arrays.fill(T, 0);
+        int c;
+
+        int last_i = 0;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            F[last_i][c = (0xFF & in[i])]++;
+            T[last_i]++;
+            last_i = c;
+        }
+        F[0][0xFF & in[offset + (length >> 2)]]++;
+        F[0][0xFF & in[offset + 2 * (length >> 2)]]++;
+        F[0][0xFF & in[offset + 3 * (length >> 2)]]++;
+        T[0] += 3;
+
+        normaliseFrequencies_o1(F, T);
+    }
+
+    private static void normaliseFrequencies_o1(final int[][] F, final int[] T) {
         for (int i = 0; i < 256; i++) {
             if (T[i] == 0)
                 continue;
@@ -189,8 +236,6 @@ class Frequencies {
             else
                 F[i][M] -= t2 - Constants.TOTFREQ;
         }
-
-        return F;
     }
 
     static RansEncSymbol[] buildSyms_o0(final int[] F) {
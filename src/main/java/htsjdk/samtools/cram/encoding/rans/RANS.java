@@ -74,6 +74,30 @@ public class RANS {
         }
     }
 
+    /**
+     * Uncompresses a rANS data blob into a new byte array, without copying the input into intermediate buffers.
+     * Decoding tables are reused by the calling thread across calls.
+     *
+     * @param in compressed data blob
+     * @return uncompressed data
+     */
+    public static byte[] uncompress(final byte[] in) {
+        return ByteArrayCodec.uncompress(in, 0, in.length);
+    }
+
+    /**
+     * Compresses a byte array into a rANS data blob, producing the same output as
+     * {@link #compress(ByteBuffer, ORDER, ByteBuffer)}. Frequency tables and the working buffer are reused by the
+     * calling thread across calls.
+     *
+     * @param in    data to compress
+     * @param order rANS order
+     * @return compressed data blob
+     */
+    public static byte[] compress(final byte[] in, final ORDER order) {
+        return ByteArrayCodec.compress(in, 0, in.length, order);
+    }
+
     private static ByteBuffer allocateIfNeeded(final int in_size,
                                                final ByteBuffer out_buf) {
         final int compressedSize = (int) (1.05 * in_size + 257 * 257 * 3 + 4);
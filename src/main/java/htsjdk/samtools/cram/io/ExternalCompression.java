@@ -10,7 +10,6 @@ import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -86,8 +85,7 @@ public class ExternalCompression {
      * @return compressed blob
      */
     public static byte[] rans(final byte[] data, final RANS.ORDER order) {
-        final ByteBuffer buffer = RANS.compress(ByteBuffer.wrap(data), order, null);
-        return toByteArray(buffer);
+        return RANS.compress(data, order);
     }
 
     /**
@@ -98,8 +96,7 @@ public class ExternalCompression {
      * @return compressed blob
      */
     public static byte[] rans(final byte[] data, final int order) {
-        final ByteBuffer buffer = RANS.compress(ByteBuffer.wrap(data), RANS.ORDER.fromInt(order), null);
-        return toByteArray(buffer);
+        return RANS.compress(data, RANS.ORDER.fromInt(order));
     }
 
     /**
@@ -109,8 +106,7 @@ public class ExternalCompression {
      * @return uncompressed data
      */
     public static byte[] unrans(final byte[] data) {
-        final ByteBuffer buf = RANS.uncompress(ByteBuffer.wrap(data), null);
-        return toByteArray(buf);
+        return RANS.uncompress(data);
     }
 
 
@@ -140,13 +136,4 @@ public class ExternalCompression {
         final XZCompressorInputStream xzCompressorInputStream = new XZCompressorInputStream(new ByteArrayInputStream(data));
         return InputStreamUtils.readFully(xzCompressorInputStream);
     }
-
-
-    private static byte[] toByteArray(final ByteBuffer buffer) {
-        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit()) return buffer.array();
-
-        final byte[] bytes = new byte[buffer.remaining()];
-        buffer.get(bytes);
-        return bytes;
-    }
 }
@@ -0,0 +1,154 @@
+package htsjdk.samtools.seekablestream;
+
+import htsjdk.samtools.Defaults;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An implementation of {@link SeekableStream} for local files that memory maps the whole file, so that reads are
+ * copies out of the page cache rather than system calls.  This makes seeks free, which suits random access to
+ * block compressed files such as many small indexed queries on the same BAM or tabix file.  Since reads are
+ * already served from memory, the stream is not wrapped in a {@link SeekableBufferedStream} by
+ * {@link htsjdk.samtools.util.IOUtil#maybeBufferedSeekableStream(SeekableStream)}.
+ * <p>
+ * The file is mapped in segments of up to 1GB, and its length is fixed when the stream is opened.  The mapping is
+ * released when the stream is garbage collected rather than when it is closed.
+ */
+public class SeekableMappedFileStream extends SeekableStream {
+
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    private final Path path;
+    private final long length;
+    private final int segmentSize;
+    private ByteBuffer[] segments;
+    private long position = 0;
+
+    public SeekableMappedFileStream(final File file) throws IOException {
+        this(file.toPath());
+    }
+
+    // whether local files are memory mapped, changed by tests to cover both settings
+    static volatile boolean mappingEnabled = Defaults.USE_MEMORY_MAPPED_FILES;
+
+    public SeekableMappedFileStream(final Path path) throws IOException {
+        this(path, DEFAULT_SEGMENT_SIZE);
+    }
+
+    SeekableMappedFileStream(final Path path, final int segmentSize) throws IOException {
+        this.path = path;
+        this.segmentSize = segmentSize;
+        // the mapping remains valid after the channel is closed
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.length = channel.size();
+            this.segments = new ByteBuffer[(int) ((length + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                final long start = (long) i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, length - start));
+            }
+        }
+    }
+
+    /**
+     * @return true if memory mapping is enabled by {@link Defaults#USE_MEMORY_MAPPED_FILES} and the path is a
+     * regular file on the default file system, so that it can be opened as a {@link SeekableMappedFileStream}
+     */
+    public static boolean canMap(final Path path) {
+        return mappingEnabled && path.getFileSystem() == FileSystems.getDefault() && Files.isRegularFile(path);
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        checkOpen();
+        return position >= length;
+    }
+
+    @Override
+    public void seek(final long position) throws IOException {
+        checkOpen();
+        if (position < 0) {
+            throw new IOException("Negative seek offset: " + position);
+        }
+        this.position = position;
+    }
+
+    @Override
+    public long position() throws IOException {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        checkOpen();
+        if (n <= 0 || position >= length) {
+            return 0;
+        }
+        final long skipped = Math.min(n, length - position);
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        checkOpen();
+        if (length < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (position >= this.length) {
+            return -1;
+        }
+        int n = 0;
+        while (n < length && position < this.length) {
+            final ByteBuffer segment = segments[(int) (position / segmentSize)];
+            segment.position((int) (position % segmentSize));
+            final int count = Math.min(length - n, segment.remaining());
+            segment.get(buffer, offset + n, count);
+            n += count;
+            position += count;
+        }
+        return n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkOpen();
+        if (position >= length) {
+            return -1;
+        }
+        final int b = segments[(int) (position / segmentSize)].get((int) (position % segmentSize)) & 0xff;
+        position++;
+        return b;
+    }
+
+    @Override
+    public String getSource() {
+        return path.toAbsolutePath().toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments = null;
+    }
+
+    private void checkOpen() throws IOException {
+        if (segments == null) {
+            throw new IOException("Stream closed: " + getSource());
+        }
+    }
+}
@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
 import java.util.function.Function;
 
 /**
@@ -96,14 +97,25 @@ public class SeekableStreamFactory{
             } else if (path.startsWith("ftp:")) {
                 return new SeekableFTPStream(new URL(path));
             } else if (path.startsWith("file:")) {
-                return new SeekableFileStream(new File(new URL(path).getPath()));
+                return getFileStream(new File(new URL(path).getPath()));
             } else if (IOUtil.hasScheme(path)) {
-                return new SeekablePathStream(IOUtil.getPath(path), wrapper);
+                final Path nioPath = IOUtil.getPath(path);
+                if (wrapper == null && SeekableMappedFileStream.canMap(nioPath)) {
+                    return new SeekableMappedFileStream(nioPath);
+                }
+                return new SeekablePathStream(nioPath, wrapper);
             } else {
-                return new SeekableFileStream(new File(path));
+                return getFileStream(new File(path));
             }
         }
 
+        private SeekableStream getFileStream(final File file) throws IOException {
+            if (SeekableMappedFileStream.canMap(file.toPath())) {
+                return new SeekableMappedFileStream(file);
+            }
+            return new SeekableFileStream(file);
+        }
+
         @Override
         public SeekableStream getBufferedStream(SeekableStream stream){
             return getBufferedStream(stream, SeekableBufferedStream.DEFAULT_BUFFER_SIZE);
@@ -111,7 +123,7 @@ public class SeekableStreamFactory{
 
         @Override
         public SeekableStream getBufferedStream(SeekableStream stream, int bufferSize){
-            if (bufferSize == 0) return stream;
+            if (bufferSize == 0 || stream instanceof SeekableMappedFileStream) return stream;
             else return new SeekableBufferedStream(stream, bufferSize);
         }
 
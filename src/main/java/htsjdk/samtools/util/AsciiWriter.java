@@ -83,4 +83,20 @@ public class AsciiWriter extends Writer {
             }
         }
     }
+
+    /**
+     * Writes bytes that are already ASCII, without conversion.
+     */
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (length > buffer.length - numBytes) {
+            os.write(buffer, 0, numBytes);
+            numBytes = 0;
+            if (length >= buffer.length) {
+                os.write(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, numBytes, length);
+        numBytes += length;
+    }
 }
@@ -29,6 +29,7 @@ import htsjdk.samtools.SAMException;
 import htsjdk.samtools.seekablestream.SeekableBufferedStream;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableHTTPStream;
+import htsjdk.samtools.seekablestream.SeekableMappedFileStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.util.zip.InflaterFactory;
 
@@ -69,6 +70,19 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
     private int mCurrentOffset = 0;
     private long mStreamOffset = 0;
     private final BlockGunzipper blockGunzipper;
+    // identity of mFile in the InflatedBlockCache, or null if blocks are not cached
+    private String mBlockCacheId = null;
+    // true when blocks have been served from the cache or the prefetched blocks without reading mFile, so it is not
+    // at mStreamOffset
+    private boolean mFilePositionStale = false;
+    // compressed blocks read ahead of time by seek(long, long), starting at mPrefetchAddress
+    private byte[] mPrefetchBuffer = null;
+    private long mPrefetchAddress = 0;
+    private int mPrefetchLength = 0;
+    // statistics of the reads from the underlying stream
+    private long mCompressedBytesRead = 0;
+    private long mNumberOfSeeks = 0;
+    private long mNextReadAddress = 0;
 
     /**
      * Note that seek() is not supported if this ctor is used.
@@ -130,7 +144,7 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
      * @throws IOException
      */
     public BlockCompressedInputStream(final File file, final InflaterFactory inflaterFactory) throws IOException {
-        mFile = new SeekableFileStream(file);
+        mFile = SeekableMappedFileStream.canMap(file.toPath()) ? new SeekableMappedFileStream(file) : new SeekableFileStream(file);
         mStream = null;
         blockGunzipper = new BlockGunzipper(inflaterFactory);
     }
@@ -223,6 +237,8 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         }
         // Encourage garbage collection
         mFileBuffer = null;
+        mPrefetchBuffer = null;
+        mPrefetchLength = 0;
         mCurrentBlock = null;
 
         // Mark as closed
@@ -345,6 +361,17 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         return originalLength - length;
     }
 
+    /**
+     * Share inflated blocks with other streams on the same file through the process-wide
+     * {@link InflatedBlockCache}.  This has no effect unless the cache has been given a size, and is only worthwhile
+     * for random access, such as indexed queries, since sequential reads rarely revisit a block.
+     *
+     * @param useBlockCache if true, look up blocks in the cache before reading them and add the blocks read
+     */
+    public void setUseBlockCache(final boolean useBlockCache) {
+        mBlockCacheId = useBlockCache && mFile != null ? InflatedBlockCache.sourceKey(mFile.getSource(), mFile.length()) : null;
+    }
+
     /**
      * Seek to the given position in the file.  Note that pos is a special virtual file pointer,
      * not an actual byte offset.
@@ -376,6 +403,7 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         } else {
             prepareForSeek();
             mFile.seek(compressedOffset);
+            mFilePositionStale = false;
             mStreamOffset = compressedOffset;
             mCurrentBlock = nextBlock(getBufferForReuse(mCurrentBlock));
             mCurrentOffset = 0;
@@ -387,6 +415,49 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         mCurrentOffset = uncompressedOffset;
     }
     
+    /**
+     * Seek to the given position in the file, first reading the compressed blocks from that position up to
+     * prefetchEndAddress from the underlying file with a single read.  Blocks in that range are then inflated without
+     * further reads of the file.  This is worthwhile when a range of blocks is about to be read in full and seeks of
+     * the underlying stream are expensive, such as for remote files.
+     *
+     * @param pos                virtual file pointer position
+     * @param prefetchEndAddress byte offset in the compressed file at which to stop reading ahead; no read ahead is
+     *                           done if this is not after the block of pos, or if pos is in the current block
+     * @throws IOException if stream is closed or not a file based stream
+     */
+    public void seek(final long pos, final long prefetchEndAddress) throws IOException {
+        final long compressedOffset = BlockCompressedFilePointerUtil.getBlockAddress(pos);
+        if (!mIsClosed && mFile != null && prefetchEndAddress > compressedOffset
+                && (mCurrentBlock == null || mCurrentBlock.mBlockAddress != compressedOffset)
+                && !(compressedOffset >= mPrefetchAddress && prefetchEndAddress <= mPrefetchAddress + mPrefetchLength)) {
+            prepareForSeek();
+            final int length = (int) Math.min(prefetchEndAddress - compressedOffset, Integer.MAX_VALUE - 8);
+            if (mPrefetchBuffer == null || mPrefetchBuffer.length < length) {
+                mPrefetchBuffer = new byte[length];
+            }
+            mFile.seek(compressedOffset);
+            mPrefetchAddress = compressedOffset;
+            mPrefetchLength = readFromFile(compressedOffset, mPrefetchBuffer, 0, length);
+            mFilePositionStale = true;
+        }
+        seek(pos);
+    }
+
+    /**
+     * @return the number of compressed bytes read from the underlying stream
+     */
+    public long getCompressedBytesRead() {
+        return mCompressedBytesRead;
+    }
+
+    /**
+     * @return the number of times a read of the underlying file did not continue from where the previous read ended
+     */
+    public long getNumberOfSeeks() {
+        return mNumberOfSeeks;
+    }
+
     /**
      * Performs cleanup required before seek is called on the underlying stream 
      */
@@ -394,7 +465,12 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
     }
 
     private boolean eof() throws IOException {
-        if (mFile.eof()) {
+        if (mFilePositionStale) {
+            // the current block came from the cache, so check whether it is the last one
+            if (mCurrentBlock.mBlockAddress + mCurrentBlock.mBlockCompressedSize >= mFile.length()) {
+                return true;
+            }
+        } else if (mFile.eof()) {
             return true;
         }
         // If the last remaining block is the size of the EMPTY_GZIP_BLOCK, this is the same as being at EOF.
@@ -506,6 +582,17 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
             mFileBuffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
         }
         long blockAddress = mStreamOffset;
+        final String blockCacheId = mBlockCacheId;
+        final InflatedBlockCache blockCache = InflatedBlockCache.getInstance();
+        final boolean cacheBlock = blockCacheId != null && blockCache.isEnabled();
+        if (cacheBlock) {
+            final InflatedBlockCache.Block cached = blockCache.get(blockCacheId, blockAddress, bufferAvailableForReuse);
+            if (cached != null) {
+                mStreamOffset += cached.compressedSize;
+                mFilePositionStale = true;
+                return new DecompressedBlock(blockAddress, cached.inflated, cached.compressedSize);
+            }
+        }
         try {
             final int headerByteCount = readBytes(mFileBuffer, 0, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH);
             mStreamOffset += headerByteCount;
@@ -530,6 +617,9 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
                         new FileTruncatedException(PREMATURE_END_MSG + getSource()));
             }
             final byte[] decompressed = inflateBlock(mFileBuffer, blockLength, bufferAvailableForReuse);
+            if (cacheBlock) {
+                blockCache.put(blockCacheId, blockAddress, decompressed, blockLength);
+            }
             return new DecompressedBlock(blockAddress, decompressed, blockLength);
         } catch (IOException e) {
             return new DecompressedBlock(blockAddress, 0, e);
@@ -557,14 +647,35 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
 
     private int readBytes(final byte[] buffer, final int offset, final int length) throws IOException {
         if (mFile != null) {
-            return readBytes(mFile, buffer, offset, length);
+            if (mStreamOffset >= mPrefetchAddress && mStreamOffset + length <= mPrefetchAddress + mPrefetchLength) {
+                System.arraycopy(mPrefetchBuffer, (int) (mStreamOffset - mPrefetchAddress), buffer, offset, length);
+                mFilePositionStale = true;
+                return length;
+            }
+            if (mFilePositionStale) {
+                mFile.seek(mStreamOffset);
+                mFilePositionStale = false;
+            }
+            return readFromFile(mStreamOffset, buffer, offset, length);
         } else if (mStream != null) {
-            return readBytes(mStream, buffer, offset, length);
+            final int count = readBytes(mStream, buffer, offset, length);
+            mCompressedBytesRead += count;
+            return count;
         } else {
             return 0;
         }
     }
 
+    private int readFromFile(final long address, final byte[] buffer, final int offset, final int length) throws IOException {
+        if (address != mNextReadAddress) {
+            mNumberOfSeeks++;
+        }
+        final int count = readBytes(mFile, buffer, offset, length);
+        mCompressedBytesRead += count;
+        mNextReadAddress = address + count;
+        return count;
+    }
+
     private static int readBytes(final SeekableStream file, final byte[] buffer, final int offset, final int length) throws IOException {
         int bytesRead = 0;
         while (bytesRead < length) {
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 
@@ -91,30 +92,22 @@ public class BlockCompressedOutputStream
     }
 
     private final BinaryCodec codec;
-    private final byte[] uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+    private byte[] uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
     private int numUncompressedBytes = 0;
-    private final byte[] compressedBuffer =
-            new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
-                    BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
-    private final Deflater deflater;
-
-    // A second deflater is created for the very unlikely case where the regular deflation actually makes
-    // things bigger, and the compressed block is too big.  It should be possible to downshift the
-    // primary deflater to NO_COMPRESSION level, recompress, and then restore it to its original setting,
-    // but in practice that doesn't work.
-    // The motivation for deflating at NO_COMPRESSION level is that it will predictably produce compressed
-    // output that is 10 bytes larger than the input, and the threshold at which a block is generated is such that
-    // the size of tbe final gzip block will always be <= 64K.  This is preferred over the previous method,
-    // which would attempt to compress up to 64K bytes, and if the resulting compressed block was too large,
-    // try compressing fewer input bytes (aka "downshifting').  The problem with downshifting is that
-    // getFilePointer might return an inaccurate value.
-    // I assume (AW 29-Oct-2013) that there is no value in using hardware-assisted deflater for no-compression mode,
-    // so just use JDK standard.
-    private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
-    private final CRC32 crc32 = new CRC32();
+    private final BlockCompressor compressor;
     private Path file = null;
     private long mBlockAddress = 0;
 
+    // Number of blocks handed to processBlock() and number of blocks actually written to the codec.  These only
+    // differ for subclasses that compress blocks asynchronously, see ParallelBlockCompressedOutputStream.
+    private long mBlocksSubmitted = 0;
+    private long mBlocksWritten = 0;
+
+    // Addresses of written blocks, indexed by block ordinal starting at mFirstRetainedOrdinal, kept only once
+    // getPendingFilePointer() has been called so that pending pointers can be resolved.
+    private boolean mTrackBlockAddresses = false;
+    private long mFirstRetainedOrdinal = 0;
+    private final ArrayDeque<Long> mBlockAddresses = new ArrayDeque<>();
 
     // Really a local variable, but allocate once to reduce GC burden.
     private final byte[] singleByteArray = new byte[1];
@@ -173,8 +166,7 @@ public class BlockCompressedOutputStream
     public BlockCompressedOutputStream(final Path path, final int compressionLevel, final DeflaterFactory deflaterFactory) {
         this.file = path;
         codec = new BinaryCodec(path, true);
-        deflater = deflaterFactory.makeDeflater(compressionLevel, true);
-        log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        compressor = new BlockCompressor(deflaterFactory.makeDeflater(compressionLevel, true));
     }
 
     /**
@@ -239,8 +231,7 @@ public class BlockCompressedOutputStream
         if (file != null) {
             codec.setOutputFileName(file.toAbsolutePath().toUri().toString());
         }
-        deflater = deflaterFactory.makeDeflater(compressionLevel, true);
-        log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        compressor = new BlockCompressor(deflaterFactory.makeDeflater(compressionLevel, true));
     }
 
     /**
@@ -304,6 +295,7 @@ public class BlockCompressedOutputStream
         while (numUncompressedBytes > 0) {
             deflateBlock();
         }
+        writePendingBlocks();
         codec.getOutputStream().flush();
     }
 
@@ -348,6 +340,7 @@ public class BlockCompressedOutputStream
      * Lower 16 bits is the byte offset into the uncompressed stream inside the block.
      */
     public long getFilePointer(){
+        writePendingBlocks();
         return BlockCompressedFilePointerUtil.makeFilePointer(mBlockAddress, numUncompressedBytes);
     }
 
@@ -357,58 +350,97 @@ public class BlockCompressedOutputStream
     }
 
     /**
-     * Attempt to write the data in uncompressedBuffer to the underlying file in a gzip block.
-     * If the entire uncompressedBuffer does not fit in the maximum allowed size, reduce the amount
-     * of data to be compressed, and slide the excess down in uncompressedBuffer so it can be picked
-     * up in the next deflate event.
-     * @return size of gzip block that was written.
+     * Returns a placeholder for the current virtual file pointer that can be obtained without waiting for
+     * blocks that are still being compressed.  Instead of the block address, the upper 48 bits hold the
+     * ordinal of the block within this stream.  Use {@link #resolveFilePointer(long)} to convert it into
+     * a real virtual file pointer once the preceding blocks have been written.
+     *
+     * Every pending pointer obtained from this method must eventually be resolved, and pending pointers must be
+     * resolved in the order in which they were obtained, otherwise block addresses are retained indefinitely.
+     */
+    public long getPendingFilePointer() {
+        if (!mTrackBlockAddresses) {
+            mTrackBlockAddresses = true;
+            mFirstRetainedOrdinal = mBlocksWritten;
+            mBlockAddresses.add(mBlockAddress);
+        }
+        return BlockCompressedFilePointerUtil.makeFilePointer(mBlocksSubmitted, numUncompressedBytes);
+    }
+
+    /**
+     * @return true if {@link #resolveFilePointer(long)} can resolve the given pending pointer without waiting
+     * for any block to be compressed.
      */
-    private int deflateBlock() {
+    public boolean isFilePointerResolvable(final long pendingFilePointer) {
+        return BlockCompressedFilePointerUtil.getBlockAddress(pendingFilePointer) <= mBlocksWritten;
+    }
+
+    /**
+     * Converts a pointer obtained from {@link #getPendingFilePointer()} into a virtual file pointer, waiting for
+     * preceding blocks to be compressed and written if necessary.
+     */
+    public long resolveFilePointer(final long pendingFilePointer) {
+        final long ordinal = BlockCompressedFilePointerUtil.getBlockAddress(pendingFilePointer);
+        if (!mTrackBlockAddresses || ordinal < mFirstRetainedOrdinal || ordinal > mBlocksSubmitted) {
+            throw new IllegalArgumentException("Pending file pointer " + pendingFilePointer + " cannot be resolved; " +
+                    "pending file pointers must be resolved in the order in which they were obtained.");
+        }
+        if (ordinal > mBlocksWritten) {
+            writePendingBlocks();
+        }
+        while (mFirstRetainedOrdinal < ordinal) {
+            mBlockAddresses.removeFirst();
+            mFirstRetainedOrdinal++;
+        }
+        return BlockCompressedFilePointerUtil.makeFilePointer(mBlockAddresses.getFirst(),
+                BlockCompressedFilePointerUtil.getBlockOffset(pendingFilePointer));
+    }
+
+    /**
+     * Hands the data in uncompressedBuffer over to processBlock() and continues with the buffer it returns.
+     */
+    private void deflateBlock() {
         if (numUncompressedBytes == 0) {
-            return 0;
+            return;
         }
+        final byte[] buffer = uncompressedBuffer;
         final int bytesToCompress = numUncompressedBytes;
-        // Compress the input
-        deflater.reset();
-        deflater.setInput(uncompressedBuffer, 0, bytesToCompress);
-        deflater.finish();
-        int compressedSize = deflater.deflate(compressedBuffer, 0, compressedBuffer.length);
-
-        // If it didn't all fit in compressedBuffer.length, set compression level to NO_COMPRESSION
-        // and try again.  This should always fit.
-        if (!deflater.finished()) {
-            noCompressionDeflater.reset();
-            noCompressionDeflater.setInput(uncompressedBuffer, 0, bytesToCompress);
-            noCompressionDeflater.finish();
-            compressedSize = noCompressionDeflater.deflate(compressedBuffer, 0, compressedBuffer.length);
-            if (!noCompressionDeflater.finished()) {
-                throw new IllegalStateException("unpossible");
-            }
-        }
-        // Data compressed small enough, so write it out.
-        crc32.reset();
-        crc32.update(uncompressedBuffer, 0, bytesToCompress);
+        numUncompressedBytes = 0;
+        mBlocksSubmitted++;
+        uncompressedBuffer = processBlock(buffer, bytesToCompress);
+    }
 
-        final int totalBlockSize = writeGzipBlock(compressedSize, bytesToCompress, crc32.getValue());
-        assert(bytesToCompress <= numUncompressedBytes);
+    /**
+     * Compresses the given uncompressed data and writes it as a gzip block.  Subclasses may instead hand the data
+     * off for compression on other threads, in which case they must eventually call
+     * {@link #writeGzipBlock(BlockCompressor, int)} for every block, in order, and write all outstanding blocks
+     * in {@link #writePendingBlocks()}.
+     *
+     * @param buffer uncompressed data to be compressed
+     * @param numBytes number of bytes of buffer to be compressed
+     * @return the buffer in which subsequent uncompressed data is to be accumulated.  May be the same as buffer
+     * if its content is no longer needed.
+     */
+    protected byte[] processBlock(final byte[] buffer, final int numBytes) {
+        compressor.compress(buffer, numBytes);
+        writeGzipBlock(compressor, numBytes);
+        return buffer;
+    }
 
-        // Clear out from uncompressedBuffer the data that was written
-        if (bytesToCompress == numUncompressedBytes) {
-            numUncompressedBytes = 0;
-        } else {
-            System.arraycopy(uncompressedBuffer, bytesToCompress, uncompressedBuffer, 0,
-                    numUncompressedBytes - bytesToCompress);
-            numUncompressedBytes -= bytesToCompress;
-        }
-        mBlockAddress += totalBlockSize;
-        return totalBlockSize;
+    /**
+     * Writes any blocks that have been handed to {@link #processBlock(byte[], int)} but not yet written,
+     * waiting for their compression to complete.  Does nothing in this implementation because blocks are
+     * always written synchronously.
+     */
+    protected void writePendingBlocks() {
     }
 
     /**
-     * Writes the entire gzip block, assuming the compressed data is stored in compressedBuffer
+     * Writes the entire gzip block, assuming the compressed data is stored in the compressor's buffer
      * @return  size of gzip block that was written.
      */
-    private int writeGzipBlock(final int compressedSize, final int uncompressedSize, final long crc) {
+    protected int writeGzipBlock(final BlockCompressor compressor, final int uncompressedSize) {
+        final int compressedSize = compressor.getCompressedSize();
         // Init gzip header
         codec.writeByte(BlockCompressedStreamConstants.GZIP_ID1);
         codec.writeByte(BlockCompressedStreamConstants.GZIP_ID2);
@@ -426,9 +458,92 @@ public class BlockCompressedOutputStream
 
         // I don't know why we store block size - 1, but that is what the spec says
         codec.writeShort((short)(totalBlockSize - 1));
-        codec.writeBytes(compressedBuffer, 0, compressedSize);
-        codec.writeInt((int)crc);
+        codec.writeBytes(compressor.getCompressedBuffer(), 0, compressedSize);
+        codec.writeInt((int)compressor.getCrc());
         codec.writeInt(uncompressedSize);
+
+        mBlockAddress += totalBlockSize;
+        mBlocksWritten++;
+        if (mTrackBlockAddresses) {
+            mBlockAddresses.add(mBlockAddress);
+        }
         return totalBlockSize;
     }
+
+    /**
+     * Deflates a single block of uncompressed data and computes its CRC.  Instances are not thread-safe, but
+     * distinct instances may be used concurrently.
+     */
+    protected static class BlockCompressor {
+        private final byte[] compressedBuffer =
+                new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
+                        BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+        private final Deflater deflater;
+
+        // A second deflater is created for the very unlikely case where the regular deflation actually makes
+        // things bigger, and the compressed block is too big.  It should be possible to downshift the
+        // primary deflater to NO_COMPRESSION level, recompress, and then restore it to its original setting,
+        // but in practice that doesn't work.
+        // The motivation for deflating at NO_COMPRESSION level is that it will predictably produce compressed
+        // output that is 10 bytes larger than the input, and the threshold at which a block is generated is such that
+        // the size of tbe final gzip block will always be <= 64K.  This is preferred over the previous method,
+        // which would attempt to compress up to 64K bytes, and if the resulting compressed block was too large,
+        // try compressing fewer input bytes (aka "downshifting').  The problem with downshifting is that
+        // getFilePointer might return an inaccurate value.
+        // I assume (AW 29-Oct-2013) that there is no value in using hardware-assisted deflater for no-compression mode,
+        // so just use JDK standard.
+        private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+        private final CRC32 crc32 = new CRC32();
+        private int compressedSize = 0;
+
+        protected BlockCompressor(final Deflater deflater) {
+            this.deflater = deflater;
+            log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        }
+
+        /**
+         * Compresses the first numBytes of uncompressedBuffer into this compressor's buffer.
+         * @return size of the compressed data.
+         */
+        protected int compress(final byte[] uncompressedBuffer, final int numBytes) {
+            // Compress the input
+            deflater.reset();
+            deflater.setInput(uncompressedBuffer, 0, numBytes);
+            deflater.finish();
+            compressedSize = deflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+
+            // If it didn't all fit in compressedBuffer.length, set compression level to NO_COMPRESSION
+            // and try again.  This should always fit.
+            if (!deflater.finished()) {
+                noCompressionDeflater.reset();
+                noCompressionDeflater.setInput(uncompressedBuffer, 0, numBytes);
+                noCompressionDeflater.finish();
+                compressedSize = noCompressionDeflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+                if (!noCompressionDeflater.finished()) {
+                    throw new IllegalStateException("unpossible");
+                }
+            }
+            crc32.reset();
+            crc32.update(uncompressedBuffer, 0, numBytes);
+            return compressedSize;
+        }
+
+        protected byte[] getCompressedBuffer() {
+            return compressedBuffer;
+        }
+
+        protected int getCompressedSize() {
+            return compressedSize;
+        }
+
+        protected long getCrc() {
+            return crc32.getValue();
+        }
+
+        /** Releases the native resources held by the deflaters. */
+        protected void end() {
+            deflater.end();
+            noCompressionDeflater.end();
+        }
+    }
 }
@@ -29,6 +29,7 @@ import htsjdk.samtools.SAMException;
 import htsjdk.samtools.seekablestream.SeekableBufferedStream;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableHTTPStream;
+import htsjdk.samtools.seekablestream.SeekableMappedFileStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.tribble.Tribble;
 import htsjdk.samtools.util.nio.DeleteOnExitPathHook;
@@ -175,7 +176,8 @@ public class IOUtil {
     }
 
     public static SeekableStream maybeBufferedSeekableStream(final SeekableStream stream, final int bufferSize) {
-        return bufferSize > 0 ? new SeekableBufferedStream(stream, bufferSize) : stream; 
+        // mapped files are read from memory already
+        return bufferSize > 0 && !(stream instanceof SeekableMappedFileStream) ? new SeekableBufferedStream(stream, bufferSize) : stream;
     }
     
     public static SeekableStream maybeBufferedSeekableStream(final SeekableStream stream) {
@@ -184,8 +186,11 @@ public class IOUtil {
     
     public static SeekableStream maybeBufferedSeekableStream(final File file) {
         try {
+            if (SeekableMappedFileStream.canMap(file.toPath())) {
+                return new SeekableMappedFileStream(file);
+            }
             return maybeBufferedSeekableStream(new SeekableFileStream(file));
-        } catch (final FileNotFoundException e) {
+        } catch (final IOException e) {
             throw new RuntimeIOException(e);
         }
     }
@@ -0,0 +1,225 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.Defaults;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Process-wide least recently used cache of inflated BGZF blocks, shared by all {@link BlockCompressedInputStream}s
+ * that opt in with {@link BlockCompressedInputStream#setUseBlockCache(boolean)}, as the BAM and tabix readers do
+ * for indexed queries.  Overlapping queries, whether from one reader or from readers of the same file on several
+ * threads, then inflate each block only once while it stays in the cache.
+ * <p>
+ * Blocks are keyed by the source of the stream, its length and the address of the block, so a file must not be
+ * modified in place while it is being read.  The cache is disabled until it is given a size, either with
+ * {@link #setMaxBytes(long)} or with the samjdk.bgzf_block_cache_size system property
+ * (see {@link Defaults#BGZF_BLOCK_CACHE_SIZE}).
+ */
+public final class InflatedBlockCache {
+    /** Approximate memory used by each entry in addition to the inflated block */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private static final InflatedBlockCache INSTANCE = new InflatedBlockCache(Defaults.BGZF_BLOCK_CACHE_SIZE);
+
+    private final LinkedHashMap<Key, Block> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile long maxBytes;
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    InflatedBlockCache(final long maxBytes) {
+        setMaxBytes(maxBytes);
+    }
+
+    /**
+     * @return the cache shared by all streams in this process
+     */
+    public static InflatedBlockCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if blocks are being cached
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the amount of memory available for inflated blocks, evicting blocks if it is lower than the memory
+     * already used.  0 disables and empties the cache.
+     */
+    public synchronized void setMaxBytes(final long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must be >= 0");
+        }
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * @return memory used by the blocks in the cache, in bytes
+     */
+    public synchronized long getSizeInBytes() {
+        return bytes;
+    }
+
+    public synchronized int getNumberOfBlocks() {
+        return blocks.size();
+    }
+
+    /**
+     * @return the number of lookups that found the block in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that did not find the block in the cache
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of blocks removed to stay within the maximum size
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Removes all blocks and resets the counters.
+     */
+    public synchronized void clear() {
+        blocks.clear();
+        bytes = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Copies a cached block into the given buffer, or a new one if it is not the size of the block.
+     *
+     * @param source       identifies the file, see {@link #sourceKey(String, long)}
+     * @param blockAddress address of the block in the file
+     * @param buffer       buffer to reuse, may be null
+     * @return the inflated block and its compressed size, or null if the block is not cached
+     */
+    Block get(final String source, final long blockAddress, final byte[] buffer) {
+        final Block cached;
+        synchronized (this) {
+            cached = blocks.get(new Key(source, blockAddress));
+            if (cached == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        // blocks in the cache are never modified, so can be copied outside the lock
+        final byte[] copy = buffer != null && buffer.length == cached.inflated.length ? buffer : new byte[cached.inflated.length];
+        System.arraycopy(cached.inflated, 0, copy, 0, copy.length);
+        return new Block(copy, cached.compressedSize);
+    }
+
+    /**
+     * Adds a copy of an inflated block to the cache, evicting the least recently used blocks if necessary.
+     */
+    void put(final String source, final long blockAddress, final byte[] inflated, final int compressedSize) {
+        final long size = inflated.length + ENTRY_OVERHEAD_BYTES;
+        if (size > maxBytes) {
+            return;
+        }
+        final Block block = new Block(inflated.clone(), compressedSize);
+        synchronized (this) {
+            final Block previous = blocks.put(new Key(source, blockAddress), block);
+            bytes += size;
+            if (previous != null) {
+                bytes -= previous.inflated.length + ENTRY_OVERHEAD_BYTES;
+            }
+            evict();
+        }
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<Key, Block>> it = blocks.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().inflated.length + ENTRY_OVERHEAD_BYTES;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * @return the identity of a file in the cache, or null if it cannot be cached
+     */
+    static String sourceKey(final String source, final long length) {
+        return source == null || length <= 0 ? null : source + '@' + length;
+    }
+
+    static final class Block {
+        final byte[] inflated;
+        final int compressedSize;
+
+        Block(final byte[] inflated, final int compressedSize) {
+            this.inflated = inflated;
+            this.compressedSize = compressedSize;
+        }
+    }
+
+    private static final class Key {
+        private final String source;
+        private final long blockAddress;
+
+        Key(final String source, final long blockAddress) {
+            this.source = source;
+            this.blockAddress = blockAddress;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return blockAddress == key.blockAddress && source.equals(key.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, blockAddress);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.FileTruncatedException;
+import htsjdk.samtools.seekablestream.SeekableStream;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Iterates over the BGZF blocks of a file in file order, returning each block inflated together with its address.
+ * Blocks are read sequentially by a single thread and, if a pool of workers is given, inflated on those workers so
+ * that whole-file scans are not limited by the speed of a single inflater.
+ *
+ * Empty blocks, such as the BGZF terminator block, are returned like any other block.
+ *
+ * Note that this implementation is not synchronized. If multiple threads access an instance concurrently, it must be
+ * synchronized externally.
+ */
+public class InflatedBlockIterator implements CloseableIterator<InflatedBlockIterator.Block> {
+    /** number of blocks inflated by each task given to the workers */
+    private static final int BLOCKS_PER_TASK = 16;
+
+    private static final ThreadLocal<BlockGunzipper> gunzippers = ThreadLocal.withInitial(BlockGunzipper::new);
+
+    /**
+     * A BGZF block.  Before it is inflated the data is the compressed block, afterwards it is the inflated content.
+     */
+    public static final class Block {
+        /** address of the block in the file */
+        public final long address;
+        /** size of the block in the file */
+        public final int compressedSize;
+        public final byte[] data;
+
+        private Block(final long address, final int compressedSize, final byte[] data) {
+            this.address = address;
+            this.compressedSize = compressedSize;
+            this.data = data;
+        }
+
+        /**
+         * @return the virtual file pointer of the given offset in this block, pointing at the start of the next
+         * block for the end of this block as {@link BlockCompressedInputStream#getFilePointer()} does.
+         */
+        public long getFilePointer(final int offset) {
+            if (offset > 0 && offset == data.length) {
+                return BlockCompressedFilePointerUtil.makeFilePointer(address + compressedSize, 0);
+            }
+            return BlockCompressedFilePointerUtil.makeFilePointer(address, offset);
+        }
+    }
+
+    private final CloseableIterator<Block> iterator;
+
+    /**
+     * @param stream       BGZF file, positioned anywhere.  It is closed when this iterator is closed.
+     * @param startAddress address of the first block to return
+     * @param inflaters    threads on which to inflate blocks, or null to inflate them on the calling thread.
+     *                     They are not shut down by this iterator.
+     * @param threads      number of threads in the pool of inflaters, used to decide how far to read ahead
+     */
+    public InflatedBlockIterator(final SeekableStream stream, final long startAddress, final ExecutorService inflaters,
+                                 final int threads) throws IOException {
+        stream.seek(startAddress);
+        final CompressedBlockIterator compressedBlocks = new CompressedBlockIterator(stream, startAddress);
+        if (inflaters == null) {
+            iterator = new CloseableIterator<Block>() {
+                @Override
+                public boolean hasNext() {
+                    return compressedBlocks.hasNext();
+                }
+
+                @Override
+                public Block next() {
+                    return inflate(compressedBlocks.next());
+                }
+
+                @Override
+                public void close() {
+                    compressedBlocks.close();
+                }
+            };
+        } else {
+            iterator = new ParallelDecodingIterator<>(compressedBlocks, InflatedBlockIterator::inflate, inflaters,
+                    BLOCKS_PER_TASK, 2 * Math.max(1, threads));
+        }
+    }
+
+    private static Block inflate(final Block compressed) {
+        final int uncompressedLength = unpackInt32(compressed.data, compressed.compressedSize - 4);
+        if (uncompressedLength < 0) {
+            throw new RuntimeIOException("Invalid uncompressed length " + uncompressedLength + " of block at " + compressed.address);
+        }
+        final byte[] inflated = new byte[uncompressedLength];
+        gunzippers.get().unzipBlock(inflated, compressed.data, compressed.compressedSize);
+        return new Block(compressed.address, compressed.compressedSize, inflated);
+    }
+
+    private static int unpackInt32(final byte[] buffer, final int offset) {
+        return ((buffer[offset] & 0xFF) |
+                ((buffer[offset + 1] & 0xFF) << 8) |
+                ((buffer[offset + 2] & 0xFF) << 16) |
+                ((buffer[offset + 3] & 0xFF) << 24));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public Block next() {
+        return iterator.next();
+    }
+
+    @Override
+    public void close() {
+        iterator.close();
+    }
+
+    /**
+     * Reads compressed blocks from the stream.
+     */
+    private static final class CompressedBlockIterator implements CloseableIterator<Block> {
+        private final SeekableStream stream;
+        private long address;
+        private Block next;
+
+        private CompressedBlockIterator(final SeekableStream stream, final long address) {
+            this.stream = stream;
+            this.address = address;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = readBlock();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Block next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("next");
+            }
+            final Block block = next;
+            next = null;
+            return block;
+        }
+
+        private Block readBlock() {
+            try {
+                final byte[] header = new byte[BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+                final int headerByteCount = readBytes(header, 0, header.length);
+                if (headerByteCount == 0) {
+                    return null;
+                }
+                if (headerByteCount != header.length) {
+                    throw new IOException(BlockCompressedInputStream.INCORRECT_HEADER_SIZE_MSG + stream.getSource());
+                }
+                final int blockLength = ((header[BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET] & 0xFF) |
+                        ((header[BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET + 1] & 0xFF) << 8)) + 1;
+                if (blockLength < header.length || blockLength > BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE) {
+                    throw new IOException(BlockCompressedInputStream.UNEXPECTED_BLOCK_LENGTH_MSG + blockLength + " for " + stream.getSource());
+                }
+                final byte[] block = new byte[blockLength];
+                System.arraycopy(header, 0, block, 0, header.length);
+                if (readBytes(block, header.length, blockLength - header.length) != blockLength - header.length) {
+                    throw new FileTruncatedException(BlockCompressedInputStream.PREMATURE_END_MSG + stream.getSource());
+                }
+                final Block compressed = new Block(address, blockLength, block);
+                address += blockLength;
+                return compressed;
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+
+        private int readBytes(final byte[] buffer, final int offset, final int length) throws IOException {
+            int bytesRead = 0;
+            while (bytesRead < length) {
+                final int count = stream.read(buffer, offset + bytesRead, length - bytesRead);
+                if (count <= 0) {
+                    break;
+                }
+                bytesRead += count;
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public void close() {
+            CloserUtil.close(stream);
+        }
+    }
+}
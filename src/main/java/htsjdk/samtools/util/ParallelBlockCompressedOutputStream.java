@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.util.zip.DeflaterFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Multi-threaded implementation of {@link BlockCompressedOutputStream}.  Full blocks of uncompressed data are
+ * deflated on a bounded pool of worker threads owned by this stream, and the resulting gzip blocks are written
+ * to the underlying stream in their original order by the thread calling write(), so the output is byte-for-byte
+ * identical to that of {@link BlockCompressedOutputStream}.
+ *
+ * {@link #getFilePointer()} is exact but has to wait for all outstanding blocks to be compressed.  Callers that need
+ * a virtual file pointer for every record (e.g. indexers) should use {@link #getPendingFilePointer()} and resolve
+ * those pointers once {@link #isFilePointerResolvable(long)} returns true.
+ *
+ * Note that this implementation is not synchronized. If multiple threads access an instance concurrently, it must be
+ * synchronized externally.
+ */
+public class ParallelBlockCompressedOutputStream extends BlockCompressedOutputStream {
+    private static volatile int threadsCreated = 0; // Just used for thread naming.
+
+    private final ExecutorService threadpool;
+    private final int maxBlocksInFlight;
+
+    /**
+     * Blocks (in stream order) that have been submitted for compression but not yet written.
+     */
+    private final ArrayDeque<PendingBlock> pendingBlocks = new ArrayDeque<>();
+    /**
+     * Compressors and uncompressed buffers of blocks that have already been written, available for reuse.
+     */
+    private final ArrayDeque<BlockCompressor> freeCompressors = new ArrayDeque<>();
+    private final ArrayDeque<byte[]> freeBuffers = new ArrayDeque<>();
+    private final List<BlockCompressor> allCompressors = new ArrayList<>();
+    private final int compressionLevel;
+    private final DeflaterFactory deflaterFactory;
+
+    /**
+     * Creates the output stream.
+     * @param os output stream to create a BlockCompressedOutputStream from
+     * @param file file to which to write the output or null if not available
+     * @param compressionLevel the compression level (0-9)
+     * @param deflaterFactory custom factory to create deflaters (overrides the default)
+     * @param threads number of threads used to compress blocks, must be positive
+     */
+    public ParallelBlockCompressedOutputStream(final OutputStream os, final Path file, final int compressionLevel,
+                                               final DeflaterFactory deflaterFactory, final int threads) {
+        super(os, file, compressionLevel, deflaterFactory);
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + threads);
+        }
+        this.compressionLevel = compressionLevel;
+        this.deflaterFactory = deflaterFactory;
+        // allow the caller to fill the next buffers while every thread is busy
+        this.maxBlocksInFlight = 2 * threads;
+        this.threadpool = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setName("BgzfCompressor" + threadsCreated++);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Creates the output stream.
+     * @param os output stream to create a BlockCompressedOutputStream from
+     * @param file file to which to write the output or null if not available
+     * @param compressionLevel the compression level (0-9)
+     * @param deflaterFactory custom factory to create deflaters (overrides the default)
+     * @param threads number of threads used to compress blocks, must be positive
+     */
+    public ParallelBlockCompressedOutputStream(final OutputStream os, final File file, final int compressionLevel,
+                                               final DeflaterFactory deflaterFactory, final int threads) {
+        this(os, IOUtil.toPath(file), compressionLevel, deflaterFactory, threads);
+    }
+
+    /**
+     * Uses the default compression level and {@link DeflaterFactory}.
+     * @param os output stream to create a BlockCompressedOutputStream from
+     * @param file file to which to write the output or null if not available
+     * @param threads number of threads used to compress blocks, must be positive
+     */
+    public ParallelBlockCompressedOutputStream(final OutputStream os, final Path file, final int threads) {
+        this(os, file, getDefaultCompressionLevel(), getDefaultDeflaterFactory(), threads);
+    }
+
+    /**
+     * Submits the block to the thread pool and returns a free buffer to fill in the meantime.
+     * Blocks until a slot is available if the maximum number of blocks is already in flight.
+     */
+    @Override
+    protected byte[] processBlock(final byte[] buffer, final int numBytes) {
+        while (pendingBlocks.size() >= maxBlocksInFlight) {
+            writeNextPendingBlock();
+        }
+        final BlockCompressor compressor = freeCompressors.isEmpty() ? newCompressor() : freeCompressors.poll();
+        final Future<?> future = threadpool.submit(() -> compressor.compress(buffer, numBytes));
+        pendingBlocks.add(new PendingBlock(future, compressor, buffer, numBytes));
+
+        // write out whatever has already finished without waiting on anything
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peek().future.isDone()) {
+            writeNextPendingBlock();
+        }
+        return freeBuffers.isEmpty() ? new byte[buffer.length] : freeBuffers.poll();
+    }
+
+    @Override
+    protected void writePendingBlocks() {
+        while (!pendingBlocks.isEmpty()) {
+            writeNextPendingBlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            threadpool.shutdownNow();
+            for (final PendingBlock block : pendingBlocks) {
+                block.future.cancel(true);
+            }
+            pendingBlocks.clear();
+            for (final BlockCompressor compressor : allCompressors) {
+                compressor.end();
+            }
+            allCompressors.clear();
+            freeCompressors.clear();
+        }
+    }
+
+    private BlockCompressor newCompressor() {
+        final BlockCompressor compressor = new BlockCompressor(deflaterFactory.makeDeflater(compressionLevel, true));
+        allCompressors.add(compressor);
+        return compressor;
+    }
+
+    /**
+     * Waits for the oldest pending block to be compressed and writes it.
+     */
+    private void writeNextPendingBlock() {
+        final PendingBlock block = pendingBlocks.poll();
+        try {
+            block.future.get();
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for compression thread", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) throw (Error) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeIOException(cause);
+        }
+        writeGzipBlock(block.compressor, block.numBytes);
+        freeCompressors.add(block.compressor);
+        freeBuffers.add(block.buffer);
+    }
+
+    private static class PendingBlock {
+        private final Future<?> future;
+        private final BlockCompressor compressor;
+        private final byte[] buffer;
+        private final int numBytes;
+
+        private PendingBlock(final Future<?> future, final BlockCompressor compressor, final byte[] buffer, final int numBytes) {
+            this.future = future;
+            this.compressor = compressor;
+            this.buffer = buffer;
+            this.numBytes = numBytes;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Iterator that traverses an iterator of raw items on a dedicated background thread, decodes batches of those
+ * items on a pool of worker threads and returns the decoded items in their original order.
+ *
+ * The underlying iterator is only ever accessed by the background thread, and the decoder is applied
+ * concurrently to different items, so it must not rely on state shared with the underlying iterator or with
+ * other invocations unless that state is thread-safe.  Exceptions thrown by either are rethrown to the caller
+ * at the point at which they would have been encountered by synchronous iteration.
+ *
+ * Note that this implementation is not synchronized. If multiple threads
+ * access an instance concurrently, it must be synchronized externally.
+ */
+public class ParallelDecodingIterator<R, T> implements CloseableIterator<T> {
+    private static final Log log = Log.getInstance(ParallelDecodingIterator.class);
+    private static final AtomicInteger threadsCreated = new AtomicInteger(0);
+    /**
+     * Marks the end of the underlying iterator in the queue of batches.
+     */
+    private final Future<List<T>> endOfStream = CompletableFuture.completedFuture(null);
+
+    private final Iterator<R> underlyingIterator;
+    private final Function<R, T> decoder;
+    private final ExecutorService workers;
+    private final int batchSize;
+    /**
+     * Batches (in iteration order) that have been handed to the workers.
+     */
+    private final BlockingQueue<Future<List<T>>> batches;
+    private final Thread backgroundThread;
+    /**
+     * Indicates whether the background thread should stop as soon as possible because the iterator is closed.
+     * The background thread is deliberately not interrupted since that would close interruptible channels
+     * the underlying iterator may be reading from.
+     */
+    private volatile boolean closed = false;
+    private Iterator<T> currentBatch = Collections.emptyIterator();
+    private boolean endOfStreamReached = false;
+
+    /**
+     * @param iterator iterator of raw items to traverse on the background thread
+     * @param decoder function applied to each raw item on a worker thread
+     * @param workers thread pool on which batches are decoded. It is not shut down by this iterator.
+     * @param batchSize number of items decoded by each task. A larger size will increase both throughput and latency.
+     * @param batchesInFlight maximum number of batches that are read ahead of the caller
+     */
+    public ParallelDecodingIterator(final Iterator<R> iterator, final Function<R, T> decoder, final ExecutorService workers,
+                                    final int batchSize, final int batchesInFlight) {
+        if (iterator == null) throw new IllegalArgumentException("iterator cannot be null");
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be at least 1 record.");
+        if (batchesInFlight <= 0) throw new IllegalArgumentException("Must read ahead at least 1 batch.");
+        this.underlyingIterator = iterator;
+        this.decoder = decoder;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.batches = new ArrayBlockingQueue<>(batchesInFlight);
+        this.backgroundThread = new Thread(this::backgroundRun,
+                ParallelDecodingIterator.class.getSimpleName() + threadsCreated.incrementAndGet());
+        this.backgroundThread.setDaemon(true);
+        log.debug("Starting thread " + this.backgroundThread.getName());
+        this.backgroundThread.start();
+    }
+
+    /**
+     * Creates a fixed-size pool of daemon threads suitable for the workers of this iterator.
+     */
+    public static ExecutorService newWorkerPool(final int threads) {
+        return Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setName(ParallelDecodingIterator.class.getSimpleName() + "Worker" + threadsCreated.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Stops the background thread, waiting for it to finish reading the current item, and closes the
+     * underlying iterator.  Items read ahead but not yet returned are discarded.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                do {
+                    for (final Future<List<T>> batch : batches) {
+                        batch.cancel(false);
+                    }
+                    batches.clear();
+                    backgroundThread.join(50);
+                } while (backgroundThread.isAlive());
+            } catch (final InterruptedException ie) {
+                throw new RuntimeException("Interrupted waiting for background thread to complete", ie);
+            } finally {
+                CloserUtil.close(underlyingIterator);
+                currentBatch = Collections.emptyIterator();
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            throw new IllegalStateException("iterator has been closed");
+        }
+        while (!currentBatch.hasNext() && !endOfStreamReached) {
+            final Future<List<T>> batch;
+            try {
+                batch = batches.take();
+            } catch (final InterruptedException e) {
+                throw new RuntimeException("Interrupted waiting for background thread", e);
+            }
+            if (batch == endOfStream) {
+                endOfStreamReached = true;
+            } else {
+                currentBatch = getBatch(batch).iterator();
+            }
+        }
+        return currentBatch.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (hasNext()) {
+            return currentBatch.next();
+        }
+        throw new NoSuchElementException("next");
+    }
+
+    /**
+     * Waits for the batch to be decoded, raising any exception encountered by the
+     * background or worker threads back to the foreground caller.
+     */
+    private List<T> getBatch(final Future<List<T>> batch) {
+        try {
+            return batch.get();
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for worker thread", e);
+        } catch (final ExecutionException e) {
+            final Throwable t = e.getCause();
+            if (t instanceof Error) {
+                throw (Error) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+
+    private List<T> decode(final List<R> rawItems) {
+        final List<T> decoded = new ArrayList<>(rawItems.size());
+        for (final R item : rawItems) {
+            decoded.add(decoder.apply(item));
+        }
+        return decoded;
+    }
+
+    /**
+     * Background thread run loop: reads batches of raw items and submits them to the workers.
+     */
+    private void backgroundRun() {
+        try {
+            boolean hasNext = true;
+            while (hasNext && !closed) {
+                final List<R> rawItems = new ArrayList<>(batchSize);
+                try {
+                    while (rawItems.size() < batchSize && (hasNext = underlyingIterator.hasNext())) {
+                        rawItems.add(underlyingIterator.next());
+                    }
+                } catch (final Throwable t) {
+                    // Decode the items read so far, then raise the exception on the foreground thread
+                    if (!rawItems.isEmpty() && !submit(rawItems)) {
+                        return;
+                    }
+                    enqueue(failed(t));
+                    return;
+                }
+                if (!rawItems.isEmpty() && !submit(rawItems)) {
+                    return;
+                }
+            }
+            enqueue(endOfStream);
+        } catch (final InterruptedException e) {
+            // stop thread
+        }
+    }
+
+    /**
+     * Hands the batch to the workers and queues it.  If the workers refuse the batch, for example because the
+     * pool has been shut down, the failure is queued instead so that it is raised on the foreground thread.
+     *
+     * @return false if the batch could not be submitted and the background thread should stop
+     */
+    private boolean submit(final List<R> rawItems) throws InterruptedException {
+        final Future<List<T>> batch;
+        try {
+            batch = workers.submit(() -> decode(rawItems));
+        } catch (final RuntimeException e) {
+            enqueue(failed(e));
+            return false;
+        }
+        enqueue(batch);
+        return true;
+    }
+
+    private static <T> Future<List<T>> failed(final Throwable t) {
+        final CompletableFuture<List<T>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(t);
+        return failed;
+    }
+
+    /**
+     * Adds the batch to the queue, giving up if the iterator is closed while waiting for space.
+     */
+    private void enqueue(final Future<List<T>> batch) throws InterruptedException {
+        while (!closed) {
+            if (batches.offer(batch, 50, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+        batch.cancel(false);
+    }
+}
@@ -0,0 +1,677 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.Defaults;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Variant of {@link SortingCollection} that holds records in RAM in their serialized form rather than as objects.
+ * Records are encoded with the codec as they are added and appended to large reusable byte arrays, together with
+ * a primitive sort key prefix extracted from each record.  Each run of records is sorted by a parallel sort of the
+ * key prefixes, so records are only decoded during the sort when their prefixes are equal, to be ordered by the
+ * comparator.  Full runs are written to temporary files by a background thread while the next run is filled.
+ * <p>
+ * The key prefix function must be consistent with the comparator: if key(a) &lt; key(b) then a must sort before b.
+ * It should distinguish as many records as possible, since the records that share a prefix are decoded together.
+ * <p>
+ * The amount of RAM is expressed in bytes of serialized records plus a small per-record overhead, and is split
+ * between the run being filled and the run being written out.  The codec must have written the whole record to
+ * its output stream when {@link SortingCollection.Codec#encode(Object)} returns, as {@link htsjdk.samtools.BAMRecordCodec}
+ * does, and temporary files are compressed as for {@link SortingCollection}.
+ * <p>
+ * As with {@link SortingCollection}, records equal according to the comparator are returned in the order in which
+ * they were added, and the records returned are decoded copies of those added.  Unlike {@link SortingCollection},
+ * the collection can always be iterated more than once until {@link #cleanup()} is called.
+ */
+public class SerializedSortingCollection<T> implements Iterable<T> {
+    private static final Log log = Log.getInstance(SerializedSortingCollection.class);
+    private static volatile int threadsCreated = 0; // Just used for thread naming.
+
+    /**
+     * Approximate RAM used for each record in addition to its serialized form: key prefix, location and sort buffers.
+     */
+    static final int RECORD_OVERHEAD_BYTES = 40;
+    private static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    private final SortingCollection.Codec<T> codec;
+    private final Comparator<T> comparator;
+    private final ToLongFunction<T> keyPrefix;
+    private final Path[] tmpDirs;
+    private final TempStreamFactory tempStreamFactory = new TempStreamFactory();
+    /**
+     * Maximum RAM used by one run, half of the total since one run may be written while the next is filled.
+     */
+    private final long maxBytesPerRun;
+    private final int chunkSize;
+
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+    private Run activeRun;
+    /**
+     * Run that was written to disk by the last spill and can be refilled once that spill completes.
+     */
+    private Future<Path> pendingSpill;
+    private Run spilledRun;
+    private ExecutorService spillExecutor;
+    private final List<Path> files = new ArrayList<>();
+
+    private boolean doneAdding = false;
+    private boolean cleanedUp = false;
+
+    /**
+     * @param codec         encodes records into RAM and temporary files, and is cloned to decode them
+     * @param comparator    defines the sort order
+     * @param keyPrefix     extracts a key consistent with the comparator from each record
+     * @param maxBytesInRam RAM available for records, in bytes
+     * @param tmpDirs       where to write runs of records that do not fit in RAM
+     */
+    private SerializedSortingCollection(final SortingCollection.Codec<T> codec, final Comparator<T> comparator,
+                                        final ToLongFunction<T> keyPrefix, final long maxBytesInRam, final Path... tmpDirs) {
+        if (maxBytesInRam <= 0) {
+            throw new IllegalArgumentException("maxBytesInRam must be > 0");
+        }
+        if (tmpDirs == null || tmpDirs.length == 0) {
+            throw new IllegalArgumentException("At least one temp directory must be provided.");
+        }
+        this.codec = codec;
+        this.comparator = comparator;
+        this.keyPrefix = keyPrefix;
+        this.tmpDirs = tmpDirs;
+        this.maxBytesPerRun = Math.max(1, maxBytesInRam / 2);
+        this.chunkSize = (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, maxBytesPerRun));
+        this.codec.setOutputStream(recordBuffer);
+        this.activeRun = new Run();
+    }
+
+    /**
+     * Creates a collection writing temporary files to the given directories.
+     *
+     * @param codec         encodes records into RAM and temporary files, and is cloned to decode them
+     * @param comparator    defines the sort order
+     * @param keyPrefix     extracts from each record a key consistent with the comparator, see the class documentation
+     * @param maxBytesInRam RAM available for records, in bytes
+     * @param tmpDirs       where to write runs of records that do not fit in RAM
+     */
+    public static <T> SerializedSortingCollection<T> newInstance(final SortingCollection.Codec<T> codec,
+                                                                 final Comparator<T> comparator,
+                                                                 final ToLongFunction<T> keyPrefix,
+                                                                 final long maxBytesInRam,
+                                                                 final Path... tmpDirs) {
+        return new SerializedSortingCollection<>(codec, comparator, keyPrefix, maxBytesInRam, tmpDirs);
+    }
+
+    public void add(final T rec) {
+        if (doneAdding) {
+            throw new IllegalStateException("Cannot add after calling doneAdding()");
+        }
+        recordBuffer.reset();
+        codec.encode(rec);
+        final int length = recordBuffer.size();
+        if (length == 0) {
+            throw new IllegalStateException("Codec did not write the record to its output stream");
+        }
+        if (activeRun.size > 0 && activeRun.bytes + length + RECORD_OVERHEAD_BYTES > maxBytesPerRun) {
+            spillActiveRun();
+        }
+        activeRun.add(keyPrefix.applyAsLong(rec), recordBuffer.buffer(), length);
+    }
+
+    /**
+     * Waits for the records already added to be written to disk, apart from those that fit in RAM, and sorts
+     * the latter.  Called by {@link #iterator()} if necessary.
+     */
+    public void doneAdding() {
+        if (cleanedUp) {
+            throw new IllegalStateException("Cannot call doneAdding() after cleanup() was called.");
+        }
+        if (doneAdding) {
+            return;
+        }
+        doneAdding = true;
+        try {
+            waitForPendingSpill();
+        } finally {
+            shutdownSpillExecutor();
+        }
+        // the last run is merged from RAM rather than written to disk
+        spilledRun = null;
+        activeRun.sort();
+    }
+
+    /**
+     * @return the number of temporary files written so far
+     */
+    public int getNumberOfSpilledRuns() {
+        return files.size() + (pendingSpill == null ? 0 : 1);
+    }
+
+    /**
+     * Prepares to iterate through the records in order.  add() may not be called after this method.
+     */
+    @Override
+    public CloseableIterator<T> iterator() {
+        if (cleanedUp) {
+            throw new IllegalStateException("Cannot call iterator() after cleanup() was called.");
+        }
+        doneAdding();
+        if (files.isEmpty()) {
+            return new InMemoryRunIterator(activeRun, 0);
+        }
+        return new MergingIterator();
+    }
+
+    /**
+     * Deletes the temporary files and releases the records held in RAM.  After this method is called,
+     * iterator() may not be called.
+     */
+    public void cleanup() {
+        if (cleanedUp) {
+            return;
+        }
+        cleanedUp = true;
+        doneAdding = true;
+        try {
+            if (pendingSpill != null) {
+                try {
+                    files.add(pendingSpill.get());
+                } catch (final InterruptedException | ExecutionException e) {
+                    // the file, if any, is deleted by the failed spill
+                }
+                pendingSpill = null;
+            }
+        } finally {
+            shutdownSpillExecutor();
+            activeRun = null;
+            spilledRun = null;
+            IOUtil.deletePaths(files);
+        }
+    }
+
+    /**
+     * Hands the active run to the background thread to be sorted and written, and continues with the run
+     * written by the previous spill once that is complete.
+     */
+    private void spillActiveRun() {
+        waitForPendingSpill();
+        if (spillExecutor == null) {
+            spillExecutor = Executors.newSingleThreadExecutor(r -> {
+                final Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setName("SortingCollectionSpiller" + threadsCreated++);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        final Run run = activeRun;
+        pendingSpill = spillExecutor.submit(() -> writeRun(run));
+        activeRun = spilledRun == null ? new Run() : spilledRun;
+        activeRun.reset();
+        spilledRun = run;
+    }
+
+    private void waitForPendingSpill() {
+        if (pendingSpill == null) {
+            return;
+        }
+        try {
+            files.add(pendingSpill.get());
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for temporary file to be written", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) throw (Error) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeIOException(cause);
+        } finally {
+            pendingSpill = null;
+        }
+    }
+
+    private void shutdownSpillExecutor() {
+        if (spillExecutor != null) {
+            spillExecutor.shutdown();
+            spillExecutor = null;
+        }
+    }
+
+    /**
+     * Sorts the run and writes the serialized records to a new temporary file in sorted order.
+     */
+    private Path writeRun(final Run run) throws IOException {
+        run.sort();
+        final Path f = IOUtil.newTempPath("sortingcollection.", ".tmp", tmpDirs, IOUtil.FIVE_GBS);
+        try (OutputStream os = tempStreamFactory.wrapTempOutputStream(Files.newOutputStream(f), Defaults.BUFFER_SIZE)) {
+            for (int i = 0; i < run.size; i++) {
+                final int id = run.ids[i];
+                final long location = run.locations[id];
+                os.write(run.chunks.get((int) (location >>> 32)), (int) location, run.lengths[id]);
+            }
+        } catch (final IOException | RuntimeIOException ex) {
+            IOUtil.deletePaths(f);
+            throw new RuntimeIOException("Problem writing temporary file " + f.toUri() +
+                    ".  Try setting TMP_DIR to a file system with lots of space.", ex);
+        }
+        return f;
+    }
+
+    /**
+     * Compares records by key prefix, then by comparator.
+     */
+    private int compare(final long key1, final T rec1, final long key2, final T rec2) {
+        final int cmp = Long.compare(key1, key2);
+        return cmp != 0 ? cmp : comparator.compare(rec1, rec2);
+    }
+
+    /**
+     * Serialized records, stored back to back in chunks, and their key prefixes in the order they were added.
+     * After {@link #sort()}, ids lists the records in sorted order and keys holds the key of each of those.
+     */
+    private class Run {
+        private final List<byte[]> chunks = new ArrayList<>();
+        private int currentChunk = -1;
+        private int chunkOffset = 0;
+
+        private long[] keys = new long[1024];
+        /** chunk index in the high 32 bits, offset in the chunk in the low 32 bits */
+        private long[] locations = new long[1024];
+        private int[] lengths = new int[1024];
+        private int[] ids;
+        private int size = 0;
+        private long bytes = 0;
+        private final SortingCollection.Codec<T> decoder = codec.clone();
+
+        void add(final long key, final byte[] record, final int length) {
+            if (currentChunk < 0 || chunkOffset + length > chunks.get(currentChunk).length) {
+                nextChunk(length);
+            }
+            System.arraycopy(record, 0, chunks.get(currentChunk), chunkOffset, length);
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                locations = Arrays.copyOf(locations, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            keys[size] = key;
+            locations[size] = ((long) currentChunk << 32) | chunkOffset;
+            lengths[size] = length;
+            size++;
+            chunkOffset += length;
+            bytes += length + RECORD_OVERHEAD_BYTES;
+        }
+
+        /**
+         * Moves on to the next chunk that can hold a record of the given length, reusing chunks of earlier runs.
+         */
+        private void nextChunk(final int length) {
+            currentChunk++;
+            chunkOffset = 0;
+            if (currentChunk < chunks.size() && length <= chunks.get(currentChunk).length) {
+                return;
+            }
+            final byte[] chunk = new byte[Math.max(chunkSize, length)];
+            if (currentChunk < chunks.size()) {
+                chunks.add(currentChunk, chunk);
+            } else {
+                chunks.add(chunk);
+            }
+            bytes += chunk.length - chunkSize; // oversized chunks count against the limit
+        }
+
+        /**
+         * Empties the run, keeping the regular sized chunks for reuse.
+         */
+        void reset() {
+            chunks.removeIf(chunk -> chunk.length != chunkSize);
+            currentChunk = -1;
+            chunkOffset = 0;
+            size = 0;
+            bytes = 0;
+        }
+
+        void sort() {
+            if (ids == null || ids.length < size) {
+                ids = new int[keys.length];
+            }
+            for (int i = 0; i < size; i++) {
+                ids[i] = i;
+            }
+            KeySort.sort(keys, ids, size);
+
+            // order the records sharing a key prefix with the comparator
+            int start = 0;
+            while (start < size) {
+                int end = start + 1;
+                while (end < size && keys[end] == keys[start]) {
+                    end++;
+                }
+                if (end - start > 1) {
+                    sortByComparator(start, end);
+                }
+                start = end;
+            }
+        }
+
+        private void sortByComparator(final int start, final int end) {
+            final List<DecodedRecord<T>> records = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                records.add(new DecodedRecord<>(decode(ids[i], decoder), ids[i]));
+            }
+            records.sort((r1, r2) -> comparator.compare(r1.record, r2.record)); // stable
+            for (int i = start; i < end; i++) {
+                ids[i] = records.get(i - start).id;
+            }
+        }
+
+        T decode(final int id, final SortingCollection.Codec<T> decoder) {
+            final long location = locations[id];
+            decoder.setInputStream(new ByteArrayInputStream(chunks.get((int) (location >>> 32)), (int) location, lengths[id]));
+            return decoder.decode();
+        }
+    }
+
+    private static class DecodedRecord<T> {
+        private final T record;
+        private final int id;
+
+        private DecodedRecord(final T record, final int id) {
+            this.record = record;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Iterator over the records of a source in sorted order, which exposes the next record and its key.
+     */
+    private abstract class SourceIterator implements CloseableIterator<T> {
+        /** Tie-breaker: sources of records added earlier have lower numbers */
+        final int sourceNumber;
+        T nextRecord;
+        long nextKey;
+
+        SourceIterator(final int sourceNumber) {
+            this.sourceNumber = sourceNumber;
+        }
+
+        abstract void advance();
+
+        @Override
+        public boolean hasNext() {
+            return nextRecord != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final T ret = nextRecord;
+            advance();
+            return ret;
+        }
+    }
+
+    /**
+     * Iterates over a sorted run held in RAM.
+     */
+    private class InMemoryRunIterator extends SourceIterator {
+        private final Run run;
+        private final SortingCollection.Codec<T> decoder = codec.clone();
+        private int index = 0;
+
+        InMemoryRunIterator(final Run run, final int sourceNumber) {
+            super(sourceNumber);
+            this.run = run;
+            advance();
+        }
+
+        @Override
+        void advance() {
+            if (index < run.size) {
+                nextKey = run.keys[index];
+                nextRecord = run.decode(run.ids[index], decoder);
+                index++;
+            } else {
+                nextRecord = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            nextRecord = null;
+            index = run.size;
+        }
+    }
+
+    /**
+     * Iterates over a sorted run written to a temporary file.
+     */
+    private class FileRunIterator extends SourceIterator {
+        private final InputStream is;
+        private final SortingCollection.Codec<T> decoder = codec.clone();
+
+        FileRunIterator(final Path file, final int sourceNumber) {
+            super(sourceNumber);
+            try {
+                this.is = Files.newInputStream(file);
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+            decoder.setInputStream(tempStreamFactory.wrapTempInputStream(is, Defaults.BUFFER_SIZE));
+            advance();
+        }
+
+        @Override
+        void advance() {
+            nextRecord = decoder.decode();
+            if (nextRecord != null) {
+                nextKey = keyPrefix.applyAsLong(nextRecord);
+            }
+        }
+
+        @Override
+        public void close() {
+            nextRecord = null;
+            CloserUtil.close(is);
+        }
+    }
+
+    /**
+     * Merges the runs written to temporary files with the last run, which is still in RAM.
+     */
+    private class MergingIterator implements CloseableIterator<T> {
+        private final PriorityQueue<SourceIterator> queue;
+
+        MergingIterator() {
+            log.info(String.format("Creating merging iterator from %d files", files.size()));
+            queue = new PriorityQueue<>(files.size() + 1, (it1, it2) -> {
+                final int cmp = compare(it1.nextKey, it1.nextRecord, it2.nextKey, it2.nextRecord);
+                return cmp != 0 ? cmp : Integer.compare(it1.sourceNumber, it2.sourceNumber);
+            });
+            int n = 0;
+            for (final Path f : files) {
+                addSource(new FileRunIterator(f, n++));
+            }
+            addSource(new InMemoryRunIterator(activeRun, n));
+        }
+
+        private void addSource(final SourceIterator it) {
+            if (it.hasNext()) {
+                queue.add(it);
+            } else {
+                it.close();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final SourceIterator it = queue.poll();
+            final T ret = it.next();
+            addSource(it);
+            return ret;
+        }
+
+        @Override
+        public void close() {
+            while (!queue.isEmpty()) {
+                queue.poll().close();
+            }
+        }
+    }
+
+    /**
+     * Exposes the internal buffer so encoded records can be copied without an intermediate array.
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Stable parallel merge sort of primitive keys, permuting record ids along with the keys.
+     */
+    static class KeySort extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int INSERTION_SORT_THRESHOLD = 32;
+        /** Below this size halves are sorted on the current thread */
+        private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+        private final long[] keys;
+        private final int[] ids;
+        private final long[] tmpKeys;
+        private final int[] tmpIds;
+        private final int from;
+        private final int to;
+
+        private KeySort(final long[] keys, final int[] ids, final long[] tmpKeys, final int[] tmpIds, final int from, final int to) {
+            this.keys = keys;
+            this.ids = ids;
+            this.tmpKeys = tmpKeys;
+            this.tmpIds = tmpIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Sorts the first size keys, and the ids at the same positions, in ascending order of key.  Ids of equal keys
+         * keep their relative order.
+         */
+        static void sort(final long[] keys, final int[] ids, final int size) {
+            if (size < PARALLEL_THRESHOLD) {
+                sortRange(keys, ids, new long[size], new int[size], 0, size);
+            } else {
+                ForkJoinPool.commonPool().invoke(new KeySort(keys, ids, new long[size], new int[size], 0, size));
+            }
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < PARALLEL_THRESHOLD) {
+                sortRange(keys, ids, tmpKeys, tmpIds, from, to);
+            } else {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new KeySort(keys, ids, tmpKeys, tmpIds, from, mid),
+                        new KeySort(keys, ids, tmpKeys, tmpIds, mid, to));
+                merge(keys, ids, tmpKeys, tmpIds, from, mid, to);
+            }
+        }
+
+        private static void sortRange(final long[] keys, final int[] ids, final long[] tmpKeys, final int[] tmpIds,
+                                      final int from, final int to) {
+            if (to - from <= INSERTION_SORT_THRESHOLD) {
+                for (int i = from + 1; i < to; i++) {
+                    final long key = keys[i];
+                    final int id = ids[i];
+                    int j = i - 1;
+                    while (j >= from && keys[j] > key) {
+                        keys[j + 1] = keys[j];
+                        ids[j + 1] = ids[j];
+                        j--;
+                    }
+                    keys[j + 1] = key;
+                    ids[j + 1] = id;
+                }
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            sortRange(keys, ids, tmpKeys, tmpIds, from, mid);
+            sortRange(keys, ids, tmpKeys, tmpIds, mid, to);
+            merge(keys, ids, tmpKeys, tmpIds, from, mid, to);
+        }
+
+        private static void merge(final long[] keys, final int[] ids, final long[] tmpKeys, final int[] tmpIds,
+                                  final int from, final int mid, final int to) {
+            if (keys[mid - 1] <= keys[mid]) {
+                return; // already in order
+            }
+            System.arraycopy(keys, from, tmpKeys, from, to - from);
+            System.arraycopy(ids, from, tmpIds, from, to - from);
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                if (tmpKeys[j] < tmpKeys[i]) {
+                    keys[k] = tmpKeys[j];
+                    ids[k++] = tmpIds[j++];
+                } else {
+                    keys[k] = tmpKeys[i];
+                    ids[k++] = tmpIds[i++];
+                }
+            }
+            while (i < mid) {
+                keys[k] = tmpKeys[i];
+                ids[k++] = tmpIds[i++];
+            }
+            while (j < to) {
+                keys[k] = tmpKeys[j];
+                ids[k++] = tmpIds[j++];
+            }
+        }
+    }
+}
@@ -42,6 +42,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Collection to which many records can be added.  After all records are added, the collection can be
@@ -55,9 +59,19 @@ import java.util.TreeSet;
  * <p>
  * If Snappy DLL is available and snappy.disable system property is not set to true, then Snappy is used
  * to compress temporary files.
+ * <p>
+ * By default records are spilled and merged on the calling thread.  {@link #setAsyncSpilling(boolean)} moves
+ * sorting and writing of temporary files to a background thread, and {@link #setMergeThreads(int)} reads
+ * ahead and merges groups of temporary files on background threads during iteration.
  */
 public class SortingCollection<T> implements Iterable<T> {
     private static final Log log = Log.getInstance(SortingCollection.class);
+    private static volatile int threadsCreated = 0; // Just used for thread naming.
+
+    /**
+     * Number of records in each batch read ahead from a group of temporary files when merging in parallel.
+     */
+    private static final int MERGE_READ_AHEAD_RECORDS = 1000;
 
     /**
      * Client must implement this class, which defines the way in which records are written to and
@@ -129,6 +143,14 @@ public class SortingCollection<T> implements Iterable<T> {
 
     private boolean destructiveIteration = true;
 
+    private boolean asyncSpilling = false;
+    private ExecutorService spillExecutor;
+    /** Records being written to disk by the background thread, and the file they are written to */
+    private T[] spillingRecords;
+    private Future<Path> pendingSpill;
+
+    private int mergeThreads = 0;
+
     private final TempStreamFactory tempStreamFactory = new TempStreamFactory();
 
     private final boolean printRecordSizeSampling;
@@ -171,7 +193,9 @@ public class SortingCollection<T> implements Iterable<T> {
         if (iterationStarted) {
             throw new IllegalStateException("Cannot add after calling iterator()");
         }
-        if (numRecordsInRam == maxRecordsInRam) {
+        if (asyncSpilling && numRecordsInRam == maxRecordsPerRun()) {
+            spillInBackground();
+        } else if (numRecordsInRam == maxRecordsInRam) {
 
             long startMem = 0;
             if (printRecordSizeSampling) {
@@ -212,6 +236,12 @@ public class SortingCollection<T> implements Iterable<T> {
 
         doneAdding = true;
 
+        try {
+            waitForPendingSpill();
+        } finally {
+            shutdownSpillExecutor();
+        }
+
         if (this.files.isEmpty()) {
             return;
         }
@@ -240,35 +270,140 @@ public class SortingCollection<T> implements Iterable<T> {
         this.destructiveIteration = destructiveIteration;
     }
 
+    /**
+     * @return True if temporary files are sorted and written by a background thread while more records are added.
+     */
+    public boolean isAsyncSpilling() {
+        return asyncSpilling;
+    }
+
+    /**
+     * Tell this collection to sort and write records to temporary files on a background thread, so that add()
+     * only waits if the previous spill has not completed.  To stay within maxRecordsInRam, records are then
+     * spilled in runs of half that many.  This is false by default, and must be set before any records are added.
+     */
+    public void setAsyncSpilling(final boolean asyncSpilling) {
+        if (this.numRecordsInRam > 0 || !this.files.isEmpty()) {
+            throw new IllegalStateException("setAsyncSpilling must be called before records are added");
+        }
+        this.asyncSpilling = asyncSpilling;
+    }
+
+    /**
+     * @return The number of background threads that read and merge temporary files during iteration.
+     */
+    public int getMergeThreads() {
+        return mergeThreads;
+    }
+
+    /**
+     * Tell this collection to merge temporary files using the given number of background threads.  The files
+     * are divided into that many groups, each of which is read, decoded and merged ahead of the caller on its
+     * own thread, and the calling thread merges the groups.  If 0, the default, all files are read and merged
+     * on the calling thread.  Takes effect on subsequent calls to iterator().
+     */
+    public void setMergeThreads(final int mergeThreads) {
+        if (mergeThreads < 0) {
+            throw new IllegalArgumentException("mergeThreads must be >= 0");
+        }
+        this.mergeThreads = mergeThreads;
+    }
+
     /**
      * Sort the records in memory, write them to a file, and clear the buffer of records in memory.
      */
     public void spillToDisk() {
+        waitForPendingSpill();
+        this.files.add(writeRun(this.ramRecords, this.numRecordsInRam));
+        this.numRecordsInRam = 0;
+    }
+
+    /**
+     * Sorts the given records, writes them to a new temporary file and clears them from the array.
+     * Only one run is written at a time, since the runs share the codec.
+     */
+    private Path writeRun(final T[] records, final int numRecords) {
         try {
-            Arrays.parallelSort(this.ramRecords, 0, this.numRecordsInRam, this.comparator);
+            Arrays.parallelSort(records, 0, numRecords, this.comparator);
 
             final Path f = newTempFile();
             try (OutputStream os
                          = tempStreamFactory.wrapTempOutputStream(Files.newOutputStream(f), Defaults.BUFFER_SIZE)) {
                 this.codec.setOutputStream(os);
-                for (int i = 0; i < this.numRecordsInRam; ++i) {
-                    this.codec.encode(ramRecords[i]);
+                for (int i = 0; i < numRecords; ++i) {
+                    this.codec.encode(records[i]);
                     // Facilitate GC
-                    this.ramRecords[i] = null;
+                    records[i] = null;
                 }
                 os.flush();
             } catch (RuntimeIOException ex) {
                 throw new RuntimeIOException("Problem writing temporary file " + f.toUri() +
                         ".  Try setting TMP_DIR to a file system with lots of space.", ex);
             }
-
-            this.numRecordsInRam = 0;
-            this.files.add(f);
+            return f;
         } catch (IOException e) {
             throw new RuntimeIOException(e);
         }
     }
 
+    private int maxRecordsPerRun() {
+        return Math.max(1, this.maxRecordsInRam / 2);
+    }
+
+    /**
+     * Hands the records in memory to the background thread to be sorted and written to disk, and continues
+     * adding to the array written by the previous spill once that is complete.
+     */
+    private void spillInBackground() {
+        waitForPendingSpill();
+        if (this.spillExecutor == null) {
+            this.spillExecutor = Executors.newSingleThreadExecutor(r -> {
+                final Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setName("SortingCollectionSpiller" + threadsCreated++);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        final T[] records = this.ramRecords;
+        final int numRecords = this.numRecordsInRam;
+        this.pendingSpill = this.spillExecutor.submit(() -> writeRun(records, numRecords));
+        if (this.spillingRecords == null) {
+            @SuppressWarnings("unchecked")
+            final T[] spare = (T[]) Array.newInstance(records.getClass().getComponentType(), maxRecordsPerRun());
+            this.spillingRecords = spare;
+        }
+        this.ramRecords = this.spillingRecords;
+        this.spillingRecords = records;
+        this.numRecordsInRam = 0;
+    }
+
+    private void waitForPendingSpill() {
+        if (this.pendingSpill == null) {
+            return;
+        }
+        try {
+            this.files.add(this.pendingSpill.get());
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for temporary file to be written", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) throw (Error) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeIOException(cause);
+        } finally {
+            this.pendingSpill = null;
+        }
+    }
+
+    private void shutdownSpillExecutor() {
+        if (this.spillExecutor != null) {
+            this.spillExecutor.shutdown();
+            this.spillExecutor = null;
+        }
+        // Facilitate GC
+        this.spillingRecords = null;
+    }
+
 
     /**
      * Creates a new tmp file on one of the available temp filesystems, registers it for deletion
@@ -293,9 +428,71 @@ public class SortingCollection<T> implements Iterable<T> {
         this.iterationStarted = true;
         if (this.files.isEmpty()) {
             return new InMemoryIterator();
-        } else {
-            return new MergingIterator();
         }
+        log.info(String.format("Creating merging iterator from %d files", files.size()));
+        final int suggestedBufferSize = checkMemoryAndAdjustBuffer(files.size());
+        final int groups = Math.min(this.mergeThreads, this.files.size());
+        if (groups <= 1) {
+            return new MergingIterator(openFiles(0, files.size(), suggestedBufferSize));
+        }
+        // each group of files is merged on its own thread, and the groups are merged here
+        final List<CloseableIterator<T>> sources = new ArrayList<>(groups);
+        try {
+            for (int i = 0; i < groups; i++) {
+                final List<CloseableIterator<T>> group = openFiles(i * files.size() / groups,
+                        (i + 1) * files.size() / groups, suggestedBufferSize);
+                final CloseableIterator<T> source = group.size() == 1 ? group.get(0) : new MergingIterator(group);
+                sources.add(new AsyncBufferedIterator<>(source, MERGE_READ_AHEAD_RECORDS, 2,
+                        "SortingCollectionMerger" + threadsCreated++));
+            }
+        } catch (final RuntimeException e) {
+            sources.forEach(CloserUtil::close);
+            throw e;
+        }
+        return new MergingIterator(sources);
+    }
+
+    /**
+     * Opens iterators over the given range of temporary files.
+     */
+    private List<CloseableIterator<T>> openFiles(final int from, final int to, final int bufferSize) {
+        final List<CloseableIterator<T>> iterators = new ArrayList<>(to - from);
+        try {
+            for (final Path f : files.subList(from, to)) {
+                iterators.add(new FileRecordIterator(f, bufferSize));
+            }
+        } catch (final RuntimeException e) {
+            iterators.forEach(CloserUtil::close);
+            throw e;
+        }
+        return iterators;
+    }
+
+    // Since we need to open and buffer all temp files in the sorting collection at once it is important
+    // to have enough memory left to do this. This method checks to make sure that, given the number of files and
+    // the size of the buffer, we can reasonably open all files. If we can't it will return a buffer size that
+    // is appropriate given the number of temp files and the amount of memory left on the heap. If there isn't
+    // enough memory for buffering it will return zero and all reading will be unbuffered.
+    private int checkMemoryAndAdjustBuffer(int numFiles) {
+        int bufferSize = Defaults.BUFFER_SIZE;
+        // garbage collect so that our calculation is accurate.
+        Runtime.getRuntime().gc();
+
+        // There is ~20k in overhead per file.
+        final long freeMemory = Runtime.getRuntime().freeMemory() - (numFiles * 20 * 1024);
+        // use the floor value from the divide
+        final int memoryPerFile = (int) (freeMemory / numFiles);
+
+        if (memoryPerFile < 0) {
+            log.warn("There is not enough memory per file for buffering. Reading will be unbuffered.");
+            bufferSize = 0;
+        } else if (bufferSize > memoryPerFile) {
+            log.warn(String.format("Default io buffer size of %s is larger than available memory per file of %s.",
+                    StringUtil.humanReadableByteCount(bufferSize),
+                    StringUtil.humanReadableByteCount(memoryPerFile)));
+            bufferSize = memoryPerFile;
+        }
+        return bufferSize;
     }
 
     /**
@@ -305,7 +502,19 @@ public class SortingCollection<T> implements Iterable<T> {
         this.iterationStarted = true;
         this.cleanedUp = true;
 
-        IOUtil.deletePaths(this.files);
+        try {
+            if (this.pendingSpill != null) {
+                try {
+                    this.files.add(this.pendingSpill.get());
+                } catch (final InterruptedException | ExecutionException e) {
+                    // nothing more to clean up
+                }
+                this.pendingSpill = null;
+            }
+        } finally {
+            shutdownSpillExecutor();
+            IOUtil.deletePaths(this.files);
+        }
     }
 
     /**
@@ -487,7 +696,8 @@ public class SortingCollection<T> implements Iterable<T> {
 
     /**
      * For iteration when spilling to disk has occurred.
-     * Each file is has records in sort order within the file.
+     * Each file is has records in sort order within the file.  When merging in parallel, each source
+     * merges a group of files on a background thread.
      * This iterator automatically closes when it iterates to the end, but if not iterating
      * to the end it is a good idea to call close().
      * <p>
@@ -503,13 +713,13 @@ public class SortingCollection<T> implements Iterable<T> {
     class MergingIterator implements CloseableIterator<T> {
         private final TreeSet<PeekFileRecordIterator> queue;
 
-        MergingIterator() {
+        /**
+         * @param sources iterators over sorted records, in the order the records were added; closed by this iterator
+         */
+        MergingIterator(final List<CloseableIterator<T>> sources) {
             this.queue = new TreeSet<>(new PeekFileRecordIteratorComparator());
             int n = 0;
-            log.info(String.format("Creating merging iterator from %d files", files.size()));
-            int suggestedBufferSize = checkMemoryAndAdjustBuffer(files.size());
-            for (final Path f : files) {
-                final FileRecordIterator it = new FileRecordIterator(f, suggestedBufferSize);
+            for (final CloseableIterator<T> it : sources) {
                 if (it.hasNext()) {
                     this.queue.add(new PeekFileRecordIterator(it, n++));
                 } else {
@@ -518,33 +728,6 @@ public class SortingCollection<T> implements Iterable<T> {
             }
         }
 
-        // Since we need to open and buffer all temp files in the sorting collection at once it is important
-        // to have enough memory left to do this. This method checks to make sure that, given the number of files and
-        // the size of the buffer, we can reasonably open all files. If we can't it will return a buffer size that
-        // is appropriate given the number of temp files and the amount of memory left on the heap. If there isn't
-        // enough memory for buffering it will return zero and all reading will be unbuffered.
-        private int checkMemoryAndAdjustBuffer(int numFiles) {
-            int bufferSize = Defaults.BUFFER_SIZE;
-            // garbage collect so that our calculation is accurate.
-            Runtime.getRuntime().gc();
-
-            // There is ~20k in overhead per file.
-            final long freeMemory = Runtime.getRuntime().freeMemory() - (numFiles * 20 * 1024);
-            // use the floor value from the divide
-            final int memoryPerFile = (int) (freeMemory / numFiles);
-
-            if (memoryPerFile < 0) {
-                log.warn("There is not enough memory per file for buffering. Reading will be unbuffered.");
-                bufferSize = 0;
-            } else if (bufferSize > memoryPerFile) {
-                log.warn(String.format("Default io buffer size of %s is larger than available memory per file of %s.",
-                        StringUtil.humanReadableByteCount(bufferSize),
-                        StringUtil.humanReadableByteCount(memoryPerFile)));
-                bufferSize = memoryPerFile;
-            }
-            return bufferSize;
-        }
-
         @Override
         public boolean hasNext() {
             return !this.queue.isEmpty();
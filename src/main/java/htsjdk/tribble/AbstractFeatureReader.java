@@ -19,6 +19,7 @@
 package htsjdk.tribble;
 
 import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.ParallelDecodingIterator;
 import htsjdk.tribble.index.Index;
 import htsjdk.tribble.util.ParsingUtils;
 import htsjdk.tribble.util.TabixUtils;
@@ -30,8 +31,11 @@ import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 
 /**
@@ -56,6 +60,13 @@ public abstract class AbstractFeatureReader<T extends Feature, SOURCE> implement
     protected final FeatureCodec<T, SOURCE> codec;
     protected FeatureCodecHeader header;
 
+    // if positive, lines are decoded on this many threads, see setDecodingThreads
+    private int decodingThreads = 0;
+    private ExecutorService decodingThreadPool = null;
+    // number of open iterators decoding on each pool, including pools replaced by setDecodingThreads, which are
+    // shut down when their last iterator is closed
+    private final Map<ExecutorService, Integer> openDecodingIterators = new IdentityHashMap<>();
+
     private static ComponentMethods methods = new ComponentMethods();
 
     /** @deprecated use {@link IOUtil#BLOCK_COMPRESSED_EXTENSIONS} instead. */
@@ -168,6 +179,86 @@ public abstract class AbstractFeatureReader<T extends Feature, SOURCE> implement
         return hasIndex();
     }
 
+    /**
+     * Set the number of threads used to decode lines into features while iterating over the whole file or, for
+     * tabix-indexed files, over the results of a query.  Lines are read ahead on a background thread and features
+     * are still returned in file order.  Takes effect for iterators created after this call, and only for
+     * {@link AsciiFeatureCodec}s that support {@link AsciiFeatureCodec#copyForParallelDecoding()}, such as the VCF
+     * codecs; other codecs decode on the calling thread.  Note that the VCF codecs decode the genotypes of each
+     * record on the decoding threads as well, so errors in them are raised when the record is returned.
+     *
+     * @param decodingThreads number of worker threads, or 0 to read and decode lines on the calling thread
+     */
+    public void setDecodingThreads(final int decodingThreads) {
+        if (decodingThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of decoding threads: " + decodingThreads);
+        }
+        if (decodingThreadPool != null && decodingThreads != this.decodingThreads) {
+            // iterators that are still open keep decoding on the old pool
+            if (!openDecodingIterators.containsKey(decodingThreadPool)) {
+                decodingThreadPool.shutdown();
+            }
+            decodingThreadPool = null;
+        }
+        this.decodingThreads = decodingThreads;
+    }
+
+    /**
+     * @return an iterator that decodes the lines on the decoding threads, or null if the lines should be decoded
+     * on the calling thread, because no decoding threads are set or the codec does not support it
+     */
+    ParallelLineDecodingIterator<T> decodeInParallel(final Iterator<String> lines) {
+        if (decodingThreads == 0 || !(codec instanceof AsciiFeatureCodec)) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        final AsciiFeatureCodec<T> asciiCodec = (AsciiFeatureCodec<T>) codec;
+        final AsciiFeatureCodec<T> copy = asciiCodec.copyForParallelDecoding();
+        if (copy == null) {
+            return null;
+        }
+        if (decodingThreadPool == null) {
+            decodingThreadPool = ParallelDecodingIterator.newWorkerPool(decodingThreads);
+        }
+        final ExecutorService pool = decodingThreadPool;
+        openDecodingIterators.merge(pool, 1, Integer::sum);
+        return new ParallelLineDecodingIterator<>(lines, copy, pool, decodingThreads, () -> decodingIteratorClosed(pool));
+    }
+
+    /**
+     * Shuts down the pool once its last iterator is closed, if it has been replaced by {@link #setDecodingThreads}.
+     */
+    private void decodingIteratorClosed(final ExecutorService pool) {
+        final Integer open = openDecodingIterators.get(pool);
+        if (open == null) {
+            // the reader has been closed already
+            return;
+        }
+        if (open > 1) {
+            openDecodingIterators.put(pool, open - 1);
+        } else {
+            openDecodingIterators.remove(pool);
+            if (pool != decodingThreadPool) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Shuts down the decoding threads, if any, including those still used by open iterators.  Called by subclasses
+     * when they are closed.
+     */
+    void closeDecodingThreadPool() {
+        for (final ExecutorService pool : openDecodingIterators.keySet()) {
+            pool.shutdown();
+        }
+        openDecodingIterators.clear();
+        if (decodingThreadPool != null) {
+            decodingThreadPool.shutdown();
+            decodingThreadPool = null;
+        }
+    }
+
     public static void setComponentMethods(ComponentMethods methods){
         AbstractFeatureReader.methods = methods;
     }
@@ -216,10 +307,13 @@ public abstract class AbstractFeatureReader<T extends Feature, SOURCE> implement
     }
 
     public static boolean isTabix(String resourcePath, String indexPath) throws IOException {
+        if (!IOUtil.hasBlockCompressedExtension(resourcePath)) {
+            return false;
+        }
         if(indexPath == null){
-            indexPath = ParsingUtils.appendToPath(resourcePath, TabixUtils.STANDARD_INDEX_EXTENSION);
+            return TabixUtils.findIndexPath(resourcePath) != null;
         }
-        return IOUtil.hasBlockCompressedExtension(resourcePath) && ParsingUtils.resourceExists(indexPath);
+        return ParsingUtils.resourceExists(indexPath);
     }
 
     public static class ComponentMethods{
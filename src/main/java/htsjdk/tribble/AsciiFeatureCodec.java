@@ -73,6 +73,30 @@ public abstract class AsciiFeatureCodec<T extends Feature> extends AbstractFeatu
     /** @see AsciiFeatureCodec#decode(htsjdk.tribble.readers.LineIterator) */
     public abstract T decode(String s);
 
+    /**
+     * Returns a copy of this codec, which has read the header, that decodes lines independently of this codec, so
+     * that readers can decode lines on several threads, each with its own copy.  Copies may share immutable state,
+     * such as the header, with this codec, and the features they decode must not refer to the copy once returned.
+     *
+     * @return the copy, or null if this codec does not support decoding in parallel, which is the default
+     */
+    public AsciiFeatureCodec<T> copyForParallelDecoding() {
+        return null;
+    }
+
+    /**
+     * Decodes a line with a copy made by {@link #copyForParallelDecoding()}.  Since each copy only sees some of the
+     * lines, codecs that count lines, for instance for error messages, should use the line number given here.
+     *
+     * @param line       the line to decode
+     * @param lineNumber the number of the line among the lines read by the reader's iterator, starting at 1, which is
+     *                   its line number in the file when iterating over the whole file
+     * @return the feature, or null if the line should be skipped
+     */
+    public T decodeInParallel(final String line, final long lineNumber) {
+        return decode(line);
+    }
+
     @Override
     public FeatureCodecHeader readHeader(final LineIterator lineIterator) throws IOException {
         // TODO: Track header end here, rather than assuming there isn't one.
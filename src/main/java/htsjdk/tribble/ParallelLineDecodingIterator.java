@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.tribble;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.ParallelDecodingIterator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Iterator that reads lines of a text feature file on a background thread and decodes batches of them on a pool of
+ * worker threads, each with its own copy of the codec made by {@link AsciiFeatureCodec#copyForParallelDecoding()}.
+ * Lines are returned in file order along with their features, or the exception raised decoding them, so that
+ * readers can raise errors and skip lines just as they do when decoding on the calling thread.
+ */
+class ParallelLineDecodingIterator<T extends Feature> implements CloseableIterator<ParallelLineDecodingIterator.DecodedLine<T>> {
+    /**
+     * Number of lines handed to a decoding thread at a time.
+     */
+    private static final int DECODING_BATCH_SIZE = 1000;
+
+    private final ThreadLocal<AsciiFeatureCodec<T>> codecs;
+    private final ParallelDecodingIterator<NumberedLine, DecodedLine<T>> decodingIterator;
+    private final Runnable onClose;
+    private boolean closed = false;
+
+    /**
+     * @param lines   lines to decode, read on the background thread and closed with this iterator if closeable
+     * @param codec   a copy of the codec made by {@link AsciiFeatureCodec#copyForParallelDecoding()}, from which
+     *                each worker thread makes its own copy
+     * @param workers thread pool on which the lines are decoded, not shut down by this iterator
+     * @param threads number of threads in the pool
+     * @param onClose run once when this iterator is closed, after it has stopped using the pool
+     */
+    ParallelLineDecodingIterator(final Iterator<String> lines, final AsciiFeatureCodec<T> codec,
+                                 final ExecutorService workers, final int threads, final Runnable onClose) {
+        this.onClose = onClose;
+        this.codecs = ThreadLocal.withInitial(codec::copyForParallelDecoding);
+        this.decodingIterator = new ParallelDecodingIterator<>(new NumberedLineIterator(lines), this::decodeLine,
+                workers, DECODING_BATCH_SIZE, 2 * threads);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return decodingIterator.hasNext();
+    }
+
+    @Override
+    public DecodedLine<T> next() {
+        return decodingIterator.next();
+    }
+
+    /**
+     * Stops reading ahead and closes the lines.  Lines read ahead but not yet returned are discarded.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                decodingIterator.close();
+            } finally {
+                onClose.run();
+            }
+        }
+    }
+
+    private DecodedLine<T> decodeLine(final NumberedLine line) {
+        try {
+            return new DecodedLine<>(line.line, codecs.get().decodeInParallel(line.line, line.lineNumber), null);
+        } catch (final RuntimeException e) {
+            return new DecodedLine<>(line.line, null, e);
+        }
+    }
+
+    /**
+     * A line with the feature decoded from it, which is null for lines the codec skips, or the exception raised
+     * decoding it.
+     */
+    static class DecodedLine<T extends Feature> {
+        final String line;
+        final T feature;
+        final RuntimeException error;
+
+        DecodedLine(final String line, final T feature, final RuntimeException error) {
+            this.line = line;
+            this.feature = feature;
+            this.error = error;
+        }
+
+        /**
+         * @param path the path of the file, for error messages
+         * @return the feature, or null if the line should be skipped
+         * @throws TribbleException if decoding the line failed, as when decoding on the calling thread
+         */
+        T getFeature(final String path) {
+            if (error instanceof TribbleException) {
+                ((TribbleException) error).setSource(path);
+                throw error;
+            } else if (error instanceof NumberFormatException) {
+                throw new TribbleException.MalformedFeatureFile("Error parsing line: " + line, path, error);
+            } else if (error != null) {
+                throw error;
+            }
+            return feature;
+        }
+    }
+
+    private static class NumberedLine {
+        final String line;
+        final long lineNumber;
+
+        NumberedLine(final String line, final long lineNumber) {
+            this.line = line;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    /**
+     * Numbers the lines from 1, and closes them when the decoding iterator is closed.
+     */
+    private static class NumberedLineIterator implements CloseableIterator<NumberedLine> {
+        private final Iterator<String> lines;
+        private long lineNumber = 0;
+
+        NumberedLineIterator(final Iterator<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return lines.hasNext();
+        }
+
+        @Override
+        public NumberedLine next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("next called on exhausted iterator");
+            }
+            return new NumberedLine(lines.next(), ++lineNumber);
+        }
+
+        @Override
+        public void close() {
+            CloserUtil.close(lines);
+        }
+    }
+}
@@ -144,6 +144,7 @@ public class TabixFeatureReader<T extends Feature, SOURCE> extends AbstractFeatu
     @Override
     public void close() throws IOException {
         tabixReader.close();
+        closeDecodingThreadPool();
     }
 
     class FeatureIterator<T extends Feature> implements CloseableTribbleIterator<T> {
@@ -151,11 +152,14 @@ public class TabixFeatureReader<T extends Feature, SOURCE> extends AbstractFeatu
         private LineReader lineReader;
         private int start;
         private int end;
+        // decodes the lines on the decoding threads, if set
+        private ParallelLineDecodingIterator<? extends Feature> parallelDecoder;
 
         public FeatureIterator(final LineReader lineReader, final int start, final int end) throws IOException {
             this.lineReader = lineReader;
             this.start = start;
             this.end = end;
+            this.parallelDecoder = decodeInParallel(new LineIteratorImpl(lineReader));
             readNextRecord();
         }
 
@@ -166,6 +170,24 @@ public class TabixFeatureReader<T extends Feature, SOURCE> extends AbstractFeatu
          */
         protected void readNextRecord() throws IOException {
             currentRecord = null;
+            if (parallelDecoder != null) {
+                while (currentRecord == null && parallelDecoder.hasNext()) {
+                    final Feature f = parallelDecoder.next().getFeature(path);
+                    if (f == null) {
+                        continue;   // Skip
+                    }
+                    if (f.getStart() > end) {
+                        return;    // Done
+                    }
+                    if (f.getEnd() <= start) {
+                        continue;   // Skip
+                    }
+                    @SuppressWarnings("unchecked")
+                    final T record = (T) f;
+                    currentRecord = record;
+                }
+                return;
+            }
             String nextLine;
             while (currentRecord == null && (nextLine = lineReader.readLine()) != null) {
                 final Feature f;
@@ -217,6 +239,10 @@ public class TabixFeatureReader<T extends Feature, SOURCE> extends AbstractFeatu
 
         @Override
         public void close() {
+            if (parallelDecoder != null) {
+                // stops reading ahead before closing the line reader
+                parallelDecoder.close();
+            }
             lineReader.close();
         }
 
@@ -30,6 +30,7 @@ import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.tribble.index.Block;
 import htsjdk.tribble.index.Index;
 import htsjdk.tribble.index.IndexFactory;
+import htsjdk.tribble.readers.LineIterator;
 import htsjdk.tribble.readers.PositionalBufferedStream;
 import htsjdk.tribble.util.ParsingUtils;
 
@@ -209,6 +210,7 @@ public class TribbleIndexedFeatureReader<T extends Feature, SOURCE> extends Abst
     public void close() throws IOException {
         // close the seekable stream if that's necessary
         if (seekableStream != null) seekableStream.close();
+        closeDecodingThreadPool();
     }
 
     /**
@@ -315,6 +317,8 @@ public class TribbleIndexedFeatureReader<T extends Feature, SOURCE> extends Abst
     class WFIterator implements CloseableTribbleIterator<T> {
         private T currentRecord;
         private SOURCE source;
+        // decodes the lines of the source on the decoding threads, if set
+        private ParallelLineDecodingIterator<T> parallelDecoder = null;
 
         /**
          * Constructor for iterating over the entire file (seekableStream).
@@ -339,6 +343,9 @@ public class TribbleIndexedFeatureReader<T extends Feature, SOURCE> extends Abst
              */
             pbs.skip(header.getHeaderEnd());
             source = codec.makeSourceFromStream(pbs);
+            if (source instanceof LineIterator) {
+                parallelDecoder = decodeInParallel((LineIterator) source);
+            }
             readNextRecord();
         }
 
@@ -367,6 +374,10 @@ public class TribbleIndexedFeatureReader<T extends Feature, SOURCE> extends Abst
         private void readNextRecord() throws IOException {
             currentRecord = null;
 
+            if (parallelDecoder != null) {
+                readNextDecodedRecord();
+                return;
+            }
             while (!codec.isDone(source)) {
                 final T f;
                 try {
@@ -389,6 +400,18 @@ public class TribbleIndexedFeatureReader<T extends Feature, SOURCE> extends Abst
             }
         }
 
+        /**
+         * Advance to the next record decoded by the parallel decoder.
+         */
+        private void readNextDecodedRecord() {
+            while (parallelDecoder.hasNext()) {
+                currentRecord = parallelDecoder.next().getFeature(path);
+                if (currentRecord != null) {
+                    return;
+                }
+            }
+        }
+
         @Override
         public void remove() {
             throw new UnsupportedOperationException("Remove is not supported in Iterators");
@@ -396,6 +419,10 @@ public class TribbleIndexedFeatureReader<T extends Feature, SOURCE> extends Abst
 
         @Override
         public void close() {
+            if (parallelDecoder != null) {
+                // stops reading ahead before closing the source
+                parallelDecoder.close();
+            }
             codec.close(source);
         }
 
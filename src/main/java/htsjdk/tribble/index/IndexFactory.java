@@ -23,6 +23,7 @@
  */
 package htsjdk.tribble.index;
 
+import htsjdk.samtools.CSIIndex;
 import htsjdk.samtools.Defaults;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.seekablestream.ISeekableStreamFactory;
@@ -34,6 +35,8 @@ import htsjdk.tribble.index.interval.IntervalIndexCreator;
 import htsjdk.tribble.index.interval.IntervalTreeIndex;
 import htsjdk.tribble.index.linear.LinearIndex;
 import htsjdk.tribble.index.linear.LinearIndexCreator;
+import htsjdk.tribble.index.tabix.CSITabixIndex;
+import htsjdk.tribble.index.tabix.CSITabixIndexCreator;
 import htsjdk.tribble.index.tabix.TabixFormat;
 import htsjdk.tribble.index.tabix.TabixIndex;
 import htsjdk.tribble.index.tabix.TabixIndexCreator;
@@ -60,7 +63,7 @@ import java.util.zip.GZIPInputStream;
 
 /**
  * Factory class for creating indexes.  It is the responsibility of this class to determine and create the
- * correct index type from the input file or stream.  LinearIndex, IntervalTreeIndex, and TabixIndex are supported
+ * correct index type from the input file or stream.  LinearIndex, IntervalTreeIndex, TabixIndex and CSITabixIndex are supported
  * by this factory.
  */
 public class IndexFactory {
@@ -77,7 +80,9 @@ public class IndexFactory {
         LINEAR(LinearIndex.MAGIC_NUMBER, LinearIndex.INDEX_TYPE, LinearIndexCreator.class, LinearIndex.class, LinearIndexCreator.DEFAULT_BIN_WIDTH),
         INTERVAL_TREE(IntervalTreeIndex.MAGIC_NUMBER, IntervalTreeIndex.INDEX_TYPE, IntervalIndexCreator.class, IntervalTreeIndex.class, IntervalIndexCreator.DEFAULT_FEATURE_COUNT),
         // Tabix index initialization requires additional information, so generic construction won't work, thus indexCreatorClass is null.
-        TABIX(TabixIndex.MAGIC_NUMBER, null, null, TabixIndex.class, -1);
+        TABIX(TabixIndex.MAGIC_NUMBER, null, null, TabixIndex.class, -1),
+        // Tabix-style index in CSI format, for contigs too long for TABIX.
+        CSI(CSIIndex.MAGIC_NUMBER, null, null, CSITabixIndex.class, -1);
 
         private final int magicNumber;
         private final Integer tribbleIndexType;
@@ -210,7 +215,7 @@ public class IndexFactory {
         if (indexFile.endsWith(".gz")) {
             return new GZIPInputStream(inputStreamInitial);
         }
-        else if (indexFile.endsWith(TabixUtils.STANDARD_INDEX_EXTENSION)) {
+        else if (indexFile.endsWith(TabixUtils.STANDARD_INDEX_EXTENSION) || indexFile.endsWith(TabixUtils.CSI_INDEX_EXTENSION)) {
             return new BlockCompressedInputStream(inputStreamInitial);
         }
         else {
@@ -366,6 +371,21 @@ public class IndexFactory {
         return createTabixIndex(inputFile, codec, codec.getTabixFormat(), sequenceDictionary);
     }
 
+    /**
+     * @param inputFile The file to be indexed.
+     * @param codec Mechanism for reading inputFile.
+     * @param tabixFormat Header fields for the CSITabixIndex to be produced.
+     * @param sequenceDictionary May be null, but if present it is used to choose the depth of the index.  Features
+     *                           in inputFile must be in the order defined by sequenceDictionary, if it is present.
+     */
+    public static <FEATURE_TYPE extends Feature, SOURCE_TYPE> CSITabixIndex createCSITabixIndex(final File inputFile,
+                                                                                           final FeatureCodec<FEATURE_TYPE, SOURCE_TYPE> codec,
+                                                                                           final TabixFormat tabixFormat,
+                                                                                           final SAMSequenceDictionary sequenceDictionary) {
+        final CSITabixIndexCreator indexCreator = new CSITabixIndexCreator(sequenceDictionary, tabixFormat);
+        return (CSITabixIndex)createIndex(inputFile, new FeatureIterator<FEATURE_TYPE, SOURCE_TYPE>(inputFile, codec), indexCreator);
+    }
+
     private static Index createIndex(final File inputFile, final FeatureIterator iterator, final IndexCreator creator) {
         Feature lastFeature = null;
         Feature currentFeature;
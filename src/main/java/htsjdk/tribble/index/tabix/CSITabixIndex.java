@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.tribble.index.tabix;
+
+import htsjdk.samtools.CSIIndex;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.util.StringUtil;
+import htsjdk.tribble.TribbleException;
+import htsjdk.tribble.index.Block;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.util.LittleEndianOutputStream;
+import htsjdk.tribble.util.ParsingUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tabix-style index in CSI format, for BGZF compressed text files with contigs too long for a {@link TabixIndex}.
+ * The tabix header, the format of the file and the sequence names, is stored in the auxiliary data of the CSI
+ * index, as tabix and htslib do.
+ */
+public class CSITabixIndex implements Index {
+    // format, sequence, begin and end columns, meta character, lines to skip and length of the names
+    private static final int HEADER_INTS = 7;
+
+    private final TabixFormat formatSpec;
+    private final List<String> sequenceNames;
+    private final CSIIndex index;
+
+    /**
+     * @param index a CSI index whose auxiliary data is a tabix header
+     */
+    public CSITabixIndex(final CSIIndex index) {
+        this.index = index;
+        final ByteBuffer aux = ByteBuffer.wrap(index.getAux()).order(ByteOrder.LITTLE_ENDIAN);
+        if (aux.remaining() < HEADER_INTS * 4) {
+            throw new TribbleException("CSI index does not contain a tabix header");
+        }
+        formatSpec = new TabixFormat();
+        formatSpec.flags = aux.getInt();
+        formatSpec.sequenceColumn = aux.getInt();
+        formatSpec.startPositionColumn = aux.getInt();
+        formatSpec.endPositionColumn = aux.getInt();
+        formatSpec.metaCharacter = (char) aux.getInt();
+        formatSpec.numHeaderLinesToSkip = aux.getInt();
+        final int nameBlockSize = aux.getInt();
+        if (nameBlockSize != aux.remaining()) {
+            throw new TribbleException("Tabix header format exception.  Sequence name block is not the expected length");
+        }
+        final List<String> names = new ArrayList<>(index.getNumberOfReferences());
+        int startPos = aux.position();
+        for (int endPos = startPos; endPos < aux.limit(); endPos++) {
+            if (aux.get(endPos) == 0) {
+                names.add(StringUtil.bytesToString(aux.array(), startPos, endPos - startPos));
+                startPos = endPos + 1;
+            }
+        }
+        if (names.size() != index.getNumberOfReferences()) {
+            throw new TribbleException("Tabix header has " + names.size() + " sequence names for " +
+                    index.getNumberOfReferences() + " references");
+        }
+        sequenceNames = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @param inputStream the decompressed index.  Caller should close input stream after ctor returns.
+     */
+    public CSITabixIndex(final InputStream inputStream) {
+        this(new CSIIndex(inputStream));
+    }
+
+    /**
+     * Convenient ctor that opens the path, wraps with with BGZF reader, and closes after reading index.
+     */
+    public CSITabixIndex(final Path csiPath) throws IOException {
+        this(new CSIIndex(csiPath));
+    }
+
+    /**
+     * @return the tabix header to store in the auxiliary data of a CSI index
+     */
+    static byte[] encodeHeader(final TabixFormat formatSpec, final List<String> sequenceNames) {
+        int nameBlockSize = sequenceNames.size(); // null terminators
+        for (final String sequenceName : sequenceNames) nameBlockSize += sequenceName.length();
+        final ByteBuffer aux = ByteBuffer.allocate(HEADER_INTS * 4 + nameBlockSize).order(ByteOrder.LITTLE_ENDIAN);
+        aux.putInt(formatSpec.flags);
+        aux.putInt(formatSpec.sequenceColumn);
+        aux.putInt(formatSpec.startPositionColumn);
+        aux.putInt(formatSpec.endPositionColumn);
+        aux.putInt(formatSpec.metaCharacter);
+        aux.putInt(formatSpec.numHeaderLinesToSkip);
+        aux.putInt(nameBlockSize);
+        for (final String sequenceName : sequenceNames) {
+            aux.put(StringUtil.stringToBytes(sequenceName));
+            aux.put((byte) 0);
+        }
+        return aux.array();
+    }
+
+    /**
+     * @param chr   the chromosome
+     * @param start the start position, one-based, inclusive.
+     * @param end   the end position, one-based, inclusive.
+     * @return List of regions of file that are candidates for the given query.
+     */
+    @Override
+    public List<Block> getBlocks(final String chr, final int start, final int end) {
+        final List<Chunk> chunks = index.getChunksOverlapping(sequenceNames.indexOf(chr), start, end);
+        if (chunks == null) {
+            return Collections.emptyList();
+        }
+        final List<Block> ret = new ArrayList<>(chunks.size());
+        for (final Chunk chunk : chunks) {
+            ret.add(new Block(chunk.getChunkStart(), chunk.getChunkEnd() - chunk.getChunkStart()));
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean isCurrentVersion() {
+        return true;
+    }
+
+    @Override
+    public List<String> getSequenceNames() {
+        return sequenceNames;
+    }
+
+    @Override
+    public boolean containsChromosome(final String chr) {
+        return sequenceNames.contains(chr);
+    }
+
+    /**
+     * No arbitrary properties in Tabix
+     */
+    @Override
+    public Map<String, String> getProperties() {
+        return null;
+    }
+
+    @Override
+    public boolean equalsIgnoreProperties(final Object o) {
+        return equals(o);
+    }
+
+    public TabixFormat getFormatSpec() {
+        return formatSpec;
+    }
+
+    public CSIIndex getCSIIndex() {
+        return index;
+    }
+
+    /**
+     * Writes the index with BGZF.
+     *
+     * @param csiPath Where to write the index.
+     */
+    @Override
+    public void write(final Path csiPath) throws IOException {
+        index.write(csiPath);
+    }
+
+    /**
+     * Writes to a path with the name of the feature path and the .csi extension.
+     *
+     * @param featurePath Path being indexed.
+     * @throws IOException if featureFile is not a normal file.
+     */
+    @Override
+    public void writeBasedOnFeaturePath(final Path featurePath) throws IOException {
+        if (!Files.isRegularFile(featurePath)) {
+            throw new IOException("Cannot write based on a non-regular file: " + featurePath.toUri());
+        }
+        write(featurePath.getFileSystem().getPath(
+                ParsingUtils.appendToPath(featurePath.toAbsolutePath().toString(), CSIIndex.CSI_INDEX_SUFFIX)));
+    }
+
+    /**
+     * @param los It is assumes that caller has done appropriate buffering and BlockCompressedOutputStream wrapping.
+     *            Caller should close output stream after invoking this method.
+     */
+    @Override
+    public void write(final LittleEndianOutputStream los) throws IOException {
+        index.write(los);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final CSITabixIndex that = (CSITabixIndex) o;
+
+        if (!formatSpec.equals(that.formatSpec)) return false;
+        if (!sequenceNames.equals(that.sequenceNames)) return false;
+        return index.equals(that.index);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = formatSpec.hashCode();
+        result = 31 * result + sequenceNames.hashCode();
+        result = 31 * result + index.hashCode();
+        return result;
+    }
+}
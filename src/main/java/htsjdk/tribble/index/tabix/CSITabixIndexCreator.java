@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.tribble.index.tabix;
+
+import htsjdk.samtools.BinningIndexBuilder;
+import htsjdk.samtools.CSIIndex;
+import htsjdk.samtools.CSIIndexBuilder;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.tribble.Feature;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexCreator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * IndexCreator for tabix-style indices in CSI format, for files with contigs longer than a {@link TabixIndex} can
+ * address.
+ * Features are expected to be 1-based, inclusive.
+ */
+public class CSITabixIndexCreator implements IndexCreator {
+    /** Depth used without a sequence dictionary, enough for contigs of up to 2^32 bases with the default min_shift */
+    public static final int DEFAULT_DEPTH = 6;
+
+    private final TabixFormat formatSpec;
+    private final List<String> sequenceNames = new ArrayList<>();
+    // Merely a faster way to ensure that features are added in a specific sequence name order
+    private final Set<String> sequenceNamesSeen = new HashSet<>();
+    private final CSIIndexBuilder indexBuilder;
+
+    private String currentSequenceName = null;
+    // A feature can't be added to the index until the next feature is added because the next feature
+    // defines the location of the end of the previous feature in the output file.
+    private CSITabixFeature previousFeature = null;
+
+    /**
+     * @param sequenceDictionary is not required, but if present it is used to choose a depth large enough for the
+     *                           longest sequence.
+     */
+    public CSITabixIndexCreator(final SAMSequenceDictionary sequenceDictionary,
+                                final TabixFormat formatSpec) {
+        this(formatSpec, CSIIndex.DEFAULT_MIN_SHIFT, sequenceDictionary == null ? DEFAULT_DEPTH :
+                CSIIndex.getDepthForLength(maxLength(sequenceDictionary), CSIIndex.DEFAULT_MIN_SHIFT));
+    }
+
+    public CSITabixIndexCreator(final TabixFormat formatSpec) {
+        this(null, formatSpec);
+    }
+
+    /**
+     * @param minShift log2 of the size of the smallest bins
+     * @param depth    number of levels of bins below the root bin
+     */
+    public CSITabixIndexCreator(final TabixFormat formatSpec, final int minShift, final int depth) {
+        this.formatSpec = formatSpec.clone();
+        this.indexBuilder = new CSIIndexBuilder(minShift, depth, 0);
+    }
+
+    private static long maxLength(final SAMSequenceDictionary sequenceDictionary) {
+        return sequenceDictionary.getSequences().stream().mapToLong(SAMSequenceRecord::getSequenceLength).max().orElse(0);
+    }
+
+    @Override
+    public void addFeature(final Feature feature, final long filePosition) {
+        final String sequenceName = feature.getContig();
+        final int referenceIndex;
+        if (sequenceName.equals(currentSequenceName)) {
+            referenceIndex = sequenceNames.size() - 1;
+        } else {
+            referenceIndex = sequenceNames.size();
+            if (currentSequenceName != null && sequenceNamesSeen.contains(sequenceName)) {
+                throw new IllegalArgumentException("Sequence " + feature + " added out sequence of order");
+            }
+        }
+        final CSITabixFeature thisFeature = new CSITabixFeature(referenceIndex, feature.getStart(), feature.getEnd(), filePosition);
+        if (previousFeature != null) {
+            if (previousFeature.referenceIndex == referenceIndex && previousFeature.start > thisFeature.start) {
+                throw new IllegalArgumentException(String.format("Features added out of order: previous (%s) > next (%s)",
+                        previousFeature, thisFeature));
+            }
+            finalizeFeature(filePosition);
+        }
+        previousFeature = thisFeature;
+        if (referenceIndex == sequenceNames.size()) {
+            sequenceNames.add(sequenceName);
+            currentSequenceName = sequenceName;
+            sequenceNamesSeen.add(sequenceName);
+        }
+    }
+
+    private void finalizeFeature(final long featureEndPosition) {
+        previousFeature.featureEndFilePosition = featureEndPosition;
+        if (previousFeature.featureStartFilePosition >= previousFeature.featureEndFilePosition) {
+            throw new IllegalArgumentException(String.format("Feature start position %d >= feature end position %d",
+                    previousFeature.featureStartFilePosition, previousFeature.featureEndFilePosition));
+        }
+        indexBuilder.processFeature(previousFeature.referenceIndex, previousFeature);
+    }
+
+    @Override
+    public Index finalizeIndex(final long finalFilePosition) {
+        if (previousFeature != null) {
+            finalizeFeature(finalFilePosition);
+        }
+        indexBuilder.setAux(CSITabixIndex.encodeHeader(formatSpec, sequenceNames));
+        return new CSITabixIndex(indexBuilder.generateIndex());
+    }
+
+    private static class CSITabixFeature implements BinningIndexBuilder.FeatureToBeIndexed {
+        private final int referenceIndex;
+        private final int start;
+        private final int end;
+        private final long featureStartFilePosition;
+        // Position after this feature in the file.
+        private long featureEndFilePosition = -1;
+
+        private CSITabixFeature(final int referenceIndex, final int start, final int end, final long featureStartFilePosition) {
+            this.referenceIndex = referenceIndex;
+            this.start = start;
+            this.end = end;
+            this.featureStartFilePosition = featureStartFilePosition;
+        }
+
+        @Override
+        public int getStart() {
+            return start;
+        }
+
+        @Override
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * @return null -- Let index builder compute this.
+         */
+        @Override
+        public Integer getIndexingBin() {
+            return null;
+        }
+
+        @Override
+        public Chunk getChunk() {
+            if (featureEndFilePosition == -1) {
+                throw new IllegalStateException("End position is not set");
+            }
+            return new Chunk(featureStartFilePosition, featureEndFilePosition);
+        }
+
+        @Override
+        public String toString() {
+            return "CSITabixFeature{" +
+                    "referenceIndex=" + referenceIndex +
+                    ", start=" + start +
+                    ", end=" + end +
+                    ", featureStartFilePosition=" + featureStartFilePosition +
+                    ", featureEndFilePosition=" + featureEndFilePosition +
+                    '}';
+        }
+    }
+}
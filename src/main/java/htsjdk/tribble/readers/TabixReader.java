@@ -23,10 +23,14 @@
  */
 package htsjdk.tribble.readers;
 
+import htsjdk.samtools.CSIIndex;
+import htsjdk.samtools.Chunk;
 import htsjdk.samtools.seekablestream.ISeekableStreamFactory;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.seekablestream.SeekableStreamFactory;
 import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.tribble.index.tabix.CSITabixIndex;
+import htsjdk.tribble.index.tabix.TabixFormat;
 import htsjdk.tribble.util.ParsingUtils;
 import htsjdk.tribble.util.TabixUtils;
 
@@ -38,6 +42,7 @@ import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
@@ -93,6 +98,8 @@ public class TabixReader {
     }
 
     protected TIndex[] mIndex;
+    // set instead of mIndex when the index is in CSI format
+    private CSIIndex mCsiIndex;
 
     private static class TIntv {
         int tid, beg, end;
@@ -156,9 +163,12 @@ public class TabixReader {
     public TabixReader(final String filePath, final String indexPath, SeekableStream stream, Function<SeekableByteChannel, SeekableByteChannel> indexWrapper) throws IOException {
         mFilePath = filePath;
         mFp = new BlockCompressedInputStream(stream);
+        // queries often revisit the same blocks, which can then be shared through the InflatedBlockCache
+        mFp.setUseBlockCache(true);
         mIndexWrapper = indexWrapper;
         if(indexPath == null){
-            mIndexPath = ParsingUtils.appendToPath(filePath, TabixUtils.STANDARD_INDEX_EXTENSION);
+            final String foundIndexPath = TabixUtils.findIndexPath(filePath);
+            mIndexPath = foundIndexPath != null ? foundIndexPath : ParsingUtils.appendToPath(filePath, TabixUtils.STANDARD_INDEX_EXTENSION);
         } else {
             mIndexPath = indexPath;
         }
@@ -231,6 +241,12 @@ public class TabixReader {
         byte[] buf = new byte[4];
 
         is.read(buf, 0, 4); // read "TBI\1"
+        if (ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN).getInt() == CSIIndex.MAGIC_NUMBER) {
+            is.seek(0);
+            readCSIIndex(new CSITabixIndex(is));
+            is.close();
+            return;
+        }
         mSeq = new String[readInt(is)]; // # sequences
         mChr2tid = new HashMap<String, Integer>( this.mSeq.length );
         mPreset = readInt(is);
@@ -279,6 +295,25 @@ public class TabixReader {
         is.close();
     }
 
+    /**
+     * Takes the tabix header from the auxiliary data of a CSI index
+     */
+    private void readCSIIndex(final CSITabixIndex index) {
+        final TabixFormat format = index.getFormatSpec();
+        mPreset = format.flags;
+        mSc = format.sequenceColumn;
+        mBc = format.startPositionColumn;
+        mEc = format.endPositionColumn;
+        mMeta = format.metaCharacter;
+        mSeq = index.getSequenceNames().toArray(new String[0]);
+        mChr2tid = new HashMap<String, Integer>(mSeq.length);
+        for (int i = 0; i < mSeq.length; ++i) {
+            mChr2tid.put(mSeq[i], i);
+        }
+        mCsiIndex = index.getCSIIndex();
+        mIndex = new TIndex[0];
+    }
+
     /**
      * Read the Tabix index from the default file.
      */
@@ -453,6 +488,7 @@ public class TabixReader {
      * @return an iterator over the lines within the specified interval
      */
     public Iterator query(final int tid, final int beg, final int end) {
+        if (mCsiIndex != null) return queryCSI(tid, beg, end);
         TPair64[] off, chunks;
         long min_off;
         if(tid< 0 || tid>=this.mIndex.length) return EOF_ITERATOR;
@@ -506,6 +542,17 @@ public class TabixReader {
         return new TabixReader.IteratorImpl(tid, beg, end, ret);
     }
 
+    private Iterator queryCSI(final int tid, final int beg, final int end) {
+        // the CSI index takes 1-based, inclusive coordinates
+        final List<Chunk> chunks = mCsiIndex.getChunksOverlapping(tid, beg + 1, end);
+        if (chunks == null) return EOF_ITERATOR;
+        final TPair64[] off = new TPair64[chunks.size()];
+        for (int i = 0; i < off.length; ++i) {
+            off[i] = new TPair64(chunks.get(i).getChunkStart(), chunks.get(i).getChunkEnd());
+        }
+        return new TabixReader.IteratorImpl(tid, beg, end, off);
+    }
+
     /**
      *
      * @see #parseReg(String)
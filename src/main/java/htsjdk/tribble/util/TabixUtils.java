@@ -31,6 +31,7 @@ import htsjdk.tribble.TribbleException;
 import htsjdk.tribble.readers.TabixReader;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -42,6 +43,25 @@ public class TabixUtils {
 
     public static final String STANDARD_INDEX_EXTENSION = ".tbi";
 
+    /** Extension of tabix-style indices in CSI format, for files with contigs too long for a .tbi */
+    public static final String CSI_INDEX_EXTENSION = ".csi";
+
+    /**
+     * Looks for the tabix index of a block compressed file, preferring a .tbi to a .csi.
+     *
+     * @param resourcePath path or URL of the indexed file
+     * @return the path of the index, or null if neither index exists
+     */
+    public static String findIndexPath(final String resourcePath) throws IOException {
+        for (final String extension : new String[]{STANDARD_INDEX_EXTENSION, CSI_INDEX_EXTENSION}) {
+            final String indexPath = ParsingUtils.appendToPath(resourcePath, extension);
+            if (ParsingUtils.resourceExists(indexPath)) {
+                return indexPath;
+            }
+        }
+        return null;
+    }
+
     public static class TPair64 implements Comparable<TPair64> {
         public long u, v;
 
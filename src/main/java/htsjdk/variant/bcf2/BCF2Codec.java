@@ -33,6 +33,7 @@ import htsjdk.tribble.TribbleException;
 import htsjdk.tribble.readers.*;
 import htsjdk.variant.utils.GeneralUtils;
 import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.ColumnarGenotypesContext;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
 import htsjdk.variant.variantcontext.LazyGenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
@@ -42,6 +43,7 @@ import htsjdk.variant.vcf.VCFCodec;
 import htsjdk.variant.vcf.VCFCompoundHeaderLine;
 import htsjdk.variant.vcf.VCFConstants;
 import htsjdk.variant.vcf.VCFContigHeaderLine;
+import htsjdk.variant.vcf.VCFFieldSelection;
 import htsjdk.variant.vcf.VCFHeader;
 import htsjdk.variant.vcf.VCFHeaderLineType;
 
@@ -98,6 +100,16 @@ public final class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
      */
     private GenotypeBuilder[] builders = null;
 
+    /**
+     * If true, genotypes with only the GT, DP, GQ, AD and PL fields are decoded into a {@link ColumnarGenotypesContext}
+     */
+    private boolean columnarGenotypes = false;
+
+    /**
+     * The INFO and FORMAT fields to decode
+     */
+    private VCFFieldSelection fieldSelection = VCFFieldSelection.ALL;
+
     // for error handling
     private int recordNo = 0;
     private int pos = 0;
@@ -127,8 +139,12 @@ public final class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
             decodeSiteLoc(builder);
             final SitesInfoForDecoding info = decodeSitesExtendedInfo(builder);
 
-            decoder.readNextBlock(genotypeBlockSize, inputStream);
-            createLazyGenotypesDecoder(info, builder);
+            if ( fieldSelection.includesGenotypes() ) {
+                decoder.readNextBlock(genotypeBlockSize, inputStream);
+                createLazyGenotypesDecoder(info, builder);
+            } else {
+                decoder.skipNextBlock(genotypeBlockSize, inputStream);
+            }
             return builder.fullyDecoded(true).make();
         } catch ( IOException e ) {
             throw new TribbleException("Failed to read BCF file", e);
@@ -214,6 +230,32 @@ public final class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
         }
     }
 
+    /**
+     * Decode the genotypes of records whose genotypes have only the GT, DP, GQ, AD and PL fields, encoded as
+     * integers, into a {@link ColumnarGenotypesContext}, which reads each field from the record into a primitive
+     * column when first needed, rather than into a Genotype object per sample.  Other records are decoded as usual.
+     *
+     * @param columnarGenotypes true to decode genotypes into columns where possible
+     */
+    public void setColumnarGenotypes( final boolean columnarGenotypes ) {
+        this.columnarGenotypes = columnarGenotypes;
+    }
+
+    /**
+     * Decode only some of the INFO and FORMAT fields of the records, skipping the others by their encoded size
+     * without decoding them.  The genotypes of the records only hold the selected fields, including when they are
+     * written to another BCF2 file without being decoded.
+     *
+     * @param fieldSelection the fields to decode, {@link VCFFieldSelection#ALL} by default
+     */
+    public void setFieldSelection( final VCFFieldSelection fieldSelection ) {
+        this.fieldSelection = fieldSelection;
+    }
+
+    public VCFFieldSelection getFieldSelection() {
+        return fieldSelection;
+    }
+
     // --------------------------------------------------------------------------------
     //
     // implicit block
@@ -383,6 +425,10 @@ public final class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
         final Map<String, Object> infoFieldEntries = new HashMap<String, Object>(numInfoFields);
         for ( int i = 0; i < numInfoFields; i++ ) {
             final String key = getDictionaryString();
+            if ( ! fieldSelection.includesInfoKey(key) ) {
+                decoder.skipTypedValue(decoder.readTypeDescriptor());
+                continue;
+            }
             Object value = decoder.decodeTypedValue();
             final VCFCompoundHeaderLine metaData = VariantContextUtils.getMetaDataForField(header, key);
             if ( metaData.getType() == VCFHeaderLineType.Flag ) value = true; // special case for flags
@@ -406,13 +452,22 @@ public final class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
      * @param builder
      */
     private void createLazyGenotypesDecoder( final SitesInfoForDecoding siteInfo,
-                                             final VariantContextBuilder builder ) {
+                                             final VariantContextBuilder builder ) throws IOException {
         if (siteInfo.nSamples > 0) {
-            final LazyGenotypesContext.LazyParser lazyParser =
-                    new BCF2LazyGenotypesDecoder(this, siteInfo.alleles, siteInfo.nSamples, siteInfo.nFormatFields, builders);
-
-            final LazyData lazyData = new LazyData(header, siteInfo.nFormatFields, decoder.getRecordBytes());
-            final LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, lazyData, header.getNGenotypeSamples());
+            final LazyData lazyData = fieldSelection.includesAllFormatKeys() ?
+                    new LazyData(header, siteInfo.nFormatFields, decoder.getRecordBytes()) :
+                    selectGenotypeFields(siteInfo);
+            final BCF2GenotypeColumnDecoder columnDecoder = columnarGenotypes ?
+                    BCF2GenotypeColumnDecoder.create(this, lazyData.bytes, lazyData.nGenotypeFields, siteInfo.alleles, siteInfo.nSamples) : null;
+            final LazyGenotypesContext lazy;
+            if (columnDecoder != null) {
+                lazy = new ColumnarGenotypesContext(columnDecoder, lazyData, siteInfo.alleles, header.getGenotypeSamples(),
+                        header.getSampleNamesInOrder(), header.getSampleNameToOffset());
+            } else {
+                final LazyGenotypesContext.LazyParser lazyParser =
+                        new BCF2LazyGenotypesDecoder(this, siteInfo.alleles, siteInfo.nSamples, lazyData.nGenotypeFields, builders);
+                lazy = new LazyGenotypesContext(lazyParser, lazyData, header.getNGenotypeSamples());
+            }
 
             // did we resort the sample names?  If so, we need to load the genotype data
             if ( !header.samplesWereAlreadySorted() )
@@ -422,6 +477,28 @@ public final class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
         }
     }
 
+    /**
+     * Copies the genotype fields selected by the field selection out of the genotypes block, skipping the others,
+     * so that the lazy data, which writers may pass through, is a valid block of only the selected fields.
+     */
+    private LazyData selectGenotypeFields(final SitesInfoForDecoding siteInfo) throws IOException {
+        final byte[] bytes = decoder.getRecordBytes();
+        final ByteArrayOutputStream selected = new ByteArrayOutputStream(bytes.length);
+        int nSelectedFields = 0;
+        for ( int i = 0; i < siteInfo.nFormatFields; i++ ) {
+            final int fieldStart = decoder.getPosition();
+            final String field = getDictionaryString();
+            final byte typeDescriptor = decoder.readTypeDescriptor();
+            final int numElements = decoder.decodeNumberOfElements(typeDescriptor);
+            decoder.skipBytes(siteInfo.nSamples * numElements * BCF2Utils.decodeType(typeDescriptor).getSizeInBytes());
+            if ( fieldSelection.includesFormatKey(field) ) {
+                selected.write(bytes, fieldStart, decoder.getPosition() - fieldStart);
+                nSelectedFields++;
+            }
+        }
+        return new LazyData(header, nSelectedFields, selected.toByteArray());
+    }
+
     public static class LazyData {
         final public VCFHeader header;
         final public int nGenotypeFields;
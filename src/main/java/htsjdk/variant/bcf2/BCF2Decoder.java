@@ -100,6 +100,28 @@ public final class BCF2Decoder {
         return recordBytes.length;
     }
 
+    /**
+     * The offset in the current block of the next byte to decode
+     */
+    int getPosition() {
+        return recordBytes.length - recordStream.available();
+    }
+
+    /**
+     * Skips bytes of the current block without decoding them
+     */
+    void skipBytes(final int n) {
+        if ( recordStream.skip(n) != n ) throw new TribbleException("Tried to skip " + n + " bytes beyond the end of the block");
+    }
+
+    /**
+     * Skips a typed value of the current block without decoding it
+     */
+    void skipTypedValue(final byte typeDescriptor) throws IOException {
+        final int size = decodeNumberOfElements(typeDescriptor);
+        skipBytes(size * BCF2Utils.decodeType(typeDescriptor).getSizeInBytes());
+    }
+
     public boolean blockIsFullyDecoded() {
         return recordStream.available() == 0;
     }
@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.bcf2;
+
+import htsjdk.tribble.TribbleException;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.ColumnarGenotypesContext;
+import htsjdk.variant.vcf.VCFConstants;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decodes the genotype columns of a BCF2 record for a {@link ColumnarGenotypesContext}, straight from the bytes of
+ * the genotypes block, with the same results as the decoders of {@link BCF2GenotypeFieldDecoders}.  The block is
+ * scanned once when the record is decoded to find where each field starts, and each field is then read in place
+ * when its column is first needed.
+ */
+final class BCF2GenotypeColumnDecoder implements ColumnarGenotypesContext.ColumnDecoder {
+    private static final Set<String> SUPPORTED_KEYS = new HashSet<>(Arrays.asList(VCFConstants.GENOTYPE_KEY,
+            VCFConstants.DEPTH_KEY, VCFConstants.GENOTYPE_QUALITY_KEY, VCFConstants.GENOTYPE_ALLELE_DEPTHS,
+            VCFConstants.GENOTYPE_PL_KEY));
+
+    /**
+     * Where the values of a field start in the genotypes block, and how they are encoded
+     */
+    private static final class Field {
+        final BCF2Type type;
+        final int numElements;
+        final int offset;
+
+        Field(final BCF2Type type, final int numElements, final int offset) {
+            this.type = type;
+            this.numElements = numElements;
+            this.offset = offset;
+        }
+    }
+
+    private final byte[] bytes;
+    private final Map<String, Field> fields;
+    private final List<Allele> siteAlleles;
+    private final int nSamples;
+
+    private BCF2GenotypeColumnDecoder(final byte[] bytes, final Map<String, Field> fields,
+                                      final List<Allele> siteAlleles, final int nSamples) {
+        this.bytes = bytes;
+        this.fields = fields;
+        this.siteAlleles = siteAlleles;
+        this.nSamples = nSamples;
+    }
+
+    /**
+     * @param codec       the codec decoding the record, to look up the names of the fields
+     * @param bytes       the genotypes block of the record
+     * @param nFields     the number of fields in the block
+     * @param siteAlleles the alleles of the site
+     * @param nSamples    the number of samples in the block
+     * @return a decoder for the block, or null if it has fields other than GT, DP, GQ, AD and PL, or fields that are
+     * not encoded as integers, in which case the genotypes should be decoded by {@link BCF2LazyGenotypesDecoder}
+     */
+    static BCF2GenotypeColumnDecoder create(final BCF2Codec codec, final byte[] bytes, final int nFields,
+                                            final List<Allele> siteAlleles, final int nSamples) {
+        try {
+            final BCF2Decoder decoder = new BCF2Decoder(bytes);
+            final Map<String, Field> fields = new HashMap<>(nFields * 2);
+            for (int i = 0; i < nFields; i++) {
+                final String key = codec.getDictionaryString((Integer) decoder.decodeTypedValue());
+                final byte typeDescriptor = decoder.readTypeDescriptor();
+                final int numElements = decoder.decodeNumberOfElements(typeDescriptor);
+                final BCF2Type type = BCF2Utils.decodeType(typeDescriptor);
+                if (!SUPPORTED_KEYS.contains(key) || !type.isIntegerType() || fields.containsKey(key)) {
+                    return null;
+                }
+                // DP and GQ are decoded as a single value for each sample, whatever the number of elements
+                if ((key.equals(VCFConstants.DEPTH_KEY) || key.equals(VCFConstants.GENOTYPE_QUALITY_KEY)) && numElements != 1) {
+                    return null;
+                }
+                final int offset = decoder.getPosition();
+                fields.put(key, new Field(type, numElements, offset));
+                decoder.skipBytes(nSamples * numElements * type.getSizeInBytes());
+            }
+            return new BCF2GenotypeColumnDecoder(bytes, fields, siteAlleles, nSamples);
+        } catch (final IOException e) {
+            throw new TribbleException("Unexpected IOException parsing already read genotypes data block", e);
+        }
+    }
+
+    private int readInt(final BCF2Type type, final int offset) {
+        switch (type) {
+            case INT8:
+                return bytes[offset];
+            case INT16:
+                return (short) ((bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8);
+            default:
+                return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 |
+                        (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+        }
+    }
+
+    private void checkBounds(final Field field) {
+        if (field.offset + nSamples * field.numElements * field.type.getSizeInBytes() > bytes.length) {
+            throw new TribbleException("Genotypes data block is too short for its fields");
+        }
+    }
+
+    /**
+     * Decodes GT as the fast biallelic diploid and the general paths of BCF2GenotypeFieldDecoders do, allele
+     * codes of 0 and 1 being no-calls
+     */
+    @Override
+    public boolean decodeGenotypes(final ColumnarGenotypesContext.IntArrayColumn alleles, final BitSet phased) {
+        final Field field = fields.get(VCFConstants.GENOTYPE_KEY);
+        if (field == null) {
+            return false;
+        }
+        checkBounds(field);
+        final BCF2Type type = field.type;
+        final int size = type.getSizeInBytes();
+        final int missing = type.getMissingBytes();
+        final boolean biallelicDiploid = siteAlleles.size() == 2 && field.numElements == 2;
+        int offset = field.offset;
+        for (int sample = 0; sample < nSamples; sample++) {
+            if (biallelicDiploid) {
+                final int a1 = readInt(type, offset);
+                final int a2 = readInt(type, offset + size);
+                offset += 2 * size;
+                if (a1 != missing) {
+                    alleles.add((a1 >> 1) - 1);
+                    if (a2 != missing) {
+                        alleles.add((a2 >> 1) - 1);
+                    }
+                }
+                if ((a2 & 0x01) == 1) {
+                    phased.set(sample);
+                }
+            } else {
+                // the phasing is that of the second allele, or of the first if there is only one
+                int phasing = 0;
+                int length = 0;
+                boolean sawMissing = false;
+                for (int i = 0; i < field.numElements; i++, offset += size) {
+                    final int encoded = readInt(type, offset);
+                    // values after the first missing one are padding
+                    sawMissing |= encoded == missing;
+                    if (!sawMissing) {
+                        alleles.add((encoded >> 1) - 1);
+                        if (length < 2) {
+                            phasing = encoded & 0x01;
+                        }
+                        length++;
+                    }
+                }
+                if (phasing == 1) {
+                    phased.set(sample);
+                }
+            }
+            alleles.endSample();
+        }
+        return true;
+    }
+
+    @Override
+    public int[] decodeIntField(final String key) {
+        final Field field = fields.get(key);
+        if (field == null) {
+            return null;
+        }
+        checkBounds(field);
+        final int size = field.type.getSizeInBytes();
+        final int missing = field.type.getMissingBytes();
+        final int[] values = new int[nSamples];
+        for (int sample = 0, offset = field.offset; sample < nSamples; sample++, offset += size) {
+            final int value = readInt(field.type, offset);
+            values[sample] = value == missing ? -1 : value;
+        }
+        return values;
+    }
+
+    /**
+     * Decodes the values as {@link BCF2Decoder#decodeIntArray(byte, int)} does, keeping those before the first
+     * missing one
+     */
+    @Override
+    public ColumnarGenotypesContext.IntArrayColumn decodeIntArrayField(final String key) {
+        final Field field = fields.get(key);
+        if (field == null) {
+            return null;
+        }
+        checkBounds(field);
+        final int size = field.type.getSizeInBytes();
+        final int missing = field.type.getMissingBytes();
+        final ColumnarGenotypesContext.IntArrayColumn values =
+                new ColumnarGenotypesContext.IntArrayColumn(nSamples, field.numElements);
+        int offset = field.offset;
+        for (int sample = 0; sample < nSamples; sample++) {
+            boolean sawMissing = false;
+            for (int i = 0; i < field.numElements; i++, offset += size) {
+                final int value = readInt(field.type, offset);
+                sawMissing |= value == missing;
+                if (!sawMissing) {
+                    values.add(value);
+                }
+            }
+            values.endSample();
+        }
+        return values;
+    }
+}
@@ -29,6 +29,7 @@ import htsjdk.samtools.util.IOUtil;
 import htsjdk.tribble.TribbleException;
 import htsjdk.variant.vcf.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -41,6 +42,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -325,6 +327,85 @@ public final class BCF2Utils {
         return true;
     }
 
+    /**
+     * Maps the string dictionary offsets of the FORMAT keys of genotypes blocks read with genotypesBlockHeader to
+     * their offsets in the string dictionary of outputHeader, so that the raw genotypes blocks can be written with
+     * outputHeader by rewriting only their keys, with {@link #remapGenotypeFieldKeys}, even when fields added to or
+     * removed from the header have moved the FORMAT keys in the dictionary.
+     *
+     * The blocks can only be written this way if the samples of the genotype columns are the same, in the same order,
+     * and every FORMAT field of genotypesBlockHeader is defined with the same type by outputHeader.
+     *
+     * @param outputDictionary the string dictionary of outputHeader, from strings to offsets
+     * @return the offset in outputDictionary of each FORMAT key, indexed by its offset in the dictionary of
+     * genotypesBlockHeader, with -1 for strings that are not FORMAT keys; or null if the genotypes blocks cannot be
+     * written without decoding them
+     */
+    public static int[] genotypeFieldKeyOffsets(final VCFHeader outputHeader, final Map<String, Integer> outputDictionary,
+                                                final VCFHeader genotypesBlockHeader) {
+        // the genotype columns, as getSampleNamesInOrder() is sorted
+        if ( ! nullAsEmpty(outputHeader.getGenotypeSamples()).equals(nullAsEmpty(genotypesBlockHeader.getGenotypeSamples())) )
+            return null;
+
+        final List<String> inputDictionary = makeDictionary(genotypesBlockHeader);
+        final int[] offsets = new int[inputDictionary.size()];
+        Arrays.fill(offsets, -1);
+        for ( final VCFFormatHeaderLine inputLine : genotypesBlockHeader.getFormatHeaderLines() ) {
+            final VCFFormatHeaderLine outputLine = outputHeader.getFormatHeaderLine(inputLine.getID());
+            final Integer outputOffset = outputDictionary.get(inputLine.getID());
+            if ( outputLine == null || outputOffset == null || outputLine.getType() != inputLine.getType() )
+                return null;
+            offsets[inputDictionary.indexOf(inputLine.getID())] = outputOffset;
+        }
+        return offsets;
+    }
+
+    /**
+     * @param keyOffsets offsets from {@link #genotypeFieldKeyOffsets}
+     * @return true if every FORMAT key has the same offset in both dictionaries, so that the genotypes blocks can be
+     * written as they are
+     */
+    public static boolean genotypeFieldKeysAreUnchanged(final int[] keyOffsets) {
+        for ( int i = 0; i < keyOffsets.length; i++ ) {
+            if ( keyOffsets[i] != -1 && keyOffsets[i] != i )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copies a raw genotypes block, replacing the dictionary offset of the key of each field by its offset in
+     * keyOffsets.  The values of the fields are copied as they are, without decoding them.
+     *
+     * @param genotypesBlock  the genotypes block of a record
+     * @param nGenotypeFields the number of fields in the block
+     * @param nSamples        the number of samples in the block
+     * @param keyOffsets      offsets from {@link #genotypeFieldKeyOffsets}
+     * @return the genotypes block with the new keys, or null if a key of the block is not a FORMAT key of the header
+     * of the block
+     */
+    public static byte[] remapGenotypeFieldKeys(final byte[] genotypesBlock, final int nGenotypeFields, final int nSamples,
+                                                final int[] keyOffsets) throws IOException {
+        final BCF2Decoder decoder = new BCF2Decoder(genotypesBlock);
+        final ByteArrayOutputStream remapped = new ByteArrayOutputStream(genotypesBlock.length + nGenotypeFields * 2);
+        for ( int i = 0; i < nGenotypeFields; i++ ) {
+            final int inputKeyOffset = (Integer) decoder.decodeTypedValue();
+            final int keyOffset = inputKeyOffset < keyOffsets.length ? keyOffsets[inputKeyOffset] : -1;
+            if ( keyOffset == -1 )
+                return null;
+            final int valuesStart = decoder.getPosition();
+            final byte typeDescriptor = decoder.readTypeDescriptor();
+            final int numElements = decoder.decodeNumberOfElements(typeDescriptor);
+            decoder.skipBytes(nSamples * numElements * decodeType(typeDescriptor).getSizeInBytes());
+
+            final BCF2Type keyType = determineIntegerType(keyOffset);
+            remapped.write(encodeTypeDescriptor(1, keyType));
+            keyType.write(keyOffset, remapped);
+            remapped.write(genotypesBlock, valuesStart, decoder.getPosition() - valuesStart);
+        }
+        return remapped.toByteArray();
+    }
+
     private static <T> List<T> nullAsEmpty(List<T> l) {
         if ( l == null )
             return Collections.emptyList();
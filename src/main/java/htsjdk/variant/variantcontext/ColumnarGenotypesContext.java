@@ -0,0 +1,456 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext;
+
+import htsjdk.variant.vcf.VCFConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy-loading GenotypesContext for sites whose genotypes have only the GT, DP, GQ, AD and PL fields, which keeps
+ * the genotypes in primitive columns rather than in a Genotype object per sample.  Each column is decoded from
+ * the raw genotype data by a {@link ColumnDecoder} the first time it is needed, so that, for instance, counting
+ * alleles only decodes the GT field.  {@link #get(int)}, {@link #get(String)} and {@link #iterator()} create
+ * Genotype objects for the samples they return, and any other use of the genotypes as a list decodes them all
+ * into Genotype objects, as {@link LazyGenotypesContext} does.
+ *
+ * The columns always hold the genotypes as they were decoded, so the allele counts of {@link VariantContext}
+ * are only computed from them while {@link #isLazyWithData()}, that is until the genotypes are decoded into
+ * Genotype objects, which may then be modified.
+ */
+public class ColumnarGenotypesContext extends LazyGenotypesContext {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Decodes the fields of the genotypes of a site into columns, with a value for each sample in the order
+     * of the genotypes.
+     */
+    public interface ColumnDecoder {
+        /**
+         * Decodes the GT field.
+         *
+         * @param alleles the column to which to add the allele indices of each sample, with -1 for a no-call
+         * @param phased  set for the samples whose genotype is phased
+         * @return false if the genotypes have no GT field
+         */
+        boolean decodeGenotypes(IntArrayColumn alleles, BitSet phased);
+
+        /**
+         * Decodes a field with a single integer value, such as DP or GQ.
+         *
+         * @return the value of each sample, -1 where missing, or null if the genotypes do not have the field
+         */
+        int[] decodeIntField(String key);
+
+        /**
+         * Decodes a field with an array of integer values, such as AD or PL.
+         *
+         * @return the values of each sample, none where missing, or null if the genotypes do not have the field
+         */
+        IntArrayColumn decodeIntArrayField(String key);
+    }
+
+    /**
+     * A column holding a variable number of integers for each sample, in one array.
+     */
+    public static final class IntArrayColumn {
+        private final int[] offsets;
+        private int[] values;
+        private int nSamples = 0;
+        private int size = 0;
+
+        /**
+         * @param nSamples         the number of samples
+         * @param valuesPerSample  the expected number of values of each sample
+         */
+        public IntArrayColumn(final int nSamples, final int valuesPerSample) {
+            this.offsets = new int[nSamples + 1];
+            this.values = new int[Math.max(1, nSamples * valuesPerSample)];
+        }
+
+        /**
+         * Adds a value to the sample being decoded.
+         */
+        public void add(final int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Ends the values of the sample being decoded, and starts those of the next sample.
+         */
+        public void endSample() {
+            offsets[++nSamples] = size;
+        }
+
+        /**
+         * @return the number of values of the sample
+         */
+        public int getLength(final int sample) {
+            return offsets[sample + 1] - offsets[sample];
+        }
+
+        /**
+         * @return the ith value of the sample
+         */
+        public int get(final int sample, final int i) {
+            return values[offsets[sample] + i];
+        }
+
+        /**
+         * @return the values of the sample, or null if it has none
+         */
+        public int[] toArray(final int sample) {
+            return getLength(sample) == 0 ? null : Arrays.copyOfRange(values, offsets[sample], offsets[sample + 1]);
+        }
+
+        private void checkSize(final int expectedSamples) {
+            if (nSamples != expectedSamples) {
+                throw new IllegalStateException("Decoded " + nSamples + " samples, but there are " + expectedSamples);
+            }
+        }
+    }
+
+    // transient, like the parser, as the genotypes are decoded into Genotype objects before serialization
+    private transient ColumnDecoder columnDecoder;
+    private transient List<Allele> siteAlleles;
+    private transient List<String> sampleNames;
+    private transient List<String> sortedSampleNames;
+    private transient Map<String, Integer> sampleOffsets;
+    private final int nSamples;
+
+    private transient boolean genotypesDecoded = false;
+    private transient IntArrayColumn alleleColumn;
+    private transient BitSet phasedColumn;
+    private transient boolean dpDecoded = false;
+    private transient int[] dpColumn;
+    private transient boolean gqDecoded = false;
+    private transient int[] gqColumn;
+    private transient boolean adDecoded = false;
+    private transient IntArrayColumn adColumn;
+    private transient boolean plDecoded = false;
+    private transient IntArrayColumn plColumn;
+
+    /**
+     * @param columnDecoder        decodes the columns from the genotypes data
+     * @param unparsedGenotypeData the encoded genotypes data, as for {@link LazyGenotypesContext}
+     * @param siteAlleles          the alleles of the site, which the allele indices refer to
+     * @param sampleNames          the names of the samples, in the order of the genotypes
+     * @param sampleNamesInOrder   the names of the samples, sorted
+     * @param sampleNameToOffset   the offset of each sample in the genotypes
+     */
+    public ColumnarGenotypesContext(final ColumnDecoder columnDecoder, final Object unparsedGenotypeData,
+                                    final List<Allele> siteAlleles, final List<String> sampleNames,
+                                    final List<String> sampleNamesInOrder, final Map<String, Integer> sampleNameToOffset) {
+        this(new ColumnParser(), columnDecoder, unparsedGenotypeData, siteAlleles, sampleNames, sampleNamesInOrder, sampleNameToOffset);
+    }
+
+    private ColumnarGenotypesContext(final ColumnParser parser, final ColumnDecoder columnDecoder, final Object unparsedGenotypeData,
+                                     final List<Allele> siteAlleles, final List<String> sampleNames,
+                                     final List<String> sampleNamesInOrder, final Map<String, Integer> sampleNameToOffset) {
+        super(parser, unparsedGenotypeData, sampleNames.size());
+        parser.context = this;
+        this.columnDecoder = columnDecoder;
+        this.siteAlleles = siteAlleles;
+        this.sampleNames = sampleNames;
+        this.sampleOffsets = sampleNameToOffset;
+        this.nSamples = sampleNames.size();
+        this.sortedSampleNames = sampleNamesInOrder;
+    }
+
+    /**
+     * Creates the Genotype objects from the columns when the genotypes are decoded.
+     */
+    private static class ColumnParser implements LazyParser {
+        private ColumnarGenotypesContext context;
+
+        @Override
+        public LazyData parse(final Object data) {
+            final ArrayList<Genotype> genotypes = new ArrayList<>(context.nSamples);
+            for (int i = 0; i < context.nSamples; i++) {
+                genotypes.add(context.createGenotype(i));
+            }
+            return new LazyData(genotypes, context.sortedSampleNames, context.sampleOffsets);
+        }
+    }
+
+    private void checkColumns() {
+        if (columnDecoder == null) {
+            throw new IllegalStateException("The columns of deserialized genotypes are not available");
+        }
+    }
+
+    private void decodeGenotypes() {
+        if (!genotypesDecoded) {
+            checkColumns();
+            final IntArrayColumn alleles = new IntArrayColumn(nSamples, 2);
+            final BitSet phased = new BitSet(nSamples);
+            if (columnDecoder.decodeGenotypes(alleles, phased)) {
+                alleles.checkSize(nSamples);
+                alleleColumn = alleles;
+                phasedColumn = phased;
+            }
+            genotypesDecoded = true;
+        }
+    }
+
+    private int[] decodeIntField(final String key) {
+        checkColumns();
+        final int[] values = columnDecoder.decodeIntField(key);
+        if (values != null && values.length != nSamples) {
+            throw new IllegalStateException("Decoded " + values.length + " samples, but there are " + nSamples);
+        }
+        return values;
+    }
+
+    private IntArrayColumn decodeIntArrayField(final String key) {
+        checkColumns();
+        final IntArrayColumn values = columnDecoder.decodeIntArrayField(key);
+        if (values != null) {
+            values.checkSize(nSamples);
+        }
+        return values;
+    }
+
+    /**
+     * @return the number of alleles in the genotype of the sample
+     */
+    public int getPloidy(final int sample) {
+        decodeGenotypes();
+        return alleleColumn == null ? 0 : alleleColumn.getLength(sample);
+    }
+
+    /**
+     * @return the index among the alleles of the site of the ith allele of the genotype of the sample, or -1 if
+     * it is a no-call
+     */
+    public int getAlleleIndex(final int sample, final int i) {
+        decodeGenotypes();
+        if (alleleColumn == null) {
+            throw new IndexOutOfBoundsException("There are no genotype alleles");
+        }
+        return alleleColumn.get(sample, i);
+    }
+
+    public boolean isPhased(final int sample) {
+        decodeGenotypes();
+        return phasedColumn != null && phasedColumn.get(sample);
+    }
+
+    /**
+     * @return the DP of the sample, or -1 if missing
+     */
+    public int getDP(final int sample) {
+        if (!dpDecoded) {
+            dpColumn = decodeIntField(VCFConstants.DEPTH_KEY);
+            dpDecoded = true;
+        }
+        return dpColumn == null ? -1 : dpColumn[sample];
+    }
+
+    /**
+     * @return the GQ of the sample, or -1 if missing
+     */
+    public int getGQ(final int sample) {
+        if (!gqDecoded) {
+            gqColumn = decodeIntField(VCFConstants.GENOTYPE_QUALITY_KEY);
+            gqDecoded = true;
+        }
+        return gqColumn == null ? -1 : gqColumn[sample];
+    }
+
+    /**
+     * @return a copy of the AD of the sample, or null if missing
+     */
+    public int[] getAD(final int sample) {
+        if (!adDecoded) {
+            adColumn = decodeIntArrayField(VCFConstants.GENOTYPE_ALLELE_DEPTHS);
+            adDecoded = true;
+        }
+        return adColumn == null ? null : adColumn.toArray(sample);
+    }
+
+    /**
+     * @return a copy of the PL of the sample, or null if missing
+     */
+    public int[] getPL(final int sample) {
+        if (!plDecoded) {
+            plColumn = decodeIntArrayField(VCFConstants.GENOTYPE_PL_KEY);
+            plDecoded = true;
+        }
+        return plColumn == null ? null : plColumn.toArray(sample);
+    }
+
+    /**
+     * @return the number of called alleles in the genotypes, as {@link VariantContext#getCalledChrCount()}
+     */
+    public int getCalledChrCount() {
+        decodeGenotypes();
+        int n = 0;
+        if (alleleColumn != null) {
+            for (int i = 0; i < alleleColumn.size; i++) {
+                if (alleleColumn.values[i] != -1) n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of times the allele occurs in the genotypes, as {@link VariantContext#getCalledChrCount(Allele)}
+     */
+    public int countAllele(final Allele allele) {
+        decodeGenotypes();
+        final int index = allele.isNoCall() ? -1 : siteAlleles.indexOf(allele);
+        if (alleleColumn == null || (index == -1 && !allele.isNoCall())) {
+            return 0;
+        }
+        int n = 0;
+        for (int i = 0; i < alleleColumn.size; i++) {
+            if (alleleColumn.values[i] == index) n++;
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of genotypes of each type, indexed by {@link GenotypeType#ordinal()}
+     */
+    public int[] getGenotypeTypeCounts() {
+        decodeGenotypes();
+        final int[] counts = new int[GenotypeType.values().length];
+        for (int sample = 0; sample < nSamples; sample++) {
+            counts[getType(sample).ordinal()]++;
+        }
+        return counts;
+    }
+
+    /**
+     * @return the type of the genotype of the sample, as {@link Genotype#getType()}
+     */
+    public GenotypeType getType(final int sample) {
+        final int ploidy = getPloidy(sample);
+        if (ploidy == 0) {
+            return GenotypeType.UNAVAILABLE;
+        }
+        boolean sawNoCall = false, sawMultipleAlleles = false;
+        int observedAllele = -1;
+        for (int i = 0; i < ploidy; i++) {
+            final int allele = alleleColumn.get(sample, i);
+            if (allele == -1) {
+                sawNoCall = true;
+            } else if (observedAllele == -1) {
+                observedAllele = allele;
+            } else if (allele != observedAllele) {
+                sawMultipleAlleles = true;
+            }
+        }
+        if (sawNoCall) {
+            return observedAllele == -1 ? GenotypeType.NO_CALL : GenotypeType.MIXED;
+        }
+        return sawMultipleAlleles ? GenotypeType.HET : observedAllele == 0 ? GenotypeType.HOM_REF : GenotypeType.HOM_VAR;
+    }
+
+    /**
+     * Creates the Genotype of a sample from the columns.
+     */
+    private Genotype createGenotype(final int sample) {
+        final GenotypeBuilder gb = new GenotypeBuilder(sampleNames.get(sample));
+        final int ploidy = getPloidy(sample);
+        final List<Allele> alleles = new ArrayList<>(ploidy);
+        for (int i = 0; i < ploidy; i++) {
+            final int allele = alleleColumn.get(sample, i);
+            alleles.add(allele == -1 ? Allele.NO_CALL : siteAlleles.get(allele));
+        }
+        gb.alleles(alleles);
+        gb.phased(isPhased(sample));
+        gb.DP(getDP(sample));
+        gb.GQ(getGQ(sample));
+        gb.AD(getAD(sample));
+        gb.PL(getPL(sample));
+        return gb.make();
+    }
+
+    @Override
+    public Genotype get(final int i) {
+        if (!isLazyWithData()) {
+            return super.get(i);
+        }
+        if (i < 0 || i >= nSamples) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + nSamples);
+        }
+        return createGenotype(i);
+    }
+
+    @Override
+    public Genotype get(final String sampleName) {
+        if (!isLazyWithData()) {
+            return super.get(sampleName);
+        }
+        final Integer offset = sampleOffsets.get(sampleName);
+        return offset == null ? null : createGenotype(offset);
+    }
+
+    @Override
+    public Iterator<Genotype> iterator() {
+        if (!isLazyWithData()) {
+            return super.iterator();
+        }
+        return new Iterator<Genotype>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < nSamples;
+            }
+
+            @Override
+            public Genotype next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return createGenotype(next++);
+            }
+        };
+    }
+
+    @Override
+    public int getMaxPloidy(final int defaultPloidy) {
+        if (!isLazyWithData()) {
+            return super.getMaxPloidy(defaultPloidy);
+        }
+        if (defaultPloidy < 0) throw new IllegalArgumentException("defaultPloidy must be greater than or equal to 0");
+        int maxPloidy = 0;
+        for (int sample = 0; sample < nSamples; sample++) {
+            maxPloidy = Math.max(maxPloidy, getPloidy(sample));
+        }
+        return maxPloidy == 0 ? defaultPloidy : maxPloidy;
+    }
+}
@@ -1030,6 +1030,10 @@ public class VariantContext implements Feature, Serializable {
      * @return chromosome count
      */
     public int getCalledChrCount(Set<String> sampleIds) {
+        final ColumnarGenotypesContext columns = getGenotypeColumns();
+        if ( columns != null && sampleIds.isEmpty() )
+            return columns.getCalledChrCount();
+
         int n = 0;
         GenotypesContext genotypes = sampleIds.isEmpty() ? getGenotypes() : getGenotypes(sampleIds);
 
@@ -1059,6 +1063,10 @@ public class VariantContext implements Feature, Serializable {
      * @return chromosome count
      */
     public int getCalledChrCount(Allele a, Set<String> sampleIds) {
+        final ColumnarGenotypesContext columns = getGenotypeColumns();
+        if ( columns != null && sampleIds.isEmpty() )
+            return columns.countAllele(a);
+
         int n = 0;
         GenotypesContext genotypes = sampleIds.isEmpty() ? getGenotypes() : getGenotypes(sampleIds);
 
@@ -1091,8 +1099,19 @@ public class VariantContext implements Feature, Serializable {
         return ! isMonomorphicInSamples();
     }
 
+    /**
+     * @return the genotypes, if they are still encoded in columns that counts can be computed from without
+     * creating Genotype objects, or null
+     */
+    private ColumnarGenotypesContext getGenotypeColumns() {
+        return genotypes instanceof ColumnarGenotypesContext && genotypes.isLazyWithData() ? (ColumnarGenotypesContext) genotypes : null;
+    }
+
     private void calculateGenotypeCounts() {
-        if ( genotypeCounts == null ) {
+        final ColumnarGenotypesContext columns = getGenotypeColumns();
+        if ( genotypeCounts == null && columns != null ) {
+            genotypeCounts = columns.getGenotypeTypeCounts();
+        } else if ( genotypeCounts == null ) {
             genotypeCounts = new int[GenotypeType.values().length];
 
             for ( final Genotype g : getGenotypes() ) {
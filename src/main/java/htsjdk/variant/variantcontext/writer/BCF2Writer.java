@@ -51,6 +51,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -58,6 +59,11 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * VariantContextWriter that emits BCF2 binary encoding
@@ -115,18 +121,28 @@ class BCF2Writer extends IndexingVariantContextWriter {
     private final boolean doNotWriteGenotypes;
     private String[] sampleNames = null;
 
-    private final BCF2Encoder encoder = new BCF2Encoder(); // initialized after the header arrives
-    final BCF2FieldWriterManager fieldManager = new BCF2FieldWriterManager();
+    private final RecordEncoder recordEncoder = new RecordEncoder(); // initialized after the header arrives
 
     /**
-     * cached results for whether we can write out raw genotypes data.
+     * cached results for whether we can write out raw genotypes data, and with which FORMAT keys.
      */
     private VCFHeader lastVCFHeaderOfUnparsedGenotypes = null;
-    private boolean canPassOnUnparsedGenotypeDataForLastVCFHeader = false;
+    private int[] genotypeFieldKeyOffsetsForLastVCFHeader = null;
+    private boolean genotypeFieldKeysAreUnchangedForLastVCFHeader = false;
 
     // is the header or body written to the output stream?
     private boolean outputHasBeenWritten;
 
+    private static final AtomicInteger threadsCreated = new AtomicInteger(0); // Just used for thread naming.
+    private int encodingThreads = 0;
+    private ExecutorService encodingThreadPool = null;
+    // each encoding thread encodes with its own encoder and field writers, which hold the state of the record
+    private ThreadLocal<RecordEncoder> threadRecordEncoders = null;
+    /**
+     * Records (in order) that have been handed to the encoding threads but not yet written.
+     */
+    private final ArrayDeque<Future<EncodedRecord>> pendingRecords = new ArrayDeque<>();
+
 
     public BCF2Writer(final File location, final OutputStream output, final SAMSequenceDictionary refDict,
                       final boolean enableOnTheFlyIndexing, final boolean doNotWriteGenotypes) {
@@ -183,36 +199,130 @@ class BCF2Writer extends IndexingVariantContextWriter {
         }
     }
 
+    /**
+     * Set the number of threads used to encode records.  Records are still written to the output stream, and
+     * indexed, in order by the thread adding them.  If 0 (the default), records are encoded on the thread adding them.
+     * With encoding threads, an error encoding a record is not reported by the call adding it, but by a later call
+     * to {@link #add} or by {@link #close}.
+     *
+     * @param encodingThreads number of encoding threads
+     */
+    public void setEncodingThreads(final int encodingThreads) {
+        if ( encodingThreads < 0 )
+            throw new IllegalArgumentException("Invalid number of encoding threads: " + encodingThreads);
+        if ( encodingThreads != this.encodingThreads ) {
+            try {
+                writePendingRecords();
+            } finally {
+                shutdownEncodingThreads();
+            }
+            this.encodingThreads = encodingThreads;
+        }
+    }
+
     @Override
     public void add( VariantContext vc ) {
         if ( doNotWriteGenotypes )
             vc = new VariantContextBuilder(vc).noGenotypes().make();
-        vc = vc.fullyDecode(header, false);
 
-        super.add(vc); // allow on the fly indexing
-
-        try {
-            final byte[] infoBlock = buildSitesData(vc);
-            final byte[] genotypesBlock = buildSamplesData(vc);
+        // Lazy genotypes are decoded, or found to be passed through as they are, on this thread, since decoding them
+        // may use the state of the codec that read them.  Genotypes decoded here are then fully decoded with the rest
+        // of the record, as they would be by VariantContext.fullyDecode.
+        if ( !vc.isFullyDecoded() && vc.getGenotypes().isLazyWithData() )
+            ((LazyGenotypesContext) vc.getGenotypes()).decode();
+        final BCF2Codec.LazyData lazyData = getLazyData(vc);
 
-            // write the two blocks to disk
-            writeBlock(infoBlock, genotypesBlock);
-            outputHasBeenWritten = true;
+        if ( encodingThreads == 0 ) {
+            writeRecord(recordEncoder.encode(vc, lazyData));
+            return;
         }
-        catch ( IOException e ) {
-            throw new RuntimeIOException("Error writing record to BCF2 file: " + vc.toString(), e);
+        if ( encodingThreadPool == null ) {
+            encodingThreadPool = Executors.newFixedThreadPool(encodingThreads, r -> {
+                final Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setName("BCF2RecordEncoder" + threadsCreated.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            threadRecordEncoders = ThreadLocal.withInitial(() -> {
+                final RecordEncoder threadRecordEncoder = new RecordEncoder();
+                threadRecordEncoder.setup();
+                return threadRecordEncoder;
+            });
         }
+        // allow the caller to prepare the next records while every thread is busy
+        while ( pendingRecords.size() >= 2 * encodingThreads )
+            writeNextPendingRecord();
+        final VariantContext toEncode = vc;
+        final ThreadLocal<RecordEncoder> encoders = threadRecordEncoders;
+        pendingRecords.add(encodingThreadPool.submit(() -> encoders.get().encode(toEncode, lazyData)));
+        // write out whatever has already finished without waiting on anything
+        while ( !pendingRecords.isEmpty() && pendingRecords.peek().isDone() )
+            writeNextPendingRecord();
     }
 
     @Override
     public void close() {
+        // close the stream and the index even if writing the records encoded on other threads fails
         try {
+            try {
+                writePendingRecords();
+            } finally {
+                shutdownEncodingThreads();
+            }
             outputStream.flush();
         }
         catch ( IOException e ) {
             throw new RuntimeIOException("Failed to flush BCF2 file");
         }
-        super.close();
+        finally {
+            super.close();
+        }
+    }
+
+    /**
+     * Waits for all records handed to the encoding threads and writes them out in order.
+     */
+    private void writePendingRecords() {
+        while ( !pendingRecords.isEmpty() )
+            writeNextPendingRecord();
+    }
+
+    private void writeNextPendingRecord() {
+        final Future<EncodedRecord> future = pendingRecords.poll();
+        final EncodedRecord record;
+        try {
+            record = future.get();
+        } catch ( final InterruptedException e ) {
+            throw new RuntimeException("Interrupted waiting for BCF2 encoding thread", e);
+        } catch ( final ExecutionException e ) {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof Error ) throw (Error) cause;
+            if ( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+        writeRecord(record);
+    }
+
+    private void shutdownEncodingThreads() {
+        if ( encodingThreadPool != null ) {
+            encodingThreadPool.shutdownNow();
+            encodingThreadPool = null;
+            threadRecordEncoders = null;
+        }
+        pendingRecords.clear();
+    }
+
+    private void writeRecord(final EncodedRecord record) {
+        super.add(record.vc); // allow on the fly indexing
+
+        try {
+            // write the two blocks to disk
+            writeBlock(record.infoBlock, record.genotypesBlock);
+            outputHasBeenWritten = true;
+        }
+        catch ( IOException e ) {
+            throw new RuntimeIOException("Error writing record to BCF2 file: " + record.vc.toString(), e);
+        }
     }
 
     @Override
@@ -244,168 +354,64 @@ class BCF2Writer extends IndexingVariantContextWriter {
 
         sampleNames = this.header.getGenotypeSamples().toArray(new String[this.header.getNGenotypeSamples()]);
         // setup the field encodings
-        fieldManager.setup(this.header, encoder, stringDictionaryMap);
+        recordEncoder.setup();
 
     }
 
-    // --------------------------------------------------------------------------------
-    //
-    // implicit block
-    //
-    // The first four records of BCF are inline untype encoded data of:
-    //
-    // 4 byte integer chrom offset
-    // 4 byte integer start
-    // 4 byte integer ref length
-    // 4 byte float qual
-    //
-    // --------------------------------------------------------------------------------
-    private byte[] buildSitesData( VariantContext vc ) throws IOException {
-        final int contigIndex = contigDictionary.get(vc.getContig());
-        if ( contigIndex == -1 )
-            throw new IllegalStateException(String.format("Contig %s not found in sequence dictionary from reference", vc.getContig()));
-
-        // note use of encodeRawValue to not insert the typing byte
-        encoder.encodeRawValue(contigIndex, BCF2Type.INT32);
-
-        // pos.  GATK is 1 based, BCF2 is 0 based
-        encoder.encodeRawValue(vc.getStart() - 1, BCF2Type.INT32);
-
-        // ref length.  GATK is closed, but BCF2 is open so the ref length is GATK end - GATK start + 1
-        // for example, a SNP is in GATK at 1:10-10, which has ref length 10 - 10 + 1 = 1
-        encoder.encodeRawValue(vc.getEnd() - vc.getStart() + 1, BCF2Type.INT32);
-
-        // qual
-        if ( vc.hasLog10PError() )
-            encoder.encodeRawFloat((float) vc.getPhredScaledQual());
-        else
-            encoder.encodeRawMissingValue(BCF2Type.FLOAT);
-
-        // info fields
-        final int nAlleles = vc.getNAlleles();
-        final int nInfo = vc.getAttributes().size();
-        final int nGenotypeFormatFields = getNGenotypeFormatFields(vc);
-        final int nSamples = header.getNGenotypeSamples();
-
-        encoder.encodeRawInt((nAlleles << 16) | (nInfo & 0x0000FFFF), BCF2Type.INT32);
-        encoder.encodeRawInt((nGenotypeFormatFields << 24) | (nSamples & 0x00FFFFF), BCF2Type.INT32);
-
-        buildID(vc);
-        buildAlleles(vc);
-        buildFilter(vc);
-        buildInfo(vc);
-
-        return encoder.getRecordBytes();
-    }
-
-
     /**
      * Can we safely write on the raw (undecoded) genotypes of an input VC?
      *
      * The cache depends on the undecoded lazy data header == lastVCFHeaderOfUnparsedGenotypes, in
      * which case we return the previous result.  If it's not cached, we use the BCF2Util to
-     * compare the VC header with our header (expensive) and cache it.
+     * compare the string dictionary of the VC header with ours (expensive) and cache it.
      *
      * @param lazyData
-     * @return
+     * @return the offsets of the FORMAT keys of the lazy data in our string dictionary, or null if the genotypes
+     * must be decoded
      */
-    private boolean canSafelyWriteRawGenotypesBytes(final BCF2Codec.LazyData lazyData) {
+    private int[] getGenotypeFieldKeyOffsets(final BCF2Codec.LazyData lazyData) {
         if ( lazyData.header != lastVCFHeaderOfUnparsedGenotypes ) {
-            // result is already cached
-            canPassOnUnparsedGenotypeDataForLastVCFHeader = BCF2Utils.headerLinesAreOrderedConsistently(this.header,lazyData.header);
+            // result is not already cached
+            genotypeFieldKeyOffsetsForLastVCFHeader = BCF2Utils.genotypeFieldKeyOffsets(this.header, stringDictionaryMap, lazyData.header);
+            genotypeFieldKeysAreUnchangedForLastVCFHeader = genotypeFieldKeyOffsetsForLastVCFHeader != null &&
+                    BCF2Utils.genotypeFieldKeysAreUnchanged(genotypeFieldKeyOffsetsForLastVCFHeader);
             lastVCFHeaderOfUnparsedGenotypes = lazyData.header;
         }
 
-        return canPassOnUnparsedGenotypeDataForLastVCFHeader;
+        return genotypeFieldKeyOffsetsForLastVCFHeader;
     }
 
+    /**
+     * Returns the undecoded genotypes of vc if they can be written as they are, with only their FORMAT keys
+     * rewritten when the fields of our header have moved them in the string dictionary, otherwise decodes them.
+     */
     private BCF2Codec.LazyData getLazyData(final VariantContext vc) {
         if ( vc.getGenotypes().isLazyWithData() ) {
             final LazyGenotypesContext lgc = (LazyGenotypesContext)vc.getGenotypes();
 
-            if ( lgc.getUnparsedGenotypeData() instanceof BCF2Codec.LazyData &&
-                    canSafelyWriteRawGenotypesBytes((BCF2Codec.LazyData) lgc.getUnparsedGenotypeData())) {
-                return (BCF2Codec.LazyData)lgc.getUnparsedGenotypeData();
-            } else {
-                lgc.decode(); // WARNING -- required to avoid keeping around bad lazy data for too long
+            if ( lgc.getUnparsedGenotypeData() instanceof BCF2Codec.LazyData ) {
+                final BCF2Codec.LazyData lazyData = (BCF2Codec.LazyData) lgc.getUnparsedGenotypeData();
+                final int[] keyOffsets = getGenotypeFieldKeyOffsets(lazyData);
+                if ( keyOffsets != null && genotypeFieldKeysAreUnchangedForLastVCFHeader )
+                    return lazyData;
+                if ( keyOffsets != null ) {
+                    final byte[] remapped = remapGenotypeFieldKeys(lazyData, keyOffsets);
+                    if ( remapped != null )
+                        return new BCF2Codec.LazyData(header, lazyData.nGenotypeFields, remapped);
+                }
             }
+            lgc.decode(); // WARNING -- required to avoid keeping around bad lazy data for too long
         }
 
         return null;
     }
 
-    /**
-     * Try to get the nGenotypeFields as efficiently as possible.
-     *
-     * If this is a lazy BCF2 object just grab the field count from there,
-     * otherwise do the whole counting by types test in the actual data
-     *
-     * @param vc
-     * @return
-     */
-    private int getNGenotypeFormatFields(final VariantContext vc) {
-        final BCF2Codec.LazyData lazyData = getLazyData(vc);
-        return lazyData != null ? lazyData.nGenotypeFields : vc.calcVCFGenotypeKeys(header).size();
-    }
-
-    private void buildID( VariantContext vc ) throws IOException {
-        encoder.encodeTypedString(vc.getID());
-    }
-
-    private void buildAlleles( VariantContext vc ) throws IOException {
-        for ( Allele allele : vc.getAlleles() ) {
-            final byte[] s = allele.getDisplayBases();
-            if ( s == null )
-                throw new IllegalStateException("BUG: BCF2Writer encountered null padded allele" + allele);
-            encoder.encodeTypedString(s);
-        }
-    }
-
-    private void buildFilter( VariantContext vc ) throws IOException {
-        if ( vc.isFiltered() ) {
-            encodeStringsByRef(vc.getFilters());
-        } else if ( vc.filtersWereApplied() ) {
-            encodeStringsByRef(Collections.singleton(VCFConstants.PASSES_FILTERS_v4));
-        } else {
-            encoder.encodeTypedMissing(BCF2Type.INT8);
-        }
-    }
-
-    private void buildInfo( VariantContext vc ) throws IOException {
-        for ( Map.Entry<String, Object> infoFieldEntry : vc.getAttributes().entrySet() ) {
-            final String field = infoFieldEntry.getKey();
-            final BCF2FieldWriter.SiteWriter writer = fieldManager.getSiteFieldWriter(field);
-            if ( writer == null ) errorUnexpectedFieldToWrite(vc, field, "INFO");
-            writer.start(encoder, vc);
-            writer.site(encoder, vc);
-            writer.done(encoder, vc);
-        }
-    }
-
-    private byte[] buildSamplesData(final VariantContext vc) throws IOException {
-        final BCF2Codec.LazyData lazyData = getLazyData(vc);  // has critical side effects
-        if ( lazyData != null ) {
-            // we never decoded any data from this BCF file, so just pass it back
-            return lazyData.bytes;
-        }
-
-        // we have to do work to convert the VC into a BCF2 byte stream
-        final List<String> genotypeFields = vc.calcVCFGenotypeKeys(header);
-        for ( final String field : genotypeFields ) {
-            final BCF2FieldWriter.GenotypesWriter writer = fieldManager.getGenotypeFieldWriter(field);
-            if ( writer == null ) errorUnexpectedFieldToWrite(vc, field, "FORMAT");
-
-            assert writer != null;
-
-            writer.start(encoder, vc);
-            for ( final String name : sampleNames ) {
-                Genotype g = vc.getGenotype(name);
-                if ( g == null ) g = GenotypeBuilder.createMissing(name, writer.nValuesPerGenotype);
-                writer.addGenotype(encoder, vc, g);
-            }
-            writer.done(encoder, vc);
+    private byte[] remapGenotypeFieldKeys(final BCF2Codec.LazyData lazyData, final int[] keyOffsets) {
+        try {
+            return BCF2Utils.remapGenotypeFieldKeys(lazyData.bytes, lazyData.nGenotypeFields, sampleNames.length, keyOffsets);
+        } catch ( IOException e ) {
+            throw new RuntimeIOException("Failed to read the genotypes block of a BCF2 record", e);
         }
-        return encoder.getRecordBytes();
     }
 
     /**
@@ -441,20 +447,186 @@ class BCF2Writer extends IndexingVariantContextWriter {
         outputStream.write(genotypesBlock);
     }
 
-    private BCF2Type encodeStringsByRef(final Collection<String> strings) throws IOException {
-        final List<Integer> offsets = new ArrayList<Integer>(strings.size());
+    /**
+     * A record encoded into its sites and genotypes blocks, ready to be written.
+     */
+    private static final class EncodedRecord {
+        final VariantContext vc;
+        final byte[] infoBlock;
+        final byte[] genotypesBlock;
+
+        EncodedRecord(final VariantContext vc, final byte[] infoBlock, final byte[] genotypesBlock) {
+            this.vc = vc;
+            this.infoBlock = infoBlock;
+            this.genotypesBlock = genotypesBlock;
+        }
+    }
+
+    /**
+     * Encodes records with its own low-level encoder and field writers, which hold the state of the record being
+     * encoded, and the header and dictionaries of the writer, which are not modified once variants are written.
+     */
+    private final class RecordEncoder {
+        private final BCF2Encoder encoder = new BCF2Encoder();
+        private final BCF2FieldWriterManager fieldManager = new BCF2FieldWriterManager();
+
+        void setup() {
+            fieldManager.setup(header, encoder, stringDictionaryMap);
+        }
+
+        /**
+         * @param lazyData the undecoded genotypes of vc to pass through, or null
+         */
+        EncodedRecord encode(final VariantContext record, final BCF2Codec.LazyData lazyData) {
+            final VariantContext vc = record.fullyDecode(header, false);
+            try {
+                final byte[] infoBlock = buildSitesData(vc, lazyData);
+                final byte[] genotypesBlock = buildSamplesData(vc, lazyData);
+                return new EncodedRecord(vc, infoBlock, genotypesBlock);
+            }
+            catch ( IOException e ) {
+                throw new RuntimeIOException("Error writing record to BCF2 file: " + vc.toString(), e);
+            }
+        }
+
+        // --------------------------------------------------------------------------------
+        //
+        // implicit block
+        //
+        // The first four records of BCF are inline untype encoded data of:
+        //
+        // 4 byte integer chrom offset
+        // 4 byte integer start
+        // 4 byte integer ref length
+        // 4 byte float qual
+        //
+        // --------------------------------------------------------------------------------
+        private byte[] buildSitesData( VariantContext vc, final BCF2Codec.LazyData lazyData ) throws IOException {
+            final int contigIndex = contigDictionary.get(vc.getContig());
+            if ( contigIndex == -1 )
+                throw new IllegalStateException(String.format("Contig %s not found in sequence dictionary from reference", vc.getContig()));
+
+            // note use of encodeRawValue to not insert the typing byte
+            encoder.encodeRawValue(contigIndex, BCF2Type.INT32);
+
+            // pos.  GATK is 1 based, BCF2 is 0 based
+            encoder.encodeRawValue(vc.getStart() - 1, BCF2Type.INT32);
+
+            // ref length.  GATK is closed, but BCF2 is open so the ref length is GATK end - GATK start + 1
+            // for example, a SNP is in GATK at 1:10-10, which has ref length 10 - 10 + 1 = 1
+            encoder.encodeRawValue(vc.getEnd() - vc.getStart() + 1, BCF2Type.INT32);
+
+            // qual
+            if ( vc.hasLog10PError() )
+                encoder.encodeRawFloat((float) vc.getPhredScaledQual());
+            else
+                encoder.encodeRawMissingValue(BCF2Type.FLOAT);
+
+            // info fields
+            final int nAlleles = vc.getNAlleles();
+            final int nInfo = vc.getAttributes().size();
+            final int nGenotypeFormatFields = getNGenotypeFormatFields(vc, lazyData);
+            final int nSamples = header.getNGenotypeSamples();
+
+            encoder.encodeRawInt((nAlleles << 16) | (nInfo & 0x0000FFFF), BCF2Type.INT32);
+            encoder.encodeRawInt((nGenotypeFormatFields << 24) | (nSamples & 0x00FFFFF), BCF2Type.INT32);
+
+            buildID(vc);
+            buildAlleles(vc);
+            buildFilter(vc);
+            buildInfo(vc);
+
+            return encoder.getRecordBytes();
+        }
+
+        /**
+         * Try to get the nGenotypeFields as efficiently as possible.
+         *
+         * If this is a lazy BCF2 object just grab the field count from there,
+         * otherwise do the whole counting by types test in the actual data
+         *
+         * @param vc
+         * @param lazyData the undecoded genotypes of vc to pass through, or null
+         * @return
+         */
+        private int getNGenotypeFormatFields(final VariantContext vc, final BCF2Codec.LazyData lazyData) {
+            return lazyData != null ? lazyData.nGenotypeFields : vc.calcVCFGenotypeKeys(header).size();
+        }
 
-        // iterate over strings until we find one that needs 16 bits, and break
-        for ( final String string : strings ) {
-            final Integer got = stringDictionaryMap.get(string);
-            if ( got == null ) throw new IllegalStateException("Format error: could not find string " + string + " in header as required by BCF");
-            final int offset = got;
-            offsets.add(offset);
+        private void buildID( VariantContext vc ) throws IOException {
+            encoder.encodeTypedString(vc.getID());
         }
 
-        final BCF2Type type = BCF2Utils.determineIntegerType(offsets);
-        encoder.encodeTyped(offsets, type);
-        return type;
+        private void buildAlleles( VariantContext vc ) throws IOException {
+            for ( Allele allele : vc.getAlleles() ) {
+                final byte[] s = allele.getDisplayBases();
+                if ( s == null )
+                    throw new IllegalStateException("BUG: BCF2Writer encountered null padded allele" + allele);
+                encoder.encodeTypedString(s);
+            }
+        }
+
+        private void buildFilter( VariantContext vc ) throws IOException {
+            if ( vc.isFiltered() ) {
+                encodeStringsByRef(vc.getFilters());
+            } else if ( vc.filtersWereApplied() ) {
+                encodeStringsByRef(Collections.singleton(VCFConstants.PASSES_FILTERS_v4));
+            } else {
+                encoder.encodeTypedMissing(BCF2Type.INT8);
+            }
+        }
+
+        private void buildInfo( VariantContext vc ) throws IOException {
+            for ( Map.Entry<String, Object> infoFieldEntry : vc.getAttributes().entrySet() ) {
+                final String field = infoFieldEntry.getKey();
+                final BCF2FieldWriter.SiteWriter writer = fieldManager.getSiteFieldWriter(field);
+                if ( writer == null ) errorUnexpectedFieldToWrite(vc, field, "INFO");
+                writer.start(encoder, vc);
+                writer.site(encoder, vc);
+                writer.done(encoder, vc);
+            }
+        }
+
+        private byte[] buildSamplesData(final VariantContext vc, final BCF2Codec.LazyData lazyData) throws IOException {
+            if ( lazyData != null ) {
+                // we never decoded any data from this BCF file, so just pass it back
+                return lazyData.bytes;
+            }
+
+            // we have to do work to convert the VC into a BCF2 byte stream
+            final List<String> genotypeFields = vc.calcVCFGenotypeKeys(header);
+            for ( final String field : genotypeFields ) {
+                final BCF2FieldWriter.GenotypesWriter writer = fieldManager.getGenotypeFieldWriter(field);
+                if ( writer == null ) errorUnexpectedFieldToWrite(vc, field, "FORMAT");
+
+                assert writer != null;
+
+                writer.start(encoder, vc);
+                for ( final String name : sampleNames ) {
+                    Genotype g = vc.getGenotype(name);
+                    if ( g == null ) g = GenotypeBuilder.createMissing(name, writer.nValuesPerGenotype);
+                    writer.addGenotype(encoder, vc, g);
+                }
+                writer.done(encoder, vc);
+            }
+            return encoder.getRecordBytes();
+        }
+
+        private BCF2Type encodeStringsByRef(final Collection<String> strings) throws IOException {
+            final List<Integer> offsets = new ArrayList<Integer>(strings.size());
+
+            // iterate over strings until we find one that needs 16 bits, and break
+            for ( final String string : strings ) {
+                final Integer got = stringDictionaryMap.get(string);
+                if ( got == null ) throw new IllegalStateException("Format error: could not find string " + string + " in header as required by BCF");
+                final int offset = got;
+                offsets.add(offset);
+            }
+
+            final BCF2Type type = BCF2Utils.determineIntegerType(offsets);
+            encoder.encodeTyped(offsets, type);
+            return type;
+        }
     }
 
     /**
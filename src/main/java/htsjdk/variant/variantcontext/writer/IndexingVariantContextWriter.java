@@ -26,6 +26,7 @@
 package htsjdk.variant.variantcontext.writer;
 
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.LocationAware;
 import htsjdk.samtools.util.RuntimeIOException;
@@ -42,6 +43,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 
 /**
  * this class writes VCF files
@@ -54,6 +56,10 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
     private OutputStream outputStream;
     private LocationAware locationSource = null;
     private IndexCreator indexer = null;
+    // When writing through a BlockCompressedOutputStream, features wait here until the virtual file pointer of
+    // their start is known, which may require the preceding blocks to be compressed on other threads
+    private BlockCompressedOutputStream blockCompressedLocationSource = null;
+    private final ArrayDeque<PendingFeature> pendingFeatures = new ArrayDeque<>();
 
     private IndexingVariantContextWriter(final String name, final Path location, final OutputStream output, final SAMSequenceDictionary refDict) {
         this.name = name;
@@ -133,7 +139,10 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
 
     private void initIndexingWriter(final IndexCreator idxCreator) {
         indexer = idxCreator;
-        if (outputStream instanceof LocationAware) {
+        if (outputStream instanceof BlockCompressedOutputStream) {
+            blockCompressedLocationSource = (BlockCompressedOutputStream)outputStream;
+            locationSource = blockCompressedLocationSource;
+        } else if (outputStream instanceof LocationAware) {
             locationSource = (LocationAware)outputStream;
         } else {
             final PositionalOutputStream positionalOutputStream = new PositionalOutputStream(outputStream);
@@ -173,6 +182,7 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
 
             // close the index stream (keep it separate to help debugging efforts)
             if (indexer != null) {
+                addPendingFeatures(true);
                 indexer.setIndexSequenceDictionary(refDict);
                 final Index index = indexer.finalizeIndex(locationSource.getPosition());
                 index.writeBasedOnFeaturePath(location);
@@ -199,8 +209,26 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
     @Override
     public void add(final VariantContext vc) {
         // if we are doing on the fly indexing, add the record ***before*** we write any bytes
-        if ( indexer != null )
-            indexer.addFeature(vc, locationSource.getPosition());
+        if ( indexer != null ) {
+            if (blockCompressedLocationSource != null) {
+                pendingFeatures.add(new PendingFeature(vc, blockCompressedLocationSource.getPendingFilePointer()));
+                addPendingFeatures(false);
+            } else {
+                indexer.addFeature(vc, locationSource.getPosition());
+            }
+        }
+    }
+
+    /**
+     * Adds the pending features to the index, in the order in which they were written.
+     * @param waitForCompression if false, stop at the first feature whose position can't be resolved without waiting
+     */
+    private void addPendingFeatures(final boolean waitForCompression) {
+        while (!pendingFeatures.isEmpty() &&
+                (waitForCompression || blockCompressedLocationSource.isFilePointerResolvable(pendingFeatures.peek().pendingFilePointer))) {
+            final PendingFeature pending = pendingFeatures.poll();
+            indexer.addFeature(pending.vc, blockCompressedLocationSource.resolveFilePointer(pending.pendingFilePointer));
+        }
     }
 
     /**
@@ -224,4 +252,15 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
     protected static final String writerName(final Path location, final OutputStream stream) {
         return location == null ? stream == null ? DEFAULT_READER_NAME : stream.toString() : location.toAbsolutePath().toUri().toString();
     }
+
+    /** A variant written to the output along with the pending file pointer of its start. */
+    private static final class PendingFeature {
+        private final VariantContext vc;
+        private final long pendingFilePointer;
+
+        private PendingFeature(final VariantContext vc, final long pendingFilePointer) {
+            this.vc = vc;
+            this.pendingFilePointer = pendingFilePointer;
+        }
+    }
 }
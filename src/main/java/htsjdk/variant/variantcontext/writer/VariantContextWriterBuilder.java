@@ -30,6 +30,7 @@ import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Md5CalculatingOutputStream;
+import htsjdk.samtools.util.ParallelBlockCompressedOutputStream;
 import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.tribble.index.IndexCreator;
 import htsjdk.tribble.index.tabix.TabixFormat;
@@ -127,6 +128,8 @@ public class VariantContextWriterBuilder {
     private IndexCreator idxCreator = null;
     private int bufferSize = Defaults.BUFFER_SIZE;
     private boolean createMD5 = Defaults.CREATE_MD5;
+    private int compressionThreads = 0;
+    private int encodingThreads = 0;
     protected EnumSet<Options> options = DEFAULT_OPTIONS.clone();
 
     /**
@@ -286,6 +289,39 @@ public class VariantContextWriterBuilder {
         return this;
     }
 
+    /**
+     * Set the number of threads used to compress BGZF blocks when the next <code>VariantContextWriter</code> created
+     * by this builder writes block compressed VCF.
+     * Set to 0 (the default) to compress on the writing thread.
+     *
+     * @param compressionThreads the number of compression threads to use
+     * @return this <code>VariantContextWriterBuilder</code>
+     * @see ParallelBlockCompressedOutputStream
+     */
+    public VariantContextWriterBuilder setCompressionThreads(final int compressionThreads) {
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
+    /**
+     * Set the number of threads used to encode records when the next <code>VariantContextWriter</code> created
+     * by this builder writes BCF.  Records are still written in order.
+     * Set to 0 (the default) to encode on the writing thread.
+     *
+     * @param encodingThreads the number of encoding threads to use
+     * @return this <code>VariantContextWriterBuilder</code>
+     */
+    public VariantContextWriterBuilder setEncodingThreads(final int encodingThreads) {
+        if (encodingThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of encoding threads: " + encodingThreads);
+        }
+        this.encodingThreads = encodingThreads;
+        return this;
+    }
+
     /**
      * Choose whether to also create an MD5 digest file for the next <code>VariantContextWriter</code> created by this builder.
      *
@@ -466,8 +502,10 @@ public class VariantContextWriterBuilder {
                 else
                     idxCreator = new TabixIndexCreator(refDict, TabixFormat.VCF);
 
-                writer = createVCFWriter(
-                    outPath, new BlockCompressedOutputStream(outStreamFromFile, outPath));
+                final BlockCompressedOutputStream blockCompressedOutputStream = compressionThreads > 0 ?
+                        new ParallelBlockCompressedOutputStream(outStreamFromFile, outPath, compressionThreads) :
+                        new BlockCompressedOutputStream(outStreamFromFile, outPath);
+                writer = createVCFWriter(outPath, blockCompressedOutputStream);
                 break;
             case BCF:
                 if ((refDict == null) && (options.contains(Options.INDEX_ON_THE_FLY)))
@@ -579,15 +617,18 @@ public class VariantContextWriterBuilder {
     }
 
     private VariantContextWriter createBCFWriter(final Path writerPath, final OutputStream writerStream) {
+        final BCF2Writer writer;
         if (idxCreator == null) {
-            return new BCF2Writer(writerPath, writerStream, refDict,
+            writer = new BCF2Writer(writerPath, writerStream, refDict,
                     options.contains(Options.INDEX_ON_THE_FLY),
                     options.contains(Options.DO_NOT_WRITE_GENOTYPES));
         }
         else {
-            return new BCF2Writer(writerPath, writerStream, refDict, idxCreator,
+            writer = new BCF2Writer(writerPath, writerStream, refDict, idxCreator,
                     options.contains(Options.INDEX_ON_THE_FLY),
                     options.contains(Options.DO_NOT_WRITE_GENOTYPES));
         }
+        writer.setEncodingThreads(encodingThreads);
+        return writer;
     }
 }
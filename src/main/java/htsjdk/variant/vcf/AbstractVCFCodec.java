@@ -35,6 +35,7 @@ import htsjdk.tribble.index.tabix.TabixFormat;
 import htsjdk.tribble.util.ParsingUtils;
 import htsjdk.variant.utils.GeneralUtils;
 import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.ColumnarGenotypesContext;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
 import htsjdk.variant.variantcontext.GenotypeLikelihoods;
@@ -105,6 +106,16 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
      */
     protected String remappedSampleName = null;
 
+    /**
+     * If true, genotypes with only the GT, DP, GQ, AD and PL fields are decoded into a {@link ColumnarGenotypesContext}
+     */
+    protected boolean columnarGenotypes = false;
+
+    /**
+     * The INFO and FORMAT fields to decode
+     */
+    protected VCFFieldSelection fieldSelection = VCFFieldSelection.ALL;
+
     protected AbstractVCFCodec() {
         super(VariantContext.class);
     }
@@ -119,17 +130,19 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         final List<Allele> alleles;
         final String contig;
         final int start;
+        final VCFFieldSelection fieldSelection;
 
-        LazyVCFGenotypesParser(final List<Allele> alleles, final String contig, final int start) {
+        LazyVCFGenotypesParser(final List<Allele> alleles, final String contig, final int start, final VCFFieldSelection fieldSelection) {
             this.alleles = alleles;
             this.contig = contig;
             this.start = start;
+            this.fieldSelection = fieldSelection;
         }
 
         @Override
         public LazyGenotypesContext.LazyData parse(final Object data) {
             //System.out.printf("Loading genotypes... %s:%d%n", contig, start);
-            return createGenotypeMap((String) data, alleles, contig, start);
+            return createGenotypeMap((String) data, alleles, contig, start, fieldSelection);
         }
     }
 
@@ -277,6 +290,55 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return decodeLine(line, true);
     }
 
+    /**
+     * Copies the header and settings of this codec, but none of its caches, into a new codec made by
+     * {@link #newCodecForParallelDecoding()}.  The copies share the header, which they do not modify.
+     */
+    @Override
+    public AbstractVCFCodec copyForParallelDecoding() {
+        if (header == null) {
+            return null;
+        }
+        final AbstractVCFCodec copy = newCodecForParallelDecoding();
+        if (copy == null) {
+            return null;
+        }
+        copy.header = header;
+        copy.version = version;
+        copy.name = name;
+        copy.doOnTheFlyModifications = doOnTheFlyModifications;
+        copy.remappedSampleName = remappedSampleName;
+        copy.columnarGenotypes = columnarGenotypes;
+        copy.fieldSelection = fieldSelection;
+        copy.warnedAboutNoEqualsForNonFlag = warnedAboutNoEqualsForNonFlag;
+        return copy;
+    }
+
+    /**
+     * @return a new, empty instance of this codec for {@link #copyForParallelDecoding()}, or null if this codec
+     * does not support decoding in parallel, which is the default.  Subclasses with state of their own must
+     * copy it, or return null.
+     */
+    protected AbstractVCFCodec newCodecForParallelDecoding() {
+        return null;
+    }
+
+    /**
+     * Decodes the line, and its genotypes as well, since the lazy genotypes of the variant context would otherwise
+     * be decoded later with this copy, while it decodes other lines.  Genotypes decoded into columns are left
+     * encoded, as the columns are decoded without the codec.
+     */
+    @Override
+    public VariantContext decodeInParallel(final String line, final long lineNumber) {
+        // decode counts the line again
+        lineNo = (int) lineNumber - 1;
+        final VariantContext vc = decode(line);
+        if (vc != null && vc.getGenotypes() instanceof LazyGenotypesContext && !(vc.getGenotypes() instanceof ColumnarGenotypesContext)) {
+            ((LazyGenotypesContext) vc.getGenotypes()).decode();
+        }
+        return vc;
+    }
+
     private VariantContext decodeLine(final String line, final boolean includeGenotypes) {
         // the same line reader is not used for parsing the header and parsing lines, if we see a #, we've seen a header line
         if (line.startsWith(VCFHeader.HEADER_INDICATOR)) return null;
@@ -296,7 +358,7 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
             throw new TribbleException("Line " + lineNo + ": there aren't enough columns for line " + line + " (we expected " + (header == null ? NUM_STANDARD_FIELDS : NUM_STANDARD_FIELDS + 1) +
                     " tokens, and saw " + nParts + " )");
 
-        return parseVCFLine(parts, includeGenotypes);
+        return parseVCFLine(parts, includeGenotypes && fieldSelection.includesGenotypes());
     }
 
     /**
@@ -358,9 +420,18 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
 
         // do we have genotyping data
         if (parts.length > NUM_STANDARD_FIELDS && includeGenotypes) {
-            final LazyGenotypesContext.LazyParser lazyParser = new LazyVCFGenotypesParser(alleles, chr, pos);
-            final int nGenotypes = header.getNGenotypeSamples();
-            LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, parts[8], nGenotypes);
+            final List<String> genotypeKeys = columnarGenotypes ? VCFGenotypeColumnDecoder.getKeys(parts[8]) : null;
+            final LazyGenotypesContext lazy;
+            if (genotypeKeys != null && VCFGenotypeColumnDecoder.canDecode(genotypeKeys, fieldSelection, version)) {
+                final VCFGenotypeColumnDecoder columnDecoder = new VCFGenotypeColumnDecoder(parts[8], genotypeKeys,
+                        fieldSelection, alleles, header.getGenotypeSamples(), chr, pos, lineNo);
+                lazy = new ColumnarGenotypesContext(columnDecoder, parts[8], alleles, header.getGenotypeSamples(),
+                        header.getSampleNamesInOrder(), header.getSampleNameToOffset());
+            } else {
+                final LazyGenotypesContext.LazyParser lazyParser = new LazyVCFGenotypesParser(alleles, chr, pos, fieldSelection);
+                final int nGenotypes = header.getNGenotypeSamples();
+                lazy = new LazyGenotypesContext(lazyParser, parts[8], nGenotypes);
+            }
 
             // did we resort the sample names?  If so, we need to load the genotype data
             if ( !header.samplesWereAlreadySorted() )
@@ -427,7 +498,8 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
             if ( infoField.indexOf('\t') != -1 || infoField.indexOf(' ') != -1 )
                 generateException("The VCF specification does not allow for whitespace in the INFO field. Offending field value was \"" + infoField + "\"");
 
-            List<String> infoFields = ParsingUtils.split(infoField, VCFConstants.INFO_FIELD_SEPARATOR_CHAR);
+            List<String> infoFields = fieldSelection.includesAllInfoKeys() ?
+                    ParsingUtils.split(infoField, VCFConstants.INFO_FIELD_SEPARATOR_CHAR) : splitSelectedInfoFields(infoField);
             for (int i = 0; i < infoFields.size(); i++) {
                 String key;
                 Object value;
@@ -475,6 +547,25 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return attributes;
     }
 
+    /**
+     * Splits the INFO column as {@link ParsingUtils#split(String, char)} does, but keeps only the fields selected
+     * by the field selection, without creating Strings for the others.
+     */
+    private List<String> splitSelectedInfoFields(final String infoField) {
+        final List<String> infoFields = new ArrayList<String>();
+        int start = 0;
+        while ( start <= infoField.length() ) {
+            int end = infoField.indexOf(VCFConstants.INFO_FIELD_SEPARATOR_CHAR, start);
+            if ( end == -1 ) end = infoField.length();
+            int keyEnd = start;
+            while ( keyEnd < end && infoField.charAt(keyEnd) != '=' ) keyEnd++;
+            if ( fieldSelection.includesInfoKey(infoField, start, keyEnd) )
+                infoFields.add(infoField.substring(start, end));
+            start = end + 1;
+        }
+        return infoFields;
+    }
+
     /**
      * create a an allele from an index and an array of alleles
      * @param index the index
@@ -676,6 +767,14 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
                                                               final List<Allele> alleles,
                                                               final String chr,
                                                               final int pos) {
+        return createGenotypeMap(str, alleles, chr, pos, fieldSelection);
+    }
+
+    private LazyGenotypesContext.LazyData createGenotypeMap(final String str,
+                                                            final List<Allele> alleles,
+                                                            final String chr,
+                                                            final int pos,
+                                                            final VCFFieldSelection fieldSelection) {
         if (genotypeParts == null)
             genotypeParts = new String[header.getColumnCount() - NUM_STANDARD_FIELDS];
 
@@ -688,6 +787,14 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         // get the format keys
         List<String> genotypeKeys = ParsingUtils.split(genotypeParts[0], VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
 
+        // which of the keys to decode, or null for all of them
+        boolean[] selectedKeys = null;
+        if ( !fieldSelection.includesAllFormatKeys() ) {
+            selectedKeys = new boolean[genotypeKeys.size()];
+            for ( int i = 0; i < selectedKeys.length; i++ )
+                selectedKeys[i] = fieldSelection.includesFormatKey(genotypeKeys.get(i));
+        }
+
         // cycle through the sample names
         Iterator<String> sampleNameIterator = header.getGenotypeSamples().iterator();
 
@@ -697,7 +804,9 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         // cycle through the genotype strings
         boolean PlIsSet = false;
         for (int genotypeOffset = 1; genotypeOffset < nParts; genotypeOffset++) {
-            List<String> genotypeValues = ParsingUtils.split(genotypeParts[genotypeOffset], VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
+            List<String> genotypeValues = selectedKeys == null ?
+                    ParsingUtils.split(genotypeParts[genotypeOffset], VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR) :
+                    splitSelectedGenotypeValues(genotypeParts[genotypeOffset], selectedKeys);
 
             final String sampleName = sampleNameIterator.next();
             final GenotypeBuilder gb = new GenotypeBuilder(sampleName);
@@ -717,7 +826,7 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
                     // todo -- all of these on the fly parsing of the missing value should be static constants
                     if (gtKey.equals(VCFConstants.GENOTYPE_KEY)) {
                         genotypeAlleleLocation = i;
-                    } else if ( missing ) {
+                    } else if ( missing || (selectedKeys != null && !selectedKeys[i]) ) {
                         // if its truly missing (there no provided value) skip adding it to the attributes
                     } else if (gtKey.equals(VCFConstants.GENOTYPE_FILTER_KEY)) {
                         final List<String> filters = parseFilters(getCachedString(genotypeValues.get(i)));
@@ -755,9 +864,11 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
             if ( genotypeAlleleLocation > 0 )
                 generateException("Saw GT field at position " + genotypeAlleleLocation + ", but it must be at the first position for genotypes when present");
 
-            final List<Allele> GTalleles = (genotypeAlleleLocation == -1 ? new ArrayList<Allele>(0) : parseGenotypeAlleles(genotypeValues.get(genotypeAlleleLocation), alleles, alleleMap));
+            // the GT field is still located when it is not selected, as the checks above do not depend on the selection
+            final boolean decodeAlleles = genotypeAlleleLocation != -1 && (selectedKeys == null || selectedKeys[genotypeAlleleLocation]);
+            final List<Allele> GTalleles = (!decodeAlleles ? new ArrayList<Allele>(0) : parseGenotypeAlleles(genotypeValues.get(genotypeAlleleLocation), alleles, alleleMap));
             gb.alleles(GTalleles);
-            gb.phased(genotypeAlleleLocation != -1 && genotypeValues.get(genotypeAlleleLocation).indexOf(VCFConstants.PHASED) != -1);
+            gb.phased(decodeAlleles && genotypeValues.get(genotypeAlleleLocation).indexOf(VCFConstants.PHASED) != -1);
 
             // add it to the list
             try {
@@ -770,6 +881,23 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return new LazyGenotypesContext.LazyData(genotypes, header.getSampleNamesInOrder(), header.getSampleNameToOffset());
     }
 
+    /**
+     * Splits the values of a sample as {@link ParsingUtils#split(String, char)} does, but with null for the values of
+     * the keys that are not selected, without creating Strings for them.
+     */
+    private static List<String> splitSelectedGenotypeValues(final String sampleValues, final boolean[] selectedKeys) {
+        final List<String> values = new ArrayList<String>(selectedKeys.length);
+        int start = 0;
+        while ( start <= sampleValues.length() ) {
+            int end = sampleValues.indexOf(VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR, start);
+            if ( end == -1 ) end = sampleValues.length();
+            final int i = values.size();
+            values.add(i < selectedKeys.length && selectedKeys[i] ? sampleValues.substring(start, end) : null);
+            start = end + 1;
+        }
+        return values;
+    }
+
     private static final int[] decodeInts(final String string) {
         List<String> split = ParsingUtils.split(string, ',');
         int [] values = new int[split.size()];
@@ -803,6 +931,32 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         this.remappedSampleName = remappedSampleName;
     }
 
+    /**
+     * Decode the genotypes of records whose genotypes have only the GT, DP, GQ, AD and PL fields into a
+     * {@link ColumnarGenotypesContext}, which keeps them in primitive columns decoded one field at a time, rather
+     * than into a Genotype object per sample.  Useful for VCFs of many samples, when only some fields are needed
+     * or only allele counts are computed.  Other records are decoded as usual.
+     *
+     * @param columnarGenotypes true to decode genotypes into columns where possible
+     */
+    public void setColumnarGenotypes( final boolean columnarGenotypes ) {
+        this.columnarGenotypes = columnarGenotypes;
+    }
+
+    /**
+     * Decode only some of the INFO and FORMAT fields of the records, skipping the others without creating Strings
+     * for their values.
+     *
+     * @param fieldSelection the fields to decode, {@link VCFFieldSelection#ALL} by default
+     */
+    public void setFieldSelection( final VCFFieldSelection fieldSelection ) {
+        this.fieldSelection = fieldSelection;
+    }
+
+    public VCFFieldSelection getFieldSelection() {
+        return fieldSelection;
+    }
+
     protected void generateException(String message) {
         throw new TribbleException(String.format("The provided VCF file is malformed at approximately line number %d: %s", lineNo, message));
     }
@@ -52,6 +52,14 @@ import java.util.List;
 public class VCF3Codec extends AbstractVCFCodec {
     public final static String VCF3_MAGIC_HEADER = "##fileformat=VCFv3";
 
+    /**
+     * @return a new VCF codec, unless this is a subclass, which may have state of its own to copy
+     */
+    @Override
+    protected AbstractVCFCodec newCodecForParallelDecoding() {
+        return getClass() == VCF3Codec.class ? new VCF3Codec() : null;
+    }
+
     /**
      * @param reader the line reader to take header lines from
      * @return the number of header lines
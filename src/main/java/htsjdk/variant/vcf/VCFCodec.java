@@ -75,6 +75,14 @@ public class VCFCodec extends AbstractVCFCodec {
     // Our aim is to read in the records and convert to VariantContext as quickly as possible, relying on VariantContext to do the validation of any contradictory (or malformed) record parameters.
     public final static String VCF4_MAGIC_HEADER = "##fileformat=VCFv4";
 
+    /**
+     * @return a new VCF codec, unless this is a subclass, which may have state of its own to copy
+     */
+    @Override
+    protected AbstractVCFCodec newCodecForParallelDecoding() {
+        return getClass() == VCFCodec.class ? new VCFCodec() : null;
+    }
+
     /**
      * Reads all of the header from the provided iterator, but no reads no further.
      * @param lineIterator the line reader to take header lines from
@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.vcf;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The INFO and FORMAT fields that {@link AbstractVCFCodec} and {@link htsjdk.variant.bcf2.BCF2Codec} decode into
+ * variant contexts.  Fields that are not selected are skipped while decoding, without decoding their values, so
+ * that reading a few fields of records with large annotations, such as CSQ or ANN, or many FORMAT fields, does not
+ * pay for the rest.  The records decoded simply do not have the fields that are not selected.
+ *
+ * The END INFO field is always decoded, since it gives the end of the record.
+ */
+public final class VCFFieldSelection {
+    /** Decodes all fields, which is the default */
+    public static final VCFFieldSelection ALL = new VCFFieldSelection(null, null, true);
+
+    /** Decodes all INFO fields, but no genotypes */
+    public static final VCFFieldSelection SITES_ONLY = new VCFFieldSelection(null, Collections.emptySet(), false);
+
+    /** Decodes all INFO fields, and only the GT field of the genotypes */
+    public static final VCFFieldSelection GT_ONLY = new VCFFieldSelection(null, Collections.singleton(VCFConstants.GENOTYPE_KEY), true);
+
+    // null for all keys
+    private final Set<String> infoKeys;
+    private final String[] infoKeyArray;
+    private final Set<String> formatKeys;
+    private final boolean includeGenotypes;
+
+    private VCFFieldSelection(final Set<String> infoKeys, final Set<String> formatKeys, final boolean includeGenotypes) {
+        this.infoKeys = infoKeys;
+        this.infoKeyArray = infoKeys == null ? null : infoKeys.toArray(new String[0]);
+        this.formatKeys = formatKeys;
+        this.includeGenotypes = includeGenotypes;
+    }
+
+    /**
+     * Selects some INFO and FORMAT fields.  Records still have genotypes, with only the selected FORMAT fields, if
+     * any; use {@link #SITES_ONLY} to skip the genotypes altogether.
+     *
+     * @param infoKeys   the INFO keys to decode, or null for all
+     * @param formatKeys the FORMAT keys to decode, or null for all
+     */
+    public static VCFFieldSelection of(final Collection<String> infoKeys, final Collection<String> formatKeys) {
+        return new VCFFieldSelection(
+                infoKeys == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(infoKeys)),
+                formatKeys == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(formatKeys)),
+                true);
+    }
+
+    /**
+     * @return the INFO keys to decode, or null for all
+     */
+    public Set<String> getInfoKeys() {
+        return infoKeys;
+    }
+
+    /**
+     * @return the FORMAT keys to decode, or null for all
+     */
+    public Set<String> getFormatKeys() {
+        return formatKeys;
+    }
+
+    public boolean includesAllInfoKeys() {
+        return infoKeys == null;
+    }
+
+    public boolean includesAllFormatKeys() {
+        return formatKeys == null && includeGenotypes;
+    }
+
+    /**
+     * @return false if records should be decoded without their genotypes
+     */
+    public boolean includesGenotypes() {
+        return includeGenotypes;
+    }
+
+    public boolean includesInfoKey(final String key) {
+        return infoKeys == null || infoKeys.contains(key) || key.equals(VCFConstants.END_KEY);
+    }
+
+    /**
+     * @return whether to decode the INFO field whose key is the text between start and end, without creating a
+     * String for the key
+     */
+    boolean includesInfoKey(final String text, final int start, final int end) {
+        if (infoKeys == null) {
+            return true;
+        }
+        final int length = end - start;
+        if (length == VCFConstants.END_KEY.length() && text.startsWith(VCFConstants.END_KEY, start)) {
+            return true;
+        }
+        for (final String key : infoKeyArray) {
+            if (key.length() == length && text.startsWith(key, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean includesFormatKey(final String key) {
+        return includeGenotypes && (formatKeys == null || formatKeys.contains(key));
+    }
+
+    @Override
+    public String toString() {
+        return "VCFFieldSelection{INFO=" + (infoKeys == null ? "all" : infoKeys) +
+                ", FORMAT=" + (!includeGenotypes ? "no genotypes" : formatKeys == null ? "all" : formatKeys) + "}";
+    }
+}
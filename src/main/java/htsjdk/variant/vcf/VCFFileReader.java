@@ -45,6 +45,7 @@ import java.nio.file.Path;
 public class VCFFileReader implements Closeable, Iterable<VariantContext> {
 
     private final FeatureReader<VariantContext> reader;
+    private final FeatureCodec<VariantContext, ?> codec;
 
     /**
      * Returns true if the given file appears to be a BCF file.
@@ -137,9 +138,10 @@ public class VCFFileReader implements Closeable, Iterable<VariantContext> {
      * Allows construction of a VCFFileReader that will or will not assert the presence of an index as desired.
      */
     public VCFFileReader(final Path path, final boolean requireIndex) {
+        this.codec = getCodecForPath(path);
         this.reader = AbstractFeatureReader.getFeatureReader(
                 path.toUri().toString(),
-                getCodecForPath(path),
+                codec,
                 requireIndex);
     }
 
@@ -147,10 +149,11 @@ public class VCFFileReader implements Closeable, Iterable<VariantContext> {
      * Allows construction of a VCFFileReader with a specified index path.
      */
     public VCFFileReader(final Path path, final Path indexPath, final boolean requireIndex) {
+        this.codec = getCodecForPath(path);
         this.reader = AbstractFeatureReader.getFeatureReader(
                 path.toUri().toString(),
                 indexPath.toUri().toString(),
-                getCodecForPath(path),
+                codec,
                 requireIndex);
     }
 
@@ -296,6 +299,30 @@ public class VCFFileReader implements Closeable, Iterable<VariantContext> {
         return (VCFHeader) reader.getHeader();
     }
 
+    /**
+     * Set the number of threads used to decode lines into variant contexts while iterating, see
+     * {@link AbstractFeatureReader#setDecodingThreads(int)}.  Has no effect on BCF files.
+     *
+     * @param decodingThreads number of worker threads, or 0 to read and decode lines on the calling thread
+     */
+    public void setDecodingThreads(final int decodingThreads) {
+        ((AbstractFeatureReader<VariantContext, ?>) reader).setDecodingThreads(decodingThreads);
+    }
+
+    /**
+     * Decode only some of the INFO and FORMAT fields of the records returned by the iterators and queries created
+     * afterwards, see {@link VCFFieldSelection}.
+     *
+     * @param fieldSelection the fields to decode, {@link VCFFieldSelection#ALL} by default
+     */
+    public void setFieldSelection(final VCFFieldSelection fieldSelection) {
+        if (codec instanceof BCF2Codec) {
+            ((BCF2Codec) codec).setFieldSelection(fieldSelection);
+        } else {
+            ((AbstractVCFCodec) codec).setFieldSelection(fieldSelection);
+        }
+    }
+
     /**
      * Returns an iterator over all records in this VCF/BCF file.
      */
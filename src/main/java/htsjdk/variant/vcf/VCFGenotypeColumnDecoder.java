@@ -0,0 +1,299 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.vcf;
+
+import htsjdk.tribble.util.ParsingUtils;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.ColumnarGenotypesContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decodes the genotype columns of a VCF line for a {@link ColumnarGenotypesContext}, straight from the text of
+ * the line, with the same results as {@link AbstractVCFCodec#createGenotypeMap}.  The samples are located in
+ * the text the first time a column is decoded, and each field is then parsed in place, without creating a
+ * String for each value.
+ */
+class VCFGenotypeColumnDecoder implements ColumnarGenotypesContext.ColumnDecoder {
+    private static final Set<String> SUPPORTED_KEYS = new HashSet<>(Arrays.asList(VCFConstants.GENOTYPE_KEY,
+            VCFConstants.DEPTH_KEY, VCFConstants.GENOTYPE_QUALITY_KEY, VCFConstants.GENOTYPE_ALLELE_DEPTHS,
+            VCFConstants.GENOTYPE_PL_KEY));
+
+    private final String genotypeData;
+    // the keys of the FORMAT column, with null for those that are not selected
+    private final List<String> keys;
+    private final List<Allele> alleles;
+    private final List<String> sampleNames;
+    private final String chr;
+    private final int pos;
+    private final int lineNo;
+
+    // start and end offsets of the text of each sample, found when first needed
+    private int[] sampleStarts = null;
+    private int[] sampleEnds = null;
+
+    /**
+     * @param genotypeData the FORMAT column and the sample columns of the line
+     * @param keys           the keys of the FORMAT column, for which {@link #canDecode} is true
+     * @param fieldSelection the fields to decode
+     * @param alleles        the alleles of the site
+     * @param sampleNames    the names of the samples in the header, in the order of their columns
+     */
+    VCFGenotypeColumnDecoder(final String genotypeData, final List<String> keys, final VCFFieldSelection fieldSelection,
+                             final List<Allele> alleles, final List<String> sampleNames, final String chr, final int pos,
+                             final int lineNo) {
+        this.genotypeData = genotypeData;
+        this.keys = new ArrayList<>(keys.size());
+        for (final String key : keys) {
+            this.keys.add(fieldSelection.includesFormatKey(key) ? key : null);
+        }
+        this.alleles = alleles;
+        this.sampleNames = sampleNames;
+        this.chr = chr;
+        this.pos = pos;
+        this.lineNo = lineNo;
+    }
+
+    /**
+     * @return whether genotypes with these FORMAT keys have only selected fields that are decoded into columns,
+     * and would be decoded by {@link AbstractVCFCodec#createGenotypeMap} without error
+     */
+    static boolean canDecode(final List<String> keys, final VCFFieldSelection fieldSelection, final VCFHeaderVersion version) {
+        if (new HashSet<>(keys).size() != keys.size()) {
+            return false;
+        }
+        for (final String key : keys) {
+            if (fieldSelection.includesFormatKey(key) && !SUPPORTED_KEYS.contains(key)) {
+                return false;
+            }
+        }
+        final int gtIndex = keys.indexOf(VCFConstants.GENOTYPE_KEY);
+        return gtIndex == 0 || (gtIndex == -1 && version.isAtLeastAsRecentAs(VCFHeaderVersion.VCF4_1));
+    }
+
+    /**
+     * @return the keys of the FORMAT column of the genotype data
+     */
+    static List<String> getKeys(final String genotypeData) {
+        final int end = genotypeData.indexOf(VCFConstants.FIELD_SEPARATOR_CHAR);
+        return ParsingUtils.split(end == -1 ? genotypeData : genotypeData.substring(0, end), VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
+    }
+
+    private void findSamples() {
+        if (sampleStarts != null) {
+            return;
+        }
+        final int nSamples = sampleNames.size();
+        final int[] starts = new int[nSamples];
+        final int[] ends = new int[nSamples];
+        int nParts = 1;
+        int end = genotypeData.indexOf(VCFConstants.FIELD_SEPARATOR_CHAR);
+        // as in createGenotypeMap, columns beyond those of the samples in the header are ignored
+        while (end != -1 && nParts <= nSamples) {
+            final int start = end + 1;
+            end = genotypeData.indexOf(VCFConstants.FIELD_SEPARATOR_CHAR, start);
+            starts[nParts - 1] = start;
+            ends[nParts - 1] = end == -1 ? genotypeData.length() : end;
+            nParts++;
+        }
+        if (nParts != nSamples + 1) {
+            AbstractVCFCodec.generateException("there are " + (nParts - 1) + " genotypes while the header requires that " +
+                    nSamples + " genotypes be present for all records at " + chr + ":" + pos, lineNo);
+        }
+        for (int i = 0; i < nSamples; i++) {
+            int nValues = 1;
+            for (int j = starts[i]; j < ends[i]; j++) {
+                if (genotypeData.charAt(j) == VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR) nValues++;
+            }
+            if (nValues > keys.size()) {
+                AbstractVCFCodec.generateException("There are too many keys for the sample " + sampleNames.get(i) + ", keys = " +
+                        getKeys(genotypeData) + ", values = " + genotypeData.substring(starts[i], ends[i]), lineNo);
+            }
+        }
+        sampleStarts = starts;
+        sampleEnds = ends;
+    }
+
+    /**
+     * @return the start of the value of the field with the index among the FORMAT keys in the text of the sample,
+     * or -1 if the sample has fewer values
+     */
+    private int findValue(final int sample, final int field) {
+        int start = sampleStarts[sample];
+        for (int i = 0; i < field; i++) {
+            start = genotypeData.indexOf(VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR, start);
+            if (start == -1 || start >= sampleEnds[sample]) {
+                return -1;
+            }
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * @return the end of the value that starts at the offset
+     */
+    private int findValueEnd(final int sample, final int start) {
+        final int end = genotypeData.indexOf(VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR, start);
+        return end == -1 || end > sampleEnds[sample] ? sampleEnds[sample] : end;
+    }
+
+    private boolean isMissing(final int start, final int end) {
+        return end - start == 1 && genotypeData.charAt(start) == VCFConstants.MISSING_VALUE_v4.charAt(0);
+    }
+
+    /**
+     * Parses a non-negative integer without creating a String, or returns -1 if the text is not such an integer
+     * of up to 9 digits.
+     */
+    private int parseDigits(final int start, final int end) {
+        if (end <= start || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final char c = genotypeData.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    @Override
+    public boolean decodeGenotypes(final ColumnarGenotypesContext.IntArrayColumn alleleColumn, final BitSet phased) {
+        if (!keys.contains(VCFConstants.GENOTYPE_KEY)) {
+            return false;
+        }
+        findSamples();
+        for (int sample = 0; sample < sampleStarts.length; sample++) {
+            final int start = sampleStarts[sample];
+            final int end = findValueEnd(sample, start);
+            int tokenStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || VCFConstants.PHASING_TOKENS.indexOf(genotypeData.charAt(i)) != -1) {
+                    if (i > tokenStart) {
+                        alleleColumn.add(parseAllele(tokenStart, i));
+                    }
+                    tokenStart = i + 1;
+                }
+                if (i < end && genotypeData.charAt(i) == VCFConstants.PHASED.charAt(0)) {
+                    phased.set(sample);
+                }
+            }
+            alleleColumn.endSample();
+        }
+        return true;
+    }
+
+    private int parseAllele(final int start, final int end) {
+        if (isMissing(start, end)) {
+            return -1;
+        }
+        final int index = parseDigits(start, end);
+        if (index >= 0 && index < alleles.size()) {
+            return index;
+        }
+        // raises the same errors as decoding into Genotype objects
+        return alleles.indexOf(AbstractVCFCodec.oneAllele(genotypeData.substring(start, end), alleles));
+    }
+
+    @Override
+    public int[] decodeIntField(final String key) {
+        final int field = keys.indexOf(key);
+        if (field == -1) {
+            return null;
+        }
+        findSamples();
+        final int[] values = new int[sampleStarts.length];
+        for (int sample = 0; sample < values.length; sample++) {
+            final int start = findValue(sample, field);
+            final int end = start == -1 ? -1 : findValueEnd(sample, start);
+            if (start == -1 || isMissing(start, end)) {
+                values[sample] = -1;
+            } else {
+                final int value = parseDigits(start, end);
+                if (value >= 0) {
+                    values[sample] = value;
+                } else if (key.equals(VCFConstants.GENOTYPE_QUALITY_KEY)) {
+                    final String s = genotypeData.substring(start, end);
+                    values[sample] = s.equals(VCFConstants.MISSING_GENOTYPE_QUALITY_v3) ? -1 : (int) Math.round(Double.valueOf(s));
+                } else {
+                    values[sample] = Integer.valueOf(genotypeData.substring(start, end));
+                }
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public ColumnarGenotypesContext.IntArrayColumn decodeIntArrayField(final String key) {
+        final int field = keys.indexOf(key);
+        if (field == -1) {
+            return null;
+        }
+        findSamples();
+        final ColumnarGenotypesContext.IntArrayColumn column =
+                new ColumnarGenotypesContext.IntArrayColumn(sampleStarts.length, alleles.size());
+        int[] sampleValues = new int[alleles.size()];
+        for (int sample = 0; sample < sampleStarts.length; sample++) {
+            final int start = findValue(sample, field);
+            final int end = start == -1 ? -1 : findValueEnd(sample, start);
+            if (start != -1 && !isMissing(start, end)) {
+                int nValues = 0;
+                int valueStart = start;
+                for (int i = start; i <= end; i++) {
+                    if (i == end || genotypeData.charAt(i) == ',') {
+                        int value = parseDigits(valueStart, i);
+                        if (value == -1) {
+                            try {
+                                value = Integer.parseInt(genotypeData.substring(valueStart, i));
+                            } catch (final NumberFormatException e) {
+                                // as in createGenotypeMap, values that are not all integers are dropped
+                                nValues = 0;
+                                break;
+                            }
+                        }
+                        if (nValues == sampleValues.length) {
+                            sampleValues = Arrays.copyOf(sampleValues, 2 * nValues);
+                        }
+                        sampleValues[nValues++] = value;
+                        valueStart = i + 1;
+                    }
+                }
+                for (int i = 0; i < nValues; i++) {
+                    column.add(sampleValues[i]);
+                }
+            }
+            column.endSample();
+        }
+        return column;
+    }
+}
@@ -34,6 +34,7 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -126,6 +127,58 @@ public class BAMFileWriterTest extends HtsjdkTest {
         }
     }
 
+    @Test
+    public void testParallelCompressionWithIndex() throws Exception {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 5000; i++) {
+            builder.addPair("read" + i, i % 3, 1 + i * 10, 100 + i * 10);
+        }
+
+        final File serialBam = writeIndexedBam(builder, 0);
+        final File parallelBam = writeIndexedBam(builder, 4);
+        Assert.assertEquals(Files.readAllBytes(parallelBam.toPath()), Files.readAllBytes(serialBam.toPath()));
+        Assert.assertEquals(Files.readAllBytes(SamFiles.findIndex(parallelBam).toPath()),
+                Files.readAllBytes(SamFiles.findIndex(serialBam).toPath()));
+        verifyBAMFile(builder, parallelBam);
+    }
+
+    @Test
+    public void testParallelCompressionIndexesRecordsAsWritten() throws Exception {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 5000; i++) {
+            builder.addPair("read" + i, i % 3, 1 + i * 10, 100 + i * 10);
+        }
+        final File serialBam = writeIndexedBam(builder, 0);
+
+        // the caller may reuse a record once it has been written, before its block has been compressed
+        final File parallelBam = File.createTempFile("test.", BamFileIoUtils.BAM_FILE_EXTENSION);
+        parallelBam.deleteOnExit();
+        final SAMFileWriterFactory factory = new SAMFileWriterFactory().setCreateIndex(true).setCompressionThreads(4);
+        try (final SAMFileWriter bamWriter = factory.makeBAMWriter(builder.getHeader(), true, parallelBam)) {
+            for (final SAMRecord rec : builder.getRecords()) {
+                final SAMRecord copy = rec.deepCopy();
+                bamWriter.addAlignment(copy);
+                copy.setReferenceIndex(0);
+                copy.setAlignmentStart(1);
+                copy.setReadUnmappedFlag(true);
+            }
+        }
+        SamFiles.findIndex(parallelBam).deleteOnExit();
+        Assert.assertEquals(Files.readAllBytes(SamFiles.findIndex(parallelBam).toPath()),
+                Files.readAllBytes(SamFiles.findIndex(serialBam).toPath()));
+    }
+
+    private File writeIndexedBam(final SAMRecordSetBuilder builder, final int compressionThreads) throws IOException {
+        final File bamFile = File.createTempFile("test.", BamFileIoUtils.BAM_FILE_EXTENSION);
+        bamFile.deleteOnExit();
+        final SAMFileWriterFactory factory = new SAMFileWriterFactory().setCreateIndex(true).setCompressionThreads(compressionThreads);
+        try (final SAMFileWriter bamWriter = factory.makeBAMWriter(builder.getHeader(), true, bamFile)) {
+            builder.getRecords().forEach(bamWriter::addAlignment);
+        }
+        SamFiles.findIndex(bamFile).deleteOnExit();
+        return bamFile;
+    }
+
     @DataProvider(name = "test1")
     public Object[][] createTestData() {
         return new Object[][]{
@@ -558,6 +611,124 @@ public class BAMFileWriterTest extends HtsjdkTest {
             Assert.assertEquals(samFileHeader, builder.getHeader());
         }
     }
-}
 
+    @DataProvider(name = "unmodifiedRecordsData")
+    public Object[][] unmodifiedRecordsData() {
+        return new Object[][]{
+                {new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam")},
+                {new File("src/test/resources/htsjdk/samtools/compressed.bam")},
+                {new File("src/test/resources/htsjdk/samtools/inttest.bam")},
+                {new File("src/test/resources/htsjdk/samtools/serialization_test.bam")}
+        };
+    }
+
+    @Test(dataProvider = "unmodifiedRecordsData")
+    public void testUnmodifiedRecordsAreWrittenAsRead(final File bam) throws IOException {
+        final byte[] expected;
+        try (final BinaryCodec binaryCodec = new BinaryCodec(new DataInputStream(new BlockCompressedInputStream(bam)))) {
+            BAMFileReader.readHeader(binaryCodec, ValidationStringency.SILENT, null);
+            final ByteArrayOutputStream records = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[64 * 1024];
+            for (int n; (n = binaryCodec.getInputStream().read(buffer)) > 0; ) {
+                records.write(buffer, 0, n);
+            }
+            expected = records.toByteArray();
+        }
 
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bam)) {
+            final BAMRecordCodec codec = new BAMRecordCodec(reader.getFileHeader());
+            codec.setOutputStream(actual);
+            for (final SAMRecord rec : reader) {
+                Assert.assertNotNull(rec.getVariableBinaryRepresentation());
+                codec.encode(rec);
+            }
+        }
+        Assert.assertTrue(expected.length > 0);
+        Assert.assertEquals(actual.toByteArray(), expected);
+    }
+
+    @Test
+    public void testChangedFixedFieldsOfUnmodifiedRecordsAreWritten() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(new File("src/test/resources/htsjdk/samtools/compressed.bam"))) {
+            final BAMRecordCodec codec = new BAMRecordCodec(reader.getFileHeader());
+            for (final SAMRecord rec : reader) {
+                rec.setMappingQuality(rec.getMappingQuality() / 2);
+                rec.setFlags(rec.getFlags() ^ SAMFlag.DUPLICATE_READ.intValue());
+                rec.setInferredInsertSize(-rec.getInferredInsertSize());
+                Assert.assertNotNull(rec.getVariableBinaryRepresentation());
+
+                codec.setInputStream(new ByteArrayInputStream(encode(codec, rec)));
+                final SAMRecord decoded = codec.decode();
+                decoded.setHeader(reader.getFileHeader());
+                Assert.assertEquals(decoded.getSAMString(), rec.getSAMString());
+            }
+        }
+    }
+
+    @Test
+    public void testUnmodifiedRecordsWithLongCigarAndClearedBinAreWritten() throws IOException {
+        final File bam = BAMIndexWriterTest.createLongCigarBam();
+        final List<String> expected = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(bam)) {
+            reader.forEach(rec -> expected.add(rec.getSAMString()));
+        }
+        // validation would decode the cigars while reading
+        try (final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bam)) {
+            final BAMRecordCodec codec = new BAMRecordCodec(reader.getFileHeader());
+            int i = 0;
+            int longCigars = 0;
+            for (final SAMRecord rec : reader) {
+                // clears the bin, which is then computed from the long cigar held in the CG tag when the record is written
+                rec.setAlignmentStart(rec.getAlignmentStart());
+                Assert.assertNotNull(rec.getVariableBinaryRepresentation());
+
+                codec.setInputStream(new ByteArrayInputStream(encode(codec, rec)));
+                final SAMRecord decoded = codec.decode();
+                decoded.setHeader(reader.getFileHeader());
+                Assert.assertEquals(decoded.getSAMString(), expected.get(i++));
+                if (decoded.getCigar().numCigarElements() > BAMRecord.MAX_CIGAR_OPERATORS) {
+                    longCigars++;
+                }
+            }
+            Assert.assertEquals(i, expected.size());
+            Assert.assertTrue(longCigars > 0);
+        }
+    }
+
+    @Test
+    public void testChangedRecordsWithLongCigarInCGTagAreWritten() throws IOException {
+        final File bam = BAMIndexWriterTest.createLongCigarBam();
+        final List<String> expected = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(bam)) {
+            for (final SAMRecord rec : reader) {
+                // the length is that of the cigar decoded from the CG tag rather than that of the sentinel
+                Assert.assertEquals(rec.getCigarLength(), rec.getCigar().numCigarElements());
+                rec.setReadName(rec.getReadName() + "_changed");
+                expected.add(rec.getSAMString());
+            }
+        }
+        // validation would decode the cigars while reading, leaving none in the CG tag
+        try (final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bam)) {
+            final BAMRecordCodec codec = new BAMRecordCodec(reader.getFileHeader());
+            int i = 0;
+            for (final SAMRecord rec : reader) {
+                rec.setReadName(rec.getReadName() + "_changed");
+                Assert.assertNull(rec.getVariableBinaryRepresentation());
+
+                codec.setInputStream(new ByteArrayInputStream(encode(codec, rec)));
+                final SAMRecord decoded = codec.decode();
+                decoded.setHeader(reader.getFileHeader());
+                Assert.assertEquals(decoded.getSAMString(), expected.get(i++));
+            }
+            Assert.assertEquals(i, expected.size());
+        }
+    }
+
+    private static byte[] encode(final BAMRecordCodec codec, final SAMRecord rec) {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        codec.setOutputStream(baos);
+        codec.encode(rec);
+        return baos.toByteArray();
+    }
+}
@@ -92,6 +92,51 @@ public class BAMIndexWriterTest extends HtsjdkTest {
         CloserUtil.close(bam);
     }
 
+    @DataProvider(name = "prefixIndexingData")
+    public Object[][] prefixIndexingData() throws IOException {
+        return new Object[][]{
+                {BAM_FILE, 0},
+                {BAM_FILE, 3},
+                {new File("src/test/resources/htsjdk/samtools/example.bam"), 2},
+                {new File("src/test/resources/htsjdk/samtools/issue76.bam"), 0},
+                // the cigars are too long for the records and are stored in the CG tag
+                {createLongCigarBam(), 1}
+        };
+    }
+
+    /**
+     * @return a coordinate sorted BAM file whose cigars are too long for the records and are stored in the CG tag
+     */
+    static File createLongCigarBam() throws IOException {
+        final File bamFile = File.createTempFile("longCigar.", ".bam");
+        bamFile.deleteOnExit();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(
+                new File("src/test/resources/htsjdk/samtools/BAMCigarOverflowTest/cigar-64k.sam.gz"))) {
+            final SAMFileHeader header = reader.getFileHeader();
+            header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+            try (final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(header, true, bamFile)) {
+                for (final SAMRecord rec : reader) {
+                    writer.addAlignment(rec);
+                }
+            }
+        }
+        return bamFile;
+    }
+
+    @Test(dataProvider = "prefixIndexingData")
+    public void testIndexFromRecordPrefixes(final File bamFile, final int inflaterThreads) throws Exception {
+        // Binary compare of an index built from decoded records and one built from record prefixes
+        final File expectedBaiFile = File.createTempFile("javaBai.", ".bai");
+        expectedBaiFile.deleteOnExit();
+        try (final SamReader bam = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS).open(bamFile)) {
+            BAMIndexer.createIndex(bam, expectedBaiFile.toPath());
+        }
+        final File prefixBaiFile = File.createTempFile("prefixBai.", ".bai");
+        prefixBaiFile.deleteOnExit();
+        BAMIndexer.createIndex(bamFile.toPath(), prefixBaiFile.toPath(), inflaterThreads);
+        IOUtil.assertFilesEqual(prefixBaiFile, expectedBaiFile);
+    }
+
     @Test(enabled = false, dataProvider = "linearIndexTestData")
     /** Test linear index at specific references and windows */
     public void testLinearIndex(String testName, String filepath, int problemReference, int problemWindowStart, int problemWindowEnd, int expectedCount) {
@@ -31,6 +31,9 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * @author alecw@broadinstitute.org
@@ -62,6 +65,87 @@ public class BAMIteratorTest extends HtsjdkTest {
         CloserUtil.close(reader);
     }
 
+    @Test(dataProvider = "dataProvider")
+    public void testIterateEmptyBamWithDecodingThreads(final String bam) throws Exception {
+        try (final SamReader reader = SamReaderFactory.makeDefault().setDecodingThreads(2).open(new File(TEST_DATA_DIR, bam))) {
+            Assert.assertFalse(reader.iterator().hasNext());
+        }
+    }
+
+    @DataProvider(name = "decodingThreads")
+    public Object[][] decodingThreads() {
+        return new Object[][]{{1}, {2}, {4}};
+    }
+
+    @Test(dataProvider = "decodingThreads")
+    public void testIterateWithDecodingThreads(final int threads) throws Exception {
+        final SamReaderFactory factory = SamReaderFactory.makeDefault()
+                .enable(SamReaderFactory.Option.EAGERLY_DECODE, SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS);
+        final List<SAMRecord> expected = readAll(factory, r -> r.iterator());
+        final List<SAMRecord> actual = readAll(factory.setDecodingThreads(threads), r -> r.iterator());
+        Assert.assertTrue(expected.size() > 1000);
+        assertSameRecords(actual, expected);
+    }
+
+    @Test(dataProvider = "decodingThreads")
+    public void testQueryWithDecodingThreads(final int threads) throws Exception {
+        final SamReaderFactory factory = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS);
+        assertSameRecords(readAll(factory.setDecodingThreads(threads), r -> r.queryOverlapping("chr1", 1000000, 100000000)),
+                readAll(factory.setDecodingThreads(0), r -> r.queryOverlapping("chr1", 1000000, 100000000)));
+        assertSameRecords(readAll(factory.setDecodingThreads(threads), r -> r.queryAlignmentStart("chrM", 1)),
+                readAll(factory.setDecodingThreads(0), r -> r.queryAlignmentStart("chrM", 1)));
+        assertSameRecords(readAll(factory.setDecodingThreads(threads), SamReader::queryUnmapped),
+                readAll(factory.setDecodingThreads(0), SamReader::queryUnmapped));
+    }
+
+    @Test
+    public void testCloseIteratorWithDecodingThreads() throws Exception {
+        final List<SAMRecord> all = readAll(SamReaderFactory.makeDefault(), SamReader::iterator);
+        final List<SAMRecord> overlapping = readAll(SamReaderFactory.makeDefault(), r -> r.queryOverlapping("chr1", 1000000, 2000000));
+        Assert.assertFalse(overlapping.isEmpty());
+        try (final SamReader reader = SamReaderFactory.makeDefault().setDecodingThreads(2).open(INDEXED_BAM)) {
+            // abandon iterators before they are exhausted, the reader must still be usable afterwards
+            for (int i = 0; i < 3; i++) {
+                try (final SAMRecordIterator it = reader.iterator()) {
+                    Assert.assertEquals(it.next().getSAMString(), all.get(0).getSAMString());
+                }
+                try (final SAMRecordIterator it = reader.queryOverlapping("chr1", 1000000, 2000000)) {
+                    Assert.assertEquals(it.next().getSAMString(), overlapping.get(0).getSAMString());
+                }
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeDecodingThreads() {
+        SamReaderFactory.makeDefault().setDecodingThreads(-1);
+    }
+
+    private static final File INDEXED_BAM = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+
+    private static List<SAMRecord> readAll(final SamReaderFactory factory,
+                                           final Function<SamReader, CloseableIterator<SAMRecord>> query) throws Exception {
+        final List<SAMRecord> records = new ArrayList<>();
+        try (final SamReader reader = factory.open(INDEXED_BAM);
+             final CloseableIterator<SAMRecord> it = query.apply(reader)) {
+            while (it.hasNext()) {
+                records.add(it.next());
+            }
+        }
+        return records;
+    }
+
+    private static void assertSameRecords(final List<SAMRecord> actual, final List<SAMRecord> expected) {
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(actual.get(i).getSAMString(), expected.get(i).getSAMString());
+            if (expected.get(i).getFileSource() != null) {
+                Assert.assertEquals(actual.get(i).getFileSource().getFilePointer().toString(),
+                        expected.get(i).getFileSource().getFilePointer().toString());
+            }
+        }
+    }
+
     @DataProvider(name = "dataProvider")
     public Object[][] bams() {
         return new Object[][]{
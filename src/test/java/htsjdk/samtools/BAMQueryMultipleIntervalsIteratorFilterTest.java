@@ -119,6 +119,60 @@ public class BAMQueryMultipleIntervalsIteratorFilterTest extends HtsjdkTest {
         Assert.assertEquals(it.compareToFilter(samRec), expectedState);
     }
 
+    @Test
+    public void testSkippingManyIntervalsMatchesLinearScan() {
+        final QueryInterval[] intervals = new QueryInterval[500];
+        for (int i = 0; i < intervals.length; i++) {
+            final int referenceIndex = i < 400 ? 0 : 1;
+            final int start = 1 + (i % 400) * 5;
+            intervals[i] = new QueryInterval(referenceIndex, start, i == intervals.length - 1 ? -1 : start + 2);
+        }
+        for (final boolean contained : new boolean[]{true, false}) {
+            final BAMQueryMultipleIntervalsIteratorFilter filter = new BAMQueryMultipleIntervalsIteratorFilter(intervals, contained);
+            int linearIndex = 0;
+            for (int refIndex = 0; refIndex < 2; refIndex++) {
+                for (int start = 1; start < 2000; start += 1 + random.nextInt(40)) {
+                    final SAMRecord record = getSAMRecord(refIndex, start, 1 + random.nextInt(6));
+                    BAMIteratorFilter.FilteringIteratorState expected = BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
+                    scan:
+                    while (linearIndex < intervals.length) {
+                        switch (BAMQueryMultipleIntervalsIteratorFilter.compareIntervalToRecord(intervals[linearIndex], record)) {
+                            case BEFORE: ++linearIndex; break;
+                            case AFTER: expected = BAMIteratorFilter.FilteringIteratorState.CONTINUE_ITERATION; break scan;
+                            case CONTAINED: expected = BAMIteratorFilter.FilteringIteratorState.MATCHES_FILTER; break scan;
+                            case OVERLAPPING:
+                                expected = contained ? BAMIteratorFilter.FilteringIteratorState.CONTINUE_ITERATION :
+                                        BAMIteratorFilter.FilteringIteratorState.MATCHES_FILTER;
+                                break scan;
+                        }
+                    }
+                    Assert.assertEquals(filter.compareToFilter(record), expected, record.getSAMString());
+                    Assert.assertEquals(filter.intervalIndex, linearIndex);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRecordsWithoutReferenceLengthMatchCompareIntervalToRecord() {
+        final QueryInterval[] intervals = { new QueryInterval(0, 10, 20) };
+        for (int start = 8; start <= 22; start++) {
+            // soft clipped entirely, so the record ends at start - 1
+            final SAMRecord record = getSAMRecord(0, start, 5);
+            record.setCigarString("5S");
+            final BAMIteratorFilter.IntervalComparison comparison =
+                    BAMQueryMultipleIntervalsIteratorFilter.compareIntervalToRecord(intervals[0], record);
+            final BAMIteratorFilter.FilteringIteratorState expected;
+            switch (comparison) {
+                case BEFORE: expected = BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION; break;
+                case AFTER: expected = BAMIteratorFilter.FilteringIteratorState.CONTINUE_ITERATION; break;
+                default: expected = BAMIteratorFilter.FilteringIteratorState.MATCHES_FILTER;
+            }
+            Assert.assertEquals(new BAMQueryMultipleIntervalsIteratorFilter(intervals, false).compareToFilter(record), expected,
+                    record.getSAMString());
+        }
+    }
+
     /**
      * Fills in bases for the given record to length.
      */
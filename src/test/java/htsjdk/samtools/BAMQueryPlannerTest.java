@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.TestUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class BAMQueryPlannerTest extends HtsjdkTest {
+    private static final File BAM = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    @Test
+    public void testChunksAreCoalescedWithinGap() {
+        final long block = 1 << 16;
+        final List<Chunk> chunks = Arrays.asList(
+                new Chunk(pointer(0, 10), pointer(0, 20)),
+                new Chunk(pointer(block, 5), pointer(2 * block, 0)),
+                new Chunk(pointer(10 * block, 5), pointer(10 * block, 50)));
+        final QueryInterval[] intervals = {new QueryInterval(0, 1, 100)};
+
+        final BAMQueryPlan sameBlock = BAMQueryPlanner.DEFAULT.plan(intervals, chunks);
+        Assert.assertEquals(sameBlock.getChunks(), chunks);
+        Assert.assertEquals(sameBlock.getNumberOfIndexChunks(), 3);
+
+        final BAMQueryPlan adjacent = new BAMQueryPlanner(block, 0).plan(intervals, chunks);
+        Assert.assertEquals(adjacent.getChunks(), Arrays.asList(
+                new Chunk(pointer(0, 10), pointer(2 * block, 0)),
+                new Chunk(pointer(10 * block, 5), pointer(10 * block, 50))));
+
+        final BAMQueryPlan all = new BAMQueryPlanner(8 * block, 0).plan(intervals, chunks);
+        Assert.assertEquals(all.getChunks(), Arrays.asList(new Chunk(pointer(0, 10), pointer(10 * block, 50))));
+        Assert.assertEquals(all.getNumberOfIndexChunks(), 3);
+        // the chunks given to the planner are not modified
+        Assert.assertEquals(chunks.get(0).getChunkEnd(), pointer(0, 20));
+    }
+
+    @Test
+    public void testPrefetchEndAddress() {
+        final QueryInterval[] intervals = {new QueryInterval(0, 1, 100)};
+        final List<Chunk> chunks = Arrays.asList(new Chunk(pointer(0, 10), pointer(0, 20)));
+        Assert.assertEquals(BAMQueryPlanner.DEFAULT.plan(intervals, chunks).getPrefetchEndAddress(pointer(1000, 1), pointer(5000, 1)), 0);
+        final BAMQueryPlan plan = new BAMQueryPlanner(0, 100000).plan(intervals, chunks);
+        Assert.assertEquals(plan.getPrefetchEndAddress(pointer(1000, 1), pointer(5000, 0)), 5000);
+        Assert.assertEquals(plan.getPrefetchEndAddress(pointer(1000, 1), pointer(5000, 1)), 5000 + 65536);
+        Assert.assertEquals(plan.getPrefetchEndAddress(pointer(1000, 1), pointer(500000, 0)), 101000);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeGap() {
+        new BAMQueryPlanner(-1, 0);
+    }
+
+    @DataProvider(name = "planners")
+    public Object[][] planners() {
+        return new Object[][]{
+                {new BAMQueryPlanner(1 << 20, 0), false, false},
+                {new BAMQueryPlanner(1 << 20, 4 << 20), false, false},
+                {new BAMQueryPlanner(1 << 20, 4 << 20), true, false},
+                {new BAMQueryPlanner(1 << 20, 4 << 20), false, true},
+                {new BAMQueryPlanner(200000, 100000), true, true},
+                {new BAMQueryPlanner(0, 1 << 20), false, false},
+        };
+    }
+
+    @Test(dataProvider = "planners")
+    public void testQueriesMatchDefaultPlanner(final BAMQueryPlanner planner, final boolean contained,
+                                               final boolean asyncIO) throws IOException {
+        final QueryInterval[] intervals = makeIntervals();
+        final List<String> expected = new ArrayList<>();
+        final BAMQueryPlan defaultPlan = query(BAMQueryPlanner.DEFAULT, false, intervals, contained, expected);
+        Assert.assertFalse(expected.isEmpty());
+
+        final List<String> actual = new ArrayList<>();
+        final BAMQueryPlan plan = query(planner, asyncIO, intervals, contained, actual);
+        Assert.assertEquals(actual, expected);
+
+        Assert.assertEquals(plan.getNumberOfIndexChunks(), defaultPlan.getNumberOfIndexChunks());
+        Assert.assertTrue(plan.getChunks().size() <= defaultPlan.getChunks().size());
+        Assert.assertEquals(plan.getRecordsReturned(), expected.size());
+        Assert.assertEquals(defaultPlan.getRecordsReturned(), expected.size());
+        Assert.assertTrue(plan.getRecordsRead() >= plan.getRecordsReturned());
+        Assert.assertTrue(plan.getRecordsRead() >= defaultPlan.getRecordsRead());
+        Assert.assertTrue(plan.getCompressedBytesRead() > 0);
+        if (!asyncIO) {
+            // asynchronous reads ahead past the end of the chunks are discarded on the next seek
+            Assert.assertTrue(plan.getSeeks() <= plan.getChunks().size());
+        }
+        if (planner.getMaxChunkGap() > 0) {
+            Assert.assertTrue(plan.getChunks().size() < defaultPlan.getChunks().size());
+            Assert.assertTrue(plan.getSeeks() < defaultPlan.getSeeks(), plan + " vs " + defaultPlan);
+        }
+    }
+
+    @Test
+    public void testLastQueryPlan() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            final BAMFileReader bamReader = (BAMFileReader) ((SamReader.PrimitiveSamReaderToSamReaderAdapter) reader).underlyingReader();
+            Assert.assertNull(bamReader.getLastQueryPlan());
+            reader.queryOverlapping("chr1", 1, 0).close();
+            Assert.assertEquals(bamReader.getLastQueryPlan().getIntervals().length, 1);
+        }
+    }
+
+    private static BAMQueryPlan query(final BAMQueryPlanner planner, final boolean asyncIO, final QueryInterval[] intervals,
+                                      final boolean contained, final List<String> records) throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().setQueryPlanner(planner).setUseAsyncIo(asyncIO).open(BAM)) {
+            try (final CloseableIterator<SAMRecord> it = reader.query(intervals, contained)) {
+                while (it.hasNext()) {
+                    records.add(it.next().getSAMString());
+                }
+            }
+            return ((BAMFileReader) ((SamReader.PrimitiveSamReaderToSamReaderAdapter) reader).underlyingReader()).getLastQueryPlan();
+        }
+    }
+
+    /**
+     * @return many small intervals around some of the records of the file
+     */
+    private static QueryInterval[] makeIntervals() throws IOException {
+        final Random random = new Random(TestUtil.RANDOM_SEED);
+        final List<QueryInterval> intervals = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            for (final SAMRecord record : reader) {
+                if (record.getAlignmentStart() > 0 && random.nextInt(1000) == 0) {
+                    final int start = Math.max(1, record.getAlignmentStart() - random.nextInt(200));
+                    intervals.add(new QueryInterval(record.getReferenceIndex(), start, start + random.nextInt(400)));
+                }
+            }
+        }
+        return QueryInterval.optimizeIntervals(intervals.toArray(new QueryInterval[intervals.size()]));
+    }
+
+    private static long pointer(final long blockAddress, final int offset) {
+        return BlockCompressedFilePointerUtil.makeFilePointer(blockAddress, offset);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.StringUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+public class BAMRecordViewTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools");
+
+    @DataProvider(name = "bams")
+    public Object[][] bams() throws IOException {
+        return new Object[][]{
+                {new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam")},
+                {new File(TEST_DATA_DIR, "inttest.bam")},
+                {new File(TEST_DATA_DIR, "issue76.bam")},
+                {new File(TEST_DATA_DIR, "serialization_test.bam")},
+                {BAMIndexWriterTest.createLongCigarBam()},
+        };
+    }
+
+    @Test(dataProvider = "bams")
+    public void testViewsMatchRecords(final File bam) throws IOException {
+        int n = 0;
+        try (final SamReader records = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bam);
+             final SamReader views = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bam)) {
+            final Iterator<SAMRecord> recordIterator = records.iterator();
+            BAMRecordView previous = null;
+            int[] cigarBuffer = null;
+            try (final CloseableIterator<BAMRecordView> viewIterator = getBAMFileReader(views).getRecordViewIterator()) {
+                while (viewIterator.hasNext()) {
+                    final BAMRecordView view = viewIterator.next();
+                    if (previous != null) {
+                        Assert.assertSame(view, previous);
+                    }
+                    previous = view;
+                    final SAMRecord record = recordIterator.next();
+                    Assert.assertEquals(view.getReadName(), record.getReadName());
+                    Assert.assertTrue(view.readNameEquals(StringUtil.stringToBytes(record.getReadName())));
+                    Assert.assertFalse(view.readNameEquals(StringUtil.stringToBytes(record.getReadName() + "x")));
+                    Assert.assertEquals(view.getFlags(), record.getFlags());
+                    Assert.assertEquals(view.getReferenceIndex(), record.getReferenceIndex().intValue());
+                    Assert.assertEquals(view.getAlignmentStart(), record.getAlignmentStart());
+                    Assert.assertEquals(view.getAlignmentEnd(), record.getAlignmentEnd());
+                    Assert.assertEquals(view.getMappingQuality(), record.getMappingQuality());
+                    Assert.assertEquals(view.getReadLength(), record.getReadLength());
+                    Assert.assertEquals(view.getMateReferenceIndex(), record.getMateReferenceIndex().intValue());
+                    Assert.assertEquals(view.getMateAlignmentStart(), record.getMateAlignmentStart());
+                    Assert.assertEquals(view.getInferredInsertSize(), record.getInferredInsertSize());
+
+                    final Cigar cigar = record.getCigar();
+                    Assert.assertEquals(view.getCigarLength(), cigar.numCigarElements());
+                    cigarBuffer = view.getCigarOperations(cigarBuffer);
+                    for (int i = 0; i < cigar.numCigarElements(); i++) {
+                        final CigarElement element = cigar.getCigarElement(i);
+                        final int expected = element.getLength() << 4 | CigarOperator.enumToBinary(element.getOperator());
+                        Assert.assertEquals(cigarBuffer[i], expected);
+                        Assert.assertEquals(view.getCigarOperation(i), expected);
+                    }
+
+                    for (final SAMRecord.SAMTagAndValue attribute : record.getAttributes()) {
+                        final short tag = SAMTagUtil.getSingleton().makeBinaryTag(attribute.tag);
+                        Assert.assertTrue(view.hasAttribute(tag));
+                        Assert.assertEquals(view.getAttribute(tag), attribute.value, attribute.tag);
+                        if (attribute.value instanceof Integer) {
+                            Assert.assertEquals(view.getIntegerAttribute(tag, -1), attribute.value);
+                        }
+                    }
+                    Assert.assertFalse(view.hasAttribute(SAMTagUtil.getSingleton().makeBinaryTag("ZZ")));
+                    Assert.assertEquals(view.getIntegerAttribute(SAMTagUtil.getSingleton().makeBinaryTag("ZZ"), -7), -7);
+
+                    Assert.assertEquals(view.toSAMRecord(), record);
+                    n++;
+                }
+            }
+            Assert.assertFalse(recordIterator.hasNext());
+            // the reader can be iterated again once the view iterator is closed
+            Assert.assertTrue(views.iterator().hasNext());
+        }
+        Assert.assertTrue(n > 0);
+    }
+
+    @Test
+    public void testFilterWithoutDecoding() throws IOException {
+        final File bam = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        int expected = 0;
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(bam)) {
+            for (final SAMRecord record : reader) {
+                if (!record.getReadUnmappedFlag() && record.getMappingQuality() >= 20) {
+                    expected++;
+                }
+            }
+        }
+        int actual = 0;
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(bam);
+             final CloseableIterator<BAMRecordView> it = getBAMFileReader(reader).getRecordViewIterator()) {
+            while (it.hasNext()) {
+                final BAMRecordView view = it.next();
+                if ((view.getFlags() & SAMFlag.READ_UNMAPPED.intValue()) == 0 && view.getMappingQuality() >= 20) {
+                    actual++;
+                }
+            }
+        }
+        Assert.assertTrue(expected > 0);
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testOneIterationAtATime() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam"));
+             final CloseableIterator<BAMRecordView> it = getBAMFileReader(reader).getRecordViewIterator()) {
+            reader.iterator();
+        }
+    }
+
+    private static BAMFileReader getBAMFileReader(final SamReader reader) {
+        return (BAMFileReader) ((SamReader.PrimitiveSamReaderToSamReaderAdapter) reader).underlyingReader();
+    }
+}
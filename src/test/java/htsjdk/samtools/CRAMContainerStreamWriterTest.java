@@ -10,6 +10,7 @@ import htsjdk.samtools.util.Log.LogLevel;
 import htsjdk.samtools.util.RuntimeIOException;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
@@ -23,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 public class CRAMContainerStreamWriterTest extends HtsjdkTest {
 
@@ -91,6 +93,57 @@ public class CRAMContainerStreamWriterTest extends HtsjdkTest {
         Assert.assertEquals(count, samRecords.size());
     }
 
+    private byte[][] writeWithEncodingThreads(final List<SAMRecord> samRecords, final SAMFileHeader.SortOrder sortOrder, final int threads) {
+        final SAMFileHeader header = createSAMHeader(sortOrder);
+        final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        final ByteArrayOutputStream indexStream = new ByteArrayOutputStream();
+        final CRAMContainerStreamWriter containerStream = new CRAMContainerStreamWriter(outStream,
+                sortOrder == SAMFileHeader.SortOrder.coordinate ? indexStream : null, createReferenceSource(), header, "test");
+        containerStream.setEncodingThreads(threads);
+        containerStream.writeHeader(header);
+        for (final SAMRecord record : samRecords) {
+            containerStream.writeAlignment(record);
+        }
+        containerStream.finish(true);
+        return new byte[][]{outStream.toByteArray(), indexStream.toByteArray()};
+    }
+
+    @DataProvider(name = "encodingThreads")
+    public Object[][] encodingThreads() {
+        return new Object[][]{
+                {SAMFileHeader.SortOrder.coordinate, 1},
+                {SAMFileHeader.SortOrder.coordinate, 4},
+                {SAMFileHeader.SortOrder.unsorted, 3}
+        };
+    }
+
+    @Test(dataProvider = "encodingThreads")
+    public void testParallelEncodingProducesSameOutput(final SAMFileHeader.SortOrder sortOrder, final int threads) {
+        // several containers, since each holds at most 10000 records
+        final List<SAMRecord> samRecords = createRecords(45000);
+        if (sortOrder == SAMFileHeader.SortOrder.unsorted) {
+            Collections.shuffle(samRecords, new Random(42));
+        }
+        final byte[][] expected = writeWithEncodingThreads(samRecords, sortOrder, 0);
+        final byte[][] actual = writeWithEncodingThreads(samRecords, sortOrder, threads);
+        Assert.assertEquals(actual[0], expected[0]);
+        Assert.assertEquals(actual[1], expected[1]);
+
+        final CRAMFileReader cReader = new CRAMFileReader(null, new ByteArrayInputStream(actual[0]), createReferenceSource());
+        final SAMRecordIterator iterator = cReader.getIterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            Assert.assertEquals(iterator.next().getReadName(), samRecords.get(count++).getReadName());
+        }
+        Assert.assertEquals(count, samRecords.size());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeEncodingThreads() {
+        final SAMFileHeader header = createSAMHeader(SAMFileHeader.SortOrder.coordinate);
+        new CRAMContainerStreamWriter(new ByteArrayOutputStream(), null, createReferenceSource(), header, "test").setEncodingThreads(-1);
+    }
+
     @Test(description = "Test CRAMContainerStream no index")
     public void testCRAMContainerStreamNoIndex() {
         final List<SAMRecord> samRecords = createRecords(100);
@@ -27,17 +27,24 @@ import htsjdk.HtsjdkTest;
 import htsjdk.samtools.cram.ref.ReferenceSource;
 import htsjdk.samtools.reference.InMemoryReferenceSequenceFile;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Additional tests for CRAMFileReader are in CRAMFileIndexTest
@@ -240,4 +247,85 @@ public class CRAMFileReaderTest extends HtsjdkTest {
         Assert.assertNotNull(iterator.next());
         Assert.assertThrows(NoSuchElementException.class, iterator::next);
     }
+
+    private static byte[] writeMultiContainerCram(final ReferenceSource source, final SAMFileHeader header) throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate, true, 100000);
+        builder.setHeader(header);
+        for (int i = 0; i < 25000; i++) {
+            builder.addPair("read" + i, i % 3, 1 + (i % 90000), 1 + ((i + 50) % 90000));
+        }
+        try (final ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            final CRAMFileWriter writer = new CRAMFileWriter(baos, source, header, "test");
+            // read names are then generated from the position of each record in the stream
+            writer.setPreserveReadNames(false);
+            builder.getRecords().forEach(writer::addAlignment);
+            writer.close();
+            return baos.toByteArray();
+        }
+    }
+
+    @DataProvider(name = "decodingThreads")
+    public Object[][] decodingThreads() {
+        return new Object[][]{{1}, {2}, {4}};
+    }
+
+    @Test(dataProvider = "decodingThreads")
+    public void testParallelDecoding(final int threads) throws IOException {
+        final SAMFileHeader header = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate, true, 100000).getHeader();
+        final InMemoryReferenceSequenceFile rsf = new InMemoryReferenceSequenceFile();
+        for (final SAMSequenceRecord sequence : header.getSequenceDictionary().getSequences()) {
+            final byte[] bases = new byte[sequence.getSequenceLength()];
+            Arrays.fill(bases, (byte) 'A');
+            rsf.add(sequence.getSequenceName(), bases);
+        }
+        final ReferenceSource source = new ReferenceSource(rsf);
+        final byte[] cram = writeMultiContainerCram(source, header);
+
+        final List<String> expected = toStrings(new CRAMIterator(new ByteArrayInputStream(cram), source, ValidationStringency.STRICT));
+        Assert.assertEquals(expected.size(), 50000);
+
+        final ExecutorService threadPool = Executors.newFixedThreadPool(threads);
+        try {
+            final CRAMIterator parallelIterator = new CRAMIterator(new ByteArrayInputStream(cram), source, ValidationStringency.STRICT);
+            parallelIterator.setDecodingThreadPool(threadPool, threads);
+            Assert.assertEquals(toStrings(parallelIterator), expected);
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+
+    @Test(dataProvider = "decodingThreads")
+    public void testParallelDecodingQueries(final int threads) throws IOException {
+        final File cram = new File(TEST_DATA_DIR, "cram/cramQueryWithBAI.cram");
+        final SamReaderFactory factory = SamReaderFactory.makeDefault()
+                .referenceSequence(new File(TEST_DATA_DIR, "cram/human_g1k_v37.20.21.10M-10M200k.fasta"));
+        try (final SamReader serialReader = factory.open(cram);
+             final SamReader parallelReader = SamReaderFactory.makeDefault()
+                     .referenceSequence(new File(TEST_DATA_DIR, "cram/human_g1k_v37.20.21.10M-10M200k.fasta"))
+                     .setDecodingThreads(threads).open(cram)) {
+            Assert.assertEquals(toStrings(parallelReader.iterator()), toStrings(serialReader.iterator()));
+            Assert.assertEquals(toStrings(parallelReader.queryOverlapping("20", 100013, 100070)),
+                    toStrings(serialReader.queryOverlapping("20", 100013, 100070)));
+            Assert.assertEquals(toStrings(parallelReader.queryUnmapped()), toStrings(serialReader.queryUnmapped()));
+        }
+    }
+
+    private static List<String> toStrings(final CloseableIterator<SAMRecord> iterator) {
+        final List<String> records = new ArrayList<>();
+        while (iterator.hasNext()) {
+            records.add(iterator.next().getSAMString());
+        }
+        iterator.close();
+        return records;
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testSetDecodingThreadPoolAfterIterationStarted() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.unsorted);
+        builder.addFrag("1", 0, 2, false);
+        final CRAMFileReader reader = CRAMTestUtils.writeAndReadFromInMemoryCram(builder);
+        final CRAMIterator iterator = (CRAMIterator) reader.getIterator();
+        iterator.next();
+        iterator.setDecodingThreadPool(Executors.newSingleThreadExecutor(), 1);
+    }
 }
@@ -0,0 +1,259 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class CSIIndexTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    private static Path createBamWithCSIIndex(final int minShift, final int depth) throws IOException {
+        final File tempDir = IOUtil.createTempDir("CSIIndexTest", null);
+        tempDir.deleteOnExit();
+        final Path bam = tempDir.toPath().resolve(BAM_FILE.getName());
+        Files.copy(BAM_FILE.toPath(), bam);
+        final Path csi = tempDir.toPath().resolve(BAM_FILE.getName() + CSIIndex.CSI_INDEX_SUFFIX);
+        try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS).open(bam)) {
+            CSIIndexer.createIndex(reader, csi, minShift, depth);
+        }
+        bam.toFile().deleteOnExit();
+        csi.toFile().deleteOnExit();
+        return bam;
+    }
+
+    @DataProvider(name = "binningSchemes")
+    public Object[][] binningSchemes() {
+        return new Object[][]{
+                {CSIIndex.DEFAULT_MIN_SHIFT, CSIIndex.DEFAULT_DEPTH},
+                {12, 6},
+                {16, 4}
+        };
+    }
+
+    @Test(dataProvider = "binningSchemes")
+    public void testQueriesMatchBAI(final int minShift, final int depth) throws IOException {
+        final Path bam = createBamWithCSIIndex(minShift, depth);
+        try (final SamReader csiReader = SamReaderFactory.makeDefault().open(bam);
+             final SamReader baiReader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            Assert.assertTrue(csiReader.hasIndex());
+            Assert.assertTrue(csiReader.indexing().getIndex() instanceof CSIIndex);
+
+            final Random random = new Random(42);
+            for (final SAMSequenceRecord sequence : csiReader.getFileHeader().getSequenceDictionary().getSequences()) {
+                final List<int[]> intervals = new ArrayList<>();
+                intervals.add(new int[]{0, 0});
+                for (int i = 0; i < 20; i++) {
+                    final int start = 1 + random.nextInt(sequence.getSequenceLength());
+                    intervals.add(new int[]{start, start + random.nextInt(200000)});
+                }
+                for (final int[] interval : intervals) {
+                    for (final boolean contained : new boolean[]{false, true}) {
+                        Assert.assertEquals(query(csiReader, sequence.getSequenceName(), interval, contained),
+                                query(baiReader, sequence.getSequenceName(), interval, contained),
+                                sequence.getSequenceName() + ":" + interval[0] + "-" + interval[1]);
+                    }
+                }
+            }
+            Assert.assertEquals(count(csiReader.queryUnmapped()), count(baiReader.queryUnmapped()));
+        }
+    }
+
+    private static List<String> query(final SamReader reader, final String sequence, final int[] interval, final boolean contained) {
+        final List<String> records = new ArrayList<>();
+        try (final CloseableIterator<SAMRecord> it = reader.query(sequence, interval[0], interval[1], contained)) {
+            while (it.hasNext()) {
+                records.add(it.next().getSAMString());
+            }
+        }
+        return records;
+    }
+
+    private static int count(final CloseableIterator<SAMRecord> it) {
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        it.close();
+        return count;
+    }
+
+    @DataProvider(name = "compressionThreads")
+    public Object[][] compressionThreads() {
+        return new Object[][]{{0}, {2}};
+    }
+
+    @Test(dataProvider = "compressionThreads")
+    public void testCreateIndexWhileWriting(final int compressionThreads) throws IOException {
+        final File tempDir = IOUtil.createTempDir("CSIIndexTest", null);
+        tempDir.deleteOnExit();
+        final Path bam = tempDir.toPath().resolve(BAM_FILE.getName());
+        final Path csi = bam.resolveSibling(bam.getFileName() + CSIIndex.CSI_INDEX_SUFFIX);
+        bam.toFile().deleteOnExit();
+        csi.toFile().deleteOnExit();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE);
+             final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).setCreateCsiIndex(true)
+                     .setCompressionThreads(compressionThreads).makeBAMWriter(reader.getFileHeader(), true, bam)) {
+            for (final SAMRecord rec : reader) {
+                writer.addAlignment(rec);
+            }
+        }
+        Assert.assertEquals(SamFiles.findIndex(bam), csi);
+        Assert.assertFalse(Files.exists(bam.resolveSibling(BAM_FILE.getName().replace(".bam", BAMIndex.BAMIndexSuffix))));
+
+        // the index built while writing is the one built from the written file
+        final Path secondPass = Files.createTempFile("CSIIndexTest.", CSIIndex.CSI_INDEX_SUFFIX);
+        secondPass.toFile().deleteOnExit();
+        try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS).open(bam)) {
+            Assert.assertTrue(reader.indexing().getIndex() instanceof CSIIndex);
+            CSIIndexer.createIndex(reader, secondPass);
+        }
+        Assert.assertEquals(Files.readAllBytes(csi), Files.readAllBytes(secondPass));
+    }
+
+    @Test
+    public void testWriteReadRoundTrip() throws IOException {
+        final Path bam = createBamWithCSIIndex(CSIIndex.DEFAULT_MIN_SHIFT, CSIIndex.DEFAULT_DEPTH);
+        final CSIIndex index = new CSIIndex(bam.resolveSibling(bam.getFileName() + CSIIndex.CSI_INDEX_SUFFIX));
+        final Path copy = Files.createTempFile("CSIIndexTest.", CSIIndex.CSI_INDEX_SUFFIX);
+        copy.toFile().deleteOnExit();
+        index.write(copy);
+        final CSIIndex reread = new CSIIndex(copy);
+
+        Assert.assertEquals(reread.getMinShift(), index.getMinShift());
+        Assert.assertEquals(reread.getDepth(), index.getDepth());
+        Assert.assertEquals(reread.getNumberOfReferences(), index.getNumberOfReferences());
+        Assert.assertEquals(reread.getNoCoordinateCount(), index.getNoCoordinateCount());
+        Assert.assertEquals(reread.getStartOfLastLinearBin(), index.getStartOfLastLinearBin());
+        for (int ref = 0; ref < index.getNumberOfReferences(); ref++) {
+            Assert.assertEquals(reread.getChunksOverlapping(ref, 0, 0), index.getChunksOverlapping(ref, 0, 0));
+            Assert.assertEquals(reread.getMetaData(ref).getAlignedRecordCount(), index.getMetaData(ref).getAlignedRecordCount());
+            Assert.assertEquals(reread.getMetaData(ref).getUnalignedRecordCount(), index.getMetaData(ref).getUnalignedRecordCount());
+        }
+    }
+
+    @Test
+    public void testMetaDataMatchesBAI() throws IOException {
+        final Path bam = createBamWithCSIIndex(CSIIndex.DEFAULT_MIN_SHIFT, CSIIndex.DEFAULT_DEPTH);
+        final CSIIndex csi = new CSIIndex(bam.resolveSibling(bam.getFileName() + CSIIndex.CSI_INDEX_SUFFIX));
+        try (final SamReader baiReader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            final BAMIndex bai = baiReader.indexing().getIndex();
+            for (int ref = 0; ref < csi.getNumberOfReferences(); ref++) {
+                Assert.assertEquals(csi.getMetaData(ref).getAlignedRecordCount(), bai.getMetaData(ref).getAlignedRecordCount());
+                Assert.assertEquals(csi.getMetaData(ref).getUnalignedRecordCount(), bai.getMetaData(ref).getUnalignedRecordCount());
+            }
+            Assert.assertEquals(csi.getNoCoordinateCount(), ((AbstractBAMFileIndex) bai).getNoCoordinateCount());
+        }
+    }
+
+    @Test
+    public void testRegionToBinMatchesBAI() {
+        final Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            final int beg = random.nextInt(GenomicIndexUtil.BIN_GENOMIC_SPAN);
+            final int end = beg + 1 + random.nextInt(Math.min(1 << 20, GenomicIndexUtil.BIN_GENOMIC_SPAN - beg));
+            Assert.assertEquals(CSIIndex.regionToBin(beg, end, 14, 5), GenomicIndexUtil.regionToBin(beg, end));
+        }
+        Assert.assertEquals(CSIIndex.getMetaDataBinNumber(5), GenomicIndexUtil.MAX_BINS);
+    }
+
+    @Test
+    public void testDepthForLength() {
+        Assert.assertEquals(CSIIndex.getDepthForLength(100000, 14), 1);
+        Assert.assertEquals(CSIIndex.getDepthForLength(GenomicIndexUtil.BIN_GENOMIC_SPAN - 256, 14), 5);
+        Assert.assertEquals(CSIIndex.getDepthForLength(GenomicIndexUtil.BIN_GENOMIC_SPAN, 14), 6);
+        Assert.assertEquals(CSIIndex.getDepthForLength(Integer.MAX_VALUE, 14), 6);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBinningScheme() {
+        new CSIIndexBuilder(30, 12, 1);
+    }
+
+    /** Features beyond the 2^29 limit of BAI can be queried without scanning the whole contig */
+    @Test
+    public void testGiantContig() {
+        final CSIIndexBuilder builder = new CSIIndexBuilder(CSIIndex.DEFAULT_MIN_SHIFT, 6, 1);
+        final int[] starts = {1000, 600_000_000, 1_500_000_000, 2_000_000_000};
+        for (int i = 0; i < starts.length; i++) {
+            builder.processFeature(0, feature(starts[i], starts[i] + 100, i));
+        }
+        final CSIIndex index = builder.generateIndex();
+        for (int i = 0; i < starts.length; i++) {
+            Assert.assertEquals(index.getChunksOverlapping(0, starts[i] + 50, starts[i] + 60), Collections.singletonList(chunk(i)));
+        }
+        Assert.assertNull(index.getChunksOverlapping(0, 1_000_000_000, 1_000_100_000));
+        Assert.assertEquals(index.getChunksOverlapping(0, 0, 0).size(), starts.length);
+        Assert.assertEquals(index.getMetaData(0).getAlignedRecordCount(), starts.length);
+    }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void testFeatureBeyondMaxPosition() {
+        new CSIIndexBuilder(CSIIndex.DEFAULT_MIN_SHIFT, CSIIndex.DEFAULT_DEPTH, 1)
+                .processFeature(0, feature(GenomicIndexUtil.BIN_GENOMIC_SPAN + 1, GenomicIndexUtil.BIN_GENOMIC_SPAN + 10, 0));
+    }
+
+    // chunks in different BGZF blocks, so that they are never coalesced
+    private static Chunk chunk(final int i) {
+        return new Chunk((long) (i * 100_000) << 16, ((long) (i * 100_000) << 16) + 1000);
+    }
+
+    private static BinningIndexBuilder.FeatureToBeIndexed feature(final int start, final int end, final int i) {
+        return new BinningIndexBuilder.FeatureToBeIndexed() {
+            @Override
+            public int getStart() {
+                return start;
+            }
+
+            @Override
+            public int getEnd() {
+                return end;
+            }
+
+            @Override
+            public Integer getIndexingBin() {
+                return null;
+            }
+
+            @Override
+            public Chunk getChunk() {
+                return chunk(i);
+            }
+        };
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.BinaryCodec;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+public class IndexedTagsBAMRecordTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools");
+    private static final short MISSING_TAG = SAMTagUtil.getSingleton().makeBinaryTag("zz");
+
+    @DataProvider(name = "bams")
+    public Object[][] bams() throws IOException {
+        return new Object[][]{
+                {new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam")},
+                {new File(TEST_DATA_DIR, "inttest.bam")},
+                {new File(TEST_DATA_DIR, "serialization_test.bam")},
+                {BAMIndexWriterTest.createLongCigarBam()},
+        };
+    }
+
+    private static SamReader open(final File bam, final SAMRecordFactory factory) {
+        return SamReaderFactory.makeDefault().samRecordFactory(factory).open(bam);
+    }
+
+    @Test(dataProvider = "bams")
+    public void testTagsMatchDefaultRecords(final File bam) throws IOException {
+        int n = 0;
+        try (final SamReader defaultReader = open(bam, DefaultSAMRecordFactory.getInstance());
+             final SamReader indexedReader = open(bam, IndexedTagsSAMRecordFactory.getInstance())) {
+            final Iterator<SAMRecord> indexedIterator = indexedReader.iterator();
+            for (final SAMRecord expected : defaultReader) {
+                final SAMRecord actual = indexedIterator.next();
+                Assert.assertTrue(actual instanceof IndexedTagsBAMRecord);
+                final boolean hasCG = expected.getCigar().numCigarElements() > BAMRecord.MAX_CIGAR_OPERATORS;
+                Assert.assertEquals(actual.getBinaryTagIndex() != null, !hasCG);
+                for (final SAMRecord.SAMTagAndValue tagAndValue : expected.getAttributes()) {
+                    final short tag = SAMTagUtil.getSingleton().makeBinaryTag(tagAndValue.tag);
+                    Assert.assertTrue(actual.hasAttribute(tagAndValue.tag));
+                    assertValueEquals(tag, actual.getAttribute(tag), tagAndValue.value);
+                    if (tagAndValue.value instanceof Integer) {
+                        Assert.assertEquals(actual.getIntegerAttribute(tag, -1), ((Integer) tagAndValue.value).intValue());
+                    }
+                    if (tagAndValue.value.getClass().isArray()) {
+                        Assert.assertEquals(actual.isUnsignedArrayAttribute(tagAndValue.tag), expected.isUnsignedArrayAttribute(tagAndValue.tag));
+                    }
+                }
+                Assert.assertNull(actual.getAttribute(MISSING_TAG));
+                Assert.assertEquals(actual.getIntegerAttribute(MISSING_TAG, 7), 7);
+                Assert.assertEquals(actual.getBinaryTagIndex() != null, !hasCG);
+                Assert.assertEquals(actual.getSAMString(), expected.getSAMString());
+                Assert.assertNull(actual.getBinaryTagIndex());
+                n++;
+            }
+            Assert.assertFalse(indexedIterator.hasNext());
+        }
+        Assert.assertTrue(n > 0);
+    }
+
+    private static void assertValueEquals(final short tag, final Object actual, final Object expected) {
+        Assert.assertTrue(new SAMBinaryTagAndValue(tag, actual).equals(new SAMBinaryTagAndValue(tag, expected)),
+                SAMTagUtil.getSingleton().makeStringTag(tag) + ": " + actual + " != " + expected);
+    }
+
+    @Test(dataProvider = "bams")
+    public void testUnmodifiedTagsAreWrittenAfterOtherChanges(final File bam) throws IOException {
+        try (final SamReader defaultReader = open(bam, DefaultSAMRecordFactory.getInstance());
+             final SamReader indexedReader = open(bam, IndexedTagsSAMRecordFactory.getInstance())) {
+            final SAMFileHeader header = indexedReader.getFileHeader();
+            final Iterator<SAMRecord> indexedIterator = indexedReader.iterator();
+            for (final SAMRecord expected : defaultReader) {
+                final SAMRecord actual = indexedIterator.next();
+                expected.setReadName(expected.getReadName() + "_renamed");
+                actual.setReadName(actual.getReadName() + "_renamed");
+                actual.setMappingQuality(expected.getMappingQuality());
+                final BinaryTagIndex tagIndex = actual.getBinaryTagIndex();
+
+                final byte[] encoded = encode(header, actual);
+                if (tagIndex != null) {
+                    final byte[] tags = new byte[tagIndex.getLength()];
+                    System.arraycopy(encoded, encoded.length - tags.length, tags, 0, tags.length);
+                    final byte[] originalTags = new byte[tagIndex.getLength()];
+                    System.arraycopy(tagIndex.getData(), tagIndex.getOffset(), originalTags, 0, originalTags.length);
+                    Assert.assertEquals(tags, originalTags);
+                }
+                Assert.assertEquals(decode(header, encoded).getSAMString(), decode(header, encode(header, expected)).getSAMString());
+            }
+        }
+    }
+
+    private static byte[] encode(final SAMFileHeader header, final SAMRecord record) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setOutputStream(bytes);
+        codec.encode(record);
+        return bytes.toByteArray();
+    }
+
+    private static SAMRecord decode(final SAMFileHeader header, final byte[] encoded) {
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setInputStream(new ByteArrayInputStream(encoded));
+        return codec.decode();
+    }
+
+    @Test
+    public void testChangingTags() throws IOException {
+        try (final SamReader reader = open(new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam"), IndexedTagsSAMRecordFactory.getInstance())) {
+            final SAMFileHeader header = reader.getFileHeader();
+            final Iterator<SAMRecord> iterator = reader.iterator();
+            final int numberOfTags = iterator.next().getAttributes().size();
+            Assert.assertTrue(numberOfTags > 0);
+
+            final SAMRecord changed = iterator.next();
+            Assert.assertNotNull(changed.getBinaryTagIndex());
+            changed.setAttribute("XY", "value");
+            Assert.assertNull(changed.getBinaryTagIndex());
+            Assert.assertEquals(changed.getAttribute("XY"), "value");
+            Assert.assertEquals(changed.getAttributes().size(), numberOfTags + 1);
+            Assert.assertEquals(decode(header, encode(header, changed)).getAttribute("XY"), "value");
+
+            final SAMRecord cleared = iterator.next();
+            cleared.clearAttributes();
+            Assert.assertNull(cleared.getBinaryTagIndex());
+            Assert.assertTrue(cleared.getAttributes().isEmpty());
+            Assert.assertTrue(decode(header, encode(header, cleared)).getAttributes().isEmpty());
+        }
+    }
+
+    @Test
+    public void testIntegerAttributeOfOtherTypes() {
+        final short stringTag = SAMTagUtil.getSingleton().makeBinaryTag("XZ");
+        final short unsignedTag = SAMTagUtil.getSingleton().makeBinaryTag("XI");
+        final BinaryTagIndex index = makeIndex(unsignedTag, 4000000000L, stringTag, "abc");
+        Assert.assertFalse(index.hasIntValue(index.find(unsignedTag)));
+        Assert.assertFalse(index.hasIntValue(index.find(stringTag)));
+        Assert.assertThrows(IllegalStateException.class, () -> index.getIntValue(index.find(stringTag)));
+
+        final SAMRecord record = new SAMRecord(null);
+        record.setAttribute("XZ", "abc");
+        record.setAttribute("XS", (short) 5);
+        Assert.assertEquals(record.getIntegerAttribute(SAMTagUtil.getSingleton().makeBinaryTag("XS"), 0), 5);
+        Assert.assertThrows(RuntimeException.class, () -> record.getIntegerAttribute(stringTag, 0));
+    }
+
+    @Test
+    public void testBinaryTagIndex() {
+        final short a = SAMTagUtil.getSingleton().makeBinaryTag("XA");
+        final short b = SAMTagUtil.getSingleton().makeBinaryTag("XB");
+        final short c = SAMTagUtil.getSingleton().makeBinaryTag("XC");
+        final BinaryTagIndex index = makeIndex(c, -5, a, new short[]{1, 2}, b, 'x');
+        Assert.assertEquals(index.size(), 3);
+        Assert.assertEquals(index.getTag(0), a);
+        Assert.assertEquals(index.getTag(1), b);
+        Assert.assertEquals(index.getTag(2), c);
+        Assert.assertEquals(index.find(SAMTagUtil.getSingleton().makeBinaryTag("XD")), -1);
+        Assert.assertEquals(index.getType(index.find(a)), 'B');
+        Assert.assertEquals((short[]) index.getValue(index.find(a), ValidationStringency.STRICT), new short[]{1, 2});
+        Assert.assertFalse(index.isUnsignedArray(index.find(a)));
+        Assert.assertEquals(index.getValue(index.find(b), ValidationStringency.STRICT), 'x');
+        Assert.assertEquals(index.getIntValue(index.find(c)), -5);
+        Assert.assertFalse(index.hasDuplicateTags());
+
+        final BinaryTagIndex duplicates = makeIndex(b, 1, a, 2, b, 3);
+        Assert.assertTrue(duplicates.hasDuplicateTags());
+        Assert.assertEquals(duplicates.getIntValue(duplicates.find(b)), 3);
+
+        final BinaryTagIndex truncated = makeIndex(a, "abc");
+        Assert.assertThrows(SAMFormatException.class,
+                () -> new BinaryTagIndex(truncated.getData(), 0, truncated.getLength() - 2));
+    }
+
+    /**
+     * @param tagsAndValues alternating tags and values
+     */
+    private static BinaryTagIndex makeIndex(final Object... tagsAndValues) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BinaryTagCodec codec = new BinaryTagCodec(new BinaryCodec(bytes));
+        for (int i = 0; i < tagsAndValues.length; i += 2) {
+            codec.writeTag((Short) tagsAndValues[i], tagsAndValues[i + 1], false);
+        }
+        final byte[] data = bytes.toByteArray();
+        return new BinaryTagIndex(data, 0, data.length);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.filter.AlignedFilter;
+import htsjdk.samtools.filter.FilteringSamIterator;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class ParallelMergingSamRecordIteratorTest extends HtsjdkTest {
+
+    /**
+     * Builds inputs whose read groups and program groups all have the same IDs but different contents, so that the
+     * IDs collide when the headers are merged.
+     */
+    private static List<SAMRecordSetBuilder> makeInputs(final int numberOfInputs, final SAMFileHeader.SortOrder sortOrder) {
+        final Random random = new Random(numberOfInputs);
+        final List<SAMRecordSetBuilder> builders = new ArrayList<>();
+        for (int i = 0; i < numberOfInputs; i++) {
+            final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, sortOrder, false);
+            final SAMReadGroupRecord readGroup = new SAMReadGroupRecord("rg");
+            readGroup.setSample("sample" + i);
+            builder.setReadGroup(readGroup);
+            final SAMProgramRecord programRecord = new SAMProgramRecord("pg");
+            programRecord.setCommandLine("command " + i);
+            builder.setProgramRecord(programRecord);
+            // a few inputs are empty
+            final int numberOfReads = i % 7 == 3 ? 0 : random.nextInt(200);
+            for (int j = 0; j < numberOfReads; j++) {
+                final String name = "input" + i + "_read" + j;
+                switch (random.nextInt(3)) {
+                    case 0:
+                        builder.addFrag(name, random.nextInt(3), 1 + random.nextInt(10000), random.nextBoolean());
+                        break;
+                    case 1:
+                        builder.addPair(name, random.nextInt(3), 1 + random.nextInt(10000), 1 + random.nextInt(10000));
+                        break;
+                    default:
+                        builder.addUnmappedFragment(name);
+                }
+            }
+            builders.add(builder);
+        }
+        return builders;
+    }
+
+    private static List<SamReader> openReaders(final List<SAMRecordSetBuilder> builders) {
+        final List<SamReader> readers = new ArrayList<>();
+        for (final SAMRecordSetBuilder builder : builders) {
+            readers.add(builder.getSamReader());
+        }
+        return readers;
+    }
+
+    private static List<SAMFileHeader> getHeaders(final List<SamReader> readers) {
+        final List<SAMFileHeader> headers = new ArrayList<>();
+        for (final SamReader reader : readers) {
+            headers.add(reader.getFileHeader());
+        }
+        return headers;
+    }
+
+    private static List<String> drain(final CloseableIterator<SAMRecord> iterator) {
+        final List<String> records = new ArrayList<>();
+        while (iterator.hasNext()) {
+            records.add(iterator.next().getSAMString());
+        }
+        iterator.close();
+        return records;
+    }
+
+    @DataProvider(name = "mergeData")
+    public Object[][] mergeData() {
+        return new Object[][]{
+                {1, SAMFileHeader.SortOrder.coordinate, 1},
+                {2, SAMFileHeader.SortOrder.coordinate, 1},
+                {37, SAMFileHeader.SortOrder.coordinate, 4},
+                {64, SAMFileHeader.SortOrder.coordinate, 2},
+                {37, SAMFileHeader.SortOrder.queryname, 4},
+        };
+    }
+
+    @Test(dataProvider = "mergeData")
+    public void testMergeMatchesMergingSamRecordIterator(final int numberOfInputs, final SAMFileHeader.SortOrder sortOrder, final int threads) {
+        final List<SAMRecordSetBuilder> builders = makeInputs(numberOfInputs, sortOrder);
+
+        final List<SamReader> expectedReaders = openReaders(builders);
+        final SamFileHeaderMerger expectedMerger = new SamFileHeaderMerger(sortOrder, getHeaders(expectedReaders), true);
+        final List<String> expected = drain(new MergingSamRecordIterator(expectedMerger, expectedReaders, false));
+
+        final List<SamReader> readers = openReaders(builders);
+        final SamFileHeaderMerger merger = new SamFileHeaderMerger(sortOrder, getHeaders(readers), true);
+        Assert.assertEquals(merger.hasReadGroupCollisions(), numberOfInputs > 1);
+        final ParallelMergingSamRecordIterator iterator = new ParallelMergingSamRecordIterator(merger, readers, false, threads);
+        Assert.assertEquals(iterator.getMergedHeader(), merger.getMergedHeader());
+        final List<String> actual = drain(iterator);
+
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(actual, expected);
+        CloserUtil.close(expectedReaders);
+        CloserUtil.close(readers);
+    }
+
+    @Test
+    public void testUnsortedMergeReturnsAllRecords() {
+        final List<SAMRecordSetBuilder> builders = makeInputs(10, SAMFileHeader.SortOrder.unsorted);
+        final List<SamReader> expectedReaders = openReaders(builders);
+        final SamFileHeaderMerger expectedMerger = new SamFileHeaderMerger(SAMFileHeader.SortOrder.unsorted, getHeaders(expectedReaders), false);
+        final List<String> expected = drain(new MergingSamRecordIterator(expectedMerger, expectedReaders, false));
+
+        final List<SamReader> readers = openReaders(builders);
+        final SamFileHeaderMerger merger = new SamFileHeaderMerger(SAMFileHeader.SortOrder.unsorted, getHeaders(readers), false);
+        final List<String> actual = drain(new ParallelMergingSamRecordIterator(merger, readers, false, 2));
+
+        expected.sort(null);
+        actual.sort(null);
+        Assert.assertEquals(actual, expected);
+        CloserUtil.close(expectedReaders);
+        CloserUtil.close(readers);
+    }
+
+    @Test
+    public void testMergeOfFilteredIterators() {
+        final List<SAMRecordSetBuilder> builders = makeInputs(5, SAMFileHeader.SortOrder.coordinate);
+        final List<SamReader> readers = openReaders(builders);
+        final SamFileHeaderMerger merger = new SamFileHeaderMerger(SAMFileHeader.SortOrder.coordinate, getHeaders(readers), false);
+        final Map<SamReader, CloseableIterator<SAMRecord>> iterators = new LinkedHashMap<>();
+        for (final SamReader reader : readers) {
+            iterators.put(reader, new FilteringSamIterator(reader.iterator(), new AlignedFilter(false)));
+        }
+        final List<String> actual = drain(new ParallelMergingSamRecordIterator(merger, iterators, false, 2));
+        Assert.assertFalse(actual.isEmpty());
+        for (final String record : actual) {
+            Assert.assertEquals(record.split("\t")[5], "*", record);
+        }
+        CloserUtil.close(readers);
+    }
+
+    @Test
+    public void testReferenceIndexMapping() {
+        final SAMRecordSetBuilder builder1 = new SAMRecordSetBuilder();
+        builder1.getHeader().addSequence(new SAMSequenceRecord("FAKE_CONTIG_A", 0));
+        builder1.addFrag("read1", 0, 100, false);
+
+        final SAMRecordSetBuilder builder2 = new SAMRecordSetBuilder();
+        builder2.getHeader().addSequence(new SAMSequenceRecord("FAKE_CONTIG_B", 0));
+        final SAMRecord recRequiresMapping = new SAMRecord(builder2.getHeader());
+        recRequiresMapping.setReadName("fakeread");
+        recRequiresMapping.setReferenceName("FAKE_CONTIG_B");
+        builder2.addRecord(recRequiresMapping);
+        Assert.assertEquals(recRequiresMapping.getReferenceIndex().intValue(), 25);
+
+        final List<SamReader> readers = openReaders(Arrays.asList(builder1, builder2));
+        final SamFileHeaderMerger merger = new SamFileHeaderMerger(SAMFileHeader.SortOrder.coordinate, getHeaders(readers), true);
+        final ParallelMergingSamRecordIterator iterator = new ParallelMergingSamRecordIterator(merger, readers, false, 1);
+        Assert.assertEquals(iterator.next().getReadName(), "read1");
+        final SAMRecord rec = iterator.next();
+        Assert.assertEquals(rec.getReadName(), "fakeread");
+        Assert.assertEquals(rec.getReferenceIndex().intValue(), 26);
+        Assert.assertFalse(iterator.hasNext());
+        iterator.close();
+        CloserUtil.close(readers);
+    }
+
+    @Test
+    public void testCloseBeforeEnd() {
+        final List<SAMRecordSetBuilder> builders = makeInputs(20, SAMFileHeader.SortOrder.coordinate);
+        final List<SamReader> readers = openReaders(builders);
+        final SamFileHeaderMerger merger = new SamFileHeaderMerger(SAMFileHeader.SortOrder.coordinate, getHeaders(readers), false);
+        final ParallelMergingSamRecordIterator iterator = new ParallelMergingSamRecordIterator(merger, readers, false, 2);
+        Assert.assertTrue(iterator.hasNext());
+        iterator.next();
+        iterator.close();
+        iterator.close();
+        Assert.assertThrows(IllegalStateException.class, iterator::hasNext);
+
+        // closing before iteration has started
+        new ParallelMergingSamRecordIterator(merger, readers, false, 2).close();
+        CloserUtil.close(readers);
+    }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void testFilesNotSortedCorrectly() {
+        final List<SamReader> readers = openReaders(makeInputs(2, SAMFileHeader.SortOrder.queryname));
+        final SamFileHeaderMerger merger = new SamFileHeaderMerger(SAMFileHeader.SortOrder.coordinate, getHeaders(readers), false);
+        new ParallelMergingSamRecordIterator(merger, readers, false, 1);
+    }
+}
@@ -7,7 +7,10 @@ import java.util.HashMap;
 import java.util.function.Function;
 
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.seekablestream.SeekableMappedFileStream;
+import htsjdk.samtools.seekablestream.SeekableMappedFileStreamTest;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 public class PathInputResourceTest extends HtsjdkTest {
@@ -45,4 +48,21 @@ public class PathInputResourceTest extends HtsjdkTest {
     Assert.assertTrue(fired.containsKey("index"));
   }
 
+  @DataProvider(name = "mappingEnabled")
+  public Object[][] mappingEnabled() {
+    return new Object[][]{{true}, {false}};
+  }
+
+  @Test(dataProvider = "mappingEnabled")
+  public void testUnwrappedLocalFilesAreMappedOnlyWhenEnabled(final boolean enabled) throws Exception {
+    Path path = Paths.get(localBam);
+    SeekableMappedFileStreamTest.withMapping(enabled, () -> {
+      Assert.assertEquals(SamInputResource.of(path).data().asUnbufferedSeekableStream() instanceof SeekableMappedFileStream,
+          enabled);
+      Assert.assertEquals(SamInputResource.of(path.toFile()).data().asUnbufferedSeekableStream() instanceof SeekableMappedFileStream,
+          enabled);
+      // wrapped channels are never mapped
+      Assert.assertFalse(SamInputResource.of(path, Function.identity()).data().asUnbufferedSeekableStream() instanceof SeekableMappedFileStream);
+    });
+  }
 }
@@ -233,6 +233,31 @@ public class SAMFileWriterFactoryTest extends HtsjdkTest {
         }
     }
 
+    @Test(description="coordinate sorting with a byte limit gives the same output as with a record limit")
+    public void testMaxBytesInRam() throws Exception {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.unsorted);
+        for (int i = 0; i < 1000; i++) {
+            builder.addPair("pair" + i, i % 3, 1 + (i * 7919) % 500, 1 + (i * 104729) % 500);
+        }
+        builder.addUnmappedFragment("unmapped");
+        final SAMFileHeader header = builder.getHeader().clone();
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().setMaxRecordsInRam(100)
+                .makeSAMWriter(header, false, expected)) {
+            builder.forEach(writer::addAlignment);
+        }
+        final SAMFileWriterFactory factory = new SAMFileWriterFactory().setMaxBytesInRam(20000);
+        Assert.assertEquals(factory.getMaxBytesInRam(), Long.valueOf(20000));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory(factory).makeSAMWriter(header, false, actual)) {
+            Assert.assertEquals(((SAMFileWriterImpl) writer).getMaxBytesInRam(), Long.valueOf(20000));
+            builder.forEach(writer::addAlignment);
+        }
+        Assert.assertEquals(actual.toString(), expected.toString());
+    }
+
    private int fillSmallBam(SAMFileWriter writer) {
        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
        builder.addUnmappedFragment("HiMom!");
@@ -32,6 +32,10 @@ import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SAMTextReaderTest extends HtsjdkTest {
     private static final String ARRAY_TAG = "xa";
@@ -155,4 +159,97 @@ public class SAMTextReaderTest extends HtsjdkTest {
         final SAMRecord record = samLineParser.parseLine(samRecord);
         Assert.assertEquals(record.getAttribute(ARRAY_TAG), array);
     }
+
+    @DataProvider
+    public Object[][] getTagsOfCommonTypes() {
+        return new Object[][]{
+                {"xi:i:12345"}, {"xi:i:-12345"}, {"xi:i:0"}, {"xi:i:007"}, {"xi:i:+5"},
+                {"xi:i:2147483648"}, {"xi:i:4294967295"}, {"xi:i:-2147483648"},
+                {"xz:Z:"}, {"xz:Z:A:B::C"}, {"xa:A:q"}, {"xf:f:1.5"}, {"xh:H:1AE3"}
+        };
+    }
+
+    @Test(dataProvider = "getTagsOfCommonTypes")
+    public void testTagsOfCommonTypesAreParsedAsByCodec(final String tag) {
+        final SAMLineParser samLineParser = new SAMLineParser(new SAMFileHeader());
+        final SAMRecord record = samLineParser.parseLine("Read\t4\t*\t0\t0\t*\t*\t0\t0\tG\t%\t" + tag);
+        Assert.assertEquals(record.getAttribute(tag.substring(0, 2)), new TextTagCodec().decode(tag).getValue());
+    }
+
+    @DataProvider
+    public Object[][] getInvalidTags() {
+        return new Object[][]{{"xi:i:12x"}, {"xi:i:"}, {"xi:i:-"}, {"xi:i:4294967296"}, {"xi:i:99999999999"}, {"xa:A:qq"}, {"xyz:i:1"}};
+    }
+
+    @Test(dataProvider = "getInvalidTags", expectedExceptions = {SAMFormatException.class, IllegalArgumentException.class})
+    public void testInvalidTagsOfCommonTypes(final String tag) {
+        final SAMLineParser samLineParser = new SAMLineParser(new SAMFileHeader());
+        samLineParser.parseLine("Read\t4\t*\t0\t0\t*\t*\t0\t0\tG\t%\t" + tag);
+    }
+
+    @DataProvider
+    public Object[][] getSamFiles() {
+        return new Object[][]{
+                {new File("src/test/resources/htsjdk/samtools/coordinate_sorted.sam")},
+                {new File("src/test/resources/htsjdk/samtools/compressed.sam.gz")},
+                {new File("src/test/resources/htsjdk/samtools/inttest.sam")},
+                {new File("src/test/resources/htsjdk/samtools/uncompressed.sam")}
+        };
+    }
+
+    @Test(dataProvider = "getSamFiles")
+    public void testParallelParsing(final File sam) throws IOException {
+        Assert.assertEquals(readSamStrings(sam, 3), readSamStrings(sam, 0));
+    }
+
+    @Test
+    public void testParallelParsingOfManyRecords() throws IOException {
+        final StringBuilder sam = new StringBuilder("@SQ\tSN:chr1\tLN:100000\n@RG\tID:x\tSM:s\n");
+        for (int i = 0; i < 5000; i++) {
+            sam.append("read").append(i).append("\t0\tchr1\t").append(i + 1).append("\t60\t1M\t*\t0\t0\tA\t#\tNM:i:")
+                    .append(i).append("\tRG:Z:x\n");
+        }
+        final SamReaderFactory factory = SamReaderFactory.makeDefault().setDecodingThreads(4);
+        try (final SamReader reader = factory.open(SamInputResource.of(new ByteArrayInputStream(sam.toString().getBytes())))) {
+            int i = 0;
+            for (final SAMRecord rec : reader) {
+                Assert.assertEquals(rec.getReadName(), "read" + i);
+                Assert.assertEquals(rec.getAlignmentStart(), i + 1);
+                Assert.assertEquals(rec.getIntegerAttribute("NM").intValue(), i);
+                i++;
+            }
+            Assert.assertEquals(i, 5000);
+        }
+    }
+
+    @Test
+    public void testParallelParsingRaisesErrorAtInvalidRecord() throws IOException {
+        final StringBuilder sam = new StringBuilder("@SQ\tSN:chr1\tLN:100000\n");
+        for (int i = 0; i < 3000; i++) {
+            sam.append("read").append(i).append("\t0\tchr1\t").append(i == 2500 ? "x" : i + 1).append("\t60\t1M\t*\t0\t0\tA\t#\n");
+        }
+        final SamReaderFactory factory = SamReaderFactory.makeDefault().setDecodingThreads(2)
+                .validationStringency(ValidationStringency.STRICT);
+        int records = 0;
+        try (final SamReader reader = factory.open(SamInputResource.of(new ByteArrayInputStream(sam.toString().getBytes())))) {
+            for (final SAMRecord rec : reader) {
+                records++;
+            }
+            Assert.fail("Invalid record was not reported");
+        } catch (final SAMFormatException e) {
+            Assert.assertTrue(e.getMessage().contains("Line 2502"), e.getMessage());
+        }
+        Assert.assertEquals(records, 2500);
+    }
+
+    private static List<String> readSamStrings(final File sam, final int decodingThreads) throws IOException {
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().setDecodingThreads(decodingThreads).open(sam)) {
+            for (final SAMRecord rec : reader) {
+                records.add(rec.getSAMString());
+            }
+        }
+        Assert.assertFalse(records.isEmpty());
+        return records;
+    }
 }
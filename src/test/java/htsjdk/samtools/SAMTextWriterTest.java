@@ -24,10 +24,17 @@
 package htsjdk.samtools;
 
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedInputStream;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -136,4 +143,118 @@ public class SAMTextWriterTest extends HtsjdkTest {
         record.setAttribute("xa", new int[0]);
         Assert.assertTrue(record.getSAMString().endsWith("xa:B:i\n"));
     }
+
+    @DataProvider
+    public Object[][] getTagValues() {
+        return new Object[][]{
+                {"Hi,Mom!", false}, {"", false}, {'q', false}, {0, false}, {-1, false}, {Integer.MIN_VALUE, false},
+                {Integer.MAX_VALUE, false}, {BinaryCodec.MAX_UINT, false}, {(short) -7, false}, {(byte) 100, false},
+                {1.2345f, false}, {new byte[]{-1, 0, 1}, false}, {new byte[]{-1, 0, 1}, true},
+                {new short[]{Short.MIN_VALUE, 5}, false}, {new short[]{Short.MIN_VALUE, 5}, true},
+                {new int[]{Integer.MIN_VALUE, -1, 12}, false}, {new int[]{Integer.MIN_VALUE, -1, 12}, true},
+                {new int[0], false}, {new float[]{1.5f, -2f}, false}
+        };
+    }
+
+    @Test(dataProvider = "getTagValues")
+    public void testTagsAreEncodedAsByCodec(final Object value, final boolean isUnsignedArray) {
+        final SAMRecord record = new SAMRecord(new SAMFileHeader());
+        if (isUnsignedArray) {
+            record.setUnsignedArrayAttribute("xa", value);
+        } else {
+            record.setAttribute("xa", value);
+        }
+        final String expected = isUnsignedArray ?
+                new TextTagCodec().encodeUnsignedArray("xa", value) : new TextTagCodec().encode("xa", value);
+        Assert.assertTrue(record.getSAMString().endsWith("\t" + expected + "\n"), record.getSAMString());
+    }
+
+    @Test
+    public void testNonAsciiTextIsWrittenToWriters() {
+        final SAMRecord record = new SAMRecord(new SAMFileHeader());
+        record.setReadName("read\u00e9\u4e2d");
+        record.setAttribute("CO", "\u6ce8\u91ca \u00fc");
+        final String samString = record.getSAMString();
+        Assert.assertTrue(samString.startsWith("read\u00e9\u4e2d\t"), samString);
+        Assert.assertTrue(samString.endsWith("\tCO:Z:\u6ce8\u91ca \u00fc\n"), samString);
+
+        // records that follow are written from the encoded bytes again
+        final StringWriter writer = new StringWriter();
+        final SAMTextWriter textWriter = new SAMTextWriter(writer);
+        textWriter.writeAlignment(record);
+        final SAMRecord asciiRecord = new SAMRecord(new SAMFileHeader());
+        asciiRecord.setReadName("read");
+        textWriter.writeAlignment(asciiRecord);
+        Assert.assertEquals(writer.toString(), samString + asciiRecord.getSAMString());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testIntegerTagOutOfRange() {
+        final SAMRecord record = new SAMRecord(new SAMFileHeader());
+        record.setAttribute("xa", BinaryCodec.MAX_UINT + 1);
+    }
+
+    @Test
+    public void testRecordsAreEncodedAsByFields() throws Exception {
+        for (final String bam : new String[]{"compressed.bam", "BAMFileIndexTest/index_test.bam", "inttest.bam"}) {
+            try (final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
+                    .open(new File("src/test/resources/htsjdk/samtools", bam))) {
+                final SAMTextRecordEncoder encoder = new SAMTextRecordEncoder(SamFlagField.DECIMAL);
+                for (final SAMRecord rec : reader) {
+                    encoder.clear();
+                    encoder.encode(rec);
+                    Assert.assertEquals(new String(encoder.getBuffer(), 0, encoder.getLength(), StandardCharsets.US_ASCII),
+                            encodeFields(rec));
+                }
+            }
+        }
+    }
+
+    /**
+     * Formats a record field by field, as SAMTextWriter used to.
+     */
+    private static String encodeFields(final SAMRecord rec) {
+        final TextTagCodec tagCodec = new TextTagCodec();
+        final StringBuilder line = new StringBuilder();
+        line.append(rec.getReadName()).append('\t').append(rec.getFlags()).append('\t').append(rec.getReferenceName())
+                .append('\t').append(rec.getAlignmentStart()).append('\t').append(rec.getMappingQuality())
+                .append('\t').append(rec.getCigarString()).append('\t')
+                .append(rec.getReferenceName().equals(rec.getMateReferenceName()) &&
+                        !SAMRecord.NO_ALIGNMENT_REFERENCE_NAME.equals(rec.getReferenceName()) ? "=" : rec.getMateReferenceName())
+                .append('\t').append(rec.getMateAlignmentStart()).append('\t').append(rec.getInferredInsertSize())
+                .append('\t').append(rec.getReadString()).append('\t').append(rec.getBaseQualityString());
+        for (final SAMRecord.SAMTagAndValue tag : rec.getAttributes()) {
+            line.append('\t').append(rec.isUnsignedArrayAttribute(tag.tag) ?
+                    tagCodec.encodeUnsignedArray(tag.tag, tag.value) : tagCodec.encode(tag.tag, tag.value));
+        }
+        return line.append('\n').toString();
+    }
+
+    @Test
+    public void testBlockCompressedSam() throws Exception {
+        final SAMRecordSetBuilder recordSetBuilder = getSamRecordSet(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 2000; i++) {
+            recordSetBuilder.addPair("read" + i, 20, 1000 + i, 1200 + i);
+        }
+        for (final int compressionThreads : new int[]{0, 3}) {
+            final File samFile = File.createTempFile("tmp.", ".sam.gz");
+            samFile.deleteOnExit();
+            try (final SAMFileWriter samWriter = new SAMFileWriterFactory().setCompressionThreads(compressionThreads)
+                    .makeSAMOrBAMWriter(recordSetBuilder.getHeader(), true, samFile)) {
+                Assert.assertTrue(samWriter instanceof SAMTextWriter);
+                for (final SAMRecord samRecord : recordSetBuilder) {
+                    samWriter.addAlignment(samRecord);
+                }
+            }
+            Assert.assertTrue(BlockCompressedInputStream.isValidFile(new BufferedInputStream(new FileInputStream(samFile))));
+            try (final SamReader reader = SamReaderFactory.makeDefault().open(samFile)) {
+                Assert.assertEquals(reader.type(), SamReader.Type.SAM_TYPE);
+                final Iterator<SAMRecord> expected = recordSetBuilder.iterator();
+                for (final SAMRecord rec : reader) {
+                    Assert.assertEquals(rec.getSAMString(), expected.next().getSAMString());
+                }
+                Assert.assertFalse(expected.hasNext());
+            }
+        }
+    }
 }
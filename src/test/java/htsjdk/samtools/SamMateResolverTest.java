@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SamMateResolverTest extends HtsjdkTest {
+    private static final File BAM = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    /**
+     * @return every nth primary paired record of the file, including unmapped ones, in a shuffled order
+     */
+    private static List<SAMRecord> getPairedRecords(final int n) throws IOException {
+        final List<SAMRecord> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            int i = 0;
+            for (final SAMRecord rec : reader) {
+                if (rec.getReadPairedFlag() && !rec.isSecondaryOrSupplementary() && i++ % n == 0) {
+                    records.add(rec);
+                }
+            }
+        }
+        Collections.reverse(records);
+        Collections.swap(records, 0, records.size() / 2);
+        return records;
+    }
+
+    @Test
+    public void testMatesMatchQueryMate() throws IOException {
+        final List<SAMRecord> records = getPairedRecords(37);
+        final List<SAMRecord> expected = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            for (final SAMRecord rec : records) {
+                expected.add(reader.queryMate(rec));
+            }
+        }
+        Assert.assertTrue(expected.stream().anyMatch(mate -> mate != null && mate.getReadUnmappedFlag()));
+        Assert.assertTrue(records.stream().anyMatch(rec -> rec.getMateReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX));
+
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            final SamMateResolver resolver = new SamMateResolver(reader, SamMateResolver.DEFAULT_MAX_GAP, 0);
+            Assert.assertEquals(resolver.queryMates(records), expected);
+            Assert.assertEquals(resolver.getQueries(), 2);
+            Assert.assertEquals(resolver.getCacheHits(), 0);
+        }
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            Assert.assertEquals(reader.queryMates(records), expected);
+        }
+    }
+
+    @Test
+    public void testCachedMates() throws IOException {
+        final List<SAMRecord> records = getPairedRecords(101);
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            final SamMateResolver resolver = new SamMateResolver(reader);
+            final List<SAMRecord> mates = resolver.queryMates(records);
+            final long queries = resolver.getQueries();
+
+            // the mates read by the first lookup are found in the cache, as are the records they are the mates of
+            Assert.assertEquals(resolver.queryMates(records), mates);
+            for (int i = 0; i < records.size(); i++) {
+                if (mates.get(i) != null) {
+                    Assert.assertSame(resolver.queryMate(mates.get(i)), records.get(i));
+                }
+            }
+            Assert.assertEquals(resolver.getQueries(), queries);
+            Assert.assertTrue(resolver.getCacheHits() >= records.size());
+
+            resolver.clearCache();
+            Assert.assertEquals(resolver.queryMates(records), mates);
+            Assert.assertEquals(resolver.getQueries(), 2 * queries);
+        }
+    }
+
+    @Test
+    public void testBothEndsInBatch() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            final SAMRecord rec;
+            try (final CloseableIterator<SAMRecord> it = reader.queryAlignmentStart("chrM", 1687)) {
+                rec = it.next();
+            }
+            final SAMRecord mate = reader.queryMate(rec);
+            final SamMateResolver resolver = new SamMateResolver(reader);
+            Assert.assertEquals(resolver.queryMates(Arrays.asList(rec, mate)), Arrays.asList(mate, rec));
+            Assert.assertEquals(resolver.getQueries(), 0);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnpairedRead() throws IOException {
+        final SAMRecord rec = new SAMRecord(new SAMFileHeader());
+        rec.setReadName("unpaired");
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            new SamMateResolver(reader).queryMate(rec);
+        }
+    }
+}
@@ -6,8 +6,13 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by vadim on 22/04/2015.
@@ -162,6 +167,33 @@ public class RansTest extends HtsjdkTest {
         }
     }
 
+    @Test
+    public void testByteArrayRoundTripInParallel() throws Exception {
+        final byte[][] data = new byte[8][];
+        for (int i = 0; i < data.length; i++)
+            data[i] = randomBytes_GD(10000 + i * 997, 0.01 + 0.01 * i);
+        // each thread reuses its own tables, which must not leak between threads or between calls
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                final byte[] raw = data[i % data.length];
+                final RANS.ORDER order = RANS.ORDER.values()[i % 2];
+                futures.add(executor.submit(() -> Assert.assertEquals(RANS.uncompress(RANS.compress(raw, order)), raw)));
+            }
+            for (final Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testByteArrayIncorrectInputLength() {
+        final byte[] compressed = RANS.compress(randomBytes_GD(1000, 0.01), RANS.ORDER.ONE);
+        RANS.uncompress(Arrays.copyOf(compressed, compressed.length - 1));
+    }
+
     @Test
     public void testRansHeader() {
         byte[] data = randomBytes_GD(1000, 0.01);
@@ -194,6 +226,18 @@ public class RansTest extends HtsjdkTest {
             Assert.assertEquals(uncompressed.get(), data.get());
         }
         Assert.assertFalse(uncompressed.hasRemaining());
+
+        // the byte array implementation must be interchangeable with the ByteBuffer one
+        data.rewind();
+        byte[] raw = new byte[data.remaining()];
+        data.get(raw);
+        data.rewind();
+        compressed.rewind();
+        byte[] expectedCompressed = new byte[compressed.remaining()];
+        compressed.get(expectedCompressed);
+        byte[] compressedBytes = RANS.compress(raw, order);
+        Assert.assertEquals(compressedBytes, expectedCompressed);
+        Assert.assertEquals(RANS.uncompress(compressedBytes), raw);
     }
 
     private static void roundTrip(byte[] data, RANS.ORDER order) {
@@ -0,0 +1,157 @@
+package htsjdk.samtools.seekablestream;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.Defaults;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamInputResource;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+public class SeekableMappedFileStreamTest extends HtsjdkTest {
+    private static final File BAM = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    @DataProvider(name = "segmentSizes")
+    public Object[][] segmentSizes() {
+        return new Object[][] {{4099}, {65536}, {SeekableMappedFileStream.DEFAULT_SEGMENT_SIZE}};
+    }
+
+    @Test(dataProvider = "segmentSizes")
+    public void testRandomReadsMatchFile(final int segmentSize) throws IOException {
+        final byte[] expected = Files.readAllBytes(BAM.toPath());
+        final Random random = new Random(42);
+        try (final SeekableMappedFileStream stream = new SeekableMappedFileStream(BAM.toPath(), segmentSize)) {
+            Assert.assertEquals(stream.length(), expected.length);
+            for (int i = 0; i < 1000; i++) {
+                final int position = random.nextInt(expected.length);
+                final int length = random.nextInt(100000);
+                stream.seek(position);
+                Assert.assertEquals(stream.position(), position);
+                final byte[] buffer = new byte[length + 3];
+                final int n = stream.read(buffer, 3, length);
+                Assert.assertEquals(n, length == 0 ? 0 : Math.min(length, expected.length - position));
+                for (int j = 0; j < n; j++) {
+                    Assert.assertEquals(buffer[3 + j], expected[position + j]);
+                }
+                Assert.assertEquals(stream.position(), position + n);
+            }
+        }
+    }
+
+    @Test
+    public void testSingleBytesSkipAndEof() throws IOException {
+        final byte[] expected = Files.readAllBytes(BAM.toPath());
+        try (final SeekableMappedFileStream stream = new SeekableMappedFileStream(BAM.toPath(), 4099)) {
+            Assert.assertEquals(stream.read(), expected[0] & 0xff);
+            Assert.assertEquals(stream.skip(10), 10);
+            Assert.assertEquals(stream.read(), expected[11] & 0xff);
+            Assert.assertFalse(stream.eof());
+            Assert.assertEquals(stream.skip(expected.length), expected.length - 12);
+            Assert.assertTrue(stream.eof());
+            Assert.assertEquals(stream.read(), -1);
+            Assert.assertEquals(stream.read(new byte[10], 0, 10), -1);
+            stream.seek(expected.length + 10);
+            Assert.assertTrue(stream.eof());
+            Assert.assertEquals(stream.read(), -1);
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        final File empty = File.createTempFile("SeekableMappedFileStreamTest", ".empty");
+        empty.deleteOnExit();
+        try (final SeekableMappedFileStream stream = new SeekableMappedFileStream(empty)) {
+            Assert.assertEquals(stream.length(), 0);
+            Assert.assertTrue(stream.eof());
+            Assert.assertEquals(stream.read(), -1);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testReadAfterClose() throws IOException {
+        final SeekableMappedFileStream stream = new SeekableMappedFileStream(BAM);
+        stream.close();
+        stream.read();
+    }
+
+    @Test
+    public void testBlockCompressedReadsMatch() throws IOException {
+        try (final InputStream expected = new BlockCompressedInputStream(new SeekableFileStream(BAM));
+             final InputStream actual = new BlockCompressedInputStream(new SeekableMappedFileStream(BAM.toPath(), 1000))) {
+            int b;
+            while ((b = expected.read()) != -1) {
+                Assert.assertEquals(actual.read(), b);
+            }
+            Assert.assertEquals(actual.read(), -1);
+        }
+    }
+
+    /**
+     * An action run with memory mapping of local files enabled or disabled.
+     */
+    public interface MappingAction {
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs the action with memory mapping of local files enabled or disabled, whatever
+     * {@link Defaults#USE_MEMORY_MAPPED_FILES} is set to.
+     */
+    public static void withMapping(final boolean enabled, final MappingAction action) throws Exception {
+        final boolean previous = SeekableMappedFileStream.mappingEnabled;
+        SeekableMappedFileStream.mappingEnabled = enabled;
+        try {
+            action.run();
+        } finally {
+            SeekableMappedFileStream.mappingEnabled = previous;
+        }
+    }
+
+    @DataProvider(name = "mappingEnabled")
+    public Object[][] mappingEnabled() {
+        return new Object[][]{{true}, {false}};
+    }
+
+    @Test(dataProvider = "mappingEnabled")
+    public void testSelectedForLocalFilesOnlyWhenEnabled(final boolean enabled) throws Exception {
+        withMapping(enabled, () -> {
+            Assert.assertEquals(SeekableMappedFileStream.canMap(BAM.toPath()), enabled);
+            Assert.assertFalse(SeekableMappedFileStream.canMap(BAM.getParentFile().toPath()));
+            try (final SeekableStream stream = SeekableStreamFactory.getInstance().getStreamFor(BAM.getAbsolutePath())) {
+                Assert.assertEquals(stream instanceof SeekableMappedFileStream, enabled);
+            }
+        });
+        final SeekableStream mapped = new SeekableMappedFileStream(BAM);
+        Assert.assertSame(IOUtil.maybeBufferedSeekableStream(mapped), mapped);
+    }
+
+    @Test
+    public void testQueriesMatchUnmappedReader() throws IOException {
+        try (final SamReader expected = SamReaderFactory.makeDefault().open(SamInputResource.of(new SeekableFileStream(BAM))
+                .index(new File(BAM.getPath() + ".bai")));
+             final SamReader actual = SamReaderFactory.makeDefault().open(SamInputResource.of(new SeekableMappedFileStream(BAM))
+                .index(new File(BAM.getPath() + ".bai")))) {
+            for (final String contig : new String[]{"chr1", "chr2", "chrM"}) {
+                try (final CloseableIterator<SAMRecord> e = expected.queryOverlapping(contig, 1000, 100000);
+                     final CloseableIterator<SAMRecord> a = actual.queryOverlapping(contig, 1000, 100000)) {
+                    while (e.hasNext()) {
+                        Assert.assertTrue(a.hasNext());
+                        Assert.assertEquals(a.next().getSAMString(), e.next().getSAMString());
+                    }
+                    Assert.assertFalse(a.hasNext());
+                }
+            }
+        }
+    }
+}
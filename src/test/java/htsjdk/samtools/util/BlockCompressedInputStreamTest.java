@@ -93,6 +93,26 @@ public class BlockCompressedInputStreamTest extends HtsjdkTest {
 		}
 	}
 	@Test
+    public void seek_with_prefetch_should_read_blocks_with_one_read() throws Exception {
+		byte[] uncompressed = Files.readAllBytes(BLOCK_UNCOMPRESSED.toPath());
+		try (SeekableFileStream sfs = new SeekableFileStream(BLOCK_COMPRESSED)) {
+			try (BlockCompressedInputStream stream = new BlockCompressedInputStream(sfs)) {
+				for (int i = BLOCK_COMPRESSED_OFFSETS.length - 2; i >= 0; i--) {
+					final long seeks = stream.getNumberOfSeeks();
+					stream.seek(BLOCK_COMPRESSED_OFFSETS[i] << 16, sfs.length());
+					byte[] actual = new byte[uncompressed.length];
+					int len = stream.read(actual);
+					actual = Arrays.copyOf(actual, len);
+					byte[] expected = Arrays.copyOfRange(uncompressed, uncompressed.length - actual.length, uncompressed.length);
+					Assert.assertEquals(actual, expected);
+					Assert.assertEquals(stream.getNumberOfSeeks(), seeks + 1);
+				}
+				Assert.assertEquals(stream.getCompressedBytesRead(), BLOCK_COMPRESSED.length() * 4 - BLOCK_COMPRESSED_OFFSETS[1]
+						- BLOCK_COMPRESSED_OFFSETS[2] - BLOCK_COMPRESSED_OFFSETS[3]);
+			}
+		}
+	}
+	@Test
     public void available_should_return_number_of_bytes_left_in_current_block() throws Exception {
 		try (BlockCompressedInputStream stream = new BlockCompressedInputStream(BLOCK_COMPRESSED)) {
 			for (int i = 0; i < BLOCK_UNCOMPRESSED_END_POSITIONS[0]; i++) {
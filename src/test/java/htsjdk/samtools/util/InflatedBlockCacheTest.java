@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InflatedBlockCacheTest extends HtsjdkTest {
+    private static final File BAM = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    @AfterMethod
+    public void resetSharedCache() {
+        InflatedBlockCache.getInstance().setMaxBytes(0);
+        InflatedBlockCache.getInstance().clear();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedBlocksAreEvicted() {
+        // room for three 100 byte blocks
+        final InflatedBlockCache cache = new InflatedBlockCache(3 * (100 + 128));
+        for (int i = 0; i < 3; i++) {
+            cache.put("a", i, new byte[100], 10);
+        }
+        Assert.assertNotNull(cache.get("a", 0, null));
+        cache.put("a", 3, new byte[100], 10);
+
+        Assert.assertEquals(cache.getNumberOfBlocks(), 3);
+        Assert.assertEquals(cache.getEvictions(), 1);
+        Assert.assertNull(cache.get("a", 1, null));
+        Assert.assertNotNull(cache.get("a", 0, null));
+        Assert.assertNotNull(cache.get("a", 3, null));
+        Assert.assertNull(cache.get("b", 3, null));
+        Assert.assertEquals(cache.getHits(), 3);
+        Assert.assertEquals(cache.getMisses(), 2);
+        Assert.assertTrue(cache.getSizeInBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    public void testBlocksAreCopied() {
+        final InflatedBlockCache cache = new InflatedBlockCache(1000);
+        final byte[] block = {1, 2, 3};
+        cache.put("a", 0, block, 2);
+        block[0] = 9;
+        final byte[] buffer = new byte[3];
+        final InflatedBlockCache.Block cached = cache.get("a", 0, buffer);
+        Assert.assertSame(cached.inflated, buffer);
+        Assert.assertEquals(cached.inflated, new byte[]{1, 2, 3});
+        Assert.assertEquals(cached.compressedSize, 2);
+        buffer[0] = 9;
+        Assert.assertEquals(cache.get("a", 0, new byte[1]).inflated, new byte[]{1, 2, 3});
+    }
+
+    @Test
+    public void testDisabling() {
+        final InflatedBlockCache cache = new InflatedBlockCache(1000);
+        Assert.assertTrue(cache.isEnabled());
+        cache.put("a", 0, new byte[10], 2);
+        cache.put("a", 1, new byte[2000], 2);
+        Assert.assertEquals(cache.getNumberOfBlocks(), 1);
+        cache.setMaxBytes(0);
+        Assert.assertFalse(cache.isEnabled());
+        Assert.assertEquals(cache.getNumberOfBlocks(), 0);
+        Assert.assertEquals(cache.getSizeInBytes(), 0);
+        Assert.assertNull(InflatedBlockCache.sourceKey(null, 10));
+        Assert.assertNull(InflatedBlockCache.sourceKey("a", 0));
+    }
+
+    @Test
+    public void testSeeksMatchUncachedStream() throws IOException {
+        final List<Long> pointers = new ArrayList<>();
+        try (final BlockCompressedInputStream stream = new BlockCompressedInputStream(new SeekableFileStream(BAM))) {
+            while (stream.read() != -1) {
+                if (pointers.size() < 1000 && stream.getFilePointer() % 7 == 0) {
+                    pointers.add(stream.getFilePointer());
+                }
+            }
+        }
+        InflatedBlockCache.getInstance().setMaxBytes(1 << 20);
+        try (final BlockCompressedInputStream expected = new BlockCompressedInputStream(new SeekableFileStream(BAM));
+             final BlockCompressedInputStream actual = new BlockCompressedInputStream(new SeekableFileStream(BAM))) {
+            actual.setUseBlockCache(true);
+            for (int pass = 0; pass < 2; pass++) {
+                for (final long pointer : pointers) {
+                    expected.seek(pointer);
+                    actual.seek(pointer);
+                    final byte[] e = new byte[100000];
+                    final byte[] a = new byte[100000];
+                    Assert.assertEquals(actual.read(a), expected.read(e));
+                    Assert.assertEquals(a, e);
+                    Assert.assertEquals(actual.getFilePointer(), expected.getFilePointer());
+                }
+            }
+        }
+        Assert.assertTrue(InflatedBlockCache.getInstance().getHits() > 0);
+    }
+
+    @Test
+    public void testQueriesShareBlocks() throws IOException {
+        final List<String> expected = query();
+        Assert.assertFalse(expected.isEmpty());
+        InflatedBlockCache.getInstance().setMaxBytes(16 << 20);
+        Assert.assertEquals(query(), expected);
+        final long misses = InflatedBlockCache.getInstance().getMisses();
+        Assert.assertTrue(misses > 0);
+        Assert.assertEquals(query(), expected);
+        Assert.assertEquals(InflatedBlockCache.getInstance().getMisses(), misses);
+        Assert.assertTrue(InflatedBlockCache.getInstance().getHits() > 0);
+    }
+
+    private static List<String> query() throws IOException {
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            for (final int[] interval : new int[][]{{0, 0}, {470000, 600000}, {500000, 0}}) {
+                try (final CloseableIterator<SAMRecord> it = reader.queryOverlapping("chr1", interval[0], interval[1])) {
+                    while (it.hasNext()) {
+                        records.add(it.next().getSAMString());
+                    }
+                }
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+public class InflatedBlockIteratorTest extends HtsjdkTest {
+    private static final File BAM = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    @DataProvider(name = "threads")
+    public Object[][] threads() {
+        return new Object[][]{{0}, {1}, {4}};
+    }
+
+    @Test(dataProvider = "threads")
+    public void testMatchesBlockCompressedInputStream(final int threads) throws IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (final BlockCompressedInputStream stream = new BlockCompressedInputStream(BAM)) {
+            IOUtil.copyStream(stream, expected);
+        }
+
+        final ExecutorService inflaters = threads > 0 ? ParallelDecodingIterator.newWorkerPool(threads) : null;
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        long nextAddress = 0;
+        try (final InflatedBlockIterator blocks = new InflatedBlockIterator(new SeekableFileStream(BAM), 0, inflaters, threads)) {
+            while (blocks.hasNext()) {
+                final InflatedBlockIterator.Block block = blocks.next();
+                Assert.assertEquals(block.address, nextAddress);
+                nextAddress += block.compressedSize;
+                actual.write(block.data);
+            }
+        } finally {
+            if (inflaters != null) {
+                inflaters.shutdown();
+            }
+        }
+        Assert.assertEquals(nextAddress, BAM.length());
+        Assert.assertEquals(actual.toByteArray(), expected.toByteArray());
+    }
+
+    @Test
+    public void testStartAddressAndFilePointers() throws IOException {
+        final long pointer;
+        try (final BlockCompressedInputStream stream = new BlockCompressedInputStream(BAM)) {
+            stream.read(new byte[100]);
+            pointer = stream.getFilePointer();
+        }
+        final InflatedBlockIterator.Block first;
+        final InflatedBlockIterator.Block second;
+        try (final InflatedBlockIterator blocks = new InflatedBlockIterator(new SeekableFileStream(BAM), 0, null, 0)) {
+            first = blocks.next();
+            second = blocks.next();
+        }
+        Assert.assertEquals(first.getFilePointer(100), pointer);
+        Assert.assertEquals(first.getFilePointer(first.data.length), BlockCompressedFilePointerUtil.makeFilePointer(second.address, 0));
+
+        try (final InflatedBlockIterator blocks = new InflatedBlockIterator(new SeekableFileStream(BAM), second.address, null, 0)) {
+            final InflatedBlockIterator.Block block = blocks.next();
+            Assert.assertEquals(block.address, second.address);
+            Assert.assertEquals(block.data, second.data);
+        }
+    }
+}
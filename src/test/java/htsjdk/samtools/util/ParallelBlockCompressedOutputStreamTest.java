@@ -0,0 +1,113 @@
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.zip.DeflaterFactory;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ParallelBlockCompressedOutputStreamTest extends HtsjdkTest {
+
+    @DataProvider(name = "threads")
+    public Object[][] threads() {
+        return new Object[][]{{1}, {2}, {8}};
+    }
+
+    /**
+     * Writes the same pseudo-random content, with occasional flushes, to the given stream and collects the file
+     * pointers reported along the way.
+     */
+    private static List<Long> writeContent(final BlockCompressedOutputStream bcos, final boolean pending) throws IOException {
+        final Random random = new Random(42);
+        final List<Long> pointers = new ArrayList<>();
+        final List<Long> pendingPointers = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // mildly compressible records of varying length
+            final byte[] record = new byte[random.nextInt(500)];
+            for (int j = 0; j < record.length; j++) {
+                record[j] = (byte) ('A' + random.nextInt(4));
+            }
+            if (pending) {
+                pendingPointers.add(bcos.getPendingFilePointer());
+                while (!pendingPointers.isEmpty() && bcos.isFilePointerResolvable(pendingPointers.get(0))) {
+                    pointers.add(bcos.resolveFilePointer(pendingPointers.remove(0)));
+                }
+            } else {
+                pointers.add(bcos.getFilePointer());
+            }
+            bcos.write(record);
+            if (i % 1000 == 999) {
+                bcos.flush();
+            }
+        }
+        bcos.close();
+        for (final long pendingPointer : pendingPointers) {
+            pointers.add(bcos.resolveFilePointer(pendingPointer));
+        }
+        return pointers;
+    }
+
+    @Test(dataProvider = "threads")
+    public void testOutputAndFilePointersMatchSerialStream(final int threads) throws IOException {
+        final ByteArrayOutputStream serialBytes = new ByteArrayOutputStream();
+        final List<Long> serialPointers = writeContent(new BlockCompressedOutputStream(serialBytes, (Path) null), false);
+
+        final ByteArrayOutputStream parallelBytes = new ByteArrayOutputStream();
+        final List<Long> parallelPointers = writeContent(new ParallelBlockCompressedOutputStream(parallelBytes, (Path) null, threads), false);
+        Assert.assertEquals(parallelBytes.toByteArray(), serialBytes.toByteArray());
+        Assert.assertEquals(parallelPointers, serialPointers);
+
+        final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+        final List<Long> pendingPointers = writeContent(new ParallelBlockCompressedOutputStream(pendingBytes, (Path) null, threads), true);
+        Assert.assertEquals(pendingBytes.toByteArray(), serialBytes.toByteArray());
+        Assert.assertEquals(pendingPointers, serialPointers);
+    }
+
+    @Test
+    public void testPendingFilePointersOfSerialStream() throws IOException {
+        final ByteArrayOutputStream serialBytes = new ByteArrayOutputStream();
+        final List<Long> serialPointers = writeContent(new BlockCompressedOutputStream(serialBytes, (Path) null), false);
+        final List<Long> pendingPointers = writeContent(new BlockCompressedOutputStream(new ByteArrayOutputStream(), (Path) null), true);
+        Assert.assertEquals(pendingPointers, serialPointers);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testOutOfOrderResolution() throws IOException {
+        final BlockCompressedOutputStream bcos = new ParallelBlockCompressedOutputStream(new ByteArrayOutputStream(), (Path) null, 2);
+        final long first = bcos.getPendingFilePointer();
+        bcos.write(new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE * 3]);
+        final long second = bcos.getPendingFilePointer();
+        bcos.resolveFilePointer(second);
+        bcos.resolveFilePointer(first);
+    }
+
+    @Test
+    public void testCustomDeflaterIsUsedOnEveryThread() throws IOException {
+        final int[] deflatersCreated = {0};
+        final DeflaterFactory countingFactory = new DeflaterFactory() {
+            @Override
+            public java.util.zip.Deflater makeDeflater(final int compressionLevel, final boolean gzipCompatible) {
+                synchronized (deflatersCreated) {
+                    deflatersCreated[0]++;
+                }
+                return super.makeDeflater(compressionLevel, gzipCompatible);
+            }
+        };
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeContent(new ParallelBlockCompressedOutputStream(bytes, (Path) null, 5, countingFactory, 4), false);
+        // one for the superclass, plus at least one per block compressed concurrently
+        Assert.assertTrue(deflatersCreated[0] > 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreads() {
+        new ParallelBlockCompressedOutputStream(new ByteArrayOutputStream(), (Path) null, 0);
+    }
+}
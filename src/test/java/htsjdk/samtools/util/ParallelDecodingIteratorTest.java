@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.IntStream;
+
+public class ParallelDecodingIteratorTest extends HtsjdkTest {
+    private final ExecutorService workers = ParallelDecodingIterator.newWorkerPool(4);
+
+    @AfterClass
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private static class TestCloseableIterator implements CloseableIterator<Integer> {
+        private final int size;
+        private final int failAt;
+        private volatile int offset = 0;
+        public volatile boolean isClosed = false;
+
+        public TestCloseableIterator(final int size, final int failAt) {
+            this.size = size;
+            this.failAt = failAt;
+        }
+        @Override
+        public void close() {
+            isClosed = true;
+        }
+        @Override
+        public boolean hasNext() {
+            return offset < size;
+        }
+        @Override
+        public Integer next() {
+            if (offset == failAt) {
+                throw new IllegalStateException("failed at " + failAt);
+            }
+            return offset++;
+        }
+    }
+
+    @DataProvider(name = "sizes")
+    public Object[][] sizes() {
+        return new Object[][]{{0, 1, 1}, {1, 1, 1}, {10, 1, 1}, {10, 3, 2}, {1000, 7, 3}, {1000, 100, 8}, {10000, 1000, 2}};
+    }
+
+    @Test(dataProvider = "sizes")
+    public void testDecodesInOrder(final int size, final int batchSize, final int batchesInFlight) {
+        try (final ParallelDecodingIterator<Integer, String> it = new ParallelDecodingIterator<>(
+                new TestCloseableIterator(size, -1), Object::toString, workers, batchSize, batchesInFlight)) {
+            for (int i = 0; i < size; i++) {
+                Assert.assertTrue(it.hasNext());
+                Assert.assertEquals(it.next(), Integer.toString(i));
+            }
+            Assert.assertFalse(it.hasNext());
+            Assert.assertFalse(it.hasNext());
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEnd() {
+        final TestCloseableIterator underlying = new TestCloseableIterator(100000, -1);
+        final ParallelDecodingIterator<Integer, Integer> it = new ParallelDecodingIterator<>(underlying, i -> i, workers, 10, 2);
+        Assert.assertEquals((int) it.next(), 0);
+        it.close();
+        Assert.assertTrue(underlying.isClosed);
+        // the background thread has stopped reading
+        final int consumed = underlying.offset;
+        Assert.assertTrue(consumed < 100000);
+        Assert.assertEquals(underlying.offset, consumed);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testHasNextAfterClose() {
+        final ParallelDecodingIterator<Integer, Integer> it = new ParallelDecodingIterator<>(
+                new TestCloseableIterator(10, -1), i -> i, workers, 1, 1);
+        it.close();
+        it.hasNext();
+    }
+
+    @Test
+    public void testUnderlyingExceptionRaisedInOrder() {
+        try (final ParallelDecodingIterator<Integer, Integer> it = new ParallelDecodingIterator<>(
+                new TestCloseableIterator(100, 25), i -> i, workers, 10, 2)) {
+            for (int i = 0; i < 25; i++) {
+                Assert.assertEquals((int) it.next(), i);
+            }
+            Assert.assertThrows(IllegalStateException.class, it::hasNext);
+        }
+    }
+
+    @Test
+    public void testDecoderExceptionRaisedInOrder() {
+        try (final ParallelDecodingIterator<Integer, Integer> it = new ParallelDecodingIterator<>(
+                new TestCloseableIterator(100, -1), i -> {
+                    if (i == 42) throw new IllegalArgumentException("bad record");
+                    return i;
+                }, workers, 10, 2)) {
+            for (int i = 0; i < 40; i++) {
+                Assert.assertEquals((int) it.next(), i);
+            }
+            Assert.assertThrows(IllegalArgumentException.class, it::next);
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testWorkerPoolShutdownRaised() {
+        final ExecutorService pool = ParallelDecodingIterator.newWorkerPool(1);
+        pool.shutdown();
+        try (final ParallelDecodingIterator<Integer, Integer> it = new ParallelDecodingIterator<>(
+                new TestCloseableIterator(100, -1), i -> i, pool, 10, 2)) {
+            Assert.assertThrows(RejectedExecutionException.class, it::hasNext);
+        }
+    }
+
+    @Test
+    public void testNonCloseableUnderlyingIterator() {
+        final Iterator<Integer> underlying = IntStream.range(0, 50).iterator();
+        try (final ParallelDecodingIterator<Integer, Integer> it = new ParallelDecodingIterator<>(underlying, i -> 2 * i, workers, 8, 4)) {
+            int expected = 0;
+            while (it.hasNext()) {
+                Assert.assertEquals((int) it.next(), expected);
+                expected += 2;
+            }
+            Assert.assertEquals(expected, 100);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBatchSize() {
+        new ParallelDecodingIterator<>(new TestCloseableIterator(1, -1), i -> i, workers, 0, 1);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+public class SerializedSortingCollectionTest extends HtsjdkTest {
+    // Create a separate directory for files so it is possible to confirm that the directory is emptied
+    private File tmpDir() {
+        return new File(System.getProperty("java.io.tmpdir") + "/" + System.getProperty("user.name"), getClass().getSimpleName());
+    }
+
+    @BeforeMethod void setup() { resetTmpDir(); }
+    @AfterMethod void tearDown() { resetTmpDir(); }
+
+    private void resetTmpDir() {
+        IOUtil.deleteDirectoryTree(tmpDir());
+        if (!tmpDir().mkdirs()) throw new IllegalStateException("Could not create tmpdir: " + tmpDir().getAbsolutePath());
+    }
+
+    /** Key on the first character only, so that many strings share a key and are ordered by the comparator. */
+    private static final ToLongFunction<String> FIRST_CHAR = s -> s.isEmpty() ? -1 : s.charAt(0);
+
+    @DataProvider(name = "strings")
+    public Object[][] strings() {
+        return new Object[][] {
+                {0, 1000L},
+                {1, 1000L},
+                {100, 100000L},
+                {550, 5000L},
+                {10000, 20000L},
+                {10, 1L}, // one record per run
+        };
+    }
+
+    @Test(dataProvider = "strings")
+    public void testStrings(final int numStrings, final long maxBytesInRam) {
+        final SerializedSortingCollection<String> collection = SerializedSortingCollection.newInstance(
+                new SortingCollectionTest.StringCodec(), new SortingCollectionTest.StringComparator(), FIRST_CHAR,
+                maxBytesInRam, tmpDir().toPath());
+        final List<String> strings = new ArrayList<>();
+        for (final String s : new SortingCollectionTest.RandomStringGenerator(numStrings)) {
+            collection.add(s);
+            strings.add(s);
+        }
+        collection.doneAdding();
+        Assert.assertEquals(tmpDir().list().length, collection.getNumberOfSpilledRuns());
+        strings.sort(new SortingCollectionTest.StringComparator());
+
+        // may be iterated repeatedly
+        for (int i = 0; i < 2; i++) {
+            final List<String> sorted = new ArrayList<>();
+            collection.iterator().forEachRemaining(sorted::add);
+            Assert.assertEquals(sorted, strings);
+        }
+        collection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test
+    public void testEqualRecordsKeepInsertionOrder() {
+        // compare on length only so that records are equal according to the comparator but distinguishable
+        final Comparator<String> byLength = Comparator.comparingInt(String::length);
+        final SerializedSortingCollection<String> collection = SerializedSortingCollection.newInstance(
+                new SortingCollectionTest.StringCodec(), byLength, s -> 0L, 2000, tmpDir().toPath());
+        final List<String> strings = new ArrayList<>();
+        for (final String s : new SortingCollectionTest.RandomStringGenerator(500)) {
+            collection.add(s);
+            strings.add(s);
+        }
+        Assert.assertTrue(collection.getNumberOfSpilledRuns() > 1);
+        strings.sort(byLength);
+        final List<String> sorted = new ArrayList<>();
+        collection.iterator().forEachRemaining(sorted::add);
+        Assert.assertEquals(sorted, strings);
+        collection.cleanup();
+    }
+
+    @Test
+    public void testMatchesSortingCollectionForSAMRecords() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.unsorted);
+        builder.setReadLength(50);
+        final Random random = new Random(TestUtil.RANDOM_SEED);
+        for (int i = 0; i < 2000; i++) {
+            // few distinct positions, so that many records share a key
+            builder.addPair("pair" + i, random.nextInt(3), 1 + random.nextInt(20), 1 + random.nextInt(20),
+                    random.nextInt(10) == 0, random.nextInt(10) == 0, "50M", "50M", random.nextBoolean(), random.nextBoolean(), 30);
+        }
+        builder.addUnmappedFragment("unmapped1");
+        builder.addUnmappedFragment("unmapped2");
+        final SAMFileHeader header = builder.getHeader();
+
+        final SortingCollection<SAMRecord> expected = SortingCollection.newInstance(SAMRecord.class,
+                new BAMRecordCodec(header), new SAMRecordCoordinateComparator(), 500, tmpDir());
+        final SerializedSortingCollection<SAMRecord> actual = SerializedSortingCollection.newInstance(
+                new BAMRecordCodec(header), new SAMRecordCoordinateComparator(), SAMRecordCoordinateComparator::coordinateKey,
+                100000, tmpDir().toPath());
+        for (final SAMRecord rec : builder) {
+            expected.add(rec);
+            actual.add(rec);
+        }
+        Assert.assertTrue(actual.getNumberOfSpilledRuns() > 0);
+
+        final CloseableIterator<SAMRecord> expectedIterator = expected.iterator();
+        final CloseableIterator<SAMRecord> actualIterator = actual.iterator();
+        int n = 0;
+        while (expectedIterator.hasNext()) {
+            Assert.assertTrue(actualIterator.hasNext());
+            Assert.assertEquals(actualIterator.next().getSAMString(), expectedIterator.next().getSAMString());
+            n++;
+        }
+        Assert.assertFalse(actualIterator.hasNext());
+        Assert.assertEquals(n, builder.getRecords().size());
+        expected.cleanup();
+        actual.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAddAfterIterating() {
+        final SerializedSortingCollection<String> collection = SerializedSortingCollection.newInstance(
+                new SortingCollectionTest.StringCodec(), new SortingCollectionTest.StringComparator(), FIRST_CHAR,
+                1000, tmpDir().toPath());
+        collection.add("a");
+        collection.iterator();
+        collection.add("b");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidMaxBytesInRam() {
+        SerializedSortingCollection.newInstance(new SortingCollectionTest.StringCodec(),
+                new SortingCollectionTest.StringComparator(), FIRST_CHAR, 0, tmpDir().toPath());
+    }
+
+    @DataProvider(name = "keySortSizes")
+    public Object[][] keySortSizes() {
+        return new Object[][] {{0}, {1}, {31}, {33}, {1000}, {100000}};
+    }
+
+    @Test(dataProvider = "keySortSizes")
+    public void testKeySortIsStable(final int size) {
+        final Random random = new Random(TestUtil.RANDOM_SEED);
+        final long[] keys = new long[size + 10]; // sorts a prefix of the arrays
+        final int[] ids = new int[size + 10];
+        final long[][] expected = new long[size][];
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextInt(100) - 50;
+            ids[i] = i;
+            expected[i] = new long[] {keys[i], i};
+        }
+        Arrays.sort(expected, Comparator.comparingLong(a -> a[0])); // stable
+
+        SerializedSortingCollection.KeySort.sort(keys, ids, size);
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(keys[i], expected[i][0]);
+            Assert.assertEquals(ids[i], expected[i][1]);
+        }
+    }
+}
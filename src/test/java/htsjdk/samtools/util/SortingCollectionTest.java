@@ -103,6 +103,86 @@ public class SortingCollectionTest extends HtsjdkTest {
         Assert.assertEquals(tmpDir().list().length, 0);
     }
 
+    @DataProvider(name = "parallel")
+    public Object[][] createParallelTestData() {
+        return new Object[][] {
+                {"empty", 0, 100, 4},
+                {"less than threshold", 40, 100, 4},
+                {"one spill", 60, 100, 4},
+                {"fewer files than threads", 250, 100, 8},
+                {"more files than threads", 5000, 100, 3},
+                {"single record runs", 20, 1, 2},
+                {"async spill only", 550, 100, 0},
+        };
+    }
+
+    @Test(dataProvider = "parallel")
+    public void testAsyncSpillingAndParallelMerge(final String testName, final int numStringsToGenerate,
+                                                  final int maxRecordsInRam, final int mergeThreads) {
+        final String[] strings = new String[numStringsToGenerate];
+        int numStringsGenerated = 0;
+        final SortingCollection<String> sortingCollection = makeSortingCollection(maxRecordsInRam);
+        sortingCollection.setAsyncSpilling(true);
+        sortingCollection.setMergeThreads(mergeThreads);
+        for (final String s : new RandomStringGenerator(numStringsToGenerate)) {
+            sortingCollection.add(s);
+            strings[numStringsGenerated++] = s;
+        }
+        Arrays.sort(strings, new StringComparator());
+
+        sortingCollection.doneAdding();
+        // runs hold at most half of maxRecordsInRam
+        Assert.assertEquals(tmpDirIsEmpty(), numStringsToGenerate <= Math.max(1, maxRecordsInRam / 2));
+        sortingCollection.setDestructiveIteration(false);
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test
+    public void testParallelMergeKeepsInsertionOrderOfEqualRecords() {
+        // records with equal length compare equal, and must come out in the order they were added
+        final Comparator<String> byLength = Comparator.comparingInt(String::length);
+        final SortingCollection<String> sortingCollection =
+                SortingCollection.newInstance(String.class, new StringCodec(), byLength, 50, tmpDir());
+        sortingCollection.setAsyncSpilling(true);
+        sortingCollection.setMergeThreads(4);
+        final String[] strings = new String[1000];
+        int i = 0;
+        for (final String s : new RandomStringGenerator(strings.length)) {
+            sortingCollection.add(s);
+            strings[i++] = s;
+        }
+        Arrays.sort(strings, byLength); // stable
+
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+        sortingCollection.cleanup();
+    }
+
+    @Test
+    public void testCloseParallelMergeBeforeEnd() {
+        final SortingCollection<String> sortingCollection = makeSortingCollection(10);
+        sortingCollection.setMergeThreads(2);
+        for (final String s : new RandomStringGenerator(10000)) {
+            sortingCollection.add(s);
+        }
+        final CloseableIterator<String> it = sortingCollection.iterator();
+        Assert.assertTrue(it.hasNext());
+        it.next();
+        it.close();
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testSetAsyncSpillingAfterAdd() {
+        final SortingCollection<String> sortingCollection = makeSortingCollection(10);
+        sortingCollection.add("1");
+        sortingCollection.setAsyncSpilling(true);
+    }
+
     @Test
     public void spillToDiskTest() {
         final SortingCollection<String> sortingCollection = makeSortingCollection(10);
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.tribble.index.tabix;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.FeatureReader;
+import htsjdk.tribble.TestUtils;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.tribble.readers.TabixReader;
+import htsjdk.tribble.util.TabixUtils;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFFileReader;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CSITabixIndexTest extends HtsjdkTest {
+    private static final File VCF = new File(TestUtils.DATA_DIR, "tabix/YRI.trio.2010_07.indel.sites.vcf.gz");
+
+    /** Copies the VCF to a directory of its own and indexes it there with a .csi only */
+    private static File indexedCopy() throws IOException {
+        final File tempDir = IOUtil.createTempDir("CSITabixIndexTest", null);
+        tempDir.deleteOnExit();
+        final File vcf = new File(tempDir, VCF.getName());
+        Files.copy(VCF.toPath(), vcf.toPath());
+        vcf.deleteOnExit();
+        final CSITabixIndex index = IndexFactory.createCSITabixIndex(vcf, new VCFCodec(), TabixFormat.VCF, null);
+        index.writeBasedOnFeaturePath(vcf.toPath());
+        new File(vcf.getPath() + TabixUtils.CSI_INDEX_EXTENSION).deleteOnExit();
+        return vcf;
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        final File vcf = indexedCopy();
+        final File csi = new File(vcf.getPath() + TabixUtils.CSI_INDEX_EXTENSION);
+        final CSITabixIndex index = new CSITabixIndex(csi.toPath());
+        Assert.assertEquals(index.getFormatSpec(), TabixFormat.VCF);
+        Assert.assertTrue(index.containsChromosome("1"));
+
+        final Index loaded = IndexFactory.loadIndex(csi.getPath());
+        Assert.assertTrue(loaded instanceof CSITabixIndex);
+        Assert.assertEquals(loaded, index);
+        Assert.assertEquals(TabixUtils.findIndexPath(vcf.getPath()), csi.getPath());
+    }
+
+    @Test
+    public void testIndicesOfDifferentChunksAreNotEqual() throws IOException {
+        // the same records compressed at another level have the same contigs but different virtual offsets
+        final File recompressed = File.createTempFile("CSITabixIndexTest.", ".vcf.gz");
+        recompressed.deleteOnExit();
+        try (final InputStream in = IOUtil.openFileForReading(VCF);
+             final OutputStream out = new BlockCompressedOutputStream(recompressed, 1)) {
+            IOUtil.copyStream(in, out);
+        }
+        final CSITabixIndex index = IndexFactory.createCSITabixIndex(VCF, new VCFCodec(), TabixFormat.VCF, null);
+        final CSITabixIndex other = IndexFactory.createCSITabixIndex(recompressed, new VCFCodec(), TabixFormat.VCF, null);
+        Assert.assertEquals(other.getSequenceNames(), index.getSequenceNames());
+        Assert.assertEquals(IndexFactory.createCSITabixIndex(VCF, new VCFCodec(), TabixFormat.VCF, null), index);
+        Assert.assertNotEquals(other, index);
+        Assert.assertFalse(other.equalsIgnoreProperties(index));
+    }
+
+    @Test
+    public void testQueriesMatchTabixIndex() throws IOException {
+        final File vcf = indexedCopy();
+        try (final VCFFileReader csiReader = new VCFFileReader(vcf, true);
+             final VCFFileReader tbiReader = new VCFFileReader(VCF, true)) {
+            final int[][] intervals = {{868379 - 1, 1006891 + 1}, {1, 836463 + 1}, {76690833 - 1, 76837502 + 11111111},
+                    {36606472 + 1, 36623523 - 1}, {1, 10}, {76837502 * 15, 76837502 * 16}, {1, 300000000}};
+            for (final int[] interval : intervals) {
+                Assert.assertEquals(query(csiReader, interval), query(tbiReader, interval));
+            }
+            Assert.assertEquals(query(csiReader, new int[]{868379 - 1, 1006891 + 1}).size(), 42);
+        }
+    }
+
+    private static List<String> query(final VCFFileReader reader, final int[] interval) {
+        final List<String> result = new ArrayList<>();
+        reader.query("1", interval[0], interval[1]).forEachRemaining(vc -> result.add(vc.toStringWithoutGenotypes()));
+        return result;
+    }
+
+    @Test
+    public void testTabixReader() throws IOException {
+        final File vcf = indexedCopy();
+        final TabixReader csiReader = new TabixReader(vcf.getPath());
+        final TabixReader tbiReader = new TabixReader(VCF.getPath());
+        try {
+            Assert.assertEquals(csiReader.getChromosomes(), tbiReader.getChromosomes());
+            for (final String region : new String[]{"1", "1:868379-1006891", "1:1-10", "2"}) {
+                final TabixReader.Iterator expected = tbiReader.query(region);
+                final TabixReader.Iterator actual = csiReader.query(region);
+                String line;
+                while ((line = expected.next()) != null) {
+                    Assert.assertEquals(actual.next(), line);
+                }
+                Assert.assertNull(actual.next());
+            }
+        } finally {
+            csiReader.close();
+            tbiReader.close();
+        }
+    }
+
+    @Test
+    public void testFeatureReaderFindsCSI() throws IOException {
+        final File vcf = indexedCopy();
+        Assert.assertTrue(AbstractFeatureReader.isTabix(vcf.getPath(), null));
+        try (final FeatureReader<VariantContext> reader = AbstractFeatureReader.getFeatureReader(vcf.getPath(), new VCFCodec(), true)) {
+            Assert.assertTrue(reader.isQueryable());
+            Assert.assertTrue(reader.query("1", 868379 - 1, 1006891 + 1).hasNext());
+        }
+    }
+}
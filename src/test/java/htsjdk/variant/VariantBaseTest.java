@@ -30,11 +30,16 @@ import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
 import htsjdk.variant.vcf.VCFConstants;
+import htsjdk.variant.vcf.VCFFileReader;
 import org.testng.Assert;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -65,6 +70,46 @@ public class VariantBaseTest extends HtsjdkTest {
         }
     }
 
+    /**
+     * Writes the lines of a VCF to a temp file that will be deleted on exit after tests are complete.
+     * @param name Prefix of the file.
+     * @param lines Lines of the VCF, without line terminators.
+     * @return A VCF file in the temporary directory starting with name.
+     */
+    public static File createTempVcf(final String name, final String... lines) {
+        final File vcf = createTempFile(name, ".vcf");
+        try (final PrintWriter writer = new PrintWriter(vcf)) {
+            for (final String line : lines) {
+                writer.println(line);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Cannot write temp file: " + ex.getMessage(), ex);
+        }
+        return vcf;
+    }
+
+    /**
+     * Converts a VCF to an unindexed BCF temp file that will be deleted on exit after tests are complete.
+     * @param name Prefix of the file.
+     * @param vcf VCF to convert.
+     * @return A BCF file in the temporary directory starting with name.
+     */
+    public static File createTempBcf(final String name, final File vcf) {
+        final File bcf = createTempFile(name, ".bcf");
+        try (final VCFFileReader reader = new VCFFileReader(vcf, false);
+             final VariantContextWriter writer = new VariantContextWriterBuilder()
+                     .setOutputFile(bcf)
+                     .setOutputFileType(VariantContextWriterBuilder.OutputType.BCF)
+                     .unsetOption(Options.INDEX_ON_THE_FLY)
+                     .build()) {
+            writer.writeHeader(reader.getFileHeader());
+            for (final VariantContext vc : reader) {
+                writer.add(vc);
+            }
+        }
+        return bcf;
+    }
+
     private static final double DEFAULT_FLOAT_TOLERANCE = 1e-1;
 
     public static final void assertEqualsDoubleSmart(final Object actual, final Double expected) {
@@ -41,16 +41,20 @@ import htsjdk.variant.variantcontext.writer.*;
 import htsjdk.variant.vcf.*;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -298,6 +302,137 @@ public class BCF2WriterUnitTest extends VariantBaseTest {
         }
     }
 
+    @DataProvider(name = "parallelEncodingInputs")
+    public Object[][] parallelEncodingInputs() {
+        return new Object[][]{
+                {new File(variantTestDataRoot, "ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf")},
+                {new File(variantTestDataRoot, "serialization_test.bcf")},
+        };
+    }
+
+    /**
+     * test that encoding records on several threads writes the same bytes, and a working index, as encoding them on
+     * the writing thread
+     */
+    @Test(dataProvider = "parallelEncodingInputs")
+    public void testParallelEncoding(final File input) throws IOException {
+        final File serialOutput = writeBCF(input, 0);
+        final File parallelOutput = writeBCF(input, 4);
+        Assert.assertEquals(Files.readAllBytes(parallelOutput.toPath()), Files.readAllBytes(serialOutput.toPath()));
+
+        try (final VCFFileReader expectedReader = new VCFFileReader(input, false);
+             final VCFFileReader parallelReader = new VCFFileReader(parallelOutput, true)) {
+            final VariantContext first = expectedReader.iterator().next();
+            final int expectedCount = (int) expectedReader.iterator().stream()
+                    .filter(vc -> vc.getContig().equals(first.getContig())).count();
+            final int count = parallelReader.query(first.getContig(), 1, Integer.MAX_VALUE).stream()
+                    .mapToInt(vc -> 1).sum();
+            Assert.assertEquals(count, expectedCount);
+        }
+    }
+
+    /**
+     * test that the genotypes of BCF records filtered with a new FILTER are written without decoding them, even
+     * though the new filter moves the FORMAT keys in the string dictionary
+     */
+    @Test
+    public void testPassThroughGenotypesWithNewFilter() throws IOException {
+        final File input = writeBCF(new File(variantTestDataRoot, "ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf"), 0);
+        final File bcfOutputFile = File.createTempFile("testPassThroughGenotypes.", ".bcf", tempDir);
+        bcfOutputFile.deleteOnExit();
+        try (final VCFFileReader reader = new VCFFileReader(input, false)) {
+            final VCFHeader inputHeader = reader.getFileHeader();
+            final Set<VCFHeaderLine> metaData = new LinkedHashSet<>();
+            metaData.add(new VCFFilterHeaderLine("NEW", "x"));
+            metaData.addAll(inputHeader.getMetaDataInInputOrder());
+            final VCFHeader header = new VCFHeader(metaData, inputHeader.getGenotypeSamples());
+            try (final VariantContextWriter writer = new VariantContextWriterBuilder()
+                    .setOutputFile(bcfOutputFile).setReferenceDictionary(header.getSequenceDictionary())
+                    .unsetOption(Options.INDEX_ON_THE_FLY)
+                    .build()) {
+                writer.writeHeader(header);
+                for (final VariantContext vc : reader) {
+                    writer.add(new VariantContextBuilder(vc).filters("NEW").make());
+                    Assert.assertTrue(vc.getGenotypes().isLazyWithData());
+                }
+            }
+        }
+
+        try (final VCFFileReader expectedReader = new VCFFileReader(input, false);
+             final VCFFileReader actualReader = new VCFFileReader(bcfOutputFile, false)) {
+            final Iterator<VariantContext> actualIt = actualReader.iterator();
+            for (final VariantContext expected : expectedReader) {
+                final VariantContext actual = actualIt.next();
+                Assert.assertEquals(actual.getFilters(), Collections.singleton("NEW"));
+                Assert.assertEquals(actual.getNSamples(), expected.getNSamples());
+                for (final Genotype genotype : expected.getGenotypes()) {
+                    assertGenotypesAreEqual(actual.getGenotype(genotype.getSampleName()), genotype);
+                }
+            }
+            Assert.assertFalse(actualIt.hasNext());
+        }
+    }
+
+    /**
+     * test that the genotypes of BCF records are not written as they are when the output header lists the same
+     * samples in a different order
+     */
+    @Test
+    public void testReorderedSamplesAreNotPassedThrough() throws IOException {
+        final File input = writeBCF(new File(variantTestDataRoot, "ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf"), 0);
+        final File bcfOutputFile = File.createTempFile("testReorderedSamples.", ".bcf", tempDir);
+        bcfOutputFile.deleteOnExit();
+        try (final VCFFileReader reader = new VCFFileReader(input, false)) {
+            final VCFHeader inputHeader = reader.getFileHeader();
+            final List<String> samples = new ArrayList<>(inputHeader.getGenotypeSamples());
+            Collections.reverse(samples);
+            Assert.assertNotEquals(samples, inputHeader.getGenotypeSamples());
+            final VCFHeader header = new VCFHeader(inputHeader.getMetaDataInInputOrder(), samples);
+            try (final VariantContextWriter writer = new VariantContextWriterBuilder()
+                    .setOutputFile(bcfOutputFile).setReferenceDictionary(header.getSequenceDictionary())
+                    .unsetOption(Options.INDEX_ON_THE_FLY)
+                    .build()) {
+                writer.writeHeader(header);
+                for (final VariantContext vc : reader) {
+                    writer.add(vc);
+                }
+            }
+        }
+
+        try (final VCFFileReader expectedReader = new VCFFileReader(input, false);
+             final VCFFileReader actualReader = new VCFFileReader(bcfOutputFile, false)) {
+            final Iterator<VariantContext> actualIt = actualReader.iterator();
+            for (final VariantContext expected : expectedReader) {
+                final VariantContext actual = actualIt.next();
+                Assert.assertEquals(actual.getNSamples(), expected.getNSamples());
+                for (final Genotype genotype : expected.getGenotypes()) {
+                    assertGenotypesAreEqual(actual.getGenotype(genotype.getSampleName()), genotype);
+                }
+            }
+            Assert.assertFalse(actualIt.hasNext());
+        }
+    }
+
+    private File writeBCF(final File input, final int threads) throws IOException {
+        final File bcfOutputFile = File.createTempFile("testParallelEncoding.", ".bcf", tempDir);
+        bcfOutputFile.deleteOnExit();
+        Tribble.indexFile(bcfOutputFile).deleteOnExit();
+        try (final VCFFileReader reader = new VCFFileReader(input, false)) {
+            final VCFHeader header = reader.getFileHeader();
+            try (final VariantContextWriter writer = new VariantContextWriterBuilder()
+                    .setOutputFile(bcfOutputFile).setReferenceDictionary(header.getSequenceDictionary())
+                    .setOptions(EnumSet.of(Options.INDEX_ON_THE_FLY))
+                    .setEncodingThreads(threads)
+                    .build()) {
+                writer.writeHeader(header);
+                for (final VariantContext vc : reader) {
+                    writer.add(vc);
+                }
+            }
+        }
+        return bcfOutputFile;
+    }
+
     /**
      * create a fake VCF record
      *
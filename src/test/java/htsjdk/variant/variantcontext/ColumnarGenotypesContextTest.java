@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext;
+
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.FeatureCodec;
+import htsjdk.tribble.FeatureReader;
+import htsjdk.variant.VariantBaseTest;
+import htsjdk.variant.bcf2.BCF2Codec;
+import htsjdk.variant.vcf.VCFCodec;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class ColumnarGenotypesContextTest extends VariantBaseTest {
+    private static final File ILLUMINA_VCF = new File(variantTestDataRoot, "ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf");
+
+    private static final String[] SMALL_VCF = {
+            "##fileformat=VCFv4.2",
+            "##contig=<ID=1,length=10000>",
+            "##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">",
+            "##FORMAT=<ID=AD,Number=R,Type=Integer,Description=\"Allelic depths\">",
+            "##FORMAT=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">",
+            "##FORMAT=<ID=GQ,Number=1,Type=Integer,Description=\"Genotype quality\">",
+            "##FORMAT=<ID=PL,Number=G,Type=Integer,Description=\"Phred-scaled likelihoods\">",
+            "##FORMAT=<ID=FT,Number=1,Type=String,Description=\"Genotype filter\">",
+            "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1\tS2\tS3\tS4\tS5",
+            "1\t100\t.\tA\tC\t50\tPASS\t.\tGT:AD:DP:GQ:PL\t0/0:10,0:10:30:0,30,300\t0|1:5,5:10:99:100,0,100\t1/1:0,8:8:24:240,24,0\t./.:.:.:.:.\t0/1",
+            "1\t200\t.\tA\tC,G\t50\tPASS\t.\tGT:DP:GQ\t1/2:12:-1\t.:.:.\t0|2|1:7:35.6\t1:3:5\t./1",
+            "1\t300\t.\tG\tT\t50\tPASS\t.\tGT:PL\t0/1:10,.,20\t.|1:.\t1/.:0,5,9\t0/0\t./.",
+            "1\t400\t.\tT\tA\t50\tPASS\t.\tGQ:DP\t12:30\t.:4\t7\t.\t3:3",
+            "1\t500\t.\tC\tT\t50\tPASS\t.\tGT:DP:FT\t0/1:5:PASS\t0/0:3:LowQual\t1/1:2:PASS\t./.:.:.\t0/1:7:PASS",
+            "1\t600\t.\tC\tT\t50\tPASS\t.\tGT\t0/1\t0/0\t1/1\t./.\t0/1",
+    };
+
+    private static List<VariantContext> read(final File file, final FeatureCodec<VariantContext, ?> codec) throws IOException {
+        try (final FeatureReader<VariantContext> reader = AbstractFeatureReader.getFeatureReader(file.getAbsolutePath(), codec, false)) {
+            final List<VariantContext> variants = new ArrayList<>();
+            for (final VariantContext vc : reader.iterator()) {
+                variants.add(vc);
+            }
+            return variants;
+        }
+    }
+
+    private static VCFCodec columnarVCFCodec() {
+        final VCFCodec codec = new VCFCodec();
+        codec.setColumnarGenotypes(true);
+        return codec;
+    }
+
+    private static BCF2Codec columnarBCF2Codec() {
+        final BCF2Codec codec = new BCF2Codec();
+        codec.setColumnarGenotypes(true);
+        return codec;
+    }
+
+    @DataProvider
+    public Object[][] files() throws IOException {
+        final File smallVcf = createTempVcf("columnar", SMALL_VCF);
+        final Supplier<FeatureCodec<VariantContext, ?>> vcfCodec = VCFCodec::new;
+        final Supplier<FeatureCodec<VariantContext, ?>> columnarVcfCodec = ColumnarGenotypesContextTest::columnarVCFCodec;
+        final Supplier<FeatureCodec<VariantContext, ?>> bcfCodec = BCF2Codec::new;
+        final Supplier<FeatureCodec<VariantContext, ?>> columnarBcfCodec = ColumnarGenotypesContextTest::columnarBCF2Codec;
+        return new Object[][]{
+                {smallVcf, vcfCodec, columnarVcfCodec, 5},
+                {createTempBcf("columnar", smallVcf), bcfCodec, columnarBcfCodec, 5},
+                {ILLUMINA_VCF, vcfCodec, columnarVcfCodec, 122},
+                {createTempBcf("columnar", ILLUMINA_VCF), bcfCodec, columnarBcfCodec, 122},
+        };
+    }
+
+    @Test(dataProvider = "files")
+    public void testColumnarGenotypesMatchGenotypes(final File file, final Supplier<FeatureCodec<VariantContext, ?>> codec,
+                                                    final Supplier<FeatureCodec<VariantContext, ?>> columnarCodec,
+                                                    final int expectedColumnarSites) throws IOException {
+        final List<VariantContext> expected = read(file, codec.get());
+        final List<VariantContext> actual = read(file, columnarCodec.get());
+        Assert.assertEquals(actual.size(), expected.size());
+
+        int columnarSites = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            final VariantContext expectedVc = expected.get(i);
+            final VariantContext actualVc = actual.get(i);
+            if (!(actualVc.getGenotypes() instanceof ColumnarGenotypesContext)) {
+                continue;
+            }
+            columnarSites++;
+            final ColumnarGenotypesContext columns = (ColumnarGenotypesContext) actualVc.getGenotypes();
+
+            // counts are computed from the columns, without decoding the genotypes
+            Assert.assertEquals(actualVc.getCalledChrCount(), expectedVc.getCalledChrCount());
+            for (final Allele allele : expectedVc.getAlleles()) {
+                Assert.assertEquals(actualVc.getCalledChrCount(allele), expectedVc.getCalledChrCount(allele));
+            }
+            Assert.assertEquals(actualVc.getCalledChrCount(Allele.NO_CALL), expectedVc.getCalledChrCount(Allele.NO_CALL));
+            Assert.assertEquals(actualVc.getNoCallCount(), expectedVc.getNoCallCount());
+            Assert.assertEquals(actualVc.getHomRefCount(), expectedVc.getHomRefCount());
+            Assert.assertEquals(actualVc.getHetCount(), expectedVc.getHetCount());
+            Assert.assertEquals(actualVc.getHomVarCount(), expectedVc.getHomVarCount());
+            Assert.assertEquals(actualVc.getMixedCount(), expectedVc.getMixedCount());
+            Assert.assertEquals(actualVc.getMaxPloidy(2), expectedVc.getMaxPloidy(2));
+
+            for (int sample = 0; sample < expectedVc.getNSamples(); sample++) {
+                final Genotype genotype = expectedVc.getGenotype(sample);
+                Assert.assertEquals(columns.getType(sample), genotype.getType());
+                Assert.assertEquals(columns.isPhased(sample), genotype.isPhased());
+                Assert.assertEquals(columns.getDP(sample), genotype.getDP());
+                Assert.assertEquals(columns.getGQ(sample), genotype.getGQ());
+                Assert.assertEquals(columns.getAD(sample), genotype.getAD());
+                Assert.assertEquals(columns.getPL(sample), genotype.getPL());
+                Assert.assertEquals(actualVc.getGenotype(sample).toString(), genotype.toString());
+                Assert.assertEquals(actualVc.getGenotype(genotype.getSampleName()).toString(), genotype.toString());
+            }
+            final Iterator<Genotype> views = actualVc.getGenotypes().iterator();
+            for (final Genotype genotype : expectedVc.getGenotypes()) {
+                Assert.assertEquals(views.next().toString(), genotype.toString());
+            }
+            Assert.assertFalse(views.hasNext());
+            Assert.assertTrue(columns.isLazyWithData());
+
+            // any other use decodes all the genotypes
+            Assert.assertEquals(actualVc.getGenotypes().toString(), expectedVc.getGenotypes().toString());
+            Assert.assertFalse(columns.isLazyWithData());
+            Assert.assertEquals(actualVc.getSampleNamesOrderedByName(), expectedVc.getSampleNamesOrderedByName());
+            Assert.assertEquals(actualVc.getHetCount(), expectedVc.getHetCount());
+        }
+        Assert.assertEquals(columnarSites, expectedColumnarSites);
+    }
+
+    @Test
+    public void testColumnarVCFMatchesBCF() throws IOException {
+        final File vcf = createTempVcf("columnar", SMALL_VCF);
+        final List<VariantContext> fromVcf = read(vcf, columnarVCFCodec());
+        final List<VariantContext> fromBcf = read(createTempBcf("columnar", vcf), columnarBCF2Codec());
+        for (int i = 0; i < fromVcf.size(); i++) {
+            Assert.assertEquals(fromBcf.get(i).getCalledChrCount(), fromVcf.get(i).getCalledChrCount());
+            Assert.assertEquals(fromBcf.get(i).getNoCallCount(), fromVcf.get(i).getNoCallCount());
+            Assert.assertEquals(fromBcf.get(i).getGenotypes().getMaxPloidy(2), fromVcf.get(i).getGenotypes().getMaxPloidy(2));
+        }
+    }
+}
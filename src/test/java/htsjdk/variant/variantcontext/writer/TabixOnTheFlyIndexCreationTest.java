@@ -33,9 +33,11 @@ import htsjdk.tribble.util.TabixUtils;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCF3Codec;
 import htsjdk.variant.vcf.VCFHeader;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.EnumSet;
 
 public class TabixOnTheFlyIndexCreationTest extends HtsjdkTest {
@@ -65,4 +67,34 @@ public class TabixOnTheFlyIndexCreationTest extends HtsjdkTest {
         // Hard to validate, so just confirm that index can be read.
         new TabixIndex(tabix);
     }
+
+    @Test
+    public void testParallelCompressionProducesSameIndex() throws Exception {
+        final File serialVcf = writeWithCompressionThreads(0);
+        final File parallelVcf = writeWithCompressionThreads(3);
+        Assert.assertEquals(Files.readAllBytes(parallelVcf.toPath()), Files.readAllBytes(serialVcf.toPath()));
+        Assert.assertEquals(Files.readAllBytes(new File(parallelVcf.getAbsolutePath() + TabixUtils.STANDARD_INDEX_EXTENSION).toPath()),
+                Files.readAllBytes(new File(serialVcf.getAbsolutePath() + TabixUtils.STANDARD_INDEX_EXTENSION).toPath()));
+    }
+
+    private File writeWithCompressionThreads(final int compressionThreads) throws Exception {
+        final FeatureReader<VariantContext> reader = AbstractFeatureReader.getFeatureReader(SMALL_VCF.getAbsolutePath(), new VCF3Codec(), false);
+        final VCFHeader headerFromFile = (VCFHeader)reader.getHeader();
+        final File vcf = File.createTempFile("TabixOnTheFlyIndexCreationTest.", IOUtil.COMPRESSED_VCF_FILE_EXTENSION);
+        vcf.deleteOnExit();
+        new File(vcf.getAbsolutePath() + TabixUtils.STANDARD_INDEX_EXTENSION).deleteOnExit();
+        try (final VariantContextWriter vcfWriter = new VariantContextWriterBuilder()
+                .setOutputFile(vcf)
+                .setReferenceDictionary(headerFromFile.getSequenceDictionary())
+                .setOptions(EnumSet.of(Options.INDEX_ON_THE_FLY, Options.ALLOW_MISSING_FIELDS_IN_HEADER))
+                .setCompressionThreads(compressionThreads)
+                .build();
+             final CloseableTribbleIterator<VariantContext> it = reader.iterator()) {
+            vcfWriter.writeHeader(headerFromFile);
+            while (it.hasNext()) {
+                vcfWriter.add(it.next());
+            }
+        }
+        return vcf;
+    }
 }
@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.vcf;
+
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.FeatureReader;
+import htsjdk.variant.VariantBaseTest;
+import htsjdk.variant.variantcontext.ColumnarGenotypesContext;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+public class VCFFieldSelectionTest extends VariantBaseTest {
+    private static final File ILLUMINA_VCF = new File(variantTestDataRoot, "ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf");
+
+    private static final String[] ANNOTATED_VCF = {
+            "##fileformat=VCFv4.2",
+            "##contig=<ID=1,length=10000>",
+            "##INFO=<ID=END,Number=1,Type=Integer,Description=\"End position\">",
+            "##INFO=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">",
+            "##INFO=<ID=DB,Number=0,Type=Flag,Description=\"dbSNP membership\">",
+            "##INFO=<ID=CSQ,Number=.,Type=String,Description=\"Consequence annotations\">",
+            "##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">",
+            "##FORMAT=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">",
+            "##FORMAT=<ID=FT,Number=1,Type=String,Description=\"Genotype filter\">",
+            "##FORMAT=<ID=XX,Number=1,Type=String,Description=\"Other\">",
+            "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1\tS2\tS3",
+            "1\t100\t.\tA\tC\t50\tPASS\tDP=10;CSQ=C|missense|GENE1,C|intron|GENE2;DB\tGT:DP:FT:XX\t0/1:5:PASS:a\t0|0:3:LowQual:b\t./.:.:.:.",
+            "1\t200\t.\tA\t<DEL>\t50\tPASS\tCSQ=-|deletion|GENE3;END=300;DP=7\tGT:XX:DP\t1/1:c:4\t0/1\t0/0:d",
+            "1\t400\t.\tG\tT\t50\tPASS\t.\tXX:DP\tz:1\t.:2\ty",
+    };
+
+    private static List<VariantContext> read(final File file, final VCFFieldSelection fieldSelection) {
+        try (final VCFFileReader reader = new VCFFileReader(file, false)) {
+            reader.setFieldSelection(fieldSelection);
+            return reader.iterator().toList();
+        }
+    }
+
+    private static Map<String, Object> expectedAttributes(final VariantContext vc, final VCFFieldSelection fieldSelection) {
+        return new TreeMap<>(vc.getAttributes().entrySet().stream()
+                .filter(e -> fieldSelection.includesInfoKey(e.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+
+    private static Genotype expectedGenotype(final Genotype genotype, final VCFFieldSelection fieldSelection) {
+        final GenotypeBuilder builder = new GenotypeBuilder(genotype.getSampleName());
+        if (fieldSelection.includesFormatKey(VCFConstants.GENOTYPE_KEY)) {
+            builder.alleles(genotype.getAlleles()).phased(genotype.isPhased());
+        }
+        if (fieldSelection.includesFormatKey(VCFConstants.DEPTH_KEY)) builder.DP(genotype.getDP());
+        if (fieldSelection.includesFormatKey(VCFConstants.GENOTYPE_QUALITY_KEY)) builder.GQ(genotype.getGQ());
+        if (fieldSelection.includesFormatKey(VCFConstants.GENOTYPE_ALLELE_DEPTHS)) builder.AD(genotype.getAD());
+        if (fieldSelection.includesFormatKey(VCFConstants.GENOTYPE_PL_KEY)) builder.PL(genotype.getPL());
+        if (fieldSelection.includesFormatKey(VCFConstants.GENOTYPE_FILTER_KEY)) builder.filter(genotype.getFilters());
+        for (final Map.Entry<String, Object> attribute : genotype.getExtendedAttributes().entrySet()) {
+            if (fieldSelection.includesFormatKey(attribute.getKey())) {
+                builder.attribute(attribute.getKey(), attribute.getValue());
+            }
+        }
+        return builder.make();
+    }
+
+    @DataProvider
+    public Object[][] selections() {
+        final File annotatedVcf = createTempVcf("selection", ANNOTATED_VCF);
+        final File annotatedBcf = createTempBcf("selection", annotatedVcf);
+        final File illuminaBcf = createTempBcf("selection", ILLUMINA_VCF);
+        final List<VCFFieldSelection> selections = Arrays.asList(
+                VCFFieldSelection.ALL,
+                VCFFieldSelection.GT_ONLY,
+                VCFFieldSelection.of(Arrays.asList("DP", "DB"), Arrays.asList("DP", "FT")),
+                VCFFieldSelection.of(Collections.emptySet(), Arrays.asList("GT", "XX", "PL")),
+                VCFFieldSelection.of(Arrays.asList("AC", "AN", "DS", "CSQ"), null));
+        final Object[][] tests = new Object[selections.size() * 4][];
+        int i = 0;
+        for (final VCFFieldSelection selection : selections) {
+            tests[i++] = new Object[]{annotatedVcf, selection};
+            tests[i++] = new Object[]{annotatedBcf, selection};
+            tests[i++] = new Object[]{ILLUMINA_VCF, selection};
+            tests[i++] = new Object[]{illuminaBcf, selection};
+        }
+        return tests;
+    }
+
+    @Test(dataProvider = "selections")
+    public void testFieldSelection(final File file, final VCFFieldSelection fieldSelection) {
+        final List<VariantContext> expected = read(file, VCFFieldSelection.ALL);
+        final List<VariantContext> actual = read(file, fieldSelection);
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final VariantContext expectedVc = expected.get(i);
+            final VariantContext actualVc = actual.get(i);
+            Assert.assertEquals(actualVc.getStart(), expectedVc.getStart());
+            Assert.assertEquals(actualVc.getEnd(), expectedVc.getEnd());
+            Assert.assertEquals(actualVc.getAlleles(), expectedVc.getAlleles());
+            Assert.assertEquals(new TreeMap<>(actualVc.getAttributes()).toString(), expectedAttributes(expectedVc, fieldSelection).toString());
+            Assert.assertEquals(actualVc.getNSamples(), expectedVc.getNSamples());
+            for (int sample = 0; sample < expectedVc.getNSamples(); sample++) {
+                Assert.assertEquals(actualVc.getGenotype(sample).toString(),
+                        expectedGenotype(expectedVc.getGenotype(sample), fieldSelection).toString());
+            }
+        }
+    }
+
+    @DataProvider
+    public Object[][] files() {
+        final File annotatedVcf = createTempVcf("selection", ANNOTATED_VCF);
+        return new Object[][]{
+                {annotatedVcf},
+                {createTempBcf("selection", annotatedVcf)},
+                {ILLUMINA_VCF},
+                {createTempBcf("selection", ILLUMINA_VCF)}
+        };
+    }
+
+    @Test(dataProvider = "files")
+    public void testSitesOnly(final File file) {
+        final List<VariantContext> expected = read(file, VCFFieldSelection.ALL);
+        final List<VariantContext> actual = read(file, VCFFieldSelection.SITES_ONLY);
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertFalse(actual.get(i).hasGenotypes());
+            Assert.assertEquals(actual.get(i).getEnd(), expected.get(i).getEnd());
+            Assert.assertEquals(actual.get(i).getAttributes().toString(), expected.get(i).getAttributes().toString());
+        }
+    }
+
+    @Test
+    public void testEndIsAlwaysDecoded() {
+        final List<VariantContext> variants = read(createTempVcf("selection", ANNOTATED_VCF), VCFFieldSelection.of(Collections.emptySet(), null));
+        Assert.assertEquals(variants.get(0).getAttributes(), Collections.emptyMap());
+        Assert.assertEquals(variants.get(1).getEnd(), 300);
+        Assert.assertEquals(variants.get(1).getAttributes().keySet(), Collections.singleton(VCFConstants.END_KEY));
+    }
+
+    @Test
+    public void testSelectedColumnarGenotypes() throws IOException {
+        final VCFCodec codec = new VCFCodec();
+        codec.setColumnarGenotypes(true);
+        codec.setFieldSelection(VCFFieldSelection.of(null, Arrays.asList("GT", "DP")));
+        try (final FeatureReader<VariantContext> reader = AbstractFeatureReader.getFeatureReader(ILLUMINA_VCF.getAbsolutePath(), codec, false)) {
+            for (final VariantContext vc : reader.iterator()) {
+                // the sites have GT:AD:DP:GQ:PL, of which only GT and DP are selected
+                Assert.assertTrue(vc.getGenotypes() instanceof ColumnarGenotypesContext);
+                Assert.assertNull(((ColumnarGenotypesContext) vc.getGenotypes()).getPL(0));
+                Assert.assertFalse(vc.getGenotype(0).hasPL());
+            }
+        }
+    }
+
+    @Test
+    public void testSelectedBCFGenotypesArePassedThrough() throws IOException {
+        final File bcf = createTempBcf("selection", createTempVcf("selection", ANNOTATED_VCF));
+        final VCFFieldSelection fieldSelection = VCFFieldSelection.of(null, Collections.singleton("DP"));
+        final File written = createTempFile("selection.written", ".bcf");
+        try (final VCFFileReader reader = new VCFFileReader(bcf, false);
+             final VariantContextWriter writer = new VariantContextWriterBuilder()
+                     .setOutputFile(written)
+                     .setOutputFileType(VariantContextWriterBuilder.OutputType.BCF)
+                     .unsetOption(Options.INDEX_ON_THE_FLY)
+                     .build()) {
+            reader.setFieldSelection(fieldSelection);
+            writer.writeHeader(reader.getFileHeader());
+            for (final VariantContext vc : reader) {
+                writer.add(vc);
+            }
+        }
+        final List<VariantContext> expected = read(bcf, fieldSelection);
+        final List<VariantContext> actual = read(written, VCFFieldSelection.ALL);
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(actual.get(i).getGenotypes().toString(), expected.get(i).getGenotypes().toString());
+        }
+    }
+
+    @Test
+    public void testSelection() {
+        final VCFFieldSelection selection = VCFFieldSelection.of(Collections.singleton("AC"), Collections.singleton("GT"));
+        Assert.assertTrue(selection.includesInfoKey("AC"));
+        Assert.assertTrue(selection.includesInfoKey(VCFConstants.END_KEY));
+        Assert.assertFalse(selection.includesInfoKey("AN"));
+        Assert.assertTrue(selection.includesInfoKey("AN;AC=1", 3, 5));
+        Assert.assertFalse(selection.includesInfoKey("AN;ACC=1", 3, 6));
+        Assert.assertTrue(selection.includesFormatKey("GT"));
+        Assert.assertFalse(selection.includesFormatKey("DP"));
+        Assert.assertTrue(selection.includesGenotypes());
+        Assert.assertFalse(VCFFieldSelection.SITES_ONLY.includesGenotypes());
+        Assert.assertFalse(VCFFieldSelection.SITES_ONLY.includesFormatKey("GT"));
+        Assert.assertTrue(VCFFieldSelection.ALL.includesAllInfoKeys());
+        Assert.assertTrue(VCFFieldSelection.ALL.includesAllFormatKeys());
+        Assert.assertEquals(VCFFieldSelection.GT_ONLY.getFormatKeys(), Collections.singleton("GT"));
+    }
+}
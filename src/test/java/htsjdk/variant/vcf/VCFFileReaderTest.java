@@ -3,13 +3,20 @@ package htsjdk.variant.vcf;
 import com.google.common.jimfs.Configuration;
 import com.google.common.jimfs.Jimfs;
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
 import htsjdk.tribble.TestUtils;
+import htsjdk.tribble.TribbleException;
+import htsjdk.variant.variantcontext.VariantContext;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -83,4 +90,130 @@ public class VCFFileReaderTest extends HtsjdkTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    private static final File TABIX_VCF = new File("src/test/resources/htsjdk/tribble/tabix/YRI.trio.2010_07.indel.sites.vcf.gz");
+
+    private static File createPlainVcf(final File vcf, final int badRecord) throws IOException {
+        final File plain = File.createTempFile("VCFFileReaderTest.", ".vcf");
+        plain.deleteOnExit();
+        try (final BufferedReader in = new BufferedReader(new InputStreamReader(IOUtil.openFileForReading(vcf)));
+             final PrintWriter out = new PrintWriter(plain)) {
+            int records = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (!line.startsWith("#") && ++records == badRecord) {
+                    line = line.replaceFirst("\t[0-9]+\t", "\tnotAPosition\t");
+                }
+                out.println(line);
+            }
+        }
+        return plain;
+    }
+
+    private static List<String> readAll(final Iterator<VariantContext> iterator) {
+        final List<String> records = new ArrayList<>();
+        while (iterator.hasNext()) {
+            records.add(iterator.next().toStringDecodeGenotypes());
+        }
+        return records;
+    }
+
+    @DataProvider(name = "parallelDecodingData")
+    public Object[][] parallelDecodingData() throws IOException {
+        return new Object[][]{
+                {TABIX_VCF},
+                {createPlainVcf(TABIX_VCF, 0)},
+                {new File(TEST_DATA_DIR, "ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf")},
+                {new File(TEST_DATA_DIR, "VcfThatLacksAnIndex.bcf")}
+        };
+    }
+
+    @Test(dataProvider = "parallelDecodingData")
+    public void testParallelDecoding(final File vcf) {
+        final List<String> expected;
+        try (final VCFFileReader reader = new VCFFileReader(vcf, false)) {
+            expected = readAll(reader.iterator());
+        }
+        Assert.assertFalse(expected.isEmpty());
+        try (final VCFFileReader reader = new VCFFileReader(vcf, false)) {
+            reader.setDecodingThreads(3);
+            // twice, since each iterator copies the codec
+            for (int i = 0; i < 2; i++) {
+                try (final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+                    Assert.assertEquals(readAll(iterator), expected);
+                }
+            }
+        }
+    }
+
+    @Test(timeOut = 60000)
+    public void testChangeDecodingThreadsDuringIteration() throws IOException {
+        final File vcf = createPlainVcf(TABIX_VCF, 0);
+        final List<String> expected;
+        try (final VCFFileReader reader = new VCFFileReader(vcf, false)) {
+            expected = readAll(reader.iterator());
+        }
+        // many more records than the decoding batches read ahead
+        Assert.assertTrue(expected.size() > 10000);
+        try (final VCFFileReader reader = new VCFFileReader(vcf, false)) {
+            reader.setDecodingThreads(2);
+            try (final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+                final List<String> records = new ArrayList<>();
+                records.add(iterator.next().toStringDecodeGenotypes());
+                // the open iterator keeps decoding on its own threads
+                reader.setDecodingThreads(4);
+                records.addAll(readAll(iterator));
+                Assert.assertEquals(records, expected);
+            }
+            try (final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+                Assert.assertEquals(readAll(iterator), expected);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelDecodingOfQuery() {
+        final List<String> expected;
+        try (final VCFFileReader reader = new VCFFileReader(TABIX_VCF)) {
+            expected = readAll(reader.query("1", 10_000_000, 60_000_000));
+        }
+        Assert.assertTrue(expected.size() > 1000);
+        try (final VCFFileReader reader = new VCFFileReader(TABIX_VCF)) {
+            reader.setDecodingThreads(2);
+            try (final CloseableIterator<VariantContext> iterator = reader.query("1", 1, 1_000_000)) {
+                // closed before the end
+                Assert.assertTrue(iterator.hasNext());
+                iterator.next();
+            }
+            try (final CloseableIterator<VariantContext> iterator = reader.query("1", 10_000_000, 60_000_000)) {
+                Assert.assertEquals(readAll(iterator), expected);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelDecodingErrorIsRaisedInOrder() throws IOException {
+        final File vcf = createPlainVcf(TABIX_VCF, 5000);
+        final List<String> expectedRecords = new ArrayList<>();
+        final String expectedMessage = readUntilError(vcf, 0, expectedRecords);
+        // the iterator decodes one record ahead of the one it returns
+        Assert.assertEquals(expectedRecords.size(), 4998);
+        final List<String> records = new ArrayList<>();
+        Assert.assertEquals(readUntilError(vcf, 4, records), expectedMessage);
+        Assert.assertEquals(records, expectedRecords);
+    }
+
+    private static String readUntilError(final File vcf, final int decodingThreads, final List<String> records) {
+        try (final VCFFileReader reader = new VCFFileReader(vcf, false)) {
+            reader.setDecodingThreads(decodingThreads);
+            try (final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+                while (iterator.hasNext()) {
+                    records.add(iterator.next().toStringDecodeGenotypes());
+                }
+            } catch (final TribbleException e) {
+                return e.getMessage();
+            }
+        }
+        Assert.fail("Expected an error decoding " + vcf);
+        return null;
+    }
+}